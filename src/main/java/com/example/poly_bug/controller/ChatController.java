@@ -6,17 +6,10 @@ import com.example.poly_bug.entity.Trade;
 import com.example.poly_bug.repository.ReflectionLogRepository;
 import com.example.poly_bug.repository.TradeRepository;
 import com.example.poly_bug.service.BotStateService;
+import com.example.poly_bug.service.LlmGateway;
 import com.example.poly_bug.service.PolymarketClient;
 import com.example.poly_bug.service.TradingService;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
-import okhttp3.MediaType;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -37,13 +30,7 @@ public class ChatController {
     private final PolymarketClient polymarketClient;
     private final TradingService tradingService;
     private final BotStateService botStateService;
-
-    // OkHttpClient, ObjectMapper는 final 필드가 아닌 일반 필드로 선언
-    private final OkHttpClient httpClient;
-    private final ObjectMapper objectMapper;
-
-    @Value("${anthropic.api-key}")
-    private String apiKey;
+    private final LlmGateway llmGateway;
 
     @Value("${anthropic.model}")
     private String model;
@@ -56,14 +43,14 @@ public class ChatController {
                           ReflectionLogRepository reflectionLogRepository,
                           PolymarketClient polymarketClient,
                           TradingService tradingService,
-                          BotStateService botStateService) {
+                          BotStateService botStateService,
+                          LlmGateway llmGateway) {
         this.tradeRepository = tradeRepository;
         this.reflectionLogRepository = reflectionLogRepository;
         this.polymarketClient = polymarketClient;
         this.tradingService = tradingService;
         this.botStateService = botStateService;
-        this.httpClient = new OkHttpClient();
-        this.objectMapper = new ObjectMapper();
+        this.llmGateway = llmGateway;
     }
 
     @PostMapping
@@ -190,40 +177,10 @@ public class ChatController {
                 + "- 친근한 말투로\n";
     }
 
-    // Jackson ObjectNode로 안전하게 JSON 구성 (익명 이중 중괄호 제거)
+    // LlmGateway 경유 (CHAT 예산 초과 시 예외 → 오류 메시지로 응답)
     private String callClaude(String prompt) throws Exception {
-        ObjectNode messageNode = objectMapper.createObjectNode();
-        messageNode.put("role", "user");
-        messageNode.put("content", prompt);
-
-        ArrayNode messages = objectMapper.createArrayNode();
-        messages.add(messageNode);
-
-        ObjectNode requestNode = objectMapper.createObjectNode();
-        requestNode.put("model", model);
-        requestNode.put("max_tokens", 512);
-        requestNode.set("messages", messages);
-
-        String requestBody = objectMapper.writeValueAsString(requestNode);
-
-        Request request = new Request.Builder()
-                .url("https://api.anthropic.com/v1/messages")
-                .addHeader("x-api-key", apiKey)
-                .addHeader("anthropic-version", "2023-06-01")
-                .addHeader("content-type", "application/json")
-                .post(okhttp3.RequestBody.create(requestBody, MediaType.get("application/json")))
-                .build();
-
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (response.body() == null) throw new RuntimeException("응답 body가 null입니다");
-            String responseBody = response.body().string();
-            if (!response.isSuccessful()) {
-                log.error("Claude API 오류 {}: {}", response.code(), responseBody);
-                throw new RuntimeException("Claude API 오류 " + response.code());
-            }
-            JsonNode root = objectMapper.readTree(responseBody);
-            return root.path("content").get(0).path("text").asText("응답을 받지 못했어요.");
-        }
+        String text = llmGateway.call(LlmGateway.Purpose.CHAT, model, null, prompt, 512).text();
+        return text.isEmpty() ? "응답을 받지 못했어요." : text;
     }
 
     private boolean containsAny(String text, String... keywords) {
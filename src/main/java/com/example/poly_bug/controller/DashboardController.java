@@ -1,6 +1,7 @@
 package com.example.poly_bug.controller;
 
 import com.example.poly_bug.dto.MarketIndicators;
+import com.example.poly_bug.dto.PriceSnapshot;
 import com.example.poly_bug.entity.Trade;
 import com.example.poly_bug.repository.TradeRepository;
 import com.example.poly_bug.service.MarketDataService;
@@ -8,13 +9,29 @@ import com.example.poly_bug.service.PolymarketOddsService;
 import com.example.poly_bug.service.TradingService;
 import com.example.poly_bug.service.TriggerConfigService;
 import com.example.poly_bug.service.BalanceService;
+import com.example.poly_bug.service.ClaudeDecisionEngine;
+import com.example.poly_bug.service.DashboardPublisher;
 import com.example.poly_bug.service.LessonService;
+import com.example.poly_bug.service.LlmGateway;
 import com.example.poly_bug.service.OddsGapScanner;
+import com.example.poly_bug.service.OddsLagDetector;
+import com.example.poly_bug.service.OddsRegistry;
+import com.example.poly_bug.service.OrderPipeline;
+import com.example.poly_bug.service.OutcomeTracker;
+import com.example.poly_bug.service.PromptContextCache;
+import com.example.poly_bug.service.RiskGate;
 import com.example.poly_bug.service.ChainlinkPriceService;
 import com.example.poly_bug.service.BinanceWebSocketService;
+import com.example.poly_bug.service.LiveStateService;
+import com.example.poly_bug.service.WinRateEngine;
 import com.example.poly_bug.util.PriceFormatter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -32,11 +49,40 @@ public class DashboardController {
     private final TradingService tradingService;
     private final MarketDataService marketDataService;
     private final PolymarketOddsService oddsService;
+    private final OddsRegistry oddsRegistry;
+    private final OrderPipeline orderPipeline;
+    private final RiskGate riskGate;
     private final BalanceService balanceService;
     private final LessonService lessonService;
+    private final PromptContextCache promptContextCache;
+    private final OutcomeTracker outcomeTracker;
+    private final WinRateEngine winRateEngine;
+    private final ClaudeDecisionEngine claudeEngine;
+    private final LlmGateway llmGateway;
     private final OddsGapScanner oddsGapScanner;
+    private final OddsLagDetector oddsLagDetector;
     private final ChainlinkPriceService chainlinkPriceService;
     private final BinanceWebSocketService binanceWebSocketService;
+    private final LiveStateService liveStateService;
+    private final DashboardPublisher dashboardPublisher;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** 라이브 패널 등록 — REST 응답 빌더를 그대로 재사용 (REST는 폴백으로 유지) */
+    @PostConstruct
+    public void registerLivePanels() {
+        liveStateService.registerPanel("gaps", 250, () -> gapStatus().getBody());
+        liveStateService.registerPanel("chainlink", 250, () -> chainlinkTick().getBody());
+        liveStateService.registerPanel("scanLogs", 500, () -> scanLogs().getBody());
+        liveStateService.registerPanel("odds", 1000, () -> allOdds().getBody());
+        liveStateService.registerPanel("balance", 5000, () -> balance().getBody());
+        liveStateService.registerPanel("stats", 10000, this::buildStats);
+    }
+
+    // ===== 라이브 스냅샷 (STOMP /app/live 구독 시 1회 응답) =====
+    @SubscribeMapping("/live")
+    public String liveSnapshot() {
+        return liveStateService.snapshot();
+    }
 
     @GetMapping("/")
     public String dashboard(Model model) {
@@ -162,47 +208,38 @@ public class DashboardController {
     // ===== 통계 (coin + timeframe 파라미터 지원) — HOLD 제외, 실제 배팅만 =====
     @GetMapping("/stats")
     @ResponseBody
-    public ResponseEntity<Map<String, Object>> stats(
+    public ResponseEntity<JsonNode> stats(
             @RequestParam(required = false, defaultValue = "") String coin,
             @RequestParam(required = false, defaultValue = "") String timeframe) {
+        // 라이브 "stats" 패널과 같은 캐시 (최소 간격 안에서는 재계산 없음)
+        JsonNode panel = liveStateService.current("stats");
+        JsonNode entry = panel.path(statsKey(coin, timeframe));
+        ObjectNode result = entry.isObject() ? ((ObjectNode) entry).deepCopy() : objectMapper.valueToTree(statEntry(new long[3], 0.0));
+        result.set("patterns", panel.path("patterns").isObject() ? panel.get("patterns") : objectMapper.createObjectNode());
+        return ResponseEntity.ok(result);
+    }
 
-        boolean filtered = !coin.isEmpty();
-        boolean tfFiltered = !timeframe.isEmpty();
-
-        Long resolved, wins;
-        Double pnl;
-        long totalBets;
-
-        if (tfFiltered) {
-            // timeframe 필터링: Java에서 처리 (1H일 때 null 레거시도 포함)
-            List<Trade> allTrades = tradeRepository.findAll().stream()
-                    .filter(t -> t.getAction() != Trade.TradeAction.HOLD)
-                    .filter(t -> !filtered || coin.equals(t.getCoin()))
-                    .filter(t -> timeframe.equals(t.getTimeframe())
-                            || ("1H".equals(timeframe) && t.getTimeframe() == null))
-                    .toList();
-            totalBets = allTrades.size();
-            resolved = allTrades.stream().filter(t -> t.getResult() != Trade.TradeResult.PENDING).count();
-            wins = allTrades.stream().filter(t -> t.getResult() == Trade.TradeResult.WIN).count();
-            pnl = allTrades.stream().filter(t -> t.getProfitLoss() != null).mapToDouble(Trade::getProfitLoss).sum();
-        } else if (filtered) {
-            resolved = tradeRepository.countResolvedByCoin(coin);
-            wins = tradeRepository.countWinsByCoin(coin);
-            pnl = tradeRepository.totalProfitLossByCoin(coin);
-            totalBets = tradeRepository.countActualBetsByCoin(coin);
-        } else {
-            resolved = tradeRepository.countResolved();
-            wins = tradeRepository.countWins();
-            pnl = tradeRepository.totalProfitLoss();
-            totalBets = tradeRepository.countActualBets();
+    /** 코인 × 타임프레임 통계 한 번에 집계 — 키 "BTC_1H", 전체는 "ALL" (예: "ALL_ALL", "BTC_ALL") */
+    private Map<String, Object> buildStats() {
+        Map<String, long[]> counts = new HashMap<>();   // [total, resolved, wins]
+        Map<String, Double> pnls = new HashMap<>();
+        for (Object[] row : tradeRepository.findBetSummaries()) {
+            String coin = (String) row[0];
+            String tf = row[1] != null ? (String) row[1] : "1H"; // null 레거시는 1H
+            Trade.TradeResult result = (Trade.TradeResult) row[2];
+            Double profitLoss = (Double) row[3];
+            for (String key : List.of(statsKey(coin, tf), statsKey(coin, ""), statsKey("", tf), statsKey("", ""))) {
+                long[] c = counts.computeIfAbsent(key, k -> new long[3]);
+                c[0]++;
+                if (result != Trade.TradeResult.PENDING) c[1]++;
+                if (result == Trade.TradeResult.WIN) c[2]++;
+                if (profitLoss != null) pnls.merge(key, profitLoss, Double::sum);
+            }
         }
 
         Map<String, Object> map = new HashMap<>();
-        map.put("total", totalBets);
-        map.put("resolved", resolved);
-        map.put("wins", wins);
-        map.put("winRate", resolved > 0 ? String.format("%.1f", (double) wins / resolved * 100) : "0");
-        map.put("pnl", pnl != null ? pnl : 0.0);
+        counts.forEach((key, c) -> map.put(key, statEntry(c, pnls.getOrDefault(key, 0.0))));
+        map.putIfAbsent(statsKey("", ""), statEntry(new long[3], 0.0));
 
         // 패턴 통계
         Map<String, String> patterns = new HashMap<>();
@@ -217,7 +254,21 @@ public class DashboardController {
             if (tt > 0) patterns.put(trend, String.format("%.0f%% (%d건)", (double) tw / tt * 100, tt));
         }
         map.put("patterns", patterns);
-        return ResponseEntity.ok(map);
+        return map;
+    }
+
+    private static String statsKey(String coin, String timeframe) {
+        return (coin == null || coin.isEmpty() ? "ALL" : coin) + "_" + (timeframe == null || timeframe.isEmpty() ? "ALL" : timeframe);
+    }
+
+    private static Map<String, Object> statEntry(long[] c, double pnl) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("total", c[0]);
+        map.put("resolved", c[1]);
+        map.put("wins", c[2]);
+        map.put("winRate", c[1] > 0 ? String.format("%.1f", (double) c[2] / c[1] * 100) : "0");
+        map.put("pnl", pnl);
+        return map;
     }
 
     // ===== 배팅 목록 (HOLD 포함) =====
@@ -301,6 +352,9 @@ public class DashboardController {
         long count = tradeRepository.count();
         tradeRepository.deleteAll();
         balanceService.recalcFromDb(); // 잔액 리셋
+        promptContextCache.invalidateAll();
+        outcomeTracker.reload(); // 승패 이력(연패 서킷브레이커)도 빈 DB 기준으로 재시드
+        winRateEngine.reload(); // 동적 임계값용 승률 윈도우도 비움
         return ResponseEntity.ok(Map.of("status", "deleted", "count", String.valueOf(count)));
     }
 
@@ -406,16 +460,25 @@ public class DashboardController {
         String[] coins = {"BTC", "ETH", "SOL", "XRP"};
         String[] timeframes = {"1H", "15M", "5M"};
 
-        // 병렬로 모든 오즈 조회
-        Map<String, java.util.concurrent.CompletableFuture<Map<String, Object>>> futures = new HashMap<>();
+        // 레지스트리만 읽음 — 대시보드 요청이 HTTP 조회를 일으키지 않음
+        Map<String, Object> result = new HashMap<>();
         for (String tf : timeframes) {
+            Map<String, Object> tfMap = new HashMap<>();
             for (String coin : coins) {
-                String key = tf + "_" + coin;
-                final String c = coin;
-                final String t = tf;
-                futures.put(key, java.util.concurrent.CompletableFuture.supplyAsync(() -> {
-                    var odds = getOddsForCoinAndTimeframe(c, t);
-                    Map<String, Object> coinData = new HashMap<>();
+                OddsRegistry.OddsView view = oddsRegistry.get(coin, tf);
+                Map<String, Object> coinData = new HashMap<>();
+                if (view == null) {
+                    coinData.put("upCents", 50.0);
+                    coinData.put("downCents", 50.0);
+                    coinData.put("upPct", 50.0);
+                    coinData.put("downPct", 50.0);
+                    coinData.put("spread", 0);
+                    coinData.put("slug", "");
+                    coinData.put("available", false);
+                    coinData.put("updatedAt", 0L);
+                    coinData.put("stale", true);
+                } else {
+                    var odds = view.odds();
                     double upCentsRaw = odds.upOdds() * 100;
                     double downCentsRaw = odds.downOdds() * 100;
                     coinData.put("upCents", Math.round(upCentsRaw * 10.0) / 10.0);
@@ -425,29 +488,10 @@ public class DashboardController {
                     coinData.put("spread", Math.round((odds.upOdds() + odds.downOdds() - 1.0) * 100));
                     coinData.put("slug", odds.slug());
                     coinData.put("available", odds.available());
-                    return coinData;
-                }));
-            }
-        }
-
-        // 결과 조립
-        Map<String, Object> result = new HashMap<>();
-        for (String tf : timeframes) {
-            Map<String, Object> tfMap = new HashMap<>();
-            for (String coin : coins) {
-                try {
-                    tfMap.put(coin, futures.get(tf + "_" + coin).get(5, java.util.concurrent.TimeUnit.SECONDS));
-                } catch (Exception e) {
-                    Map<String, Object> fallback = new HashMap<>();
-                    fallback.put("upCents", 50.0);
-                    fallback.put("downCents", 50.0);
-                    fallback.put("upPct", 50.0);
-                    fallback.put("downPct", 50.0);
-                    fallback.put("spread", 0);
-                    fallback.put("slug", "");
-                    fallback.put("available", false);
-                    tfMap.put(coin, fallback);
+                    coinData.put("updatedAt", view.updatedAt());
+                    coinData.put("stale", view.isStale());
                 }
+                tfMap.put(coin, coinData);
             }
             result.put(tf, tfMap);
         }
@@ -471,11 +515,12 @@ public class DashboardController {
         Map<String, Object> result = new HashMap<>();
         result.put("connected", chainlinkPriceService.isConnected());
         for (String coin : List.of("BTC", "ETH", "SOL", "XRP")) {
+            PriceSnapshot snapshot = chainlinkPriceService.getSnapshot(coin);
             Map<String, Object> coinData = new HashMap<>();
-            coinData.put("price", chainlinkPriceService.getPrice(coin));
-            coinData.put("open5m", chainlinkPriceService.get5mOpen(coin));
-            coinData.put("open15m", chainlinkPriceService.get15mOpen(coin));
-            coinData.put("lastUpdate", chainlinkPriceService.getLastUpdateTime(coin));
+            coinData.put("price", snapshot.price());
+            coinData.put("open5m", snapshot.open5m());
+            coinData.put("open15m", snapshot.open15m());
+            coinData.put("lastUpdate", snapshot.receivedAt());
             result.put(coin, coinData);
         }
         return ResponseEntity.ok(result);
@@ -524,6 +569,47 @@ public class DashboardController {
         return ResponseEntity.ok(result);
     }
 
+    // ===== 주문 파이프라인 (진행 중 주문 + 마켓별 ACK 지연/거부율 + 스파이크 디스패치 + 리스크 게이트 + 대시보드 발행) =====
+    @GetMapping("/api/debug/orders")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> debugOrders() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("in_flight", orderPipeline.getInFlight().stream().map(t -> Map.of(
+                "key", t.getIdempotencyKey(), "market", t.getMarket(), "state", t.getState().name(),
+                "attempts", t.getAttempts(), "ageMs", System.currentTimeMillis() - t.getCreatedAt())).toList());
+        Map<String, Object> stats = new HashMap<>();
+        orderPipeline.getStats().forEach((market, st) -> stats.put(market, Map.of(
+                "submitted", st.submitted(), "acked", st.acked(), "rejected", st.rejected(),
+                "avgAckMs", st.avgAckMs(), "maxAckMs", st.maxAckMs(), "rejectRate", st.rejectRate())));
+        result.put("markets", stats);
+        OddsLagDetector.SpikeDispatchStats spikes = oddsLagDetector.getSpikeDispatchStats();
+        result.put("spike_dispatch", Map.of("pending", spikes.pending(), "received", spikes.received(),
+                "coalesced", spikes.coalesced(), "processed", spikes.processed()));
+        RiskGate.RiskGateStats risk = riskGate.getStats();
+        result.put("risk_gate", Map.of("reserved", risk.reserved(), "rejections", risk.rejections(),
+                "openExposure", risk.openExposure()));
+        result.put("dashboard_publisher", Map.of("published", dashboardPublisher.getPublishedCount(),
+                "dropped", dashboardPublisher.getDroppedCount()));
+        return ResponseEntity.ok(result);
+    }
+
+    // ===== Claude 캐시 (로컬 블록 / API 접두부 적중률·지연 절감 / 거부권 응답) =====
+    @GetMapping("/api/debug/prompt-cache")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> debugPromptCache() {
+        return ResponseEntity.ok(Map.of(
+                "context_blocks", promptContextCache.getStats(),
+                "anthropic_prefix", claudeEngine.getPromptCacheStats(),
+                "veto_responses", claudeEngine.getResponseCacheStats()));
+    }
+
+    // ===== LLM 게이트웨이 (모델별 지연 히스토그램 / 용도별 예산 초과·헤징) =====
+    @GetMapping("/api/debug/llm")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> debugLlm() {
+        return ResponseEntity.ok(llmGateway.getStats());
+    }
+
     // ===== ⭐ 5M 마켓 전체 JSON 덤프 =====
     @GetMapping("/api/debug/market5m/{coin}")
     @ResponseBody
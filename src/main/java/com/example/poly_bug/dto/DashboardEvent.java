@@ -0,0 +1,97 @@
+package com.example.poly_bug.dto;
+
+import java.util.Map;
+
+/**
+ * 대시보드 STOMP 이벤트 (JSON 배열로 배치 전송)
+ *
+ * @param type    LOG / TRADE_RESULT / ...
+ * @param level   ERROR / SUCCESS / AI / WARN / INFO (UI 색상)
+ * @param message 로그창 표시용 텍스트 (고빈도 타입은 null → 발행 스레드에서 data로 렌더링)
+ * @param data    타입별 구조화 필드 (없으면 null)
+ */
+public record DashboardEvent(String type, String level, String message, Map<String, Object> data, long timestamp) {
+
+    public static DashboardEvent log(String message) {
+        return new DashboardEvent("LOG", levelOf(message), message, null, System.currentTimeMillis());
+    }
+
+    public static DashboardEvent tradeResult(Long tradeId, String coin, String timeframe, String result,
+                                             double pnl, double balance, String message) {
+        return new DashboardEvent("TRADE_RESULT", "WIN".equals(result) ? "SUCCESS" : "ERROR", message,
+                Map.of("tradeId", tradeId, "coin", coin != null ? coin : "-",
+                        "timeframe", timeframe != null ? timeframe : "1H",
+                        "result", result, "pnl", pnl, "balance", balance),
+                System.currentTimeMillis());
+    }
+
+    // === 고빈도 타입: 호출 스레드는 필드만 담고, 문자열은 rendered()에서 (발행 스레드) ===
+
+    public static DashboardEvent betPlaced(Long tradeId, String coin, String timeframe, String strategy,
+                                           double amount, double balance) {
+        return typed("BET_PLACED", "SUCCESS", Map.of("tradeId", tradeId, "coin", orDash(coin),
+                "timeframe", timeframe != null ? timeframe : "1H", "strategy", strategy,
+                "amount", amount, "balance", balance));
+    }
+
+    public static DashboardEvent orderAck(Long tradeId, String coin, String state, String orderId, long latencyMs) {
+        return typed("ORDER_ACK", "SUCCESS", Map.of("tradeId", tradeId, "coin", orDash(coin),
+                "state", state, "orderId", orDash(orderId), "latencyMs", latencyMs));
+    }
+
+    public static DashboardEvent orderReject(Long tradeId, String coin, String error) {
+        return typed("ORDER_REJECT", "ERROR", Map.of("tradeId", tradeId, "coin", orDash(coin),
+                "error", orDash(error)));
+    }
+
+    public static DashboardEvent evSkip(String coin, String timeframe, double ev, double threshold) {
+        return typed("EV_SKIP", "INFO", Map.of("coin", orDash(coin), "timeframe", orDash(timeframe),
+                "ev", ev, "threshold", threshold));
+    }
+
+    public static DashboardEvent riskReject(String coin, String timeframe, String reason, String detail) {
+        return typed("RISK_REJECT", "WARN", Map.of("coin", orDash(coin), "timeframe", orDash(timeframe),
+                "reason", reason, "detail", detail));
+    }
+
+    /** 로그창 텍스트가 채워진 이벤트 (발행 스레드에서 직렬화 직전에 호출) */
+    public DashboardEvent rendered() {
+        if (message != null || data == null) return this;
+        return new DashboardEvent(type, level, render(), data, timestamp);
+    }
+
+    private String render() {
+        return switch (type) {
+            case "BET_PLACED" -> String.format("✅ [%s][%s] %s 저장 (ID: %d) | $%.2f | 잔액: $%.2f",
+                    data.get("coin"), data.get("timeframe"), data.get("strategy"), data.get("tradeId"),
+                    data.get("amount"), data.get("balance"));
+            case "ORDER_ACK" -> String.format("✅ [%s] 주문 %s: %s (ID: %d, %dms)",
+                    data.get("coin"), data.get("state"), data.get("orderId"), data.get("tradeId"), data.get("latencyMs"));
+            case "ORDER_REJECT" -> String.format("❌ [%s] 주문 실패 (ID: %d): %s",
+                    data.get("coin"), data.get("tradeId"), data.get("error"));
+            case "EV_SKIP" -> String.format("⏸️ [%s][%s] EV 부족: %+.1f%% (임계값 %.0f%%)",
+                    data.get("coin"), data.get("timeframe"),
+                    (Double) data.get("ev") * 100, (Double) data.get("threshold") * 100);
+            case "RISK_REJECT" -> String.format("🚧 [%s][%s] 리스크 게이트 거절: %s",
+                    data.get("coin"), data.get("timeframe"), data.get("detail"));
+            default -> type + " " + data;
+        };
+    }
+
+    private static DashboardEvent typed(String type, String level, Map<String, Object> data) {
+        return new DashboardEvent(type, level, null, data, System.currentTimeMillis());
+    }
+
+    private static String orDash(String value) {
+        return value != null ? value : "-";
+    }
+
+    /** 기존 대시보드 색상 규칙 (이모지/키워드) 서버측 1회 판정 */
+    private static String levelOf(String msg) {
+        if (msg.contains("❌") || msg.contains("오류") || msg.contains("LOSE")) return "ERROR";
+        if (msg.contains("✅") || msg.contains("WIN") || msg.contains("UP")) return "SUCCESS";
+        if (msg.contains("🧠") || msg.contains("Claude")) return "AI";
+        if (msg.contains("🟡") || msg.contains("DRY") || msg.contains("HOLD")) return "WARN";
+        return "INFO";
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.poly_bug.dto;
+
+/**
+ * 코인별 가격 스냅샷 (불변 — 소스당 틱마다 1개 발행)
+ *
+ * 가격/시각/시초가를 한 번의 읽기로 일관되게 조회 (서로 다른 틱의 값이 섞이지 않음)
+ *
+ * @param price      최신 가격 (0 = 미수신)
+ * @param exchangeTs 거래소/오라클 타임스탬프 (ms)
+ * @param receivedAt 수신 시각 (ms, 로컬 시계)
+ * @param open5m     현재 5M 캔들 시초가 (0 = 미확정)
+ * @param open15m    현재 15M 캔들 시초가 (0 = 미확정)
+ * @param open1h     현재 1H 캔들 시초가 (0 = 미확정)
+ */
+public record PriceSnapshot(String coin, Source source, double price, long exchangeTs, long receivedAt,
+                            double open5m, double open15m, double open1h) {
+
+    public enum Source { BINANCE, CHAINLINK }
+
+    public static PriceSnapshot empty(String coin, Source source) {
+        return new PriceSnapshot(coin, source, 0, 0, 0, 0, 0, 0);
+    }
+
+    public boolean hasPrice() {
+        return price > 0;
+    }
+
+    /** TF별 시초가 ("1H" / "15M" / "5M") */
+    public double openFor(String timeframe) {
+        if ("5M".equals(timeframe)) return open5m;
+        if ("15M".equals(timeframe)) return open15m;
+        return open1h;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.poly_bug.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Level 2 교훈 압축 상태 (단일 행)
+ * 증분 압축 워터마크를 교훈 행과 분리해서 저장 — 변경 없음/DELETE만 있는 실행도 진행 위치가 남음
+ */
+@Entity
+@Table(name = "lesson_state")
+@Getter @Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LessonState {
+
+    public static final long SINGLETON_ID = 1L;
+
+    @Id
+    private Long id;
+
+    private Long lastReflectionLogId; // 마지막으로 반영된 반성 로그 ID (증분 압축 워터마크)
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -16,6 +16,8 @@ public class ReflectionLog {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    private Long tradeId;           // 반성 대상 트레이드 (레거시 로그는 null)
+
     @Column(length = 2000)
     private String content;
 
@@ -0,0 +1,7 @@
+package com.example.poly_bug.repository;
+
+import com.example.poly_bug.entity.LessonState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface LessonStateRepository extends JpaRepository<LessonState, Long> {
+}
@@ -6,4 +6,10 @@ import java.util.List;
 
 public interface ReflectionLogRepository extends JpaRepository<ReflectionLog, Long> {
     List<ReflectionLog> findTop5ByOrderByCreatedAtDesc();
+
+    // 증분 교훈 압축: 워터마크 이후 기록된 반성 (기록 순 — 트레이드 ID 순서와 다를 수 있음)
+    List<ReflectionLog> findTop15ByIdGreaterThanAndTradeIdIsNotNullOrderByIdAsc(Long afterId);
+
+    // 워터마크 초기화용
+    ReflectionLog findTopByOrderByIdDesc();
 }
@@ -3,8 +3,10 @@ package com.example.poly_bug.repository;
 import com.example.poly_bug.entity.Trade;
 import com.example.poly_bug.entity.Trade.TradeResult;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
 public interface TradeRepository extends JpaRepository<Trade, Long> {
@@ -114,4 +116,55 @@ public interface TradeRepository extends JpaRepository<Trade, Long> {
     @Query("SELECT t FROM Trade t WHERE t.coin = :coin AND t.action != 'HOLD' AND t.result != 'PENDING' " +
            "ORDER BY t.createdAt DESC LIMIT 10")
     List<Trade> findRecent10ResolvedByCoin(@Param("coin") String coin);
+
+    // 승패 이력/승률 엔진 시드용: [coin, timeframe, result, marketTrend, createdAt]만 (최신순)
+    @Query("SELECT t.coin, t.timeframe, t.result, t.marketTrend, t.createdAt FROM Trade t WHERE t.action != 'HOLD' " +
+           "AND (t.result = 'WIN' OR t.result = 'LOSE') ORDER BY t.createdAt DESC LIMIT :n")
+    List<Object[]> findRecentOutcomes(@Param("n") int n);
+
+    // 대시보드 통계 패널용: [coin, timeframe, result, profitLoss]만 (HOLD 제외, 한 번에 집계)
+    @Query("SELECT t.coin, t.timeframe, t.result, t.profitLoss FROM Trade t WHERE t.action != 'HOLD'")
+    List<Object[]> findBetSummaries();
+
+    // 2단계 저장: 즉시 커밋된 트레이드에 마켓 지표만 사후 보강 (result 등 다른 컬럼은 건드리지 않음)
+    @Modifying
+    @Transactional
+    @Query("UPDATE Trade t SET t.fundingRate = :fundingRate, t.openInterestChange = :openInterestChange, " +
+           "t.btcChange1h = :btcChange1h, t.ethChange1h = :ethChange1h, t.ethChange4h = :ethChange4h, " +
+           "t.ethChange24h = :ethChange24h, t.fearGreedIndex = :fearGreedIndex WHERE t.id = :id")
+    int updateMarketIndicators(@Param("id") Long id,
+                               @Param("fundingRate") Double fundingRate,
+                               @Param("openInterestChange") Double openInterestChange,
+                               @Param("btcChange1h") Double btcChange1h,
+                               @Param("ethChange1h") Double ethChange1h,
+                               @Param("ethChange4h") Double ethChange4h,
+                               @Param("ethChange24h") Double ethChange24h,
+                               @Param("fearGreedIndex") Integer fearGreedIndex);
+
+    // 자기반성 비동기 기록: 반성 컬럼만 갱신 (결과/금액 등 다른 컬럼은 건드리지 않음)
+    @Modifying
+    @Transactional
+    @Query("UPDATE Trade t SET t.reflection = :reflection WHERE t.id = :id")
+    int updateReflection(@Param("id") Long id, @Param("reflection") String reflection);
+
+    // DRY-RUN 체결 시뮬레이션: 시뮬 체결가/체결액으로 보정 (결과 확정 전만)
+    @Modifying
+    @Transactional
+    @Query("UPDATE Trade t SET t.buyOdds = :buyOdds, t.betAmount = :betAmount " +
+           "WHERE t.id = :id AND t.result = :pending")
+    int updateSimulatedFill(@Param("id") Long id,
+                            @Param("buyOdds") Double buyOdds,
+                            @Param("betAmount") Double betAmount,
+                            @Param("pending") Trade.TradeResult pending);
+
+    // DRY-RUN 시뮬 미체결: 배팅 취소 → HOLD 전환 (결과 확정 전만)
+    @Modifying
+    @Transactional
+    @Query("UPDATE Trade t SET t.action = :holdAction, t.result = :holdResult, t.betAmount = 0, " +
+           "t.reason = CONCAT(t.reason, :note) WHERE t.id = :id AND t.result = :pending")
+    int markSimulatedReject(@Param("id") Long id,
+                            @Param("note") String note,
+                            @Param("holdAction") Trade.TradeAction holdAction,
+                            @Param("holdResult") Trade.TradeResult holdResult,
+                            @Param("pending") Trade.TradeResult pending);
 }
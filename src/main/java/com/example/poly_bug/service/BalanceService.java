@@ -90,6 +90,12 @@ public class BalanceService {
         log.info("💸 배팅 차감 -${} → 잔액 ${}", String.format("%.2f", amount), String.format("%.2f", balance.get()));
     }
 
+    /** 미체결/부분체결 배팅 금액 반환 (DRY-RUN 시뮬) */
+    public void refundBet(double amount) {
+        balance.updateAndGet(b -> b + amount);
+        log.info("↩️ 배팅 반환 +${} → 잔액 ${}", String.format("%.2f", amount), String.format("%.2f", balance.get()));
+    }
+
     /** WIN 시 수익 추가 */
     public void addWinnings(double payout) {
         balance.updateAndGet(b -> b + payout);
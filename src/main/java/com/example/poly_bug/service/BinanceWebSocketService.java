@@ -1,6 +1,7 @@
 package com.example.poly_bug.service;
 
 import com.example.poly_bug.config.CoinConfig;
+import com.example.poly_bug.dto.PriceSnapshot;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +11,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
 
 import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.function.BiConsumer;
@@ -20,6 +22,7 @@ import java.util.function.BiConsumer;
  * - CoinConfig의 모든 코인 자동 구독
  * - 롤링 윈도우로 최근 가격 유지
  * - 급변동 콜백 즉시 발동
+ * - 코인별 불변 PriceSnapshot (가격 + 체결/수신 시각 + 5M/15M/1H 시초가) 틱마다 1회 발행
  */
 @Slf4j
 @Service
@@ -35,13 +38,15 @@ public class BinanceWebSocketService {
     // 코인별 최근 가격 (thread-safe)
     private final Map<String, Deque<PriceTick>> priceHistory = new ConcurrentHashMap<>();
 
-    // 코인별 최신 가격 (빠른 접근)
-    private final Map<String, Double> latestPrices = new ConcurrentHashMap<>();
-    private final Map<String, Long> lastUpdateTimes = new ConcurrentHashMap<>();
+    // 코인별 최신 스냅샷 (빠른 접근 — 가격/시각/시초가 한 벌)
+    private final Map<String, PriceSnapshot> snapshots = new ConcurrentHashMap<>();
 
     // 급변동 콜백
     private BiConsumer<String, PriceSpike> spikeCallback;
 
+    // ⭐ 틱 리스너 (스트리밍 지표 등 — WebSocket 스레드에서 동기 호출, O(1) 작업만 허용)
+    private final List<TickListener> tickListeners = new CopyOnWriteArrayList<>();
+
     private WebSocket webSocket;
     private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor();
     private volatile boolean running = false;
@@ -49,13 +54,18 @@ public class BinanceWebSocketService {
     public record PriceTick(double price, long timestamp) {}
     public record PriceSpike(String coin, double fromPrice, double toPrice, double changePct, long durationMs) {}
 
+    /** 틱 수신 콜백 (boxing 없는 primitive 시그니처) */
+    @FunctionalInterface
+    public interface TickListener {
+        void onTick(String coin, double price, long timestamp);
+    }
+
     @PostConstruct
     public void init() {
         // 모든 코인 히스토리 초기화
         for (CoinConfig.CoinDef coin : CoinConfig.ACTIVE_COINS) {
             priceHistory.put(coin.label(), new ConcurrentLinkedDeque<>());
-            latestPrices.put(coin.label(), 0.0);
-            lastUpdateTimes.put(coin.label(), 0L);
+            snapshots.put(coin.label(), PriceSnapshot.empty(coin.label(), PriceSnapshot.Source.BINANCE));
         }
         connect();
     }
@@ -71,15 +81,26 @@ public class BinanceWebSocketService {
         this.spikeCallback = callback;
     }
 
+    /** 틱 리스너 등록 (여러 개 가능) */
+    public void onTick(TickListener listener) {
+        tickListeners.add(listener);
+    }
+
     // === 하위 호환 (기존 코드용) ===
     public double getBtcPrice() { return getPrice("BTC"); }
     public double getEthPrice() { return getPrice("ETH"); }
-    public long getBtcLastUpdate() { return lastUpdateTimes.getOrDefault("BTC", 0L); }
-    public long getEthLastUpdate() { return lastUpdateTimes.getOrDefault("ETH", 0L); }
+    public long getBtcLastUpdate() { return getSnapshot("BTC").exchangeTs(); }
+    public long getEthLastUpdate() { return getSnapshot("ETH").exchangeTs(); }
+
+    /** 코인 스냅샷 (가격/시각/시초가 일관된 한 벌) — 미등록이면 빈 스냅샷 */
+    public PriceSnapshot getSnapshot(String coinLabel) {
+        PriceSnapshot snapshot = snapshots.get(coinLabel);
+        return snapshot != null ? snapshot : PriceSnapshot.empty(coinLabel, PriceSnapshot.Source.BINANCE);
+    }
 
     /** 코인 라벨로 최신 가격 조회 */
     public double getPrice(String coinLabel) {
-        return latestPrices.getOrDefault(coinLabel, 0.0);
+        return getSnapshot(coinLabel).price();
     }
 
     /**
@@ -149,9 +170,8 @@ public class BinanceWebSocketService {
             String coin = CoinConfig.symbolToLabel(symbol);
             if (coin.equals(symbol)) return; // 미등록 코인
 
-            // 가격 갱신
-            latestPrices.put(coin, price);
-            lastUpdateTimes.put(coin, timestamp);
+            // 가격 갱신 (스냅샷 1회 발행)
+            snapshots.put(coin, nextSnapshot(getSnapshot(coin), price, timestamp));
 
             // 히스토리 추가
             Deque<PriceTick> history = priceHistory.get(coin);
@@ -162,6 +182,15 @@ public class BinanceWebSocketService {
                 }
             }
 
+            // 틱 리스너 전달
+            for (TickListener listener : tickListeners) {
+                try {
+                    listener.onTick(coin, price, timestamp);
+                } catch (Exception e) {
+                    log.debug("[{}] 틱 리스너 오류: {}", coin, e.getMessage());
+                }
+            }
+
             // 급변동 체크 (10초 윈도우)
             checkSpike(coin, price, timestamp);
 
@@ -170,6 +199,23 @@ public class BinanceWebSocketService {
         }
     }
 
+    /**
+     * 새 틱으로 스냅샷 생성 — 캔들 경계를 넘은 첫 체결가를 시초가로 (바이낸스 kline open과 동일)
+     * 시작 직후 아직 경계를 못 넘은 TF는 0 (호출자가 REST 시초가로 대체)
+     */
+    private static PriceSnapshot nextSnapshot(PriceSnapshot prev, double price, long timestamp) {
+        boolean first = prev.exchangeTs() == 0;
+        double open5m = first ? 0 : sameWindow(prev.exchangeTs(), timestamp, 300_000) ? prev.open5m() : price;
+        double open15m = first ? 0 : sameWindow(prev.exchangeTs(), timestamp, 900_000) ? prev.open15m() : price;
+        double open1h = first ? 0 : sameWindow(prev.exchangeTs(), timestamp, 3_600_000) ? prev.open1h() : price;
+        return new PriceSnapshot(prev.coin(), PriceSnapshot.Source.BINANCE, price, timestamp,
+                System.currentTimeMillis(), open5m, open15m, open1h);
+    }
+
+    private static boolean sameWindow(long a, long b, long windowMs) {
+        return a / windowMs == b / windowMs;
+    }
+
     /**
      * 10초 내 0.25%+ 변동 감지
      */
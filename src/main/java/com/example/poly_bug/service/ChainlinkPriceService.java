@@ -1,5 +1,6 @@
 package com.example.poly_bug.service;
 
+import com.example.poly_bug.dto.PriceSnapshot;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
@@ -20,6 +21,9 @@ import java.util.concurrent.*;
  * - 캔들 경계 전환 시, 경계 타임스탬프에 가장 가까운 가격을 시초가로 사용
  * - 이전 방식(previousTickPrice)은 서버 시간 기반이라 $30+ 오차 발생
  *
+ * 가격/시각/5M·15M 시초가는 코인별 불변 PriceSnapshot 1개로 발행
+ * (기존 맵 4개 분리 저장 → 읽는 쪽에서 서로 다른 틱의 가격/시초가가 섞일 수 있었음)
+ *
  * 엔드포인트: wss://ws-live-data.polymarket.com
  * 토픽: crypto_prices_chainlink (btc/usd, eth/usd, sol/usd, xrp/usd)
  */
@@ -36,10 +40,8 @@ public class ChainlinkPriceService {
             .pingInterval(5, TimeUnit.SECONDS)
             .build();
 
-    // Chainlink 실시간 가격: "BTC" → price
-    private final Map<String, Double> latestChainlinkPrices = new ConcurrentHashMap<>();
-    // 가격 갱신 시각: "BTC" → timestamp(ms)
-    private final Map<String, Long> priceTimestamps = new ConcurrentHashMap<>();
+    // 코인별 최신 스냅샷 (가격 + 시각 + 5M/15M 시초가): "BTC" → snapshot
+    private final Map<String, PriceSnapshot> snapshots = new ConcurrentHashMap<>();
 
     // ⭐ V6: 코인별 가격 링 버퍼 (최근 1000개 = 약 16분분량)
     // 15M boundary 매칭 위해 최소 15분 이상 보관 필요
@@ -47,9 +49,6 @@ public class ChainlinkPriceService {
     private final Map<String, Deque<double[]>> priceRingBuffer = new ConcurrentHashMap<>();
     private static final int RING_BUFFER_SIZE = 1000;
 
-    // 15M/5M 캔들 시초가 캐시 (캔들 시작 시 Chainlink 가격 스냅샷)
-    private final Map<String, Double> chainlink15mOpen = new ConcurrentHashMap<>();
-    private final Map<String, Double> chainlink5mOpen = new ConcurrentHashMap<>();
     // 코인별 독립 윈도우 추적 (경계 타임스탬프 기반)
     private final Map<String, Long> coinLast15mBoundary = new ConcurrentHashMap<>();
     private final Map<String, Long> coinLast5mBoundary = new ConcurrentHashMap<>();
@@ -144,11 +143,10 @@ public class ChainlinkPriceService {
                             buffer.addLast(new double[]{tsSec, value});
                             while (buffer.size() > RING_BUFFER_SIZE) buffer.pollFirst();
 
-                            latestChainlinkPrices.put(label, value);
-                            priceTimestamps.put(label, System.currentTimeMillis());
-
-                            // 15M/5M 시초가 스냅샷 체크
-                            updateOpenPriceSnapshots(label, value, tsSec);
+                            // 15M/5M 시초가 체크 → 스냅샷 1회 발행
+                            long exchangeTs = timestamp > 1_000_000_000_000L ? timestamp : timestamp * 1000;
+                            snapshots.put(label, updateOpenPriceSnapshots(
+                                    getSnapshot(label), value, tsSec, exchangeTs));
                         } else {
                             log.warn("⛓ Chainlink 파싱 실패: symbol={}, value={}, label={}", symbol, value, label);
                         }
@@ -191,8 +189,14 @@ public class ChainlinkPriceService {
      * 1. 현재 시각에서 5M/15M 경계 타임스탬프 계산 (Unix epoch, 300/900 배수)
      * 2. 경계가 바뀌면 링 버퍼에서 경계 타임스탬프 이하의 가장 최근 가격을 찾음
      * 3. 이 가격 = 폴리마켓의 PRICE TO BEAT와 동일 (동일 Chainlink 소스)
+     *
+     * @return 새 가격 + 갱신된 시초가로 만든 스냅샷 (발행은 호출자)
      */
-    private void updateOpenPriceSnapshots(String coin, double currentPrice, long msgTsSec) {
+    private PriceSnapshot updateOpenPriceSnapshots(PriceSnapshot prev, double currentPrice,
+                                                   long msgTsSec, long exchangeTs) {
+        String coin = prev.coin();
+        double open5m = prev.open5m();
+        double open15m = prev.open15m();
         // 현재 시각의 5M/15M 경계 타임스탬프 (UTC 기준, Unix 300/900 배수)
         long nowSec = System.currentTimeMillis() / 1000;
         long boundary5m = nowSec - (nowSec % 300);   // 5분 = 300초
@@ -211,19 +215,19 @@ public class ChainlinkPriceService {
 
             coinLast5mBoundary.put(coin, boundary5m);
             double openPrice = findPriceAtBoundary(coin, boundary5m, currentPrice);
+            open5m = openPrice; // 0이면 재시도 대상
             if (openPrice > 0) {
-                chainlink5mOpen.put(coin, openPrice);
                 log.info("⏰ [V6] Chainlink 5M open [{}] = {} (boundary={}, msgTs={}, now={}, bufSize={})",
                         coin, openPrice, boundary5m, msgTsSec, nowSec,
                         priceRingBuffer.getOrDefault(coin, new ConcurrentLinkedDeque<>()).size());
             } else {
                 log.warn("⚠️ [V6] {} 5M open 데이터 부족 → 0 유지 (boundary={})", coin, boundary5m);
             }
-        } else if (chainlink5mOpen.getOrDefault(coin, 0.0) == 0) {
+        } else if (open5m == 0) {
             // ⭐ 이전에 0으로 세팅됨 → 버퍼에 데이터 쌓였으면 재시도
             double openPrice = findPriceAtBoundary(coin, boundary5m, currentPrice);
             if (openPrice > 0) {
-                chainlink5mOpen.put(coin, openPrice);
+                open5m = openPrice;
                 log.info("🔄 [V6] {} 5M open 재시도 성공: {} (boundary={})", coin, openPrice, boundary5m);
             }
         }
@@ -241,20 +245,24 @@ public class ChainlinkPriceService {
 
             coinLast15mBoundary.put(coin, boundary15m);
             double openPrice = findPriceAtBoundary(coin, boundary15m, currentPrice);
+            open15m = openPrice;
             if (openPrice > 0) {
-                chainlink15mOpen.put(coin, openPrice);
                 log.info("⏰ [V6] Chainlink 15M open [{}] = {} (boundary={})", coin, openPrice, boundary15m);
             } else {
                 log.warn("⚠️ [V6] {} 15M open 데이터 부족 → 0 유지 (boundary={})", coin, boundary15m);
             }
-        } else if (chainlink15mOpen.getOrDefault(coin, 0.0) == 0) {
+        } else if (open15m == 0) {
             // ⭐ 이전에 0으로 세팅됨 → 버퍼에 데이터 쌓였으면 재시도
             double openPrice = findPriceAtBoundary(coin, boundary15m, currentPrice);
             if (openPrice > 0) {
-                chainlink15mOpen.put(coin, openPrice);
+                open15m = openPrice;
                 log.info("🔄 [V6] {} 15M open 재시도 성공: {} (boundary={})", coin, openPrice, boundary15m);
             }
         }
+
+        // 1H는 Binance 판정 → Chainlink 1H 시초가 없음
+        return new PriceSnapshot(coin, PriceSnapshot.Source.CHAINLINK, currentPrice, exchangeTs,
+                System.currentTimeMillis(), open5m, open15m, 0);
     }
 
     /**
@@ -298,24 +306,30 @@ public class ChainlinkPriceService {
 
     // ===== Public API =====
 
+    /** 코인 스냅샷 (가격/시각/시초가 일관된 한 벌) — 미수신이면 빈 스냅샷 */
+    public PriceSnapshot getSnapshot(String coin) {
+        PriceSnapshot snapshot = snapshots.get(coin);
+        return snapshot != null ? snapshot : PriceSnapshot.empty(coin, PriceSnapshot.Source.CHAINLINK);
+    }
+
     /** Chainlink 실시간 가격 조회 */
     public double getPrice(String coin) {
-        return latestChainlinkPrices.getOrDefault(coin, 0.0);
+        return getSnapshot(coin).price();
     }
 
     /** Chainlink 15M 캔들 시초가 */
     public double get15mOpen(String coin) {
-        return chainlink15mOpen.getOrDefault(coin, 0.0);
+        return getSnapshot(coin).open15m();
     }
 
     /** Chainlink 5M 캔들 시초가 */
     public double get5mOpen(String coin) {
-        return chainlink5mOpen.getOrDefault(coin, 0.0);
+        return getSnapshot(coin).open5m();
     }
 
     /** 가격 마지막 갱신 시각 (ms) */
     public long getLastUpdateTime(String coin) {
-        return priceTimestamps.getOrDefault(coin, 0L);
+        return getSnapshot(coin).receivedAt();
     }
 
     /** 연결 상태 */
@@ -325,17 +339,23 @@ public class ChainlinkPriceService {
 
     /** 전체 Chainlink 가격 맵 (디버깅용) */
     public Map<String, Double> getAllPrices() {
-        return Map.copyOf(latestChainlinkPrices);
+        Map<String, Double> prices = new HashMap<>();
+        snapshots.forEach((coin, s) -> prices.put(coin, s.price()));
+        return prices;
     }
 
     /** 전체 15M 시초가 맵 */
     public Map<String, Double> getAll15mOpens() {
-        return Map.copyOf(chainlink15mOpen);
+        Map<String, Double> opens = new HashMap<>();
+        snapshots.forEach((coin, s) -> opens.put(coin, s.open15m()));
+        return opens;
     }
 
     /** 전체 5M 시초가 맵 */
     public Map<String, Double> getAll5mOpens() {
-        return Map.copyOf(chainlink5mOpen);
+        Map<String, Double> opens = new HashMap<>();
+        snapshots.forEach((coin, s) -> opens.put(coin, s.open5m()));
+        return opens;
     }
 
     /** 링 버퍼 상태 (디버그용) */
@@ -6,19 +6,15 @@ import com.example.poly_bug.entity.Trade;
 import com.example.poly_bug.entity.TradingLesson;
 import com.example.poly_bug.repository.TradeRepository;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Service
@@ -27,11 +23,8 @@ public class ClaudeDecisionEngine {
 
     private final TradeRepository tradeRepository;
     private final LessonService lessonService;
-    private final OkHttpClient httpClient = new OkHttpClient();
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
-    @Value("${anthropic.api-key}")
-    private String apiKey;
+    private final PromptContextCache promptContextCache;
+    private final LlmGateway llmGateway;
 
     @Value("${anthropic.model}")
     private String model;
@@ -39,6 +32,23 @@ public class ClaudeDecisionEngine {
     @Value("${anthropic.model-light:claude-haiku-4-5-20251001}")
     private String modelLight;
 
+    // 프롬프트 접두부 캐시 지표 (응답 usage 기준)
+    private final AtomicLong cachedCalls = new AtomicLong();
+    private final AtomicLong uncachedCalls = new AtomicLong();
+    private final AtomicLong cachedLatencyMsSum = new AtomicLong();
+    private final AtomicLong uncachedLatencyMsSum = new AtomicLong();
+    private final AtomicLong cacheReadTokens = new AtomicLong();
+    private final AtomicLong cacheWriteTokens = new AtomicLong();
+    private final AtomicLong uncachedInputTokens = new AtomicLong();
+
+    // ⚡ 거부권/반전 체크 응답 캐시 (특성 구간화 키, 짧은 TTL + LRU)
+    private static final long VETO_CACHE_TTL_MS = 30_000;
+    private static final int VETO_CACHE_MAX = 256;
+    private final QuantizedResponseCache<GapVeto> gapVetoCache =
+            new QuantizedResponseCache<>(VETO_CACHE_TTL_MS, VETO_CACHE_MAX);
+    private final QuantizedResponseCache<ReversalCheck> reversalCache =
+            new QuantizedResponseCache<>(VETO_CACHE_TTL_MS, VETO_CACHE_MAX);
+
     public TradeDecision decide(MarketIndicators indicators, double balance, String coin) {
         return decide(indicators, balance, coin, "1H", null);
     }
@@ -50,11 +60,11 @@ public class ClaudeDecisionEngine {
     public TradeDecision decide(MarketIndicators indicators, double balance, String coin, String timeframe,
                                  PolymarketOddsService.MarketOdds odds) {
         try {
-            String prompt = buildPrompt(indicators, balance, coin, timeframe, odds);
-            String response = callClaude(prompt);
+            Prompt prompt = buildPrompt(indicators, balance, coin, timeframe, odds);
+            String response = callClaude(LlmGateway.Purpose.DECISION, prompt, model, 300);
             TradeDecision decision = parseDecision(response, indicators, coin, timeframe);
             // Claude 전체 분석 저장 (프롬프트 요약 + 원본 응답)
-            decision.setRawResponse(buildAnalysisRecord(prompt, response));
+            decision.setRawResponse(buildAnalysisRecord(prompt.full(), response));
             return decision;
         } catch (Exception e) {
             log.error("Claude 판단 실패 [{} {}]: {}", coin, timeframe, e.getMessage());
@@ -81,11 +91,91 @@ public class ClaudeDecisionEngine {
         return decide(indicators, balance, "ETH", "1H", null);
     }
 
-    private String buildPrompt(MarketIndicators m, double balance, String coin, String timeframe,
-                                PolymarketOddsService.MarketOdds odds) {
-        String patternStats = buildPatternStats(m, coin, timeframe);
-        boolean isBtc = "BTC".equals(coin);
+    /**
+     * 프롬프트 = 캐시 가능한 고정 접두부(system) + 매번 바뀌는 실시간 데이터(user)
+     * @param system 역할/판정 기준/과거 성적/누적 학습/판단 규칙/응답 형식 (결과 확정·교훈 갱신 전까지 동일)
+     * @param user   현재 캔들/오즈/시장·기술 지표/잔액 (호출마다 변경)
+     */
+    record Prompt(String system, String user) {
+        String full() {
+            return system + "\n" + user;
+        }
+    }
+
+    private Prompt buildPrompt(MarketIndicators m, double balance, String coin, String timeframe,
+                               PolymarketOddsService.MarketOdds odds) {
         boolean is15m = "15M".equals(timeframe);
+        return new Prompt(buildStablePrefix(coin, timeframe, is15m),
+                buildLiveContext(m, balance, coin, is15m, odds));
+    }
+
+    /**
+     * ⭐ 고정 접두부 — cache_control 대상 (같은 코인/TF면 바이트 단위로 동일해야 캐시 적중)
+     * 시각/가격 등 실시간 값을 넣으면 매번 캐시 미스
+     */
+    private String buildStablePrefix(String coin, String timeframe, boolean is15m) {
+        String patternStats = promptContextCache.get(coin, PromptContextCache.PATTERN_STATS, timeframe,
+                () -> buildPatternStats(coin, timeframe));
+        String windowDesc = is15m ? "15분 윈도우" : "정시(매시 정각)";
+
+        StringBuilder sb = new StringBuilder();
+
+        // === 역할 정의 ===
+        sb.append(String.format("너는 Polymarket '%s Up or Down - %s' 마켓 전문 트레이더야.\n\n", coin, timeframe));
+
+        // === 판정 기준 (가장 중요) ===
+        sb.append("=== ⚡ 판정 기준 (핵심) ===\n");
+        sb.append(String.format("- %s 시작 시점의 시초가와 종료 시점의 종가를 비교\n", windowDesc));
+        sb.append("- 종가 > 시초가 → UP WIN (YES 토큰 보유자 승리)\n");
+        sb.append("- 종가 < 시초가 → DOWN WIN (NO 토큰 보유자 승리)\n");
+        sb.append("- 현재가는 참고용. 판정은 오직 시초가 vs 종가!\n\n");
+
+        // === 15M 특화 컨텍스트 ===
+        if (is15m) {
+            sb.append("=== ⏱ 15M 특화 ===\n");
+            sb.append("- 15분은 노이즈 극심. 현재 캔들 방향(시초가 vs 현재가)이 가장 강력한 신호\n");
+            sb.append("- 캔들 후반부(10분+)에서 방향 반전 확률은 낮음\n");
+            sb.append("- 펀딩비는 15분에 큰 영향 없음. OI 5분 변화 + RSI + 현재 방향 위주로 판단\n");
+            sb.append("- 확신 낮으면 반드시 HOLD\n\n");
+        }
+
+        // === 과거 성적 ===
+        sb.append(String.format("=== 📋 과거 성적 [%s %s] ===\n", coin, timeframe));
+        sb.append(patternStats);
+        sb.append("\n\n");
+
+        // === 🧠 3계층 누적 학습 ===
+        sb.append(promptContextCache.get(coin, PromptContextCache.LEARNING, null,
+                () -> buildLearningBlock(coin)));
+        sb.append("\n");
+
+        // === 판단 규칙 ===
+        sb.append("=== 판단 규칙 ===\n");
+        sb.append("1. 시초가 vs 현재가 방향이 1차 신호 (모멘텀)\n");
+        sb.append("2. 경과 시간 고려: 종료 임박이면 현재 방향 유지 가능성 높음, 초반이면 불확실성 높음\n");
+        sb.append("3. RSI 극단(>75/<25) + 펀딩비 과열 = 역전 신호\n");
+        sb.append("4. 시장 오즈가 60% 이상 편향 + 위 역전 신호 = 역배팅 기회\n");
+        sb.append("5. 신호 불명확하면 무조건 HOLD\n\n");
+        sb.append("다음 형식으로만 답해:\n");
+        sb.append("ACTION: UP 또는 DOWN 또는 HOLD\n");
+        sb.append("CONFIDENCE: 50~95 (아래 기준)\n");
+        sb.append("  90~95: 다수 지표 강력 일치 + 현재 캔들 방향 확인 + 캔들 후반부\n");
+        sb.append("  80~89: 주요 신호 2~3개 일치\n");
+        sb.append("  70~79: 방향은 보이나 혼재\n");
+        sb.append("  60~69: 약한 신호\n");
+        sb.append("  50~59: 불확실 → HOLD\n");
+        sb.append("AMOUNT: 배팅금액\n");
+        sb.append("REASON: 한국어 핵심 근거 2~3줄\n");
+
+        return sb.toString();
+    }
+
+    /**
+     * 실시간 데이터 — 매 호출 변경 (캐시 안 함)
+     */
+    private String buildLiveContext(MarketIndicators m, double balance, String coin, boolean is15m,
+                                    PolymarketOddsService.MarketOdds odds) {
+        boolean isBtc = "BTC".equals(coin);
         double currentPrice = isBtc ? m.getBtcPrice() : m.getEthPrice();
         double openPrice = is15m
                 ? (isBtc ? m.getBtc15mOpen() : m.getEth15mOpen())
@@ -93,7 +183,6 @@ public class ClaudeDecisionEngine {
         double priceDiff = openPrice > 0 ? currentPrice - openPrice : 0;
         double pricePct = openPrice > 0 ? (priceDiff / openPrice) * 100 : 0;
 
-        String timeframeDesc = is15m ? "15분" : "1시간";
         String windowDesc = is15m ? "15분 윈도우" : "정시(매시 정각)";
 
         // 캔들 경과 시간 계산
@@ -112,21 +201,13 @@ public class ClaudeDecisionEngine {
 
         StringBuilder sb = new StringBuilder();
 
-        // === 역할 정의 ===
-        sb.append(String.format("너는 Polymarket '%s Up or Down - %s' 마켓 전문 트레이더야.\n\n", coin, timeframe));
-
-        // === 판정 기준 (가장 중요) ===
-        sb.append("=== ⚡ 판정 기준 (핵심) ===\n");
-        sb.append(String.format("- %s 시작 시점의 시초가와 종료 시점의 종가를 비교\n", windowDesc));
-        sb.append("- 종가 > 시초가 → UP WIN (YES 토큰 보유자 승리)\n");
-        sb.append("- 종가 < 시초가 → DOWN WIN (NO 토큰 보유자 승리)\n");
-        sb.append("- 현재가는 참고용. 판정은 오직 시초가 vs 종가!\n\n");
-
         // === 현재 캔들 상태 (가장 중요한 실시간 신호) ===
         sb.append("=== 📍 현재 캔들 상태 (가장 중요) ===\n");
         sb.append(String.format("시초가: $%,.2f (%s 시작 기준)\n", openPrice, windowDesc));
         sb.append(String.format("현재가: $%,.2f\n", currentPrice));
-        sb.append(String.format("경과: %d분 / %d분 (잔여 %d분)\n", elapsedMin, totalMin, remainMin));
+        sb.append(String.format("경과: %d분 / %d분 (잔여 %d분) → %s\n", elapsedMin, totalMin, remainMin,
+                remainMin <= 5 ? "종료 임박, 현재 방향 유지 가능성 높음" :
+                elapsedMin <= 5 ? "초반, 불확실성 높음" : "중반, 추세 확인 중"));
         if (openPrice > 0) {
             String dir = priceDiff >= 0 ? "▲ UP 방향" : "▼ DOWN 방향";
             sb.append(String.format("현재 상태: %s (%+.4f%%, $%+.2f)\n", dir, pricePct, priceDiff));
@@ -138,7 +219,6 @@ public class ClaudeDecisionEngine {
             sb.append("⚠️ 캔들 초반! 방향 미확정. 변동성 높아 확신 낮게.\n");
         }
         sb.append("\n");
-
         // === 폴리마켓 오즈 (시장 컨센서스) ===
         if (odds != null) {
             double upPct = odds.upOdds() * 100;
@@ -216,50 +296,13 @@ public class ClaudeDecisionEngine {
         // === 심리 ===
         sb.append(String.format("공포탐욕: %d (%s)\n\n", m.getFearGreedIndex(), m.getFearGreedLabel()));
 
-        // === 15M 특화 컨텍스트 ===
-        if (is15m) {
-            sb.append("=== ⏱ 15M 특화 ===\n");
-            sb.append("- 15분은 노이즈 극심. 현재 캔들 방향(시초가 vs 현재가)이 가장 강력한 신호\n");
-            sb.append("- 캔들 후반부(10분+)에서 방향 반전 확률은 낮음\n");
-            sb.append("- 펀딩비는 15분에 큰 영향 없음. OI 5분 변화 + RSI + 현재 방향 위주로 판단\n");
-            sb.append("- 확신 낮으면 반드시 HOLD\n\n");
-        }
-
-        // === 과거 성적 ===
-        sb.append(String.format("=== 📋 과거 성적 [%s %s] ===\n", coin, timeframe));
-        sb.append(patternStats);
-        sb.append("\n\n");
-
-        // === 🧠 3계층 누적 학습 ===
-        sb.append(buildLearningBlock(coin, timeframe));
-        sb.append("\n");
-
-        // === 판단 요청 ===
         sb.append(String.format("잔액: $%.2f\n\n", balance));
-        sb.append("=== 판단 규칙 ===\n");
-        sb.append("1. 시초가 vs 현재가 방향이 1차 신호 (모멘텀)\n");
-        sb.append(String.format("2. 경과 시간 고려: %d/%d분 경과 → %s\n",
-                elapsedMin, totalMin,
-                remainMin <= 5 ? "종료 임박, 현재 방향 유지 가능성 높음" :
-                elapsedMin <= 5 ? "초반, 불확실성 높음" : "중반, 추세 확인 중"));
-        sb.append("3. RSI 극단(>75/<25) + 펀딩비 과열 = 역전 신호\n");
-        sb.append("4. 시장 오즈가 60% 이상 편향 + 위 역전 신호 = 역배팅 기회\n");
-        sb.append("5. 신호 불명확하면 무조건 HOLD\n\n");
-        sb.append("다음 형식으로만 답해:\n");
-        sb.append("ACTION: UP 또는 DOWN 또는 HOLD\n");
-        sb.append("CONFIDENCE: 50~95 (아래 기준)\n");
-        sb.append("  90~95: 다수 지표 강력 일치 + 현재 캔들 방향 확인 + 캔들 후반부\n");
-        sb.append("  80~89: 주요 신호 2~3개 일치\n");
-        sb.append("  70~79: 방향은 보이나 혼재\n");
-        sb.append("  60~69: 약한 신호\n");
-        sb.append("  50~59: 불확실 → HOLD\n");
-        sb.append("AMOUNT: 배팅금액\n");
-        sb.append("REASON: 한국어 핵심 근거 2~3줄\n");
+        sb.append("위 판단 규칙과 응답 형식에 따라 판단해.\n");
 
         return sb.toString();
     }
 
-    private String buildPatternStats(MarketIndicators m, String coin, String timeframe) {
+    private String buildPatternStats(String coin, String timeframe) {
         List<Trade> recentTrades = tradeRepository.findTop50ByCoinAndTimeframeForStats(coin, timeframe);
         if (recentTrades.isEmpty()) return "첫 배팅 (데이터 없음)";
         long wins = recentTrades.stream().filter(t -> t.getResult() == Trade.TradeResult.WIN).count();
@@ -293,8 +336,9 @@ public class ClaudeDecisionEngine {
     //  Level 1: 조건별 승률 매트릭스 (코드 계산, 항상 정확)
     //  Level 2: AI 압축 교훈 (반성 누적 → 규칙화)
     //  Level 3: 최근 반성 2건 (생생한 최신 컨텍스트)
+    //  → PromptContextCache에 보관, 결과 확정/반성/교훈 갱신 시에만 재생성
     // ===================================================================
-    private String buildLearningBlock(String coin, String timeframe) {
+    private String buildLearningBlock(String coin) {
         StringBuilder sb = new StringBuilder();
         sb.append("=== 🧠 누적 학습 데이터 (과거 경험에서 추출) ===\n");
 
@@ -455,17 +499,40 @@ public class ClaudeDecisionEngine {
     public ReversalCheck checkReversal(MarketIndicators indicators, String coin, String timeframe,
                                         String direction, double pricePct, int elapsedMin, int remainMin,
                                         PolymarketOddsService.MarketOdds odds) {
+        String cacheKey = reversalCacheKey(indicators, coin, timeframe, direction, pricePct, elapsedMin, odds);
+        ReversalCheck cached = reversalCache.get(cacheKey);
+        if (cached != null) return cached;
         try {
             String prompt = buildReversalPrompt(indicators, coin, timeframe, direction, pricePct,
                     elapsedMin, remainMin, odds);
-            String response = callClaude(prompt, modelLight, 150); // Haiku + 짧은 응답
-            return parseReversalResponse(response);
+            String response = callClaude(LlmGateway.Purpose.VETO, prompt, modelLight, 150); // Haiku + 짧은 응답
+            ReversalCheck check = parseReversalResponse(response);
+            reversalCache.put(cacheKey, check); // API 오류 결과는 캐시 안 함
+            return check;
         } catch (Exception e) {
             log.error("반전 체크 실패: {}", e.getMessage());
             return new ReversalCheck(false, "API 오류: " + e.getMessage(), 100);
         }
     }
 
+    /**
+     * 반전 체크 캐시 키 — 프롬프트에 들어가는 특성만 구간화
+     * (변동률 0.05%p, 경과 3분, RSI 5, 펀딩비 0.01%p, OI 1%p, 롱숏 0.1, 오즈 2%p)
+     */
+    private String reversalCacheKey(MarketIndicators m, String coin, String timeframe, String direction,
+                                    double pricePct, int elapsedMin, PolymarketOddsService.MarketOdds odds) {
+        boolean is15m = "15M".equals(timeframe);
+        double dirOdds = odds == null ? -1 : "UP".equals(direction) ? odds.upOdds() : odds.downOdds();
+        return String.join("|", coin, timeframe, direction,
+                String.valueOf(QuantizedResponseCache.bucket(pricePct, 0.05)),
+                String.valueOf(elapsedMin / 3),
+                String.valueOf(QuantizedResponseCache.bucket(is15m ? m.getRsi15m() : m.getRsi(), 5)),
+                String.valueOf(QuantizedResponseCache.bucket(m.getFundingRate(), 0.01)),
+                String.valueOf(QuantizedResponseCache.bucket(is15m ? m.getOpenInterestChange5m() : m.getOpenInterestChange(), 1)),
+                String.valueOf(QuantizedResponseCache.bucket(m.getLongShortRatio(), 0.1)),
+                String.valueOf(QuantizedResponseCache.bucket(dirOdds, 0.02)));
+    }
+
     private String buildReversalPrompt(MarketIndicators m, String coin, String timeframe,
                                         String direction, double pricePct, int elapsedMin, int remainMin,
                                         PolymarketOddsService.MarketOdds odds) {
@@ -553,17 +620,43 @@ public class ClaudeDecisionEngine {
                                  double priceDiffPct, double gap, double estimatedProb,
                                  double marketOdds, double ev, double momentumScore,
                                  String gapType) {
+        String cacheKey = gapVetoCacheKey(coin, timeframe, direction, priceDiffPct, gap, estimatedProb,
+                marketOdds, ev, momentumScore, gapType);
+        GapVeto cached = gapVetoCache.get(cacheKey);
+        if (cached != null) return cached;
         try {
             String prompt = buildGapVetoPrompt(coin, timeframe, direction, priceDiffPct,
                     gap, estimatedProb, marketOdds, ev, momentumScore, gapType);
-            String response = callClaude(prompt, modelLight, 100);
-            return parseGapVetoResponse(response);
+            String response = callClaude(LlmGateway.Purpose.VETO, prompt, modelLight, 100);
+            GapVeto veto = parseGapVetoResponse(response);
+            gapVetoCache.put(cacheKey, veto); // API 오류 통과처리는 캐시 안 함
+            return veto;
         } catch (Exception e) {
             log.warn("갭 거부권 체크 실패 (통과 처리): {}", e.getMessage());
             return new GapVeto(true, "API오류-통과처리"); // 실패 시 수학 판단 존중
         }
     }
 
+    /**
+     * 갭 거부권 캐시 키 — 변동률 0.05%p, 갭/추정확률/오즈/EV 2%p, 모멘텀 0.1, 경과 3분 구간
+     * 최근 결과/교훈도 프롬프트에 들어가므로 컨텍스트 세대가 바뀌면 다른 키
+     */
+    private String gapVetoCacheKey(String coin, String timeframe, String direction, double priceDiffPct,
+                                   double gap, double estimatedProb, double marketOdds, double ev,
+                                   double momentumScore, String gapType) {
+        long candleMs = "5M".equals(timeframe) ? 300_000 : "15M".equals(timeframe) ? 900_000 : 3_600_000;
+        long elapsedMin = (System.currentTimeMillis() % candleMs) / 60_000;
+        return String.join("|", coin, timeframe, direction, gapType,
+                String.valueOf(QuantizedResponseCache.bucket(priceDiffPct, 0.05)),
+                String.valueOf(QuantizedResponseCache.bucket(gap, 0.02)),
+                String.valueOf(QuantizedResponseCache.bucket(estimatedProb, 0.02)),
+                String.valueOf(QuantizedResponseCache.bucket(marketOdds, 0.02)),
+                String.valueOf(QuantizedResponseCache.bucket(ev, 0.02)),
+                String.valueOf(QuantizedResponseCache.bucket(Math.abs(momentumScore), 0.1)),
+                String.valueOf(elapsedMin / 3),
+                String.valueOf(promptContextCache.generation()));
+    }
+
     private String buildGapVetoPrompt(String coin, String timeframe, String direction,
                                        double priceDiffPct, double gap, double estimatedProb,
                                        double marketOdds, double ev, double momentumScore,
@@ -654,33 +747,60 @@ public class ClaudeDecisionEngine {
         return new GapVeto(proceed, reason);
     }
 
-    private String callClaude(String prompt) throws Exception {
-        return callClaude(prompt, model, 300);
+    private String callClaude(LlmGateway.Purpose purpose, String prompt, String useModel, int maxTokens) throws Exception {
+        return callClaude(purpose, new Prompt(null, prompt), useModel, maxTokens);
+    }
+
+    /**
+     * LlmGateway 경유 호출 (용도별 지연 예산 + light 모델 헤징)
+     * system 접두부는 cache_control(ephemeral) 표시 — 모델 최소 길이(Sonnet 1024 / Haiku 2048 토큰) 미만이면 캐시 없이 처리
+     */
+    private String callClaude(LlmGateway.Purpose purpose, Prompt prompt, String useModel, int maxTokens) throws Exception {
+        LlmGateway.LlmResponse response = llmGateway.call(purpose, useModel, prompt.system(), prompt.user(), maxTokens);
+        // 헤징 응답은 다른 모델의 캐시라 접두부 지표에서 제외
+        if (prompt.system() != null && !response.hedged()) recordCacheUsage(response.usage(), response.latencyMs());
+        return response.text();
     }
 
-    private String callClaude(String prompt, String useModel, int maxTokens) throws Exception {
-        ObjectNode messageNode = objectMapper.createObjectNode();
-        messageNode.put("role", "user");
-        messageNode.put("content", prompt);
-        ArrayNode messages = objectMapper.createArrayNode();
-        messages.add(messageNode);
-        ObjectNode requestNode = objectMapper.createObjectNode();
-        requestNode.put("model", useModel);
-        requestNode.put("max_tokens", maxTokens);
-        requestNode.set("messages", messages);
-        Request request = new Request.Builder()
-                .url("https://api.anthropic.com/v1/messages")
-                .addHeader("x-api-key", apiKey)
-                .addHeader("anthropic-version", "2023-06-01")
-                .addHeader("content-type", "application/json")
-                .post(okhttp3.RequestBody.create(objectMapper.writeValueAsString(requestNode), MediaType.get("application/json")))
-                .build();
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (response.body() == null) throw new RuntimeException("빈 응답");
-            String body = response.body().string();
-            if (!response.isSuccessful()) throw new RuntimeException("Claude API 오류 " + response.code() + ": " + body);
-            JsonNode root = objectMapper.readTree(body);
-            return root.path("content").get(0).path("text").asText();
+    private void recordCacheUsage(JsonNode usage, long latencyMs) {
+        long read = usage.path("cache_read_input_tokens").asLong(0);
+        cacheReadTokens.addAndGet(read);
+        cacheWriteTokens.addAndGet(usage.path("cache_creation_input_tokens").asLong(0));
+        uncachedInputTokens.addAndGet(usage.path("input_tokens").asLong(0));
+        if (read > 0) {
+            cachedCalls.incrementAndGet();
+            cachedLatencyMsSum.addAndGet(latencyMs);
+        } else {
+            uncachedCalls.incrementAndGet();
+            uncachedLatencyMsSum.addAndGet(latencyMs);
         }
     }
+
+    /** 거부권/반전 체크 응답 캐시 적중률 */
+    public Map<String, Object> getResponseCacheStats() {
+        return Map.of("gapVeto", gapVetoCache.stats(), "reversal", reversalCache.stats());
+    }
+
+    /**
+     * 프롬프트 접두부 캐시 적중률 + 지연 절감 (적중 평균 vs 미적중 평균)
+     */
+    public Map<String, Object> getPromptCacheStats() {
+        long hit = cachedCalls.get();
+        long miss = uncachedCalls.get();
+        double hitAvgMs = hit > 0 ? (double) cachedLatencyMsSum.get() / hit : 0;
+        double missAvgMs = miss > 0 ? (double) uncachedLatencyMsSum.get() / miss : 0;
+        long read = cacheReadTokens.get();
+        long totalInput = read + cacheWriteTokens.get() + uncachedInputTokens.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("calls", hit + miss);
+        stats.put("hitRate", hit + miss > 0 ? (double) hit / (hit + miss) : 0.0);
+        stats.put("avgLatencyHitMs", hitAvgMs);
+        stats.put("avgLatencyMissMs", missAvgMs);
+        stats.put("latencySavedMs", hit > 0 && miss > 0 ? missAvgMs - hitAvgMs : 0.0);
+        stats.put("cacheReadTokens", read);
+        stats.put("cacheWriteTokens", cacheWriteTokens.get());
+        stats.put("uncachedInputTokens", uncachedInputTokens.get());
+        stats.put("cachedTokenRatio", totalInput > 0 ? (double) read / totalInput : 0.0);
+        return stats;
+    }
 }
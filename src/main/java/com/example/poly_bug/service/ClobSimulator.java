@@ -0,0 +1,176 @@
+package com.example.poly_bug.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 🧪 인프로세스 CLOB 체결 시뮬레이터 (DRY-RUN / 스텁 엔드포인트)
+ *
+ * 기존: DRY-RUN은 스캐너 오즈 그대로, 지연 0, 유동성 무제한으로 기록 → 실전보다 낙관적인 수익률
+ * 변경:
+ *  1. 지연 주입: latency-ms(±jitter) 뒤의 호가로 매칭 (그 사이 호가 이동 반영)
+ *  2. 호가 재생: OrderBookCache의 최근 실호가 사용, 없으면 주문가 기준 합성 호가
+ *  3. 지정가 매칭: 주문가 이하 매도 호가만 체결, 남은 금액은 취소 (FAK), 체결 0이면 거부
+ *  4. 같은 호가 스냅샷 안에서는 우리가 먹은 수량 차감 (연속 주문이 같은 유동성을 두 번 쓰지 않음)
+ *  5. reject-rate 확률로 거부 (레이트리밋/서버 거부 재현)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClobSimulator {
+
+    private final OrderBookCache orderBookCache;
+
+    @Value("${trading.sim.latency-ms:150}")
+    private long latencyMs;
+
+    @Value("${trading.sim.latency-jitter-ms:100}")
+    private long latencyJitterMs;
+
+    @Value("${trading.sim.reject-rate:0.02}")
+    private double rejectRate;
+
+    @Value("${trading.sim.synthetic-depth-usdc:50}")
+    private double syntheticDepthUsdc;
+
+    private static final double EPS = 1e-9;
+
+    /**
+     * 시뮬레이션 체결 결과
+     * @param limitPrice   주문가 (이 가격 이하 매도 호가만 체결)
+     * @param vwap         평균 체결가 (미체결이면 0)
+     * @param filledUsdc   체결 금액
+     * @param syntheticBook 실호가 없이 합성 호가로 매칭했는지
+     * @param rejectReason 거부 사유 (체결 시 null)
+     */
+    public record SimFill(String orderId, String tokenId, double limitPrice, double requestedUsdc,
+                          double vwap, double filledUsdc, double shares, long latencyMs,
+                          boolean syntheticBook, String rejectReason) {
+        public boolean isRejected() {
+            return rejectReason != null;
+        }
+
+        public boolean isComplete() {
+            return !isRejected() && requestedUsdc - filledUsdc <= 0.01;
+        }
+    }
+
+    /** 호가 스냅샷별 소진 수량 (스냅샷이 갱신되면 초기화) */
+    private record Consumed(long bookTs, double[] shares) {}
+
+    private final Map<String, Consumed> consumed = new ConcurrentHashMap<>();
+    private final AtomicLong orderSeq = new AtomicLong();
+    private final ScheduledExecutorService simExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @PreDestroy
+    public void shutdown() {
+        simExecutor.shutdownNow();
+    }
+
+    /**
+     * 논블로킹 제출 — 지연 후 시뮬레이터 스레드에서 매칭
+     */
+    public CompletableFuture<SimFill> submit(String tokenId, double usdc, double limitPrice) {
+        long latency = nextLatency();
+        CompletableFuture<SimFill> future = new CompletableFuture<>();
+        try {
+            simExecutor.schedule(() -> future.complete(match(tokenId, usdc, limitPrice, latency)),
+                    latency, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            future.complete(rejected(tokenId, usdc, limitPrice, latency, false, "시뮬레이터 종료됨"));
+        }
+        return future;
+    }
+
+    /**
+     * 블로킹 실행 — 호출 스레드에서 지연 후 매칭 (PolymarketOrderService 스텁 엔드포인트용)
+     */
+    public SimFill execute(String tokenId, double usdc, double limitPrice) throws InterruptedException {
+        long latency = nextLatency();
+        Thread.sleep(latency);
+        return match(tokenId, usdc, limitPrice, latency);
+    }
+
+    /** 현재 최우선 매도 호가 (실호가 없으면 0) */
+    public double bestAsk(String tokenId) {
+        OrderBookCache.Book book = orderBookCache.get(tokenId);
+        return book != null ? book.bestAsk() : 0;
+    }
+
+    // =========================================================================
+    // 매칭
+    // =========================================================================
+    private synchronized SimFill match(String tokenId, double usdc, double limitPrice, long latency) {
+        OrderBookCache.Book book = orderBookCache.get(tokenId);
+        boolean synthetic = book == null || book.askPrices().length == 0;
+
+        if (ThreadLocalRandom.current().nextDouble() < rejectRate) {
+            return rejected(tokenId, usdc, limitPrice, latency, synthetic, "시뮬 거부 (reject-rate)");
+        }
+        if (usdc <= 0 || limitPrice <= 0 || limitPrice >= 1) {
+            return rejected(tokenId, usdc, limitPrice, latency, synthetic, "잘못된 주문 (금액/가격)");
+        }
+
+        double[] prices;
+        double[] sizes;
+        double[] used;
+        if (synthetic) {
+            // 호가 정보 없음 → 주문가에 syntheticDepthUsdc 만큼만 있다고 가정
+            prices = new double[]{limitPrice};
+            sizes = new double[]{syntheticDepthUsdc / limitPrice};
+            used = new double[1];
+        } else {
+            prices = book.askPrices();
+            sizes = book.askSizes();
+            Consumed c = consumed.get(tokenId);
+            if (c == null || c.bookTs() != book.updatedAt() || c.shares().length != prices.length) {
+                c = new Consumed(book.updatedAt(), new double[prices.length]);
+                consumed.put(tokenId, c);
+            }
+            used = c.shares();
+        }
+
+        double remaining = usdc;
+        double shares = 0;
+        for (int i = 0; i < prices.length && remaining > EPS && prices[i] <= limitPrice + EPS; i++) {
+            double available = sizes[i] - used[i];
+            if (available <= EPS) continue;
+            double take = Math.min(available, remaining / prices[i]);
+            used[i] += take;
+            shares += take;
+            remaining -= take * prices[i];
+        }
+
+        double filled = usdc - Math.max(remaining, 0);
+        if (shares <= EPS) {
+            String reason = synthetic ? "유동성 없음" : String.format("주문가 %.3f < 최우선 매도 %.3f", limitPrice, book.bestAsk());
+            return rejected(tokenId, usdc, limitPrice, latency, synthetic, reason);
+        }
+        consumed.keySet().removeIf(t -> orderBookCache.get(t) == null); // 만료된 토큰 정리
+
+        SimFill fill = new SimFill("sim-" + orderSeq.incrementAndGet(), tokenId, limitPrice, usdc,
+                filled / shares, filled, shares, latency, synthetic, null);
+        log.info("🧪 시뮬 체결 {} ${}/${} @ {} (주문가 {}, {}ms{})", fill.orderId(),
+                String.format("%.2f", filled), String.format("%.2f", usdc), String.format("%.4f", fill.vwap()),
+                limitPrice, latency, synthetic ? ", 합성 호가" : "");
+        return fill;
+    }
+
+    private SimFill rejected(String tokenId, double usdc, double limitPrice, long latency,
+                             boolean synthetic, String reason) {
+        log.info("🧪 시뮬 거부 [{}] ${} @ {}: {}", tokenId, String.format("%.2f", usdc), limitPrice, reason);
+        return new SimFill(null, tokenId, limitPrice, usdc, 0, 0, 0, latency, synthetic, reason);
+    }
+
+    private long nextLatency() {
+        long jitter = latencyJitterMs > 0 ? ThreadLocalRandom.current().nextLong(-latencyJitterMs, latencyJitterMs + 1) : 0;
+        return Math.max(0, latencyMs + jitter);
+    }
+}
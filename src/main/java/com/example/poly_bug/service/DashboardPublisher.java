@@ -0,0 +1,98 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.dto.DashboardEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 📡 대시보드 STOMP 비동기 배치 발행기
+ *
+ * 기존: 스캐너/체커/스케줄러 스레드가 문자열마다 SimpMessagingTemplate 동기 전송
+ *       → 느린 대시보드 클라이언트가 매매 스레드를 막을 수 있음
+ * 변경:
+ *  1. publish()는 토픽별 유한 큐에 넣고 즉시 반환 (가득 차면 가장 오래된 이벤트 버림)
+ *  2. 50ms마다 토픽별로 모아서 JSON 배열 1건으로 전송
+ *  3. 전송 실패/지연은 발행 스레드에서만 발생
+ *  4. 고빈도 이벤트(배팅/주문/EV 스킵/리스크 거절)의 로그 텍스트도 발행 스레드에서 렌더링
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DashboardPublisher {
+
+    public static final String TOPIC_TRADING = "/topic/trading";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final long FLUSH_INTERVAL_MS = 50;
+    private static final int QUEUE_CAPACITY = 1_000;   // 토픽당
+    private static final int MAX_BATCH = 200;          // 1회 전송 최대 이벤트 수
+
+    private final Map<String, BlockingQueue<Object>> queues = new ConcurrentHashMap<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    public void init() {
+        flushExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdownNow();
+    }
+
+    /** 로그 텍스트 이벤트 (/topic/trading) */
+    public void log(String message) {
+        publish(TOPIC_TRADING, DashboardEvent.log(message));
+    }
+
+    public void publish(DashboardEvent event) {
+        publish(TOPIC_TRADING, event);
+    }
+
+    /** 논블로킹 — 큐가 가득 차면 가장 오래된 이벤트를 버리고 삽입 */
+    public void publish(String topic, Object payload) {
+        BlockingQueue<Object> queue = queues.computeIfAbsent(topic, k -> new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+        while (!queue.offer(payload)) {
+            if (queue.poll() != null) dropped.incrementAndGet();
+        }
+        published.incrementAndGet();
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    void flush() {
+        for (Map.Entry<String, BlockingQueue<Object>> entry : queues.entrySet()) {
+            BlockingQueue<Object> queue = entry.getValue();
+            if (queue.isEmpty()) continue;
+            List<Object> batch = new ArrayList<>(Math.min(queue.size(), MAX_BATCH));
+            queue.drainTo(batch, MAX_BATCH);
+            batch.replaceAll(e -> e instanceof DashboardEvent event ? event.rendered() : e);
+            try {
+                messagingTemplate.convertAndSend(entry.getKey(), objectMapper.writeValueAsString(batch));
+            } catch (Exception e) {
+                log.warn("WebSocket 배치 전송 실패 ({}건): {}", batch.size(), e.getMessage());
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.poly_bug.service;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -13,11 +14,21 @@ import org.springframework.stereotype.Service;
  *   - EV 10-30%: 잔액 2-4%
  *   - EV 30-80%: 잔액 4-7%
  *   - EV 80%+:   잔액 7-10%
+ *
+ * 변동성 레짐: 코인 지정 시 순방향/역방향 임계값에 실현 변동성 배수 적용
+ *   - 급변 구간(레짐↑) → 추정 확률 신뢰도↓ → 임계값 상향
+ *   - 조용한 구간 → 소폭 완화
+ *
+ * 호가 깊이: sizeWithDepth()가 캐시된 오더북의 VWAP로 EV/Kelly 재계산 (네트워크 없음)
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class ExpectedValueCalculator {
 
+    private final RealizedVolatilityService volatility;
+    private final OrderBookCache orderBooks;
+
     private static final double DEFAULT_THRESHOLD = 0.15;
     private static final double MIN_THRESHOLD = 0.08;
     private static final double MAX_THRESHOLD = 0.25;
@@ -31,6 +42,12 @@ public class ExpectedValueCalculator {
     private static final double REV_MAX_ODDS = 0.95;
 
     private static final double MAX_EV = 0.80; // ⭐ V5: 300%→80% (비현실적 EV 제거)
+    public static final double MIN_BET = 1.0;  // 최소 주문 금액 ($)
+
+    private static final double MOMENTUM_THRESHOLD = 0.08; // V5: 10%→8% (밤새 0건 수정)
+    private static final double REVERSE_THRESHOLD = 0.15;  // 역방향은 15% 임계값 (더 보수적)
+    private static final double REGIME_SCALE_MIN = 0.85;
+    private static final double REGIME_SCALE_MAX = 1.5;
 
     public record EvResult(
             double upEv,
@@ -38,9 +55,27 @@ public class ExpectedValueCalculator {
             String bestAction,
             double bestEv,
             double threshold,
-            String reason
+            String reason,
+            double winProb     // EV 계산에 쓴 (클램프된) 배팅 방향 승률
     ) {}
 
+    /**
+     * 호가 깊이 반영 사이징
+     * @param betAmount 배팅액 (MIN_BET 미만 = 호가가 최소 주문도 못 받음 → 스킵)
+     * @param vwap       예상 평균 체결가 (호가 없으면 최우선 호가)
+     * @param limitPrice 주문 지정가 — 사이징이 닿은 가장 깊은 호가 (호가 없으면 최우선 호가)
+     * @param bookUsed   캐시된 오더북 사용 여부
+     */
+    public record DepthSizing(double betAmount, double ev, double vwap, double limitPrice, double slippage,
+                              boolean bookUsed) {
+        /** 최우선 호가 기준 EvResult의 배팅 방향 EV를 VWAP 기준 EV로 치환 (저장/로그용) */
+        public EvResult applyTo(EvResult top) {
+            boolean up = top.upEv() >= top.downEv();
+            return new EvResult(up ? ev : top.upEv(), up ? top.downEv() : ev, top.bestAction(), ev,
+                    top.threshold(), top.reason(), top.winProb());
+        }
+    }
+
     /**
      * 기존 전략용 EV (Claude confidence 기반)
      */
@@ -87,7 +122,8 @@ public class ExpectedValueCalculator {
                 bestAction,
                 String.format("%.0f", threshold * 100));
 
-        return new EvResult(upEv, downEv, bestAction, bestEv, threshold, reason);
+        return new EvResult(upEv, downEv, bestAction, bestEv, threshold, reason,
+                upEv >= downEv ? claudeUpProb : claudeDownProb);
     }
 
     private double calcDynamicThreshold(double recentWinRate) {
@@ -99,14 +135,25 @@ public class ExpectedValueCalculator {
 
     /**
      * 순방향 모멘텀 EV — 시장이 아직 반영 안 한 갭
+     * 고정 임계값 (레짐 미반영) — 배팅 경로는 코인 오버로드 사용, bestAction이 HOLD면 임계값 미달
      */
     public EvResult calculateMomentum(double momentumWinRate, double marketOdds, String direction) {
+        return calculateMomentum(momentumWinRate, marketOdds, direction, MOMENTUM_THRESHOLD);
+    }
+
+    /**
+     * 순방향 모멘텀 EV — 코인 변동성 레짐 반영 임계값
+     */
+    public EvResult calculateMomentum(String coin, double momentumWinRate, double marketOdds, String direction) {
+        return calculateMomentum(momentumWinRate, marketOdds, direction, MOMENTUM_THRESHOLD * regimeScale(coin));
+    }
+
+    private EvResult calculateMomentum(double momentumWinRate, double marketOdds, String direction, double threshold) {
         momentumWinRate = clamp(momentumWinRate, 0.40, 0.90);
         double rawOdds = marketOdds;
         marketOdds = clamp(marketOdds, FWD_MIN_ODDS, FWD_MAX_ODDS);
 
         double ev = Math.min((momentumWinRate / marketOdds) - 1.0, MAX_EV);
-        double threshold = 0.08; // V5: 10%→8% (밤새 0건 수정)
 
         String bestAction;
         double bestEv;
@@ -134,7 +181,7 @@ public class ExpectedValueCalculator {
 
         double upEv = "UP".equals(direction) ? ev : -1;
         double downEv = "DOWN".equals(direction) ? ev : -1;
-        return new EvResult(upEv, downEv, bestAction, bestEv, threshold, reason);
+        return new EvResult(upEv, downEv, bestAction, bestEv, threshold, reason, momentumWinRate);
     }
 
     /**
@@ -143,15 +190,27 @@ public class ExpectedValueCalculator {
      * 핵심: 오즈 클램프를 5%까지 허용 → 11¢짜리 DOWN의 진짜 EV를 정확히 계산
      * 예: DOWN 추정 34%, 시장 11¢ → EV = (34/11)-1 = +209%
      *     기존 클램프(15%): EV = (34/15)-1 = +127% ← 40% 과소평가
+     * 고정 임계값 (레짐 미반영) — 배팅 경로는 코인 오버로드 사용
      */
     public EvResult calculateReverse(double reverseEstProb, double reverseMarketOdds, String betDirection) {
+        return calculateReverse(reverseEstProb, reverseMarketOdds, betDirection, REVERSE_THRESHOLD);
+    }
+
+    /**
+     * 역방향 EV — 코인 변동성 레짐 반영 임계값
+     */
+    public EvResult calculateReverse(String coin, double reverseEstProb, double reverseMarketOdds, String betDirection) {
+        return calculateReverse(reverseEstProb, reverseMarketOdds, betDirection, REVERSE_THRESHOLD * regimeScale(coin));
+    }
+
+    private EvResult calculateReverse(double reverseEstProb, double reverseMarketOdds, String betDirection,
+                                      double threshold) {
         reverseEstProb = clamp(reverseEstProb, 0.15, 0.60); // 역방향 확률은 15-60% 범위
         double rawOdds = reverseMarketOdds;
         // ⭐ 핵심: 5%까지 허용 → 싼 오즈의 진짜 가치를 계산
         reverseMarketOdds = clamp(reverseMarketOdds, REV_MIN_ODDS, REV_MAX_ODDS);
 
         double ev = Math.min((reverseEstProb / reverseMarketOdds) - 1.0, MAX_EV);
-        double threshold = 0.15; // 역방향은 15% 임계값 (더 보수적)
 
         String bestAction;
         double bestEv;
@@ -179,7 +238,7 @@ public class ExpectedValueCalculator {
 
         double upEv = "UP".equals(betDirection) ? ev : -1;
         double downEv = "DOWN".equals(betDirection) ? ev : -1;
-        return new EvResult(upEv, downEv, bestAction, bestEv, threshold, reason);
+        return new EvResult(upEv, downEv, bestAction, bestEv, threshold, reason, reverseEstProb);
     }
 
     /**
@@ -230,6 +289,62 @@ public class ExpectedValueCalculator {
         return balance * safeFraction;
     }
 
+    /**
+     * 호가 깊이 반영 Kelly — 최우선 호가 기준 배팅액에서 시작해 VWAP로 EV/Kelly 재계산
+     *
+     * 배팅액이 클수록 VWAP↑ → EV↓ → Kelly↓ 이므로 매 반복 min()으로 줄이기만 함 (수렴 보장)
+     * 호가 부족 시 체결 가능 금액으로 제한, 오더북 캐시 없으면 기존 계산 그대로
+     * 최소 주문($1) 미만이면 호가가 $1을 받을 때만 $1로 올림 — 못 받으면 그대로 반환 (호출자가 스킵)
+     *
+     * @param tokenId 매수할 토큰 (UP=YES, DOWN=NO)
+     * @param reverse 역방향 사이징 규칙 사용 여부
+     */
+    public DepthSizing sizeWithDepth(String tokenId, double balance, EvResult evResult,
+                                     double marketOdds, boolean reverse) {
+        double bet = reverse
+                ? calcReverseBetSize(balance, evResult.bestEv(), marketOdds)
+                : calcBetSize(balance, evResult.bestEv(), marketOdds);
+        OrderBookCache.Fill fill = orderBooks.simulateBuy(tokenId, bet);
+        if (fill == null) return new DepthSizing(Math.max(bet, MIN_BET), evResult.bestEv(), marketOdds, marketOdds, 0, false);
+
+        double ev = evResult.bestEv();
+        for (int i = 0; i < 4 && fill != null; i++) {
+            ev = Math.min(evResult.winProb() / fill.vwap() - 1.0, MAX_EV);
+            if (ev <= 0) return new DepthSizing(0, ev, fill.vwap(), fill.worstPrice(), fill.slippage(), true);
+
+            double kelly = reverse
+                    ? calcReverseBetSize(balance, ev, fill.vwap())
+                    : calcBetSize(balance, ev, fill.vwap());
+            double next = Math.min(Math.min(bet, kelly), fill.filledUsdc());
+            boolean converged = bet - next < 0.5;
+            bet = next;
+            fill = orderBooks.simulateBuy(tokenId, bet);
+            if (converged) break;
+        }
+        if (bet < MIN_BET) {
+            OrderBookCache.Fill minFill = orderBooks.simulateBuy(tokenId, MIN_BET);
+            if (minFill != null && minFill.complete()) {
+                bet = MIN_BET;
+                fill = minFill;
+            }
+        }
+        if (fill == null) return new DepthSizing(Math.max(bet, MIN_BET), ev, marketOdds, marketOdds, 0, false);
+        ev = Math.min(evResult.winProb() / fill.vwap() - 1.0, MAX_EV); // 최종 배팅액 기준
+        log.info("[EV-호가] {} | ${} 체결가 {}¢ (슬리피지 {}¢) | EV {}% → {}%",
+                tokenId.length() > 8 ? tokenId.substring(0, 8) : tokenId,
+                String.format("%.2f", bet),
+                String.format("%.1f", fill.vwap() * 100),
+                String.format("%.1f", fill.slippage() * 100),
+                String.format("%+.1f", evResult.bestEv() * 100),
+                String.format("%+.1f", ev * 100));
+        return new DepthSizing(bet, ev, fill.vwap(), fill.worstPrice(), fill.slippage(), true);
+    }
+
+    /** 변동성 레짐 → 임계값 배수 (sqrt로 완만하게, 준비 전이면 1.0) */
+    private double regimeScale(String coin) {
+        return clamp(Math.sqrt(volatility.getRegime(coin, 0.1, 10.0)), REGIME_SCALE_MIN, REGIME_SCALE_MAX);
+    }
+
     private double clamp(double val, double min, double max) {
         return Math.max(min, Math.min(max, val));
     }
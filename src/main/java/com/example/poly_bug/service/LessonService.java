@@ -1,27 +1,28 @@
 package com.example.poly_bug.service;
 
+import com.example.poly_bug.entity.LessonState;
+import com.example.poly_bug.entity.ReflectionLog;
 import com.example.poly_bug.entity.Trade;
 import com.example.poly_bug.entity.TradingLesson;
+import com.example.poly_bug.repository.LessonStateRepository;
+import com.example.poly_bug.repository.ReflectionLogRepository;
 import com.example.poly_bug.repository.TradingLessonRepository;
 import com.example.poly_bug.repository.TradeRepository;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.*;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Level 2 학습 엔진: 반성 기록 누적 → Claude가 교훈으로 압축/갱신
  * 
  * 트리거: 매 5건 반성 누적 시 (또는 수동 호출)
- * 과정: 최근 반성 10건 + 기존 교훈 → Claude에게 압축 요청 → 교훈 DB 갱신
+ * 과정: 워터마크 이후 새 반성 + 현재 교훈 → Claude가 변경분(ADD/UPDATE/DELETE)만 반환 → 교훈별 upsert
  */
 @Slf4j
 @Service
@@ -30,24 +31,29 @@ public class LessonService {
 
     private final TradingLessonRepository lessonRepository;
     private final TradeRepository tradeRepository;
-    private final SimpMessagingTemplate messagingTemplate;
-    private final OkHttpClient httpClient = new OkHttpClient();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReflectionLogRepository reflectionLogRepository;
+    private final LessonStateRepository lessonStateRepository;
+    private final DashboardPublisher dashboardPublisher;
+    private final PromptContextCache promptContextCache;
+    private final LlmGateway llmGateway;
 
     private final AtomicInteger reflectionCounter = new AtomicInteger(0);
     private static final int COMPRESS_EVERY_N = 5; // 5건마다 압축
+    private static final int MAX_LESSONS = 7;
+    private static final int MAX_NEW_REFLECTIONS = 15;
+    private static final Pattern OP_TARGET = Pattern.compile("#(\\d+)");
 
-    @Value("${anthropic.api-key}")
-    private String apiKey;
+    // 마지막으로 반영한 반성 로그 ID (null = 미확정 → lesson_state 행에서 복원)
+    private volatile Long watermark;
 
     @Value("${anthropic.model-light:claude-haiku-4-5-20251001}")
     private String model;
 
     /**
-     * 반성 1건 추가될 때마다 호출. N건 누적되면 자동 압축.
+     * 반성 배치가 기록될 때마다 호출. N건 누적되면 자동 압축.
      */
-    public void onReflectionAdded() {
-        int count = reflectionCounter.incrementAndGet();
+    public void onReflectionsAdded(int added) {
+        int count = reflectionCounter.addAndGet(added);
         if (count >= COMPRESS_EVERY_N) {
             reflectionCounter.set(0);
             compressLessons();
@@ -55,61 +61,104 @@ public class LessonService {
     }
 
     /**
-     * 핵심: 최근 반성 + 트레이드 데이터 → Claude가 교훈 압축
+     * 핵심: 새 반성만 + 현재 교훈 → Claude가 바뀌는 교훈만 반환 → 교훈별 upsert
+     *
+     * 기존: 매번 최근 반성 15건 + 전체 교훈 전송, 응답으로 교훈 테이블 전체 재작성
+     * 변경: 워터마크(마지막으로 반영한 반성 로그 ID) 이후 반성만 전송, ADD/UPDATE/DELETE만 적용
+     *       워터마크를 모르면(첫 실행/레거시 데이터) 기존처럼 최근 15건으로 부트스트랩
      */
-    public void compressLessons() {
+    public synchronized void compressLessons() {
         try {
-            // 최근 반성 포함된 트레이드 15건
-            List<Trade> recentReflected = tradeRepository.findAll().stream()
-                    .filter(t -> t.getReflection() != null && !t.getReflection().isBlank())
-                    .filter(t -> t.getResult() == Trade.TradeResult.WIN || t.getResult() == Trade.TradeResult.LOSE)
-                    .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-                    .limit(15)
-                    .toList();
-
-            if (recentReflected.size() < 3) {
-                log.info("교훈 압축 스킵: 반성 데이터 부족 ({}건)", recentReflected.size());
-                return;
-            }
-
-            // 기존 교훈
             List<TradingLesson> existingLessons = lessonRepository.findAllByOrderByImportanceDesc();
+            Long after = resolveWatermark();
 
-            // 프롬프트 구성
-            String prompt = buildCompressPrompt(recentReflected, existingLessons);
+            List<Trade> newReflected;
+            long newWatermark;
+            if (after == null) {
+                newReflected = tradeRepository.findRecentReflectedTrades(MAX_NEW_REFLECTIONS).stream()
+                        .filter(t -> t.getResult() == Trade.TradeResult.WIN || t.getResult() == Trade.TradeResult.LOSE)
+                        .toList();
+                ReflectionLog latest = reflectionLogRepository.findTopByOrderByIdDesc();
+                newWatermark = latest != null ? latest.getId() : 0;
+                if (newReflected.size() < 3) {
+                    log.info("교훈 압축 스킵: 반성 데이터 부족 ({}건)", newReflected.size());
+                    return;
+                }
+            } else {
+                List<ReflectionLog> logs =
+                        reflectionLogRepository.findTop15ByIdGreaterThanAndTradeIdIsNotNullOrderByIdAsc(after);
+                if (logs.isEmpty()) {
+                    log.info("교훈 압축 스킵: 새 반성 없음 (워터마크 #{})", after);
+                    return;
+                }
+                newWatermark = logs.get(logs.size() - 1).getId();
+                newReflected = tradeRepository.findAllById(logs.stream().map(ReflectionLog::getTradeId).toList()).stream()
+                        .filter(t -> t.getResult() == Trade.TradeResult.WIN || t.getResult() == Trade.TradeResult.LOSE)
+                        .toList();
+                if (newReflected.isEmpty()) {
+                    saveWatermark(newWatermark);
+                    return;
+                }
+            }
+
+            // 프롬프트 구성 (새 반성 + 현재 교훈)
+            String prompt = buildCompressPrompt(newReflected, existingLessons);
             String response = callClaude(prompt);
 
-            // 응답 파싱 → 교훈 갱신
-            List<TradingLesson> newLessons = parseLessons(response);
-            if (!newLessons.isEmpty()) {
-                lessonRepository.deleteAll(); // 기존 전체 교체
-                lessonRepository.saveAll(newLessons);
-                log.info("✅ 교훈 갱신 완료: {}건 (반성 {}건 기반)", newLessons.size(), recentReflected.size());
-                messagingTemplate.convertAndSend("/topic/trading",
-                        "🧠 AI 교훈 압축 완료: " + newLessons.size() + "개 규칙 갱신 (반성 " + recentReflected.size() + "건 분석)");
+            // 응답 파싱 → 교훈별 upsert
+            int changed = applyOps(parseOps(response), existingLessons);
+            saveWatermark(newWatermark); // 변경 없음/DELETE만 있어도 진행 위치 기록
+            if (changed > 0) {
+                promptContextCache.onLearningUpdated(); // L2 교훈 변경
+                log.info("✅ 교훈 증분 갱신: {}건 변경 (새 반성 {}건, 워터마크 #{})",
+                        changed, newReflected.size(), newWatermark);
+                dashboardPublisher.log(
+                        "🧠 AI 교훈 압축 완료: " + changed + "개 규칙 갱신 (새 반성 " + newReflected.size() + "건 분석)");
+            } else {
+                log.info("교훈 변경 없음 (새 반성 {}건, 워터마크 #{})", newReflected.size(), newWatermark);
             }
         } catch (Exception e) {
             log.error("교훈 압축 실패: {}", e.getMessage());
         }
     }
 
+    /**
+     * 메모리 워터마크 → lesson_state 행 순으로 복원 (워터마크는 상태 행 하나만 관리)
+     * 둘 다 없으면 null → 부트스트랩
+     */
+    private Long resolveWatermark() {
+        if (watermark == null) {
+            watermark = lessonStateRepository.findById(LessonState.SINGLETON_ID)
+                    .map(LessonState::getLastReflectionLogId)
+                    .orElse(null);
+        }
+        return watermark;
+    }
+
+    /** 성공한 실행마다 워터마크를 단일 상태 행에 저장 (교훈 행 변경 여부와 무관) */
+    private void saveWatermark(long reflectionLogId) {
+        lessonStateRepository.save(new LessonState(LessonState.SINGLETON_ID, reflectionLogId, null));
+        watermark = reflectionLogId;
+    }
+
     private String buildCompressPrompt(List<Trade> trades, List<TradingLesson> existing) {
         StringBuilder sb = new StringBuilder();
         sb.append("너는 Polymarket 트레이딩 봇의 학습 엔진이야.\n");
-        sb.append("아래 최근 배팅 결과와 반성 기록을 분석하여, 핵심 교훈 5~7개로 압축해줘.\n\n");
-
-        // 기존 교훈
-        if (!existing.isEmpty()) {
-            sb.append("=== 기존 교훈 (업데이트/삭제/유지 판단) ===\n");
-            for (TradingLesson l : existing) {
-                sb.append(String.format("- [%s] %s (근거 %d건, 중요도 %.1f)\n",
-                        l.getCategory(), l.getLesson(), l.getEvidenceCount(), l.getImportance()));
-            }
-            sb.append("\n");
+        sb.append("아래 새 배팅 결과와 반성 기록으로 현재 교훈 목록을 갱신해줘. 바뀌는 교훈만 출력.\n\n");
+
+        // 현재 교훈
+        sb.append("=== 현재 교훈 (#ID) ===\n");
+        if (existing.isEmpty()) {
+            sb.append("(아직 없음)\n");
         }
+        for (TradingLesson l : existing) {
+            sb.append(String.format("#%d [%s] %s (근거 %d건, 중요도 %.1f)\n",
+                    l.getId(), l.getCategory(), l.getLesson(), l.getEvidenceCount(), l.getImportance()));
+        }
+        sb.append("\n");
 
-        // 최근 트레이드 + 반성
-        sb.append("=== 최근 배팅 결과 + 반성 ===\n");
+        // 새 트레이드 + 반성
+        sb.append(String.format("=== 새 배팅 결과 + 반성 (%d건) ===\n", trades.size()));
         for (Trade t : trades) {
             String dir = t.getAction() == Trade.TradeAction.BUY_YES ? "UP" : "DOWN";
             String result = t.getResult().name();
@@ -125,17 +174,19 @@ public class LessonService {
         }
 
         sb.append("\n=== 출력 형식 (정확히 따라야 함) ===\n");
-        sb.append("각 교훈을 아래 형식으로 5~7개 출력:\n");
-        sb.append("LESSON: [교훈 텍스트 - 구체적 조건과 결과 포함, 1줄]\n");
+        sb.append("변경할 교훈만 아래 블록으로 출력 (변경 없으면 NONE 한 줄):\n");
+        sb.append("OP: [ADD / UPDATE #ID / DELETE #ID]\n");
+        sb.append("LESSON: [교훈 텍스트 - 구체적 조건과 결과 포함, 1줄 / UPDATE는 문구가 바뀔 때만]\n");
         sb.append("CATEGORY: [RSI / FUNDING / TIMING / TREND / STREAK / OI / GENERAL 중 하나]\n");
-        sb.append("EVIDENCE: [근거 트레이드 수 숫자만]\n");
+        sb.append("EVIDENCE: [이번 새 반성 중 근거 수 숫자만 — 기존 근거 수에 누적됨]\n");
         sb.append("IMPORTANCE: [0.1~1.0 숫자만]\n");
         sb.append("---\n");
         sb.append("\n규칙:\n");
-        sb.append("- 기존 교훈 중 여전히 유효한 것은 유지/업데이트 (근거 수 누적)\n");
-        sb.append("- 반증된 교훈은 삭제 또는 수정\n");
-        sb.append("- 새 패턴 발견하면 추가\n");
-        sb.append("- 최대 7개까지만\n");
+        sb.append("- 새 반성이 기존 교훈을 뒷받침하면 UPDATE (EVIDENCE/IMPORTANCE만 적어도 됨)\n");
+        sb.append("- 반증된 교훈은 DELETE 또는 문구 수정 UPDATE\n");
+        sb.append("- 새 패턴 발견하면 ADD\n");
+        sb.append("- 변경 없는 교훈은 출력하지 마\n");
+        sb.append(String.format("- 전체 최대 %d개 (초과 시 중요도 낮은 것부터 제거됨)\n", MAX_LESSONS));
         sb.append("- 교훈은 구체적 조건+행동으로: '주의하세요' ❌ → 'RSI 70+ UP배팅 75% LOSE → HOLD 권장' ✅\n");
         sb.append("- '타임프레임이 짧아서', '15분은 도박' 같은 일반론 금지. 해당 타임프레임 내에서의 구체적 신호 규칙만.\n");
         sb.append("- 한국어로 작성\n");
@@ -143,40 +194,100 @@ public class LessonService {
         return sb.toString();
     }
 
-    private List<TradingLesson> parseLessons(String response) {
-        List<TradingLesson> lessons = new ArrayList<>();
-        String currentLesson = null;
-        String currentCategory = "GENERAL";
-        int currentEvidence = 1;
-        double currentImportance = 0.5;
+    /**
+     * 교훈 변경 1건
+     * @param id       UPDATE/DELETE 대상 (ADD는 null)
+     * @param evidence 이번 반성 중 근거 수 (UPDATE는 기존 값에 누적)
+     */
+    private record LessonOp(String type, Long id, String lesson, String category, int evidence, Double importance) {}
+
+    private List<LessonOp> parseOps(String response) {
+        List<LessonOp> ops = new ArrayList<>();
+        String type = null;
+        Long id = null;
+        String lesson = null;
+        String category = null;
+        int evidence = 0;
+        Double importance = null;
 
-        for (String line : response.split("\n")) {
+        for (String line : (response + "\nOP: END").split("\n")) {
             line = line.trim();
-            if (line.startsWith("LESSON:")) {
-                // 이전 교훈 저장
-                if (currentLesson != null) {
-                    lessons.add(buildLesson(currentLesson, currentCategory, currentEvidence, currentImportance));
-                }
-                currentLesson = line.substring(7).trim();
-                currentCategory = "GENERAL";
-                currentEvidence = 1;
-                currentImportance = 0.5;
+            if (line.startsWith("OP:")) {
+                // 이전 블록 저장
+                if (type != null) ops.add(new LessonOp(type, id, lesson, category, evidence, importance));
+                String op = line.substring(3).trim().toUpperCase();
+                Matcher m = OP_TARGET.matcher(op);
+                type = op.startsWith("ADD") ? "ADD" : op.startsWith("UPDATE") ? "UPDATE"
+                        : op.startsWith("DELETE") ? "DELETE" : null;
+                id = m.find() ? Long.parseLong(m.group(1)) : null;
+                lesson = null;
+                category = null;
+                evidence = 0;
+                importance = null;
+            } else if (line.startsWith("LESSON:")) {
+                lesson = line.substring(7).trim();
             } else if (line.startsWith("CATEGORY:")) {
-                currentCategory = line.substring(9).trim().toUpperCase();
+                category = line.substring(9).trim().toUpperCase();
             } else if (line.startsWith("EVIDENCE:")) {
-                try { currentEvidence = Integer.parseInt(line.substring(9).trim()); } catch (Exception e) {}
+                try { evidence = Integer.parseInt(line.substring(9).trim()); } catch (Exception e) {}
             } else if (line.startsWith("IMPORTANCE:")) {
-                try { currentImportance = Double.parseDouble(line.substring(11).trim()); } catch (Exception e) {}
+                try { importance = Double.parseDouble(line.substring(11).trim()); } catch (Exception e) {}
             }
         }
-        // 마지막 교훈
-        if (currentLesson != null) {
-            lessons.add(buildLesson(currentLesson, currentCategory, currentEvidence, currentImportance));
+        return ops;
+    }
+
+    /**
+     * 교훈별 upsert — 변경된 행만 저장/삭제, 상한(7개) 초과분은 중요도 낮은 순 제거
+     * @return 변경된 교훈 수
+     */
+    private int applyOps(List<LessonOp> ops, List<TradingLesson> existing) {
+        Map<Long, TradingLesson> current = new LinkedHashMap<>();
+        for (TradingLesson l : existing) current.put(l.getId(), l);
+        Set<TradingLesson> dirty = new LinkedHashSet<>();
+        List<TradingLesson> removed = new ArrayList<>();
+        List<TradingLesson> added = new ArrayList<>();
+
+        for (LessonOp op : ops) {
+            TradingLesson target = op.id() != null ? current.get(op.id()) : null;
+            switch (op.type()) {
+                case "DELETE" -> {
+                    if (target != null) removed.add(current.remove(op.id()));
+                }
+                case "UPDATE" -> {
+                    if (target == null) {
+                        log.warn("교훈 UPDATE 대상 없음 (#{}) → 무시", op.id());
+                        continue;
+                    }
+                    if (op.lesson() != null && !op.lesson().isBlank()) target.setLesson(op.lesson());
+                    if (op.category() != null) target.setCategory(op.category());
+                    target.setEvidenceCount(target.getEvidenceCount() + Math.max(0, op.evidence()));
+                    if (op.importance() != null) target.setImportance(Math.max(0.1, Math.min(1.0, op.importance())));
+                    dirty.add(target);
+                }
+                default -> { // ADD
+                    if (op.lesson() == null || op.lesson().isBlank()) continue;
+                    TradingLesson lesson = buildLesson(op.lesson(), op.category() != null ? op.category() : "GENERAL",
+                            Math.max(1, op.evidence()), op.importance() != null ? op.importance() : 0.5);
+                    added.add(lesson);
+                }
+            }
+        }
+
+        // 최대 7개: 기존 + 추가 중 중요도 낮은 것부터 제거
+        List<TradingLesson> all = new ArrayList<>(current.values());
+        all.addAll(added);
+        all.sort(Comparator.comparingDouble(TradingLesson::getImportance).reversed());
+        for (TradingLesson overflow : all.subList(Math.min(MAX_LESSONS, all.size()), all.size())) {
+            if (overflow.getId() != null) removed.add(overflow);
+            added.remove(overflow);
+            dirty.remove(overflow);
         }
 
-        // 최대 7개
-        if (lessons.size() > 7) lessons = lessons.subList(0, 7);
-        return lessons;
+        dirty.addAll(added);
+        if (!dirty.isEmpty()) lessonRepository.saveAll(dirty);
+        if (!removed.isEmpty()) lessonRepository.deleteAll(removed);
+        return dirty.size() + removed.size();
     }
 
     private TradingLesson buildLesson(String lesson, String category, int evidence, double importance) {
@@ -196,28 +307,7 @@ public class LessonService {
     }
 
     private String callClaude(String prompt) throws Exception {
-        String requestBody = objectMapper.writeValueAsString(new java.util.HashMap<>() {{
-            put("model", model);
-            put("max_tokens", 1024);
-            put("messages", List.of(new java.util.HashMap<>() {{
-                put("role", "user");
-                put("content", prompt);
-            }}));
-        }});
-
-        Request request = new Request.Builder()
-                .url("https://api.anthropic.com/v1/messages")
-                .addHeader("x-api-key", apiKey)
-                .addHeader("anthropic-version", "2023-06-01")
-                .addHeader("content-type", "application/json")
-                .post(RequestBody.create(requestBody, okhttp3.MediaType.get("application/json")))
-                .build();
-
-        try (Response response = httpClient.newCall(request).execute()) {
-            String body = response.body().string();
-            if (!response.isSuccessful()) throw new RuntimeException("Claude API 오류: " + response.code());
-            JsonNode root = objectMapper.readTree(body);
-            return root.path("content").get(0).path("text").asText();
-        }
+        // 변경분만 출력 → 600 토큰
+        return llmGateway.call(LlmGateway.Purpose.REFLECTION, model, null, prompt, 600).text();
     }
 }
@@ -0,0 +1,192 @@
+package com.example.poly_bug.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 📺 대시보드 라이브 상태 채널 (스냅샷 + 델타, /ws STOMP)
+ *
+ * 기존: 대시보드마다 /gaps, /chainlink-tick, /odds/all, /scan-logs, /balance, /stats 를 1~30초 폴링
+ *       → 서버 부하 = 열린 대시보드 수 × 폴링 주기 (변하지 않은 데이터도 매번 직렬화)
+ * 변경:
+ *  1. 구독 시 /app/live 로 전체 스냅샷 1회 (버전 포함)
+ *  2. 이후 /topic/live 로 바뀐 필드만 (패널별 최소 간격, 최대 4Hz)
+ *  3. 패널 JSON을 2단계 깊이까지 비교 (예: gaps → "BTC_1H", odds → "1H" → "BTC"), 삭제는 null
+ *  4. 구독자가 없으면 패널 계산 자체를 건너뜀
+ *  5. 스냅샷/REST 조회는 최소 간격이 지난 패널만 재계산 (바뀐 부분은 기존 구독자에게 델타로)
+ *
+ * 부하 = 변경 빈도 (대시보드 수와 무관 — 브로커가 같은 델타를 팬아웃)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LiveStateService {
+
+    public static final String TOPIC_LIVE = "/topic/live";
+
+    private final DashboardPublisher dashboardPublisher;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService liveExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private static final long TICK_MS = 250;
+    private static final int DIFF_DEPTH = 2;
+
+    /** 패널: 이름 + 최소 갱신 간격 + 공급자 (컨트롤러 응답 빌더 재사용) */
+    private static final class Panel {
+        final long minIntervalMs;
+        final Supplier<Object> supplier;
+        long lastBuiltAt;
+        JsonNode last;
+
+        Panel(long minIntervalMs, Supplier<Object> supplier) {
+            this.minIntervalMs = minIntervalMs;
+            this.supplier = supplier;
+        }
+    }
+
+    private final Map<String, Panel> panels = new ConcurrentHashMap<>();
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet(); // "sessionId/subscriptionId" (/topic/live)
+    private final AtomicLong version = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        liveExecutor.scheduleWithFixedDelay(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        liveExecutor.shutdownNow();
+    }
+
+    public void registerPanel(String name, long minIntervalMs, Supplier<Object> supplier) {
+        panels.put(name, new Panel(Math.max(minIntervalMs, TICK_MS), supplier));
+    }
+
+    /**
+     * 전체 스냅샷 — 구독자가 없던 동안 오래된 패널은 즉시 재계산
+     * @return {version, panels: {name: json}} JSON 문자열 (DashboardPublisher와 동일하게 직렬화 후 전송)
+     */
+    public synchronized String snapshot() {
+        refresh(panels, System.currentTimeMillis());
+        ObjectNode state = objectMapper.createObjectNode();
+        panels.forEach((name, panel) -> state.set(name, panel.last));
+        ObjectNode snapshot = objectMapper.createObjectNode();
+        snapshot.put("version", version.get());
+        snapshot.set("panels", state);
+        return snapshot.toString();
+    }
+
+    /**
+     * 단일 패널 현재 값 (REST 폴백용) — 스냅샷과 같은 캐시, 최소 간격이 지났을 때만 재계산
+     * @return 패널 JSON (등록되지 않은 이름이면 null 노드)
+     */
+    public synchronized JsonNode current(String name) {
+        Panel panel = panels.get(name);
+        if (panel == null) return NullNode.getInstance();
+        refresh(Map.of(name, panel), System.currentTimeMillis());
+        return panel.last;
+    }
+
+    // =========================================================================
+    // 델타 생성 (250ms 틱, 패널별 최소 간격)
+    // =========================================================================
+    private synchronized void tick() {
+        if (subscriptions.isEmpty()) return;
+        try {
+            refresh(panels, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.debug("라이브 상태 갱신 오류: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 최소 간격이 지난 패널 재계산 → 바뀐 부분을 델타로 발행
+     * (스냅샷/REST에서 재계산해도 기존 구독자가 변경분을 놓치지 않도록 항상 같은 경로)
+     */
+    private void refresh(Map<String, Panel> targets, long now) {
+        ObjectNode changed = objectMapper.createObjectNode();
+        for (Map.Entry<String, Panel> entry : targets.entrySet()) {
+            Panel panel = entry.getValue();
+            if (panel.last != null && now - panel.lastBuiltAt < panel.minIntervalMs) continue;
+            JsonNode previous = panel.last;
+            rebuild(panel, now);
+            JsonNode delta = previous == null ? panel.last : diff(previous, panel.last, DIFF_DEPTH);
+            if (delta != null) changed.set(entry.getKey(), delta);
+        }
+        if (changed.isEmpty()) return;
+        dashboardPublisher.publish(TOPIC_LIVE, Map.of("version", version.incrementAndGet(), "panels", changed));
+    }
+
+    private void rebuild(Panel panel, long now) {
+        panel.lastBuiltAt = now;
+        try {
+            panel.last = objectMapper.valueToTree(panel.supplier.get());
+        } catch (Exception e) {
+            log.debug("라이브 패널 빌드 실패: {}", e.getMessage());
+            if (panel.last == null) panel.last = NullNode.getInstance();
+        }
+    }
+
+    /** 바뀐 부분만 (없으면 null) — 객체는 depth 단계까지 필드별 비교, 삭제된 필드는 null */
+    private JsonNode diff(JsonNode before, JsonNode after, int depth) {
+        if (before.equals(after)) return null;
+        if (depth == 0 || !before.isObject() || !after.isObject()) return after;
+        ObjectNode delta = objectMapper.createObjectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = after.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode old = before.get(field.getKey());
+            JsonNode d = old == null ? field.getValue() : diff(old, field.getValue(), depth - 1);
+            if (d != null) delta.set(field.getKey(), d);
+        }
+        Iterator<String> names = before.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (!after.has(name)) delta.set(name, NullNode.getInstance());
+        }
+        return delta;
+    }
+
+    // =========================================================================
+    // 구독자 추적 (없으면 계산 생략)
+    // =========================================================================
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (TOPIC_LIVE.equals(accessor.getDestination())) {
+            subscriptions.add(accessor.getSessionId() + "/" + accessor.getSubscriptionId());
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        // UNSUBSCRIBE 프레임엔 destination이 없음 → 구독 ID로 제거
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        subscriptions.remove(accessor.getSessionId() + "/" + accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        String prefix = event.getSessionId() + "/";
+        subscriptions.removeIf(key -> key.startsWith(prefix));
+    }
+}
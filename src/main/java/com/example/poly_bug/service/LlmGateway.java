@@ -0,0 +1,399 @@
+package com.example.poly_bug.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 🚦 LLM 게이트웨이 (Anthropic Messages API 단일 진입점)
+ *
+ * 기존: ClaudeDecisionEngine / LessonService / SelfReflectionService / ChatController가 각자 기본 OkHttpClient로 호출
+ *       → 호출별 마감 시간 없음 (느린 응답이 배팅 판단을 무기한 붙잡음), 동시 호출 수 제한 없음
+ * 변경:
+ *  1. 용도별 지연 예산 (DECISION / VETO / REFLECTION / CHAT) — 예산 초과 시 OkHttp 호출 자체를 취소
+ *  2. 헤징: 주 모델이 예산의 60%를 넘기면 light 모델을 동시에 요청 → 먼저 성공한 응답 사용
+ *     (주 모델이 먼저 실패해도 즉시 light로 전환 / VETO는 이미 light라 헤징 없이 호출자의 결정적 기본값 사용)
+ *  3. 동시 호출 상한 (세마포어) — 대기 시간도 예산에서 차감
+ *     헤징 요청도 슬롯 1개를 따로 잡음 (빈 슬롯 없으면 헤징 생략 → 실제 동시 요청 ≤ 상한)
+ *     REFLECTION / CHAT은 (상한 - 예약분)까지만 → 예약 슬롯은 DECISION / VETO 전용
+ *  4. 모델별 지연 히스토그램 + 타임아웃/헤징/오류 카운터
+ */
+@Slf4j
+@Service
+public class LlmGateway {
+
+    public enum Purpose { DECISION, VETO, REFLECTION, CHAT }
+
+    /**
+     * @param model    실제 응답한 모델 (헤징 시 light 모델)
+     * @param usage    응답 usage (캐시 토큰 등)
+     * @param hedged   light 모델 응답으로 대체됐는지
+     */
+    public record LlmResponse(String text, String model, JsonNode usage, long latencyMs, boolean hedged) {}
+
+    /** 예산 초과 / 동시 호출 상한 대기 초과 */
+    public static class LlmBudgetExceededException extends IOException {
+        public LlmBudgetExceededException(String message) {
+            super(message);
+        }
+    }
+
+    @Value("${anthropic.api-key}")
+    private String apiKey;
+
+    @Value("${anthropic.model-light:claude-haiku-4-5-20251001}")
+    private String modelLight;
+
+    @Value("${anthropic.base-url:https://api.anthropic.com}")
+    private String anthropicUrl; // 로컬 스텁 Messages API로 교체 가능
+
+    @Value("${anthropic.budget.decision-ms:8000}")
+    private long decisionBudgetMs;
+
+    @Value("${anthropic.budget.veto-ms:3000}")
+    private long vetoBudgetMs;
+
+    @Value("${anthropic.budget.reflection-ms:30000}")
+    private long reflectionBudgetMs;
+
+    @Value("${anthropic.budget.chat-ms:20000}")
+    private long chatBudgetMs;
+
+    @Value("${anthropic.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${anthropic.reserved-realtime:1}")
+    private int reservedRealtime; // DECISION / VETO 전용 슬롯 수
+
+    private static final double HEDGE_AFTER_RATIO = 0.6;
+    private static final long[] BUCKET_BOUNDS_MS = {250, 500, 1_000, 2_000, 4_000, 8_000, 16_000, 30_000};
+
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .readTimeout(60, TimeUnit.SECONDS) // 실제 마감은 호출별 call.timeout()
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService hedgeExecutor = Executors.newSingleThreadScheduledExecutor();
+    private volatile Semaphore permits;
+    private volatile Semaphore backgroundPermits;
+
+    /** 모델별 지연 히스토그램 (BUCKET_BOUNDS_MS 구간 + 초과 1칸) */
+    private static final class ModelStats {
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong latencySum = new AtomicLong();
+        final AtomicLong latencyMax = new AtomicLong();
+    }
+
+    private final Map<String, ModelStats> modelStats = new ConcurrentHashMap<>();
+    private final Map<Purpose, AtomicLong> budgetExceeded = new ConcurrentHashMap<>();
+    private final Map<Purpose, AtomicLong> hedgeWins = new ConcurrentHashMap<>();
+    private final Map<Purpose, AtomicLong> hedgeSkipped = new ConcurrentHashMap<>();
+    private final AtomicLong concurrencyRejects = new AtomicLong();
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * 예산 내 호출 — 성공 응답 또는 예외 (예산 초과 시 LlmBudgetExceededException)
+     * @param system 캐시 가능한 고정 접두부 (null이면 system 없음)
+     */
+    public LlmResponse call(Purpose purpose, String model, String system, String user, int maxTokens)
+            throws IOException {
+        long budget = budgetMs(purpose);
+        long start = System.currentTimeMillis();
+
+        try {
+            if (!acquire(purpose, budget)) {
+                concurrencyRejects.incrementAndGet();
+                counter(budgetExceeded, purpose).incrementAndGet();
+                throw new LlmBudgetExceededException(purpose + " 동시 호출 상한 대기 초과 (" + budget + "ms)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("LLM 호출 중단", e);
+        }
+
+        try {
+            long remaining = budget - (System.currentTimeMillis() - start);
+            if (remaining <= 0) {
+                counter(budgetExceeded, purpose).incrementAndGet();
+                throw new LlmBudgetExceededException(purpose + " 예산 소진 (대기 중)");
+            }
+            String hedgeModel = purpose == Purpose.VETO || model.equals(modelLight) ? null : modelLight;
+            return race(purpose, model, hedgeModel, system, user, maxTokens, remaining);
+        } finally {
+            release(purpose);
+        }
+    }
+
+    /**
+     * 요청 1건(주 모델 또는 헤징)의 슬롯 확보 — REFLECTION / CHAT은 백그라운드 한도 + 전체 한도 둘 다
+     * @param waitMs 0이면 대기 없이 즉시 판정
+     */
+    private boolean acquire(Purpose purpose, long waitMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitMs;
+        boolean background = isBackground(purpose);
+        if (background && !backgroundPermits().tryAcquire(waitMs, TimeUnit.MILLISECONDS)) return false;
+        long left = Math.max(0, deadline - System.currentTimeMillis());
+        if (permits().tryAcquire(left, TimeUnit.MILLISECONDS)) return true;
+        if (background) backgroundPermits().release();
+        return false;
+    }
+
+    private void release(Purpose purpose) {
+        permits().release();
+        if (isBackground(purpose)) backgroundPermits().release();
+    }
+
+    private static boolean isBackground(Purpose purpose) {
+        return purpose == Purpose.REFLECTION || purpose == Purpose.CHAT;
+    }
+
+    // =========================================================================
+    // 주 모델 + 헤징
+    // =========================================================================
+    private LlmResponse race(Purpose purpose, String model, String hedgeModel, String system, String user,
+                             int maxTokens, long budget) throws IOException {
+        long start = System.currentTimeMillis();
+        CompletableFuture<LlmResponse> result = new CompletableFuture<>();
+        List<Call> calls = new CopyOnWriteArrayList<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        AtomicBoolean hedgeStarted = new AtomicBoolean(hedgeModel == null);
+        AtomicBoolean hedgePermit = new AtomicBoolean();
+
+        Runnable startHedge = () -> {
+            if (result.isDone() || !hedgeStarted.compareAndSet(false, true)) return;
+            long left = budget - (System.currentTimeMillis() - start);
+            if (left <= 0) return;
+            if (!tryAcquireHedge(purpose)) {
+                counter(hedgeSkipped, purpose).incrementAndGet();
+                log.info("🪂 [{}] 빈 슬롯 없음 → {} 헤징 생략", purpose, hedgeModel);
+                return;
+            }
+            synchronized (hedgePermit) {
+                if (result.isDone()) { // 슬롯 잡는 사이 경주 종료 → 바로 반환
+                    release(purpose);
+                    return;
+                }
+                hedgePermit.set(true);
+                outstanding.incrementAndGet();
+                log.info("🪂 [{}] {} {}ms 무응답/실패 → {} 헤징 요청", purpose, model, System.currentTimeMillis() - start, hedgeModel);
+                try {
+                    calls.add(send(hedgeModel, system, user, maxTokens, left, true, result, outstanding, null));
+                } catch (IOException e) {
+                    if (outstanding.decrementAndGet() <= 0) result.completeExceptionally(e);
+                }
+            }
+        };
+
+        calls.add(send(model, system, user, maxTokens, budget, false, result, outstanding, startHedge));
+        ScheduledFuture<?> hedgeTimer = hedgeModel == null ? null
+                : hedgeExecutor.schedule(startHedge, (long) (budget * HEDGE_AFTER_RATIO), TimeUnit.MILLISECONDS);
+
+        try {
+            LlmResponse response = result.get(budget, TimeUnit.MILLISECONDS);
+            if (response.hedged()) counter(hedgeWins, purpose).incrementAndGet();
+            return response;
+        } catch (TimeoutException e) {
+            throw budgetExceeded(purpose, model, budget);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // OkHttp call.timeout()이 먼저 터진 경우도 예산 초과로 집계
+            if (cause instanceof InterruptedIOException) throw budgetExceeded(purpose, model, budget);
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("LLM 호출 중단", e);
+        } finally {
+            result.cancel(false); // 이후 헤징 시작 차단
+            if (hedgeTimer != null) hedgeTimer.cancel(false);
+            synchronized (hedgePermit) {
+                calls.forEach(Call::cancel); // 진 쪽 요청 정리
+                if (hedgePermit.getAndSet(false)) release(purpose); // 헤징 슬롯 반환
+            }
+        }
+    }
+
+    /** 헤징용 슬롯 — 대기 없이 빈 슬롯이 있을 때만 */
+    private boolean tryAcquireHedge(Purpose purpose) {
+        try {
+            return acquire(purpose, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private LlmBudgetExceededException budgetExceeded(Purpose purpose, String model, long budget) {
+        counter(budgetExceeded, purpose).incrementAndGet();
+        log.warn("⏱️ [{}] LLM 예산 {}ms 초과 ({})", purpose, budget, model);
+        return new LlmBudgetExceededException(purpose + " 예산 " + budget + "ms 초과");
+    }
+
+    /**
+     * 비동기 전송 — 성공하면 result 완료, 실패 시 (주 모델이면 헤징 즉시 시작) 마지막 실패만 result에 전달
+     */
+    private Call send(String model, String system, String user, int maxTokens, long timeoutMs, boolean hedged,
+                      CompletableFuture<LlmResponse> result, AtomicInteger outstanding, Runnable onPrimaryFailure)
+            throws IOException {
+        Call call = httpClient.newCall(buildRequest(model, system, user, maxTokens));
+        call.timeout().timeout(timeoutMs, TimeUnit.MILLISECONDS);
+        long sentAt = System.currentTimeMillis();
+        call.enqueue(new Callback() {
+            @Override
+            public void onResponse(Call c, Response response) {
+                if (c.isCanceled()) {
+                    response.close();
+                    return;
+                }
+                try (response) {
+                    String body = response.body() != null ? response.body().string() : "";
+                    long latency = System.currentTimeMillis() - sentAt;
+                    if (!response.isSuccessful()) {
+                        fail(c, new IOException("Claude API 오류 " + response.code() + ": " + body));
+                        return;
+                    }
+                    JsonNode root = objectMapper.readTree(body);
+                    record(model, latency, false);
+                    result.complete(new LlmResponse(root.path("content").get(0).path("text").asText(),
+                            model, root.path("usage"), latency, hedged));
+                } catch (Exception e) {
+                    fail(c, e instanceof IOException io ? io : new IOException(e.getMessage(), e));
+                }
+            }
+
+            @Override
+            public void onFailure(Call c, IOException e) {
+                fail(c, e);
+            }
+
+            private void fail(Call c, IOException e) {
+                if (c.isCanceled()) return; // 이긴 쪽이 정리한 요청
+                record(model, System.currentTimeMillis() - sentAt, true);
+                if (onPrimaryFailure != null) onPrimaryFailure.run();
+                if (outstanding.decrementAndGet() <= 0) result.completeExceptionally(e);
+            }
+        });
+        return call;
+    }
+
+    private Request buildRequest(String model, String system, String user, int maxTokens) throws IOException {
+        ObjectNode requestNode = objectMapper.createObjectNode();
+        requestNode.put("model", model);
+        requestNode.put("max_tokens", maxTokens);
+        if (system != null) {
+            ObjectNode systemBlock = objectMapper.createObjectNode();
+            systemBlock.put("type", "text");
+            systemBlock.put("text", system);
+            systemBlock.putObject("cache_control").put("type", "ephemeral");
+            requestNode.putArray("system").add(systemBlock);
+        }
+        ObjectNode messageNode = requestNode.putArray("messages").addObject();
+        messageNode.put("role", "user");
+        messageNode.put("content", user);
+        return new Request.Builder()
+                .url(anthropicUrl + "/v1/messages")
+                .addHeader("x-api-key", apiKey)
+                .addHeader("anthropic-version", "2023-06-01")
+                .addHeader("content-type", "application/json")
+                .post(RequestBody.create(objectMapper.writeValueAsString(requestNode), MediaType.get("application/json")))
+                .build();
+    }
+
+    // =========================================================================
+    // 지표
+    // =========================================================================
+    private void record(String model, long latencyMs, boolean error) {
+        ModelStats s = modelStats.computeIfAbsent(model, k -> new ModelStats());
+        s.calls.incrementAndGet();
+        if (error) s.errors.incrementAndGet();
+        s.latencySum.addAndGet(latencyMs);
+        s.latencyMax.accumulateAndGet(latencyMs, Math::max);
+        int i = 0;
+        while (i < BUCKET_BOUNDS_MS.length && latencyMs > BUCKET_BOUNDS_MS[i]) i++;
+        s.buckets.incrementAndGet(i);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> models = new LinkedHashMap<>();
+        modelStats.forEach((model, s) -> {
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+                histogram.put("<=" + BUCKET_BOUNDS_MS[i] + "ms", s.buckets.get(i));
+            }
+            histogram.put(">" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + "ms", s.buckets.get(BUCKET_BOUNDS_MS.length));
+            long calls = s.calls.get();
+            models.put(model, Map.of("calls", calls, "errors", s.errors.get(),
+                    "avgMs", calls > 0 ? (double) s.latencySum.get() / calls : 0.0,
+                    "maxMs", s.latencyMax.get(), "histogram", histogram));
+        });
+        Map<String, Object> budgets = new LinkedHashMap<>();
+        for (Purpose p : Purpose.values()) {
+            budgets.put(p.name(), Map.of("budgetMs", budgetMs(p),
+                    "exceeded", counter(budgetExceeded, p).get(), "hedgeWins", counter(hedgeWins, p).get(),
+                    "hedgeSkipped", counter(hedgeSkipped, p).get()));
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("models", models);
+        stats.put("purposes", budgets);
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("reservedRealtime", reservedRealtime);
+        stats.put("inFlight", maxConcurrent - permits().availablePermits());
+        stats.put("concurrencyRejects", concurrencyRejects.get());
+        return stats;
+    }
+
+    private long budgetMs(Purpose purpose) {
+        return switch (purpose) {
+            case DECISION -> decisionBudgetMs;
+            case VETO -> vetoBudgetMs;
+            case REFLECTION -> reflectionBudgetMs;
+            case CHAT -> chatBudgetMs;
+        };
+    }
+
+    private Semaphore permits() {
+        Semaphore s = permits;
+        if (s != null) return s;
+        synchronized (this) {
+            if (permits == null) permits = new Semaphore(Math.max(1, maxConcurrent));
+            return permits;
+        }
+    }
+
+    private Semaphore backgroundPermits() {
+        Semaphore s = backgroundPermits;
+        if (s != null) return s;
+        synchronized (this) {
+            if (backgroundPermits == null) {
+                backgroundPermits = new Semaphore(Math.max(1, maxConcurrent - Math.max(0, reservedRealtime)));
+            }
+            return backgroundPermits;
+        }
+    }
+
+    private static AtomicLong counter(Map<Purpose, AtomicLong> map, Purpose purpose) {
+        return map.computeIfAbsent(purpose, k -> new AtomicLong());
+    }
+}
@@ -3,23 +3,56 @@ package com.example.poly_bug.service;
 import com.example.poly_bug.dto.MarketIndicators;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class MarketDataService {
 
-    private final OkHttpClient httpClient = new OkHttpClient();
+    private final StreamingIndicatorService streamingIndicators;
+    // ⭐ 병렬 fan-out: OkHttp 기본 호스트당 동시 요청 5개 제한 완화
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .dispatcher(createDispatcher())
+            .build();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private static final String BINANCE = "https://fapi.binance.com";
     private static final String BINANCE_SPOT = "https://api.binance.com";
     private static final String FEAR_GREED = "https://api.alternative.me/fng/?limit=1";
 
+    // ⭐ 소스별 신선도 TTL — URL 단위 응답 캐시 (코인 간 공유 + 진행 중 요청 합류)
+    private static final long PRICE_TTL_MS = 1_000;          // 현재가 / 진행 중 캔들
+    private static final long OPEN_INTEREST_TTL_MS = 5_000;  // 미결제약정
+    private static final long KLINES_TTL_MS = 5_000;         // RSI/MACD fallback용 100봉
+    private static final long FUNDING_TTL_MS = 30_000;       // 펀딩비 (8시간 주기)
+    private static final long FUTURES_STATS_TTL_MS = 60_000; // OI 히스토리(5m), 롱숏비율(1h)
+    private static final long FEAR_GREED_TTL_MS = 300_000;   // 공포탐욕 (일 단위 갱신)
+    private static final long FETCH_TIMEOUT_MS = 15_000;
+    private static final String[] LIVE_INTERVALS = {"1h", "4h", "1d", "15m"};
+
+    private record CachedResponse(CompletableFuture<String> body, long requestedAt) {}
+    private final Map<String, CachedResponse> responseCache = new ConcurrentHashMap<>();
+
     /**
      * 1시간 BTC/ETH 예측에 필요한 모든 지표 수집
      */
@@ -34,6 +67,9 @@ public class MarketDataService {
         // 선물 심볼: SOL/XRP도 바이난스 선물 존재
         String futuresSymbol = coinSymbol;
 
+        // ⭐ 필요한 요청을 한 번에 발사 → 아래 순차 파싱은 캐시/진행 중 응답에 합류 (≈ 1 RTT)
+        prefetch(coin, coinSymbol);
+
         // BTC/ETH는 항상 수집 (상관지표)
         try { fetchEthPrices(builder); } catch (Exception e) { log.error("ETH 가격 수집 실패: {}", e.getMessage()); }
         try { fetchBtcPrice(builder); } catch (Exception e) { log.error("BTC 가격 수집 실패: {}", e.getMessage()); }
@@ -79,7 +115,7 @@ public class MarketDataService {
     // ETH 현재가 + 변화율 + 현재 1H 시가
     private void fetchEthPrices(MarketIndicators.MarketIndicatorsBuilder b) throws Exception {
         // 현재가
-        String priceJson = get(BINANCE_SPOT + "/api/v3/ticker/price?symbol=ETHUSDT");
+        String priceJson = getCached(tickerUrl("ETHUSDT"), PRICE_TTL_MS);
         JsonNode priceNode = objectMapper.readTree(priceJson);
         double ethPrice = priceNode.path("price").asDouble();
         b.ethPrice(ethPrice);
@@ -97,7 +133,7 @@ public class MarketDataService {
 
     // BTC 현재가 + 변화율(1h/4h/24h) + 현재 1H/15M 시가
     private void fetchBtcPrice(MarketIndicators.MarketIndicatorsBuilder b) throws Exception {
-        String priceJson = get(BINANCE_SPOT + "/api/v3/ticker/price?symbol=BTCUSDT");
+        String priceJson = getCached(tickerUrl("BTCUSDT"), PRICE_TTL_MS);
         double btcPrice = objectMapper.readTree(priceJson).path("price").asDouble();
         b.btcPrice(btcPrice);
         b.btcChange1h(fetchChangeRate("BTCUSDT", "1h"));
@@ -112,9 +148,7 @@ public class MarketDataService {
 
     // 캔들 기반 변화율 계산 (현재 진행 중인 캔들 기준: 시가 → 현재가)
     private double fetchChangeRate(String symbol, String interval) throws Exception {
-        String url = BINANCE_SPOT + "/api/v3/klines?symbol=" + symbol
-                + "&interval=" + interval + "&limit=1";
-        String json = get(url);
+        String json = getCached(liveKlineUrl(symbol, interval), PRICE_TTL_MS);
         JsonNode arr = objectMapper.readTree(json);
         if (arr.size() < 1) return 0.0;
         JsonNode candle = arr.get(0); // 현재 진행 중인 캔들
@@ -125,8 +159,7 @@ public class MarketDataService {
 
     // 현재 진행 중인 1H 캔들의 시가 (정시 가격)
     private double fetchCurrentHourOpen(String symbol) throws Exception {
-        String url = BINANCE_SPOT + "/api/v3/klines?symbol=" + symbol + "&interval=1h&limit=1";
-        String json = get(url);
+        String json = getCached(liveKlineUrl(symbol, "1h"), PRICE_TTL_MS);
         JsonNode arr = objectMapper.readTree(json);
         if (arr.isArray() && arr.size() > 0) {
             return arr.get(0).get(1).asDouble(); // index 1 = open price
@@ -141,7 +174,7 @@ public class MarketDataService {
 
     private void fetchFuturesData(MarketIndicators.MarketIndicatorsBuilder b, String symbol) throws Exception {
         // 펀딩비
-        String frJson = get(BINANCE + "/fapi/v1/fundingRate?symbol=" + symbol + "&limit=1");
+        String frJson = getCached(fundingRateUrl(symbol), FUNDING_TTL_MS);
         JsonNode frArr = objectMapper.readTree(frJson);
         if (frArr.isArray() && frArr.size() > 0) {
             double fr = frArr.get(0).path("fundingRate").asDouble() * 100;
@@ -149,13 +182,13 @@ public class MarketDataService {
         }
 
         // 미결제약정
-        String oiJson = get(BINANCE + "/fapi/v1/openInterest?symbol=" + symbol);
+        String oiJson = getCached(openInterestUrl(symbol), OPEN_INTEREST_TTL_MS);
         JsonNode oiNode = objectMapper.readTree(oiJson);
         double oi = oiNode.path("openInterest").asDouble();
         b.openInterest(oi);
 
         // OI 변화율: 5분 전 대비 (15M용) + 30분 전 대비 (1H용)
-        String oiHistJson = get(BINANCE + "/futures/data/openInterestHist?symbol=" + symbol + "&period=5m&limit=7");
+        String oiHistJson = getCached(openInterestHistUrl(symbol), FUTURES_STATS_TTL_MS);
         JsonNode oiHist = objectMapper.readTree(oiHistJson);
         if (oiHist.isArray() && oiHist.size() >= 2) {
             // 5분 전 대비 (15M용): 끝에서 2번째 vs 마지막
@@ -173,7 +206,7 @@ public class MarketDataService {
         }
 
         // 롱숏비율
-        String lsJson = get(BINANCE + "/futures/data/globalLongShortAccountRatio?symbol=" + symbol + "&period=1h&limit=1");
+        String lsJson = getCached(longShortRatioUrl(symbol), FUTURES_STATS_TTL_MS);
         JsonNode lsArr = objectMapper.readTree(lsJson);
         if (lsArr.isArray() && lsArr.size() > 0) {
             b.longShortRatio(lsArr.get(0).path("longShortRatio").asDouble());
@@ -182,7 +215,7 @@ public class MarketDataService {
 
     // 공포탐욕지수
     private void fetchFearGreed(MarketIndicators.MarketIndicatorsBuilder b) throws Exception {
-        String json = get(FEAR_GREED);
+        String json = getCached(FEAR_GREED, FEAR_GREED_TTL_MS);
         JsonNode root = objectMapper.readTree(json);
         JsonNode data = root.path("data");
         if (data.isArray() && data.size() > 0) {
@@ -202,33 +235,50 @@ public class MarketDataService {
     }
 
     // RSI + MACD 계산 (1H + 15M 둘 다) - 모든 코인 지원
+    // ⭐ 스트리밍 지표 우선 (HTTP 없음), 시드 전/미지원 코인만 klines 재계산
     private void fetchTechnicals(MarketIndicators.MarketIndicatorsBuilder b, String coin) throws Exception {
         String symbol = coin + "USDT";
 
         // === 1H 캔들 기반 기술적 지표 ===
-        double[] closes1h = fetchCloses(symbol, "1h", 100);
-        if (closes1h.length >= 26) {
-            b.rsi(calculateRSI(closes1h, 14));
-            double[] macdResult = calculateMACD(closes1h, 12, 26, 9);
-            b.macdLine(macdResult[0]);
-            b.macdSignal(macdResult[1]);
-            b.macd(macdResult[2]); // 히스토그램 = line - signal
+        StreamingIndicatorService.IndicatorSnapshot snap1h = streamingIndicators.getSnapshot(coin, "1h");
+        if (snap1h != null) {
+            b.rsi(snap1h.rsi());
+            b.macdLine(snap1h.macdLine());
+            b.macdSignal(snap1h.macdSignal());
+            b.macd(snap1h.histogram());
         } else {
-            log.warn("1H 봉 데이터 부족 ({}/26) - RSI/MACD 기본값", closes1h.length);
-            b.rsi(50.0).macd(0.0).macdSignal(0.0).macdLine(0.0);
+            double[] closes1h = fetchCloses(symbol, "1h", 100);
+            if (closes1h.length >= 26) {
+                b.rsi(calculateRSI(closes1h, 14));
+                double[] macdResult = calculateMACD(closes1h, 12, 26, 9);
+                b.macdLine(macdResult[0]);
+                b.macdSignal(macdResult[1]);
+                b.macd(macdResult[2]); // 히스토그램 = line - signal
+            } else {
+                log.warn("1H 봉 데이터 부족 ({}/26) - RSI/MACD 기본값", closes1h.length);
+                b.rsi(50.0).macd(0.0).macdSignal(0.0).macdLine(0.0);
+            }
         }
 
         // === 15M 캔들 기반 기술적 지표 ===
-        double[] closes15m = fetchCloses(symbol, "15m", 100);
-        if (closes15m.length >= 26) {
-            b.rsi15m(calculateRSI(closes15m, 14));
-            double[] macd15mResult = calculateMACD(closes15m, 12, 26, 9);
-            b.macdLine15m(macd15mResult[0]);
-            b.macdSignal15m(macd15mResult[1]);
-            b.macd15m(macd15mResult[2]);
+        StreamingIndicatorService.IndicatorSnapshot snap15m = streamingIndicators.getSnapshot(coin, "15m");
+        if (snap15m != null) {
+            b.rsi15m(snap15m.rsi());
+            b.macdLine15m(snap15m.macdLine());
+            b.macdSignal15m(snap15m.macdSignal());
+            b.macd15m(snap15m.histogram());
         } else {
-            log.warn("15M 봉 데이터 부족 ({}/26) - 15M RSI/MACD 기본값", closes15m.length);
-            b.rsi15m(50.0).macd15m(0.0).macdSignal15m(0.0).macdLine15m(0.0);
+            double[] closes15m = fetchCloses(symbol, "15m", 100);
+            if (closes15m.length >= 26) {
+                b.rsi15m(calculateRSI(closes15m, 14));
+                double[] macd15mResult = calculateMACD(closes15m, 12, 26, 9);
+                b.macdLine15m(macd15mResult[0]);
+                b.macdSignal15m(macd15mResult[1]);
+                b.macd15m(macd15mResult[2]);
+            } else {
+                log.warn("15M 봉 데이터 부족 ({}/26) - 15M RSI/MACD 기본값", closes15m.length);
+                b.rsi15m(50.0).macd15m(0.0).macdSignal15m(0.0).macdLine15m(0.0);
+            }
         }
     }
 
@@ -236,9 +286,7 @@ public class MarketDataService {
      * 바이낸스에서 종가 배열 조회
      */
     private double[] fetchCloses(String symbol, String interval, int limit) throws Exception {
-        String url = BINANCE_SPOT + "/api/v3/klines?symbol=" + symbol
-                + "&interval=" + interval + "&limit=" + limit;
-        String json = get(url);
+        String json = getCached(klinesUrl(symbol, interval, limit), KLINES_TTL_MS);
         JsonNode candles = objectMapper.readTree(json);
         if (!candles.isArray()) return new double[0];
         double[] closes = new double[candles.size()];
@@ -397,8 +445,7 @@ public class MarketDataService {
      * 현재 진행 중인 15M 캔들의 시가
      */
     public double fetchCurrent15mOpen(String symbol) throws Exception {
-        String url = BINANCE_SPOT + "/api/v3/klines?symbol=" + symbol + "&interval=15m&limit=1";
-        String json = get(url);
+        String json = getCached(liveKlineUrl(symbol, "15m"), PRICE_TTL_MS);
         JsonNode arr = objectMapper.readTree(json);
         if (arr.isArray() && arr.size() > 0) {
             return arr.get(0).get(1).asDouble();
@@ -410,8 +457,7 @@ public class MarketDataService {
      * 현재 진행 중인 5M 캔들의 시가
      */
     public double fetchCurrent5mOpen(String symbol) throws Exception {
-        String url = BINANCE_SPOT + "/api/v3/klines?symbol=" + symbol + "&interval=5m&limit=1";
-        String json = get(url);
+        String json = getCached(liveKlineUrl(symbol, "5m"), PRICE_TTL_MS);
         JsonNode arr = objectMapper.readTree(json);
         if (arr.isArray() && arr.size() > 0) {
             return arr.get(0).get(1).asDouble();
@@ -422,7 +468,7 @@ public class MarketDataService {
     // ===== SOL/XRP 등 범용 코인 가격 수집 =====
     private void fetchCoinPrices(MarketIndicators.MarketIndicatorsBuilder b, String symbol) throws Exception {
         // 현재가
-        String priceJson = get(BINANCE_SPOT + "/api/v3/ticker/price?symbol=" + symbol);
+        String priceJson = getCached(tickerUrl(symbol), PRICE_TTL_MS);
         double price = objectMapper.readTree(priceJson).path("price").asDouble();
         b.coinPrice(price);
 
@@ -452,8 +498,7 @@ public class MarketDataService {
 
     // 1H 거래량 수집 (USDT 기준)
     private void fetchVolume1h(MarketIndicators.MarketIndicatorsBuilder b, String symbol) throws Exception {
-        String url = BINANCE_SPOT + "/api/v3/klines?symbol=" + symbol + "&interval=1h&limit=1";
-        String json = get(url);
+        String json = getCached(liveKlineUrl(symbol, "1h"), PRICE_TTL_MS);
         JsonNode arr = objectMapper.readTree(json);
         if (arr.isArray() && arr.size() > 0) {
             // index 7 = Quote asset volume (USDT 기준 거래량)
@@ -462,6 +507,116 @@ public class MarketDataService {
         }
     }
 
+    /**
+     * collect()에 필요한 요청을 모두 비동기로 시작 (이미 신선한 캐시는 재사용)
+     * BTC/ETH 상관지표는 코인 간 공유되므로 SOL/XRP 수집 시에도 추가 RTT 없음
+     */
+    private void prefetch(String coin, String coinSymbol) {
+        List<String> spotSymbols = new ArrayList<>(List.of("ETHUSDT", "BTCUSDT"));
+        if (!spotSymbols.contains(coinSymbol)) spotSymbols.add(coinSymbol);
+        for (String symbol : spotSymbols) {
+            fetchAsync(tickerUrl(symbol), PRICE_TTL_MS);
+            for (String interval : LIVE_INTERVALS) {
+                fetchAsync(liveKlineUrl(symbol, interval), PRICE_TTL_MS);
+            }
+        }
+        fetchAsync(liveKlineUrl(coinSymbol, "5m"), PRICE_TTL_MS);
+
+        fetchAsync(fundingRateUrl(coinSymbol), FUNDING_TTL_MS);
+        fetchAsync(openInterestUrl(coinSymbol), OPEN_INTEREST_TTL_MS);
+        fetchAsync(openInterestHistUrl(coinSymbol), FUTURES_STATS_TTL_MS);
+        fetchAsync(longShortRatioUrl(coinSymbol), FUTURES_STATS_TTL_MS);
+        fetchAsync(FEAR_GREED, FEAR_GREED_TTL_MS);
+
+        // 스트리밍 지표가 아직 시드 전이면 fallback klines도 미리
+        if (streamingIndicators.getSnapshot(coin, "1h") == null) fetchAsync(klinesUrl(coinSymbol, "1h", 100), KLINES_TTL_MS);
+        if (streamingIndicators.getSnapshot(coin, "15m") == null) fetchAsync(klinesUrl(coinSymbol, "15m", 100), KLINES_TTL_MS);
+    }
+
+    private static String tickerUrl(String symbol) {
+        return BINANCE_SPOT + "/api/v3/ticker/price?symbol=" + symbol;
+    }
+
+    // 현재 진행 중인 캔들 1개 — 변화율/시가/거래량이 같은 응답을 공유
+    private static String liveKlineUrl(String symbol, String interval) {
+        return klinesUrl(symbol, interval, 1);
+    }
+
+    private static String klinesUrl(String symbol, String interval, int limit) {
+        return BINANCE_SPOT + "/api/v3/klines?symbol=" + symbol + "&interval=" + interval + "&limit=" + limit;
+    }
+
+    private static String fundingRateUrl(String symbol) {
+        return BINANCE + "/fapi/v1/fundingRate?symbol=" + symbol + "&limit=1";
+    }
+
+    private static String openInterestUrl(String symbol) {
+        return BINANCE + "/fapi/v1/openInterest?symbol=" + symbol;
+    }
+
+    private static String openInterestHistUrl(String symbol) {
+        return BINANCE + "/futures/data/openInterestHist?symbol=" + symbol + "&period=5m&limit=7";
+    }
+
+    private static String longShortRatioUrl(String symbol) {
+        return BINANCE + "/futures/data/globalLongShortAccountRatio?symbol=" + symbol + "&period=1h&limit=1";
+    }
+
+    /**
+     * TTL 캐시 경유 조회 — 신선하면 캐시, 진행 중이면 합류, 아니면 새 요청
+     */
+    private String getCached(String url, long ttlMs) throws Exception {
+        try {
+            return fetchAsync(url, ttlMs).get(FETCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private CompletableFuture<String> fetchAsync(String url, long ttlMs) {
+        long now = System.currentTimeMillis();
+        return responseCache.compute(url, (k, cached) ->
+                cached != null && isReusable(cached, now, ttlMs) ? cached : new CachedResponse(enqueue(url), now)
+        ).body();
+    }
+
+    private boolean isReusable(CachedResponse cached, long now, long ttlMs) {
+        CompletableFuture<String> body = cached.body();
+        if (!body.isDone()) return true; // 진행 중 요청은 합류
+        return !body.isCompletedExceptionally() && now - cached.requestedAt() < ttlMs;
+    }
+
+    private CompletableFuture<String> enqueue(String url) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Request req = new Request.Builder().url(url).get().build();
+        httpClient.newCall(req).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response res) {
+                try (res) {
+                    // 실패 응답은 캐시에 남지 않도록 예외 처리
+                    if (!res.isSuccessful()) throw new IOException("HTTP " + res.code() + ": " + url);
+                    if (res.body() == null) throw new IOException("빈 응답: " + url);
+                    future.complete(res.body().string());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private static Dispatcher createDispatcher() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(64);
+        dispatcher.setMaxRequestsPerHost(32);
+        return dispatcher;
+    }
+
     private String get(String url) throws Exception {
         Request req = new Request.Builder().url(url).get().build();
         try (Response res = httpClient.newCall(req).execute()) {
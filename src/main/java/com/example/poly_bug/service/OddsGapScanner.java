@@ -2,9 +2,9 @@ package com.example.poly_bug.service;
 
 import com.example.poly_bug.config.CoinConfig;
 import com.example.poly_bug.dto.MarketIndicators;
+import com.example.poly_bug.dto.PriceSnapshot;
 import com.example.poly_bug.dto.TradeDecision;
 import com.example.poly_bug.entity.Trade;
-import com.example.poly_bug.repository.TradeRepository;
 import com.example.poly_bug.util.PriceFormatter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,9 +18,7 @@ import okhttp3.Response;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
@@ -50,9 +48,12 @@ public class OddsGapScanner {
     private final TradingService tradingService;
     private final BalanceService balanceService;
     private final ExpectedValueCalculator evCalculator;
-    private final TradeRepository tradeRepository;
-    private final MarketDataService marketDataService;
     private final ChainlinkPriceService chainlinkPriceService;
+    private final ProbabilitySurfaceService probabilitySurface;
+    private final RealizedVolatilityService volatility;
+    private final RiskGate riskGate;
+    private final OutcomeTracker outcomeTracker;
+    private final WinRateEngine winRates;
 
     @Value("${trading.dry-run}")
     private boolean dryRun;
@@ -64,92 +65,51 @@ public class OddsGapScanner {
             .build();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    // === 공유 쿨다운 (OddsLagDetector도 체크) ===
-    private static final Map<String, Long> SHARED_COOLDOWN = new ConcurrentHashMap<>();
-    private static final long COOLDOWN_MS = 180_000; // 1H/15M: 3분
-    private static final long COOLDOWN_MS_5M = 90_000; // 5M: 90초
+    // === ⭐ 상태 테이블 인덱스: 코인 순번(CoinConfig.ACTIVE_COINS) × 타임프레임 순번 ===
+    private static final String[] TIMEFRAMES = {"1H", "15M", "5M"};
+    private static final int TF_1H = 0;
+    private static final int TF_15M = 1;
+    private static final int TF_5M = 2;
+    private static final int COIN_COUNT = CoinConfig.ACTIVE_COINS.size();
 
-    private static long getCooldownMs(String timeframe) {
-        return "5M".equals(timeframe) ? COOLDOWN_MS_5M : COOLDOWN_MS;
-    }
-
-    /** OddsLagDetector가 이중배팅 방지용으로 체크 */
-    public static boolean isOnCooldown(String coin, String timeframe) {
-        Long last = SHARED_COOLDOWN.get(coin + "_" + timeframe);
-        return last != null && (System.currentTimeMillis() - last) < getCooldownMs(timeframe);
-    }
-
-    /** OddsLagDetector가 배팅 후 쿨다운 등록 */
-    public static void registerCooldown(String coin, String timeframe) {
-        SHARED_COOLDOWN.put(coin + "_" + timeframe, System.currentTimeMillis());
+    private static int coinIndex(String coin) {
+        for (int i = 0; i < COIN_COUNT; i++) {
+            if (CoinConfig.ACTIVE_COINS.get(i).label().equals(coin)) return i;
+        }
+        return -1;
     }
 
-    private final Map<String, Integer> hourlyTradeCount = new ConcurrentHashMap<>();
-    private volatile int lastHour = -1;
-    private static final int MAX_TRADES_PER_COIN_PER_HOUR = 3;
-    private static final int MAX_TRADES_PER_COIN_PER_HOUR_5M = 5; // 5M: 시간당 12캔들이므로
+    // === ⭐ 스캔 상태 테이블 (스캔 스레드 전용 가변 primitive 필드 — 매 틱 할당 없음) ===
+    private final CoinState[] coinStates = createCoinStates();
+    private final TfState[][] tfStates = createTfStates();
 
     // === 연속 갭 확인 (노이즈 필터) ===
-    private final Map<String, GapStreak> gapStreaks = new ConcurrentHashMap<>();
     private static final int MIN_STREAK_SECONDS = 1; // V5: 즉시 진입 (속도=엣지)
 
-    // === 가격 속도 추적 ===
-    private final Map<String, double[]> priceVelocity = new ConcurrentHashMap<>();
-
-    // === ⭐ NEW: 오즈 변동 추적 (역방향 과잉반응 감지) ===
-    private final Map<String, double[]> oddsHistory = new ConcurrentHashMap<>(); // [이전오즈, 타임스탬프]
-
     // === ⭐ NEW: 모멘텀 일관성 추적 (최근 10틱 방향) ===
-    private final Map<String, Deque<Integer>> momentumTicks = new ConcurrentHashMap<>(); // +1/-1 시퀀스
     private static final int MOMENTUM_WINDOW = 10;
 
-    // === ⭐ NEW: 최근 승률 캐시 ===
-    private volatile double recentWinRate = 0.50;
-    private volatile long lastWinRateCheck = 0;
-    private static final long WIN_RATE_CHECK_INTERVAL = 60_000; // 1분마다 갱신
-
-    // === ⭐ V5: 횡보 감지 (시초가 교차 횟수) ===
-    private final Map<String, int[]> crossCounters = new ConcurrentHashMap<>(); // [교차횟수, 마지막방향(+1/-1)]
+    // === ⭐ 최근 승률: WinRateEngine (코인 × TF × GAP 전략 감쇠 승률, 결과 확정 시 갱신) ===
+    private static final double NEUTRAL_WIN_RATE = 0.50; // 데이터 부족 시 중립
 
-    // === ⭐ V5: 가격 레인지 추적 (최근 60틱 고저) ===
-    private final Map<String, double[]> priceRange = new ConcurrentHashMap<>(); // [min, max, tickCount]
-
-    // === ⭐ V5: 연패 서킷브레이커 ===
-    private final Map<String, Long> circuitBreakerUntil = new ConcurrentHashMap<>(); // 코인 → 해제 시각
-    private volatile long lastCircuitCheck = 0;
-    private static final long CIRCUIT_CHECK_INTERVAL = 30_000; // 30초마다 체크
+    // === ⭐ V5: 연패 서킷브레이커 (결과 확정 이벤트로 즉시 발동) ===
+    private static final int CIRCUIT_LOSS_STREAK = 3;
     private static final long CIRCUIT_BREAKER_DURATION = 300_000; // 5분 정지
 
-    // === 실시간 갭 현황 (UI 노출용) ===
-    private final Map<String, GapSnapshot> latestGaps = new ConcurrentHashMap<>();
-
     // === ⭐ V5: 마켓 지표 캐시 (30초 갱신) ===
     private final Map<String, MarketIndicators> indicatorsCache = new ConcurrentHashMap<>();
     private volatile long lastIndicatorsRefresh = 0;
     private static final long INDICATORS_REFRESH_INTERVAL = 30_000; // 30초
 
-    // === ⭐ V5: 실시간 활동 로그 (UI 디버그용) ===
-    private final Deque<ScanLog> scanLogs = new ConcurrentLinkedDeque<>();
-    private static final int MAX_SCAN_LOGS = 50;
-    private final Map<String, Long> lastBoringScanLog = new ConcurrentHashMap<>(); // 반복 로그 쓰로틀
+    // === ⭐ V5: 실시간 활동 로그 (UI 디버그용) — 구조화 이벤트 링, 텍스트는 조회 시 렌더링 ===
+    private final ScanEventRing scanEvents = new ScanEventRing(64, TIMEFRAMES);
 
     public record ScanLog(long timestamp, String coin, String timeframe, String stage, String detail) {}
 
-    private void addScanLog(String coin, String timeframe, String stage, String detail) {
-        // 반복성 로그는 코인+TF당 5초에 1회만
-        if (stage.contains("변동부족") || stage.contains("레인지")) {
-            String throttleKey = coin + "_" + timeframe + "_" + stage;
-            long now = System.currentTimeMillis();
-            Long last = lastBoringScanLog.get(throttleKey);
-            if (last != null && now - last < 5_000) return;
-            lastBoringScanLog.put(throttleKey, now);
-        }
-        scanLogs.addFirst(new ScanLog(System.currentTimeMillis(), coin, timeframe, stage, detail));
-        while (scanLogs.size() > MAX_SCAN_LOGS) scanLogs.removeLast();
-    }
-
     public List<ScanLog> getRecentScanLogs() {
-        return List.copyOf(scanLogs);
+        return scanEvents.recent().stream()
+                .map(e -> new ScanLog(e.timestamp(), e.coinLabel(), e.timeframe(), e.stage().label(), e.detail()))
+                .toList();
     }
 
     public record GapSnapshot(
@@ -160,16 +120,34 @@ public class OddsGapScanner {
             double reverseGap, int reverseStreakSeconds
     ) {}
 
+    /** 실시간 갭 현황 (UI 노출용) — 조회 시점에 상태 테이블에서 생성 */
     public Map<String, GapSnapshot> getLatestGaps() {
-        return Map.copyOf(latestGaps);
+        Map<String, GapSnapshot> gaps = new HashMap<>();
+        for (TfState[] row : tfStates) {
+            for (TfState st : row) {
+                GapSnapshot snap = st.toSnapshot();
+                if (snap != null) gaps.put(st.key, snap);
+            }
+        }
+        return Map.copyOf(gaps);
     }
 
     // === 임계값 (동적으로 조절됨) ===
     private static final double BASE_FORWARD_GAP = 0.06; // V5: 7%→6% (밤새 0건 수정)
     private static final double BASE_REVERSE_GAP = 0.08;
     private static final double MIN_PRICE_MOVE_PCT = 0.08;
+    // 변동성 레짐 보정 범위: 조용한 시간대 최대 30% 완화, 급변 구간 최대 60% 강화
+    private static final double MIN_MOVE_REGIME_FLOOR = 0.7;
+    private static final double MIN_MOVE_REGIME_CAP = 1.6;
+
     // ⭐ V5: 코인별 최소 변동폭 (낮은 가격 코인 = 더 높은 % 요구)
-    private static double getMinPriceMove(String coin, String timeframe) {
+    // ⭐ 실현 변동성 레짐(15분/24시간) 배수 적용 — 스냅샷 읽기 1회, REST 없음
+    private double getMinPriceMove(String coin, String timeframe) {
+        return getBaseMinPriceMove(coin, timeframe)
+                * volatility.getRegime(coin, MIN_MOVE_REGIME_FLOOR, MIN_MOVE_REGIME_CAP);
+    }
+
+    private static double getBaseMinPriceMove(String coin, String timeframe) {
         double base = switch (coin) {
             case "BTC" -> 0.06;
             case "ETH" -> 0.08;
@@ -188,24 +166,174 @@ public class OddsGapScanner {
     private static final double MIN_BALANCE = 1.0;
     private static final double MAX_SPREAD = 1.05; // ⭐ UP+DOWN > 1.05면 스킵
 
-    // 시초가 캐시
-    private final Map<String, Double> hourOpenPrices = new ConcurrentHashMap<>();
-    private final Map<String, Double> min15OpenPrices = new ConcurrentHashMap<>();
-    private final Map<String, Double> min5OpenPrices = new ConcurrentHashMap<>();
-    private volatile int lastOpenHour = -1;
-    private volatile int lastOpen15mWindow = -1;
-    private volatile int lastOpen5mWindow = -1;
+    // 시초가 캐시 (Binance 캔들 시가 — TfState.openPrice), 캔들 윈도우는 epoch 기준 인덱스
+    // ET 오프셋은 정시 단위이므로 1H/15M/5M 경계가 UTC epoch 경계와 동일
+    private volatile long lastOpenHour = -1;
+    private volatile long lastOpen15mWindow = -1;
+    private volatile long lastOpen5mWindow = -1;
     private volatile boolean openPricesInitialized = false;
 
-    private record GapStreak(String direction, String type, double avgGap, int count, long firstSeen) {}
+    /** 코인 단위 상태 (가격 속도, 모멘텀 틱 링, 서킷브레이커) */
+    private static final class CoinState {
+        final String coin;
+        final int coinIdx;
+        boolean hasVelocity;
+        double velocityPrice;
+        long velocityTime;
+        final int[] momentumTicks = new int[MOMENTUM_WINDOW]; // +1/-1 링
+        int momentumHead, momentumCount, momentumSum;
+        volatile long circuitBreakerUntil; // 해제 시각 (0 = 없음)
+
+        CoinState(String coin, int coinIdx) {
+            this.coin = coin;
+            this.coinIdx = coinIdx;
+        }
+    }
+
+    /** 코인 × 타임프레임 상태 (스캔 스레드가 갱신, UI 스냅샷만 동기화) */
+    private static final class TfState {
+        final String coin;
+        final String timeframe;
+        final String key; // "BTC_1H" (UI 맵 키)
+        final int coinIdx;
+        final int tf;
+
+        volatile double openPrice; // Binance 캔들 시가 (15M/5M은 Chainlink 우선, 이건 fallback)
+
+        // 횡보 감지: 시초가 교차 (crossDir 0 = 미초기화)
+        int crossCount, crossDir;
+        // 가격 레인지: 최근 60틱 고저 (rangeTicks 0 = 미초기화)
+        double rangeMin, rangeMax;
+        int rangeTicks;
+        // 오즈 변동 속도
+        boolean hasOdds;
+        double prevOdds;
+        long prevOddsTime;
+
+        final Streak fwd = new Streak();
+        final Streak rev = new Streak();
+
+        // UI 스냅샷 필드 (조회 시 GapSnapshot 생성)
+        private boolean hasSnapshot;
+        private String direction, reverseDirection;
+        private double priceDiffPct, estimatedProb, marketOdds, gap;
+        private double reverseEstProb, reverseMarketOdds, reverseGap;
+        private int fwdStreak, revStreak;
+        private long snapshotTime;
+
+        TfState(String coin, int coinIdx, int tf) {
+            this.coin = coin;
+            this.timeframe = TIMEFRAMES[tf];
+            this.key = coin + "_" + timeframe;
+            this.coinIdx = coinIdx;
+            this.tf = tf;
+        }
+
+        /** 새 캔들 시작 — 교차/레인지 초기화 */
+        void resetCandle() {
+            crossCount = 0;
+            crossDir = 0;
+            rangeTicks = 0;
+        }
+
+        synchronized void snapshot(double priceDiffPct, double estProb, double fwdMktOdds, double fwdGap,
+                                   double revEstProb, double revMktOdds, double revGap,
+                                   String priceDir, String reverseDir, long now) {
+            this.hasSnapshot = true;
+            this.direction = priceDir;
+            this.priceDiffPct = priceDiffPct;
+            this.estimatedProb = estProb;
+            this.marketOdds = fwdMktOdds;
+            this.gap = fwdGap;
+            this.fwdStreak = fwd.count;
+            this.snapshotTime = now;
+            this.reverseDirection = reverseDir;
+            this.reverseEstProb = revEstProb;
+            this.reverseMarketOdds = revMktOdds;
+            this.reverseGap = revGap;
+            this.revStreak = rev.count;
+        }
+
+        synchronized GapSnapshot toSnapshot() {
+            if (!hasSnapshot) return null;
+            return new GapSnapshot(coin, timeframe, direction, priceDiffPct,
+                    estimatedProb, marketOdds, gap, fwdStreak, snapshotTime,
+                    reverseDirection, reverseEstProb, reverseMarketOdds, reverseGap, revStreak);
+        }
+    }
+
+    /** 연속 갭 (방향이 바뀌면 1부터 재시작) */
+    private static final class Streak {
+        String direction;
+        double avgGap;
+        int count;
+        long firstSeen;
+
+        void update(String dir, double gap, long now) {
+            if (count == 0 || !direction.equals(dir)) {
+                direction = dir;
+                avgGap = gap;
+                count = 1;
+                firstSeen = now;
+            } else {
+                avgGap = (avgGap * count + gap) / (count + 1);
+                count++;
+            }
+        }
+
+        void clear() {
+            direction = null;
+            count = 0;
+        }
+    }
+
+    private static CoinState[] createCoinStates() {
+        CoinState[] states = new CoinState[COIN_COUNT];
+        for (int c = 0; c < COIN_COUNT; c++) {
+            states[c] = new CoinState(CoinConfig.ACTIVE_COINS.get(c).label(), c);
+        }
+        return states;
+    }
+
+    private static TfState[][] createTfStates() {
+        TfState[][] states = new TfState[COIN_COUNT][TIMEFRAMES.length];
+        for (int c = 0; c < COIN_COUNT; c++) {
+            for (int tf = 0; tf < TIMEFRAMES.length; tf++) {
+                states[c][tf] = new TfState(CoinConfig.ACTIVE_COINS.get(c).label(), c, tf);
+            }
+        }
+        return states;
+    }
+
+    /** 시초가 (Binance) — 미보유/미지원 코인이면 0 */
+    private double getOpenPrice(String coin, int tf) {
+        int c = coinIndex(coin);
+        return c < 0 ? 0.0 : tfStates[c][tf].openPrice;
+    }
+
+    /** 로그용 시초가 맵 문자열 (캔들 전환 시에만 호출) */
+    private String formatOpenPrices(int tf) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int c = 0; c < COIN_COUNT; c++) {
+            TfState st = tfStates[c][tf];
+            if (st.openPrice <= 0) continue;
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(st.coin).append('=').append(st.openPrice);
+        }
+        return sb.append('}').toString();
+    }
 
     @PostConstruct
     public void init() {
         // ⭐ 시초가 Binance API에서 복구 (재시작 안전)
         initOpenPricesFromBinance();
 
-        // 최근 승률 로드
-        refreshWinRate();
+        // ⭐ 연패 서킷브레이커: 결과 확정 즉시 발동 (시드된 연패는 바로 반영)
+        outcomeTracker.onLoss(this::onLoss);
+        for (CoinState cs : coinStates) {
+            int streak = outcomeTracker.getLossStreak(cs.coin);
+            if (streak >= CIRCUIT_LOSS_STREAK) tripCircuitBreaker(cs, streak);
+        }
 
         scanExecutor.scheduleAtFixedRate(this::scanAll, 5, 1, TimeUnit.SECONDS);
 
@@ -215,7 +343,8 @@ public class OddsGapScanner {
                 .orElse("");
         log.info("🔍 오즈갭 V5.2 스캐너 시작 (Chainlink통합) | 코인: [{}] | 1H=Binance | 15M/5M=Chainlink | 순방향≥{}% | 역방향≥{}% | 스프레드<{}% | 승률{}% | 서킷브레이커:3연패→5분정지",
                 coinList, (int)(BASE_FORWARD_GAP * 100), (int)(BASE_REVERSE_GAP * 100),
-                (int)(MAX_SPREAD * 100), String.format("%.0f", recentWinRate * 100));
+                (int)(MAX_SPREAD * 100),
+                String.format("%.0f", winRates.rate(null, null, WinRateEngine.Strategy.GAP, NEUTRAL_WIN_RATE) * 100));
     }
 
     @PreDestroy
@@ -227,38 +356,39 @@ public class OddsGapScanner {
     // ⭐ NEW: Binance API에서 현재 캔들 시초가 복구
     // =========================================================================
     private void initOpenPricesFromBinance() {
-        for (CoinConfig.CoinDef coinDef : CoinConfig.ACTIVE_COINS) {
-            String coin = coinDef.label();
+        for (TfState[] row : tfStates) {
+            String coin = row[TF_1H].coin;
             try {
                 // 1H 시초가
                 double hourOpen = fetchCandleOpen(coin, "1h");
                 if (hourOpen > 0) {
-                    hourOpenPrices.put(coin, hourOpen);
+                    row[TF_1H].openPrice = hourOpen;
                 }
 
                 // 15M 시초가
                 double min15Open = fetchCandleOpen(coin, "15m");
                 if (min15Open > 0) {
-                    min15OpenPrices.put(coin, min15Open);
+                    row[TF_15M].openPrice = min15Open;
                 }
 
                 // 5M 시초가
                 double min5Open = fetchCandleOpen(coin, "5m");
                 if (min5Open > 0) {
-                    min5OpenPrices.put(coin, min5Open);
+                    row[TF_5M].openPrice = min5Open;
                 }
             } catch (Exception e) {
                 log.warn("[{}] Binance 시초가 복구 실패: {}", coin, e.getMessage());
             }
         }
 
-        ZonedDateTime nowET = ZonedDateTime.now(ZoneId.of("America/New_York"));
-        lastOpenHour = nowET.getHour();
-        lastOpen15mWindow = nowET.getMinute() / 15;
-        lastOpen5mWindow = nowET.getMinute() / 5;
+        long now = System.currentTimeMillis();
+        lastOpenHour = now / 3_600_000;
+        lastOpen15mWindow = now / 900_000;
+        lastOpen5mWindow = now / 300_000;
         openPricesInitialized = true;
 
-        log.info("📊 시초가 복구 완료 | 1H: {} | 15M: {} | 5M: {}", hourOpenPrices, min15OpenPrices, min5OpenPrices);
+        log.info("📊 시초가 복구 완료 | 1H: {} | 15M: {} | 5M: {}",
+                formatOpenPrices(TF_1H), formatOpenPrices(TF_15M), formatOpenPrices(TF_5M));
     }
 
     private double fetchCandleOpen(String coin, String interval) {
@@ -282,19 +412,8 @@ public class OddsGapScanner {
     // =========================================================================
     // ⭐ NEW: 최근 승률 조회 (동적 임계값용)
     // =========================================================================
-    private void refreshWinRate() {
-        try {
-            Long wins = tradeRepository.countWins();
-            Long resolved = tradeRepository.countResolved();
-            if (resolved != null && resolved >= 5) {
-                recentWinRate = (double) wins / resolved;
-            } else {
-                recentWinRate = 0.50; // 데이터 부족 시 중립
-            }
-            lastWinRateCheck = System.currentTimeMillis();
-        } catch (Exception e) {
-            log.debug("승률 조회 실패: {}", e.getMessage());
-        }
+    private double recentWinRate(String coin, String timeframe) {
+        return winRates.rate(coin, timeframe, WinRateEngine.Strategy.GAP, NEUTRAL_WIN_RATE);
     }
 
     /**
@@ -304,7 +423,7 @@ public class OddsGapScanner {
      * 40-50% → 임계값 +3% (보수적)
      * 40%- → 임계값 +5% (방어적)
      */
-    private double getAdaptiveGap(double baseGap) {
+    private double getAdaptiveGap(double recentWinRate, double baseGap) {
         if (recentWinRate >= 0.65) return baseGap - 0.02;
         if (recentWinRate >= 0.55) return baseGap;
         if (recentWinRate >= 0.45) return baseGap + 0.03;
@@ -316,32 +435,22 @@ public class OddsGapScanner {
     // =========================================================================
     private void scanAll() {
         try {
-            // 승률 주기적 갱신
-            if (System.currentTimeMillis() - lastWinRateCheck > WIN_RATE_CHECK_INTERVAL) {
-                refreshWinRate();
-            }
-
-            // ⭐ V5: 연패 서킷브레이커 주기적 체크
-            if (System.currentTimeMillis() - lastCircuitCheck > CIRCUIT_CHECK_INTERVAL) {
-                checkCircuitBreakers();
-                lastCircuitCheck = System.currentTimeMillis();
-            }
-
             updateOpenPrices();
-            for (CoinConfig.CoinDef coinDef : CoinConfig.ACTIVE_COINS) {
-                String coin = coinDef.label();
+            for (int c = 0; c < COIN_COUNT; c++) {
+                CoinState cs = coinStates[c];
+                String coin = cs.coin;
                 try {
                     // ⭐ V5: 서킷브레이커 발동 중이면 스킵
-                    Long breakUntil = circuitBreakerUntil.get(coin);
-                    if (breakUntil != null && System.currentTimeMillis() < breakUntil) {
-                        addScanLog(coin, "-", "🔴 서킷브레이커",
-                                String.format("%.0f초 남음", (breakUntil - System.currentTimeMillis()) / 1000.0));
+                    long breakUntil = cs.circuitBreakerUntil;
+                    if (System.currentTimeMillis() < breakUntil) {
+                        scanEvents.add(ScanEventRing.Stage.CIRCUIT_BREAKER, c, -1,
+                                (breakUntil - System.currentTimeMillis()) / 1000.0);
                         continue;
                     }
 
-                    scanCoin(coin, "1H");
-                    scanCoin(coin, "15M");
-                    scanCoin(coin, "5M");
+                    scanCoin(cs, tfStates[c][TF_1H]);
+                    scanCoin(cs, tfStates[c][TF_15M]);
+                    scanCoin(cs, tfStates[c][TF_5M]);
                 } catch (Exception e) {
                     log.debug("[{}] 스캔 오류: {}", coin, e.getMessage());
                 }
@@ -354,7 +463,9 @@ public class OddsGapScanner {
     // =========================================================================
     // 코인 × 타임프레임 개별 스캔 (양방향)
     // =========================================================================
-    private void scanCoin(String coin, String timeframe) {
+    private void scanCoin(CoinState cs, TfState st) {
+        String coin = st.coin;
+        String timeframe = st.timeframe;
         // ⭐ V5.3: 15M은 BTC만 허용 (데이터 분석: BTC 50%승률+$146 vs SOL 22%/-$137, ETH 28%/-$11)
         // 5M 성공 패턴 적용: 단일 코인 집중 = 신호 품질 극대화
         if ("15M".equals(timeframe) && !"BTC".equals(coin)) {
@@ -364,37 +475,38 @@ public class OddsGapScanner {
         // ⭐ V5.2: 15M/5M은 Chainlink 가격 기준 (폴리마켓 판정 기준)
         boolean useChainlink = ("15M".equals(timeframe) || "5M".equals(timeframe));
 
+        // 소스별 스냅샷 1회 읽기 → 가격/시초가가 같은 틱 기준으로 일관됨
+        PriceSnapshot binance = priceMonitor.getSnapshot(coin);
+        PriceSnapshot chainlink = useChainlink ? chainlinkPriceService.getSnapshot(coin) : null;
+
         double currentPrice;
         if (useChainlink) {
-            currentPrice = chainlinkPriceService.getPrice(coin);
+            currentPrice = chainlink.price();
             if (currentPrice <= 0) {
                 // Chainlink 미수신 → Binance fallback
-                currentPrice = priceMonitor.getPrice(coin);
+                currentPrice = binance.price();
                 if (currentPrice <= 0) return;
                 log.debug("[{}][{}] Chainlink 가격 없음 → Binance fallback: {}", coin, timeframe, currentPrice);
             }
         } else {
-            currentPrice = priceMonitor.getPrice(coin);
+            currentPrice = binance.price();
             if (currentPrice <= 0) return;
         }
 
         double openPrice;
         if (useChainlink) {
             // 15M/5M: Chainlink 시초가 우선
-            openPrice = "5M".equals(timeframe)
-                    ? chainlinkPriceService.get5mOpen(coin)
-                    : chainlinkPriceService.get15mOpen(coin);
+            openPrice = chainlink.openFor(timeframe);
             if (openPrice <= 0) {
                 // Chainlink 시초가 미수신 → Binance fallback
-                openPrice = "5M".equals(timeframe)
-                        ? min5OpenPrices.getOrDefault(coin, 0.0)
-                        : min15OpenPrices.getOrDefault(coin, 0.0);
-                addScanLog(coin, timeframe, "⚠️ CL→BN fallback",
-                        String.format("open=%.2f (Binance)", openPrice));
+                openPrice = st.openPrice;
+                scanEvents.add(ScanEventRing.Stage.CL_FALLBACK, st.coinIdx, st.tf, openPrice);
             }
         } else {
-            openPrice = hourOpenPrices.getOrDefault(coin, 0.0);
+            openPrice = st.openPrice;
         }
+        // REST 시초가도 없으면 WebSocket 첫 체결가 기준 시초가
+        if (openPrice <= 0) openPrice = binance.openFor(timeframe);
         if (openPrice <= 0) return;
 
         // ⭐ V5.2: 15M/5M은 Chainlink 기준이므로 Binance 캐시 검증 불필요
@@ -403,48 +515,51 @@ public class OddsGapScanner {
         double priceDiffPct = ((currentPrice - openPrice) / openPrice) * 100;
 
         // 모멘텀 일관성 추적
-        double velocity = trackVelocity(coin, currentPrice);
-        trackMomentum(coin, priceDiffPct);
+        double velocity = trackVelocity(cs, currentPrice);
+        trackMomentum(cs, priceDiffPct);
 
         // ⭐ V5: 횡보 감지 (시초가 교차 횟수 추적)
-        trackCrossCount(coin + "_" + timeframe, priceDiffPct);
+        trackCrossCount(st, priceDiffPct);
 
         // ⭐ V5: 가격 레인지 추적
-        trackPriceRange(coin + "_" + timeframe, currentPrice);
+        trackPriceRange(st, currentPrice);
 
         // ⭐ V5: 코인별 최소 변동폭 (기존 고정 0.08% → 코인별 차등)
         double minMove = getMinPriceMove(coin, timeframe);
         if (Math.abs(priceDiffPct) < minMove) {
-            clearStreak(coin, timeframe, "FWD");
-            clearStreak(coin, timeframe, "REV");
-            addScanLog(coin, timeframe, "⏸ 변동부족",
-                    String.format("%.3f%% < %.2f%%", Math.abs(priceDiffPct), minMove));
+            st.fwd.clear();
+            st.rev.clear();
+            scanEvents.add(ScanEventRing.Stage.LOW_MOVE, st.coinIdx, st.tf, Math.abs(priceDiffPct), minMove);
             // V5: 스냅샷은 유지 (UI 깜빡임 방지) — 갭만 0으로
-            updateSnapshot(coin, timeframe, priceDiffPct, 0, 0, 0,
+            updateSnapshot(st, priceDiffPct, 0, 0, 0,
                     0, 0, 0, priceDiffPct > 0 ? "UP" : "DOWN",
                     priceDiffPct > 0 ? "DOWN" : "UP", null);
             return;
         }
 
         // ⭐ V5: 횡보 필터 — 시초가 3회+ 교차 = 방향 불명확
-        int crosses = getCrossCount(coin + "_" + timeframe);
+        int crosses = st.crossCount;
         if (crosses >= 5) {
-            addScanLog(coin, timeframe, "⏸ 횡보", String.format("교차 %d회", crosses));
-            log.debug("[{}][{}] 횡보 감지: 시초가 {}회 교차 — 스킵", coin, timeframe, crosses);
-            clearStreak(coin, timeframe, "FWD");
-            clearStreak(coin, timeframe, "REV");
+            scanEvents.add(ScanEventRing.Stage.SIDEWAYS, st.coinIdx, st.tf, 0, crosses, 0, 0, 0, 0, 0);
+            if (log.isDebugEnabled()) {
+                log.debug("[{}][{}] 횡보 감지: 시초가 {}회 교차 — 스킵", coin, timeframe, crosses);
+            }
+            st.fwd.clear();
+            st.rev.clear();
             return;
         }
 
         // ⭐ V5: 가격 레인지 필터 — 최근 60틱 고저차가 너무 좁으면 갇힌 가격
-        double rangePct = getPriceRangePct(coin + "_" + timeframe);
+        double rangePct = getPriceRangePct(st);
         if (rangePct > 0 && rangePct < minMove * 0.8) {
-            addScanLog(coin, timeframe, "⏸ 레인지좁음",
-                    String.format("%.3f%% < %.3f%%", rangePct, minMove * 0.8));
-            log.debug("[{}][{}] 레인지 과소: {}% < {}% — 스킵",
-                    coin, timeframe, String.format("%.3f", rangePct), String.format("%.3f", minMove * 0.8));
-            clearStreak(coin, timeframe, "FWD");
-            clearStreak(coin, timeframe, "REV");
+            scanEvents.add(ScanEventRing.Stage.NARROW_RANGE, st.coinIdx, st.tf, rangePct, minMove * 0.8);
+            // 매 틱 경로 — 디버그 꺼져 있으면 포맷/박싱 없이 통과
+            if (log.isDebugEnabled()) {
+                log.debug("[{}][{}] 레인지 과소: {}% < {}% — 스킵",
+                        coin, timeframe, String.format("%.3f", rangePct), String.format("%.3f", minMove * 0.8));
+            }
+            st.fwd.clear();
+            st.rev.clear();
             return;
         }
 
@@ -458,17 +573,19 @@ public class OddsGapScanner {
                 ? oddsService.getOdds15mForCoin(coin)
                 : oddsService.getOddsForCoin(coin);
         if (odds == null || !odds.available()) {
-            addScanLog(coin, timeframe, "⏸ 오즈없음", "마켓 비활성");
+            scanEvents.add(ScanEventRing.Stage.NO_ODDS, st.coinIdx, st.tf);
             return;
         }
 
         // ⭐ NEW: 스프레드 검증
         double spread = odds.upOdds() + odds.downOdds();
         if (spread > MAX_SPREAD) {
-            addScanLog(coin, timeframe, "⏸ 스프레드",
-                    String.format("%.1f%% > %d%%", spread * 100, (int)(MAX_SPREAD * 100)));
-            log.debug("[{}][{}] 스프레드 과다: {}% > {}% — 스킵",
-                    coin, timeframe, String.format("%.1f", spread * 100), (int)(MAX_SPREAD * 100));
+            scanEvents.add(ScanEventRing.Stage.SPREAD, st.coinIdx, st.tf, 0, (int)(MAX_SPREAD * 100), 0,
+                    spread * 100, 0, 0, 0);
+            if (log.isDebugEnabled()) {
+                log.debug("[{}][{}] 스프레드 과다: {}% > {}% — 스킵",
+                        coin, timeframe, String.format("%.1f", spread * 100), (int)(MAX_SPREAD * 100));
+            }
             return;
         }
 
@@ -476,16 +593,15 @@ public class OddsGapScanner {
         if ("15M".equals(timeframe)) {
             double minOdds = Math.min(odds.upOdds(), odds.downOdds());
             if (minOdds < 0.30) {
-                addScanLog(coin, timeframe, "⏸ 15M오즈필터",
-                        String.format("min오즈 %.0f%% < 30%%", minOdds * 100));
+                scanEvents.add(ScanEventRing.Stage.ODDS_FILTER_15M, st.coinIdx, st.tf, minOdds * 100);
                 return;
             }
         }
 
         // 방향 판단 & 확률 추정
         String priceDir = priceDiffPct > 0 ? "UP" : "DOWN";
-        double momentumScore = getMomentumConsistency(coin);
-        double estimatedProb = estimateProbFromPriceMove(priceDiffPct, timeframe, velocity, momentumScore);
+        double momentumScore = getMomentumConsistency(cs);
+        double estimatedProb = estimateProbFromPriceMove(coin, priceDiffPct, timeframe, velocity, momentumScore);
 
         // 순방향 오즈
         double fwdMarketOdds = "UP".equals(priceDir) ? odds.upOdds() : odds.downOdds();
@@ -498,31 +614,29 @@ public class OddsGapScanner {
         double reverseGap = reverseEstProb - reverseMarketOdds;
 
         // ⭐ NEW: 오즈 변동 추적 (과잉반응 보너스)
-        double oddsVelocity = trackOddsVelocity(coin + "_" + timeframe, fwdMarketOdds);
+        double oddsVelocity = trackOddsVelocity(st, fwdMarketOdds);
 
         // UI 스냅샷
-        updateSnapshot(coin, timeframe, priceDiffPct,
+        updateSnapshot(st, priceDiffPct,
                 estimatedProb, fwdMarketOdds, fwdGap,
                 reverseEstProb, reverseMarketOdds, reverseGap,
                 priceDir, reverseDir, odds);
 
-        // 동적 임계값
-        double adaptiveFwdGap = getAdaptiveGap(BASE_FORWARD_GAP);
-        double adaptiveRevGap = getAdaptiveGap(BASE_REVERSE_GAP);
+        // 동적 임계값 (코인 × TF 감쇠 승률)
+        double winRate = recentWinRate(coin, timeframe);
+        double adaptiveFwdGap = getAdaptiveGap(winRate, BASE_FORWARD_GAP);
+        double adaptiveRevGap = getAdaptiveGap(winRate, BASE_REVERSE_GAP);
 
         // === 순방향 체크 ===
         if (fwdGap >= adaptiveFwdGap && candlePosition >= 1 && candlePosition <= 3) {
-            addScanLog(coin, timeframe, "🔍 순방향갭!",
-                    String.format("%s 갭%.1f%%≥%.1f%% 추정%.0f%% vs 오즈%.0f%%",
-                            priceDir, fwdGap * 100, adaptiveFwdGap * 100,
-                            estimatedProb * 100, fwdMarketOdds * 100));
-            checkAndTradeFwd(coin, timeframe, priceDir, fwdGap,
+            scanEvents.add(ScanEventRing.Stage.FWD_GAP, st.coinIdx, st.tf, "UP".equals(priceDir) ? 1 : -1, 0, 0,
+                    fwdGap * 100, adaptiveFwdGap * 100, estimatedProb * 100, fwdMarketOdds * 100);
+            checkAndTradeFwd(st, priceDir, fwdGap,
                     priceDiffPct, estimatedProb, fwdMarketOdds, odds, momentumScore);
         } else {
-            addScanLog(coin, timeframe, "⏸ 갭부족",
-                    String.format("%s 갭%.1f%% < %.1f%% | 캔들%d",
-                            priceDir, fwdGap * 100, adaptiveFwdGap * 100, candlePosition));
-            clearStreak(coin, timeframe, "FWD");
+            scanEvents.add(ScanEventRing.Stage.GAP_LOW, st.coinIdx, st.tf, "UP".equals(priceDir) ? 1 : -1,
+                    candlePosition, 0, fwdGap * 100, adaptiveFwdGap * 100, 0, 0);
+            st.fwd.clear();
         }
 
         // === 역방향 체크 ===
@@ -539,23 +653,28 @@ public class OddsGapScanner {
         if (fwdMarketOdds >= MIN_REVERSE_ODDS_THRESHOLD
                 && reverseGap >= revThreshold
                 && candlePosition >= 2 && candlePosition <= 3) {
-            checkAndTradeRev(coin, timeframe, reverseDir, reverseGap,
+            checkAndTradeRev(st, reverseDir, reverseGap,
                     priceDiffPct, reverseEstProb, reverseMarketOdds, odds, oddsVelocity);
         } else {
-            clearStreak(coin, timeframe, "REV");
+            st.rev.clear();
         }
         */
-        clearStreak(coin, timeframe, "REV");
+        st.rev.clear();
     }
 
     // =========================================================================
     // ⭐ NEW: 모멘텀 일관성 추적
     // =========================================================================
-    private void trackMomentum(String coin, double priceDiffPct) {
-        Deque<Integer> ticks = momentumTicks.computeIfAbsent(coin,
-                k -> new ConcurrentLinkedDeque<>());
-        ticks.addLast(priceDiffPct >= 0 ? 1 : -1);
-        while (ticks.size() > MOMENTUM_WINDOW) ticks.pollFirst();
+    private void trackMomentum(CoinState cs, double priceDiffPct) {
+        int tick = priceDiffPct >= 0 ? 1 : -1;
+        if (cs.momentumCount == MOMENTUM_WINDOW) {
+            cs.momentumSum -= cs.momentumTicks[cs.momentumHead]; // 가장 오래된 틱 제거
+        } else {
+            cs.momentumCount++;
+        }
+        cs.momentumTicks[cs.momentumHead] = tick;
+        cs.momentumSum += tick;
+        cs.momentumHead = (cs.momentumHead + 1) % MOMENTUM_WINDOW;
     }
 
     /**
@@ -564,183 +683,168 @@ public class OddsGapScanner {
      * -1.0 = 10틱 전부 DOWN
      * 0.0 = 반반
      */
-    private double getMomentumConsistency(String coin) {
-        Deque<Integer> ticks = momentumTicks.get(coin);
-        if (ticks == null || ticks.size() < 3) return 0.0;
-        int sum = 0;
-        for (int t : ticks) sum += t;
-        return (double) sum / ticks.size();
+    private double getMomentumConsistency(CoinState cs) {
+        if (cs.momentumCount < 3) return 0.0;
+        return (double) cs.momentumSum / cs.momentumCount;
     }
 
     // =========================================================================
     // ⭐ V5: 횡보 감지 — 시초가 교차 횟수 추적
     // 가격이 시초가 위↔아래로 왔다갔다하면 방향 불명확
     // =========================================================================
-    private void trackCrossCount(String key, double priceDiffPct) {
+    private void trackCrossCount(TfState st, double priceDiffPct) {
         int currentDir = priceDiffPct >= 0 ? 1 : -1;
-        int[] state = crossCounters.get(key);
 
-        if (state == null) {
-            crossCounters.put(key, new int[]{0, currentDir});
+        if (st.crossDir == 0) {
+            st.crossCount = 0;
+            st.crossDir = currentDir;
             return;
         }
 
-        if (state[1] != currentDir) {
+        if (st.crossDir != currentDir) {
             // 방향 전환 = 교차 발생
-            state[0]++;
-            state[1] = currentDir;
+            st.crossCount++;
+            st.crossDir = currentDir;
         }
     }
 
-    private int getCrossCount(String key) {
-        int[] state = crossCounters.get(key);
-        return state != null ? state[0] : 0;
-    }
-
     // =========================================================================
     // ⭐ V5: 가격 레인지 추적 — 최근 60틱 고저차
     // 고저차가 너무 좁으면 "갇힌 가격" → 방향성 없음
     // =========================================================================
-    private void trackPriceRange(String key, double price) {
-        double[] range = priceRange.get(key);
-        if (range == null) {
-            priceRange.put(key, new double[]{price, price, 1});
+    private void trackPriceRange(TfState st, double price) {
+        if (st.rangeTicks == 0) {
+            st.rangeMin = price;
+            st.rangeMax = price;
+            st.rangeTicks = 1;
             return;
         }
 
-        range[0] = Math.min(range[0], price); // min
-        range[1] = Math.max(range[1], price); // max
-        range[2]++;
+        st.rangeMin = Math.min(st.rangeMin, price);
+        st.rangeMax = Math.max(st.rangeMax, price);
+        st.rangeTicks++;
 
         // 60틱마다 리셋 (약 60초)
-        if (range[2] > 60) {
-            priceRange.put(key, new double[]{price, price, 1});
+        if (st.rangeTicks > 60) {
+            st.rangeMin = price;
+            st.rangeMax = price;
+            st.rangeTicks = 1;
         }
     }
 
     /** 가격 레인지를 %로 반환 */
-    private double getPriceRangePct(String key) {
-        double[] range = priceRange.get(key);
-        if (range == null || range[2] < 10 || range[0] <= 0) return -1; // 데이터 부족
-        return ((range[1] - range[0]) / range[0]) * 100;
+    private double getPriceRangePct(TfState st) {
+        if (st.rangeTicks < 10 || st.rangeMin <= 0) return -1; // 데이터 부족
+        return ((st.rangeMax - st.rangeMin) / st.rangeMin) * 100;
     }
 
     // =========================================================================
     // ⭐ V5: 연패 서킷브레이커
-    // 동일 코인 3연패 → 5분 자동 정지
+    // 동일 코인 3연패 → 5분 자동 정지 (OutcomeTracker 패배 이벤트로 즉시 발동, DB 폴링 없음)
     // =========================================================================
-    private void checkCircuitBreakers() {
-        try {
-            for (CoinConfig.CoinDef coinDef : CoinConfig.ACTIVE_COINS) {
-                String coin = coinDef.label();
-                List<Trade> recent = tradeRepository.findRecent10ResolvedByCoin(coin);
-                if (recent.size() < 3) continue;
-
-                // 최근 3건 연속 LOSE 체크
-                boolean threeConsecLoss = recent.stream().limit(3)
-                        .allMatch(t -> t.getResult() == Trade.TradeResult.LOSE);
-
-                if (threeConsecLoss) {
-                    Long existing = circuitBreakerUntil.get(coin);
-                    long now = System.currentTimeMillis();
-                    if (existing == null || now >= existing) {
-                        circuitBreakerUntil.put(coin, now + CIRCUIT_BREAKER_DURATION);
-                        tradingService.broadcast(String.format(
-                                "🔴 서킷브레이커 [%s] 3연패 감지 → 5분 정지 (%.0f%% 승률)",
-                                coin, recentWinRate * 100));
-                    }
-                }
-            }
-        } catch (Exception e) {
-            log.debug("서킷브레이커 체크 오류: {}", e.getMessage());
-        }
+    private void onLoss(String coin, String timeframe, int lossStreak) {
+        int c = coinIndex(coin);
+        if (c < 0 || lossStreak < CIRCUIT_LOSS_STREAK) return;
+        tripCircuitBreaker(coinStates[c], lossStreak);
+    }
+
+    private void tripCircuitBreaker(CoinState cs, int lossStreak) {
+        long now = System.currentTimeMillis();
+        if (now < cs.circuitBreakerUntil) return;
+        cs.circuitBreakerUntil = now + CIRCUIT_BREAKER_DURATION;
+        tradingService.broadcast(String.format(
+                "🔴 서킷브레이커 [%s] %d연패 감지 → 5분 정지 (%.0f%% 승률)",
+                cs.coin, lossStreak, winRates.get(cs.coin, null, null).windowRate(20) * 100));
     }
 
     // =========================================================================
     // ⭐ NEW: 오즈 변동 속도 추적 (과잉반응 감지용)
     // =========================================================================
-    private double trackOddsVelocity(String key, double currentOdds) {
-        double[] prev = oddsHistory.get(key);
+    private double trackOddsVelocity(TfState st, double currentOdds) {
         long now = System.currentTimeMillis();
 
-        if (prev == null) {
-            oddsHistory.put(key, new double[]{currentOdds, now});
+        if (!st.hasOdds) {
+            st.hasOdds = true;
+            st.prevOdds = currentOdds;
+            st.prevOddsTime = now;
             return 0.0;
         }
 
-        double elapsed = (now - prev[1]) / 1000.0;
+        double elapsed = (now - st.prevOddsTime) / 1000.0;
         if (elapsed <= 0) return 0.0;
 
-        double velocity = (currentOdds - prev[0]) / elapsed; // 오즈/초
-        oddsHistory.put(key, new double[]{currentOdds, now});
+        double velocity = (currentOdds - st.prevOdds) / elapsed; // 오즈/초
+        st.prevOdds = currentOdds;
+        st.prevOddsTime = now;
         return velocity;
     }
 
     // =========================================================================
     // 순방향 배팅 (시장이 늦은 경우)
     // =========================================================================
-    private void checkAndTradeFwd(String coin, String timeframe, String betDir,
+    private void checkAndTradeFwd(TfState st, String betDir,
                                    double gap, double priceDiffPct,
                                    double estProb, double mktOdds,
                                    PolymarketOddsService.MarketOdds odds,
                                    double momentumScore) {
-        String key = coin + "_" + timeframe + "_FWD";
-        long now = System.currentTimeMillis();
+        String coin = st.coin;
+        String timeframe = st.timeframe;
 
-        GapStreak streak = gapStreaks.get(key);
-        if (streak == null || !streak.direction.equals(betDir)) {
-            gapStreaks.put(key, new GapStreak(betDir, "FWD", gap, 1, now));
-            // V5: 즉시 진입 — 첫 감지에서 바로 통과
-        } else {
-            double newAvgGap = (streak.avgGap * streak.count + gap) / (streak.count + 1);
-            int cnt = streak.count + 1;
-            gapStreaks.put(key, new GapStreak(betDir, "FWD", newAvgGap, cnt, streak.firstSeen));
-        }
+        // V5: 즉시 진입 — 첫 감지에서 바로 통과
+        st.fwd.update(betDir, gap, System.currentTimeMillis());
 
-        int newCount = gapStreaks.get(key).count;
-        double avgGap = gapStreaks.get(key).avgGap;
+        int newCount = st.fwd.count;
+        double avgGap = st.fwd.avgGap;
 
         if (newCount < MIN_STREAK_SECONDS) {
-            addScanLog(coin, timeframe, "⏳ 연속대기", String.format("%d/%d초", newCount, MIN_STREAK_SECONDS));
+            scanEvents.add(ScanEventRing.Stage.STREAK_WAIT, st.coinIdx, st.tf, 0, newCount, MIN_STREAK_SECONDS, 0, 0, 0, 0);
             return;
         }
 
         // ⭐ 모멘텀 일관성 체크: 방향이 혼재하면 스킵
         double absMomentum = Math.abs(momentumScore);
         if (absMomentum < 0.4) {
-            addScanLog(coin, timeframe, "⏸ 모멘텀약",
-                    String.format("%.0f%% < 40%%", absMomentum * 100));
-            log.debug("[{}][{}] 모멘텀 불안정: {} < 0.4 — 스킵", coin, timeframe,
-                    String.format("%.2f", absMomentum));
+            scanEvents.add(ScanEventRing.Stage.WEAK_MOMENTUM, st.coinIdx, st.tf, absMomentum * 100);
+            if (log.isDebugEnabled()) {
+                log.debug("[{}][{}] 모멘텀 불안정: {} < 0.4 — 스킵", coin, timeframe,
+                        String.format("%.2f", absMomentum));
+            }
             return;
         }
 
-        // 공유 쿨다운
-        if (isOnCooldown(coin, timeframe)) {
-            addScanLog(coin, timeframe, "⏸ 쿨다운",
-                    "5M".equals(timeframe) ? "90초 대기중" : "3분 대기중");
-            return;
-        }
-        if (!checkHourlyLimit(coin + "_" + timeframe, timeframe)) {
-            addScanLog(coin, timeframe, "⏸ 시간한도", "시간당 3건 초과");
+        // 공유 쿨다운 (사전 필터 — 최종 판정은 tryReserve)
+        if (riskGate.isOnCooldown(coin, timeframe)) {
+            addRiskEvent(st, RiskGate.RejectReason.COOLDOWN);
             return;
         }
 
         double balance = balanceService.getBalance();
         if (balance < MIN_BALANCE) {
-            addScanLog(coin, timeframe, "⏸ 잔액부족", String.format("$%.2f", balance));
+            scanEvents.add(ScanEventRing.Stage.LOW_BALANCE, st.coinIdx, st.tf, balance);
             return;
         }
 
         ExpectedValueCalculator.EvResult evResult = evCalculator.calculateMomentum(
-                estProb, mktOdds, betDir);
-        if (evResult.bestEv() <= 0) {
-            addScanLog(coin, timeframe, "⏸ EV부족", String.format("EV %.1f%%", evResult.bestEv() * 100));
+                coin, estProb, mktOdds, betDir);
+        if ("HOLD".equals(evResult.bestAction())) { // EV ≤ 레짐 반영 임계값
+            scanEvents.add(ScanEventRing.Stage.LOW_EV, st.coinIdx, st.tf,
+                    evResult.bestEv() * 100, evResult.threshold() * 100);
             return;
         }
 
-        double betAmount = evCalculator.calcBetSize(balance, evResult.bestEv(), mktOdds);
-        betAmount = Math.max(betAmount, 1.0);
+        // 호가 깊이 반영 (캐시된 오더북 VWAP 기준 EV/Kelly — 네트워크 없음)
+        ExpectedValueCalculator.DepthSizing sizing = evCalculator.sizeWithDepth(
+                "UP".equals(betDir) ? odds.yesTokenId() : odds.noTokenId(), balance, evResult, mktOdds, false);
+        if (!passesDepthChecks(st, evResult, sizing)) return;
+        double betAmount = sizing.betAmount();
+        ExpectedValueCalculator.EvResult depthEv = sizing.applyTo(evResult); // 저장/로그는 VWAP 기준
+
+        // ⭐ 쿨다운 + 시간당 한도 + 노출 한도 원자적 예약 (LagDetector와 이중배팅 방지)
+        RiskGate.Reservation reservation = riskGate.tryReserve(coin, timeframe, betAmount);
+        if (!reservation.ok()) {
+            addRiskEvent(st, reservation.rejected());
+            return;
+        }
 
         Trade.TradeAction action = "UP".equals(betDir)
                 ? Trade.TradeAction.BUY_YES : Trade.TradeAction.BUY_NO;
@@ -749,57 +853,48 @@ public class OddsGapScanner {
         tradingService.broadcast(String.format(
                 "🔍순방향 [%s][%s] %s | 가격%+.2f%% | 갭%.1f%% | EV%+.1f%% | $%.2f | %d초 | 모멘텀%.0f%% | 승률%.0f%%",
                 coin, timeframe, dir, priceDiffPct,
-                avgGap * 100, evResult.bestEv() * 100, betAmount, newCount,
-                absMomentum * 100, recentWinRate * 100));
+                avgGap * 100, depthEv.bestEv() * 100, betAmount, newCount,
+                absMomentum * 100, recentWinRate(coin, timeframe) * 100));
 
-        addScanLog(coin, timeframe, "✅ 배팅!",
-                String.format("%s $%.2f EV%+.1f%%", dir, betAmount, evResult.bestEv() * 100));
+        scanEvents.add(ScanEventRing.Stage.BET, st.coinIdx, st.tf, action == Trade.TradeAction.BUY_YES ? 1 : -1, 0, 0,
+                betAmount, depthEv.bestEv() * 100, sizing.vwap() * 100, 0);
 
-        executeTrade(coin, timeframe, action, betAmount, priceDiffPct, odds, evResult,
-                avgGap, estProb, "🔍순방향");
-
-        registerCooldown(coin, timeframe);
-        hourlyTradeCount.merge(coin + "_" + timeframe, 1, Integer::sum);
-        clearStreak(coin, timeframe, "FWD");
+        try {
+            executeTrade(coin, timeframe, action, betAmount, priceDiffPct, odds, depthEv, sizing.vwap(),
+                    sizing.limitPrice(), avgGap, estProb, "🔍순방향", reservation);
+        } catch (RuntimeException e) {
+            riskGate.release(reservation);
+            throw e;
+        }
+        st.fwd.clear();
     }
 
     // =========================================================================
     // 역방향 배팅 (시장 과잉반응)
     // =========================================================================
-    private void checkAndTradeRev(String coin, String timeframe, String betDir,
+    private void checkAndTradeRev(TfState st, String betDir,
                                    double gap, double priceDiffPct,
                                    double estProb, double mktOdds,
                                    PolymarketOddsService.MarketOdds odds,
                                    double oddsVelocity) {
-        String key = coin + "_" + timeframe + "_REV";
-        long now = System.currentTimeMillis();
-
-        GapStreak streak = gapStreaks.get(key);
-        if (streak == null || !streak.direction.equals(betDir)) {
-            gapStreaks.put(key, new GapStreak(betDir, "REV", gap, 1, now));
-            return;
-        }
+        String coin = st.coin;
+        String timeframe = st.timeframe;
 
-        double newAvgGap = (streak.avgGap * streak.count + gap) / (streak.count + 1);
-        int newCount = streak.count + 1;
-        gapStreaks.put(key, new GapStreak(betDir, "REV", newAvgGap, newCount, streak.firstSeen));
+        st.rev.update(betDir, gap, System.currentTimeMillis());
+        int newCount = st.rev.count;
+        double newAvgGap = st.rev.avgGap;
 
         // 역방향은 4초 연속
         if (newCount < 4) return;
 
-        if (isOnCooldown(coin, timeframe)) {
-            addScanLog(coin, timeframe, "⏸ 쿨다운",
-                    "5M".equals(timeframe) ? "90초 대기중" : "3분 대기중");
-            return;
-        }
-        if (!checkHourlyLimit(coin + "_" + timeframe, timeframe)) {
-            addScanLog(coin, timeframe, "⏸ 시간한도", "시간당 3건 초과");
+        if (riskGate.isOnCooldown(coin, timeframe)) {
+            addRiskEvent(st, RiskGate.RejectReason.COOLDOWN);
             return;
         }
 
         double balance = balanceService.getBalance();
         if (balance < MIN_BALANCE) {
-            addScanLog(coin, timeframe, "⏸ 잔액부족", String.format("$%.2f", balance));
+            scanEvents.add(ScanEventRing.Stage.LOW_BALANCE, st.coinIdx, st.tf, balance);
             return;
         }
 
@@ -811,14 +906,25 @@ public class OddsGapScanner {
         }
 
         ExpectedValueCalculator.EvResult evResult = evCalculator.calculateReverse(
-                adjustedEstProb, mktOdds, betDir);
-        if (evResult.bestEv() <= 0) {
-            addScanLog(coin, timeframe, "⏸ EV부족", String.format("EV %.1f%%", evResult.bestEv() * 100));
+                coin, adjustedEstProb, mktOdds, betDir);
+        if ("HOLD".equals(evResult.bestAction())) { // EV ≤ 레짐 반영 임계값
+            scanEvents.add(ScanEventRing.Stage.LOW_EV, st.coinIdx, st.tf,
+                    evResult.bestEv() * 100, evResult.threshold() * 100);
             return;
         }
 
-        double betAmount = evCalculator.calcReverseBetSize(balance, evResult.bestEv(), mktOdds);
-        betAmount = Math.max(betAmount, 1.0);
+        // 호가 깊이 반영 (캐시된 오더북 VWAP 기준 EV/Kelly — 네트워크 없음)
+        ExpectedValueCalculator.DepthSizing sizing = evCalculator.sizeWithDepth(
+                "UP".equals(betDir) ? odds.yesTokenId() : odds.noTokenId(), balance, evResult, mktOdds, true);
+        if (!passesDepthChecks(st, evResult, sizing)) return;
+        double betAmount = sizing.betAmount();
+        ExpectedValueCalculator.EvResult depthEv = sizing.applyTo(evResult); // 저장/로그는 VWAP 기준
+
+        RiskGate.Reservation reservation = riskGate.tryReserve(coin, timeframe, betAmount);
+        if (!reservation.ok()) {
+            addRiskEvent(st, reservation.rejected());
+            return;
+        }
 
         Trade.TradeAction action = "UP".equals(betDir)
                 ? Trade.TradeAction.BUY_YES : Trade.TradeAction.BUY_NO;
@@ -832,28 +938,30 @@ public class OddsGapScanner {
                 "🔄역방향 [%s][%s] %s | 가격%+.2f%% | 갭%.1f%% | 추정%.0f%% vs 오즈%.0f¢ | EV%+.1f%% | $%.2f | %d초%s",
                 coin, timeframe, dir, priceDiffPct,
                 newAvgGap * 100, adjustedEstProb * 100, mktOdds * 100,
-                evResult.bestEv() * 100, betAmount, newCount, oddsVelStr));
+                depthEv.bestEv() * 100, betAmount, newCount, oddsVelStr));
 
-        executeTrade(coin, timeframe, action, betAmount, priceDiffPct, odds, evResult,
-                newAvgGap, adjustedEstProb, "🔄역방향");
+        scanEvents.add(ScanEventRing.Stage.BET, st.coinIdx, st.tf, action == Trade.TradeAction.BUY_YES ? 1 : -1, 0, 0,
+                betAmount, depthEv.bestEv() * 100, sizing.vwap() * 100, 0);
 
-        registerCooldown(coin, timeframe);
-        hourlyTradeCount.merge(coin + "_" + timeframe, 1, Integer::sum);
-        clearStreak(coin, timeframe, "REV");
+        try {
+            executeTrade(coin, timeframe, action, betAmount, priceDiffPct, odds, depthEv, sizing.vwap(),
+                    sizing.limitPrice(), newAvgGap, adjustedEstProb, "🔄역방향", reservation);
+        } catch (RuntimeException e) {
+            riskGate.release(reservation);
+            throw e;
+        }
+        st.rev.clear();
     }
 
     // =========================================================================
     // 가격 변동 → 확률 추정 V4 (속도 + 일관성 + 시간)
     // =========================================================================
-    private double estimateProbFromPriceMove(double changePct, String timeframe,
+    private double estimateProbFromPriceMove(String coin, double changePct, String timeframe,
                                               double velocity, double momentumScore) {
         double absPct = Math.abs(changePct);
         boolean is5m = "5M".equals(timeframe);
         boolean is15m = "15M".equals(timeframe);
 
-        double timeBonus = getTimeBonus(timeframe);
-        double tfBonus = is5m ? 0.05 : is15m ? 0.03 : 0.0;
-
         // 속도 보너스
         double velocityBonus = 0.0;
         double absVelocity = Math.abs(velocity);
@@ -872,6 +980,16 @@ public class OddsGapScanner {
         else if (absMomentum >= 0.6) momentumBonus = 0.02; // 6/10+
         else if (absMomentum < 0.3) momentumBonus = -0.02; // 혼재 → 페널티
 
+        // ⭐ 확률 곡면 우선: 변동폭·경과시간·타임프레임·변동성은 과거 결과로 보정된 값 사용
+        // (기존 계단표/시간·TF 보너스 대체, 곡면에 없는 속도·모멘텀 보너스만 가산)
+        double surfaceProb = probabilitySurface.lookup(coin, timeframe, absPct);
+        if (!Double.isNaN(surfaceProb)) {
+            return Math.min(Math.max(surfaceProb + velocityBonus + momentumBonus, 0.50), 0.92);
+        }
+
+        // 곡면 미빌드 시 기존 계단표 fallback
+        double timeBonus = getTimeBonus(timeframe);
+        double tfBonus = is5m ? 0.05 : is15m ? 0.03 : 0.0;
         double bonus = tfBonus + timeBonus + velocityBonus + momentumBonus;
 
         double baseProb;
@@ -891,20 +1009,21 @@ public class OddsGapScanner {
     // =========================================================================
     // 가격 속도 추적 (%/초)
     // =========================================================================
-    private double trackVelocity(String coin, double currentPrice) {
-        double[] prev = priceVelocity.get(coin);
+    private double trackVelocity(CoinState cs, double currentPrice) {
         long now = System.currentTimeMillis();
 
-        if (prev == null) {
-            priceVelocity.put(coin, new double[]{currentPrice, now});
+        if (!cs.hasVelocity) {
+            cs.hasVelocity = true;
+            cs.velocityPrice = currentPrice;
+            cs.velocityTime = now;
             return 0.0;
         }
 
-        double prevPrice = prev[0];
-        double prevTime = prev[1];
-        double elapsed = (now - prevTime) / 1000.0;
+        double prevPrice = cs.velocityPrice;
+        double elapsed = (now - cs.velocityTime) / 1000.0;
 
-        priceVelocity.put(coin, new double[]{currentPrice, now});
+        cs.velocityPrice = currentPrice;
+        cs.velocityTime = now;
 
         if (elapsed <= 0 || prevPrice <= 0) return 0.0;
         return ((currentPrice - prevPrice) / prevPrice * 100) / elapsed;
@@ -914,9 +1033,10 @@ public class OddsGapScanner {
     // 캔들 포지션 판단
     // =========================================================================
     private int getCandlePosition(String timeframe) {
-        ZonedDateTime nowET = ZonedDateTime.now(ZoneId.of("America/New_York"));
-        int minute = nowET.getMinute();
-        int second = nowET.getSecond();
+        // ET 분/초 = UTC 분/초 (정시 단위 오프셋) → epoch 연산으로 할당 없이
+        long nowSec = System.currentTimeMillis() / 1000;
+        int minute = (int) (nowSec / 60 % 60);
+        int second = (int) (nowSec % 60);
 
         if ("5M".equals(timeframe)) {
             int elapsed = (minute % 5) * 60 + second;
@@ -955,8 +1075,7 @@ public class OddsGapScanner {
     }
 
     private double getTimeBonus(String timeframe) {
-        ZonedDateTime nowET = ZonedDateTime.now(ZoneId.of("America/New_York"));
-        int minute = nowET.getMinute();
+        int minute = (int) (System.currentTimeMillis() / 60_000 % 60);
 
         if ("5M".equals(timeframe)) {
             int elapsed = minute % 5;
@@ -984,127 +1103,128 @@ public class OddsGapScanner {
     // =========================================================================
     // 유틸
     // =========================================================================
-    private boolean checkHourlyLimit(String cooldownKey, String timeframe) {
-        long now = System.currentTimeMillis();
-        int currentHour = (int)(now / 3_600_000);
-        if (currentHour != lastHour) {
-            lastHour = currentHour;
-            hourlyTradeCount.clear();
+    /**
+     * 호가 깊이 반영 후 재검증 — 호가창을 쓴 경우 VWAP 기준 EV도 같은 EV 임계값을 넘어야 하고,
+     * 체결 가능 금액이 최소 주문($1) 미만이면 스킵 (최소액으로 올려 호가 한도를 넘지 않음)
+     * 호가 미캐시면 sizing.ev() = bestEv → 호출 전 HOLD 게이트에서 이미 검증됨 (재검사 안 함)
+     */
+    private boolean passesDepthChecks(TfState st, ExpectedValueCalculator.EvResult evResult,
+                                      ExpectedValueCalculator.DepthSizing sizing) {
+        if (sizing.bookUsed() && sizing.ev() <= evResult.threshold()) {
+            scanEvents.add(ScanEventRing.Stage.LOW_EV, st.coinIdx, st.tf,
+                    sizing.ev() * 100, evResult.threshold() * 100);
+            return false;
         }
-        // ⭐ V5.3: 15M은 시간당 1건 (1H 패턴: 선별적 진입, 현재 3건→거의 매캔들 배팅 방지)
-        int limit = "5M".equals(timeframe) ? MAX_TRADES_PER_COIN_PER_HOUR_5M
-                  : "15M".equals(timeframe) ? 1
-                  : MAX_TRADES_PER_COIN_PER_HOUR;
-        return hourlyTradeCount.getOrDefault(cooldownKey, 0) < limit;
+        if (sizing.betAmount() < ExpectedValueCalculator.MIN_BET) {
+            scanEvents.add(ScanEventRing.Stage.THIN_BOOK, st.coinIdx, st.tf,
+                    sizing.betAmount(), ExpectedValueCalculator.MIN_BET);
+            return false;
+        }
+        return true;
     }
 
-    private void updateSnapshot(String coin, String timeframe, double priceDiffPct,
-                                 double estProb, double mktOdds, double gap,
-                                 double revEstProb, PolymarketOddsService.MarketOdds odds) {
-        String key = coin + "_" + timeframe;
-        latestGaps.put(key, new GapSnapshot(
-                coin, timeframe, priceDiffPct > 0 ? "UP" : "DOWN", priceDiffPct,
-                estProb, mktOdds, gap, 0, System.currentTimeMillis(),
-                "", 0, 0, 0, 0));
+    private void addRiskEvent(TfState st, RiskGate.RejectReason reason) {
+        ScanEventRing.Stage stage = switch (reason) {
+            case COOLDOWN -> ScanEventRing.Stage.COOLDOWN;
+            case HOURLY_LIMIT -> ScanEventRing.Stage.HOURLY_LIMIT;
+            case MARKET_EXPOSURE, TOTAL_EXPOSURE -> ScanEventRing.Stage.EXPOSURE_LIMIT;
+            case UNKNOWN_MARKET -> ScanEventRing.Stage.UNSUPPORTED;
+        };
+        scanEvents.add(stage, st.coinIdx, st.tf, 0, reason.ordinal(), 0, 0, 0, 0, 0);
     }
 
-    private void updateSnapshot(String coin, String timeframe, double priceDiffPct,
+    private void updateSnapshot(TfState st, double priceDiffPct,
                                  double estProb, double fwdMktOdds, double fwdGap,
                                  double revEstProb, double revMktOdds, double revGap,
                                  String priceDir, String reverseDir,
                                  PolymarketOddsService.MarketOdds odds) {
-        String key = coin + "_" + timeframe;
-        String fwdKey = key + "_FWD";
-        String revKey = key + "_REV";
-        int fwdStreak = gapStreaks.containsKey(fwdKey) ? gapStreaks.get(fwdKey).count : 0;
-        int revStreak = gapStreaks.containsKey(revKey) ? gapStreaks.get(revKey).count : 0;
-
-        latestGaps.put(key, new GapSnapshot(
-                coin, timeframe, priceDir, priceDiffPct,
-                estProb, fwdMktOdds, fwdGap, fwdStreak, System.currentTimeMillis(),
-                reverseDir, revEstProb, revMktOdds, revGap, revStreak));
+        st.snapshot(priceDiffPct, estProb, fwdMktOdds, fwdGap,
+                revEstProb, revMktOdds, revGap, priceDir, reverseDir, System.currentTimeMillis());
     }
 
     private void updateOpenPrices() {
-        ZonedDateTime nowET = ZonedDateTime.now(ZoneId.of("America/New_York"));
-        int currentHour = nowET.getHour();
-        int current15mWindow = nowET.getMinute() / 15;
-        int current5mWindow = nowET.getMinute() / 5;
+        long now = System.currentTimeMillis();
+        long currentHour = now / 3_600_000;
+        long current15mWindow = now / 900_000;
+        long current5mWindow = now / 300_000;
 
         if (currentHour != lastOpenHour) {
             lastOpenHour = currentHour;
-            for (CoinConfig.CoinDef coin : CoinConfig.ACTIVE_COINS) {
+            for (TfState[] row : tfStates) {
+                TfState st = row[TF_1H];
                 // ⭐ V5.1: 1H도 Binance API 우선 (WebSocket 가격은 이전 캔들 종가일 수 있음)
-                double apiOpen = fetchCandleOpen(coin.label(), "1h");
+                double apiOpen = fetchCandleOpen(st.coin, "1h");
                 if (apiOpen > 0) {
-                    hourOpenPrices.put(coin.label(), apiOpen);
+                    st.openPrice = apiOpen;
                 } else {
                     // API 실패 시 WebSocket fallback
-                    double price = priceMonitor.getPrice(coin.label());
-                    if (price > 0) hourOpenPrices.put(coin.label(), price);
-                    log.warn("[{}] 1H Binance API 실패 → WebSocket fallback: {}", coin.label(), price);
+                    double price = priceMonitor.getPrice(st.coin);
+                    if (price > 0) st.openPrice = price;
+                    log.warn("[{}] 1H Binance API 실패 → WebSocket fallback: {}", st.coin, price);
                 }
-                crossCounters.remove(coin.label() + "_1H");
-                priceRange.remove(coin.label() + "_1H");
+                st.resetCandle();
             }
-            log.info("⏰ 1H 시초가 갱신 (API): {}", hourOpenPrices);
+            log.info("⏰ 1H 시초가 갱신 (API): {}", formatOpenPrices(TF_1H));
         }
 
         if (current15mWindow != lastOpen15mWindow) {
             lastOpen15mWindow = current15mWindow;
-            for (CoinConfig.CoinDef coin : CoinConfig.ACTIVE_COINS) {
+            for (TfState[] row : tfStates) {
+                TfState st = row[TF_15M];
                 // ⭐ V5.1: Binance API 우선 (정확한 캔들 시가)
-                double apiOpen = fetchCandleOpen(coin.label(), "15m");
+                double apiOpen = fetchCandleOpen(st.coin, "15m");
                 if (apiOpen > 0) {
-                    min15OpenPrices.put(coin.label(), apiOpen);
+                    st.openPrice = apiOpen;
                 } else {
-                    double price = priceMonitor.getPrice(coin.label());
-                    if (price > 0) min15OpenPrices.put(coin.label(), price);
-                    log.warn("[{}] 15M Binance API 실패 → WebSocket fallback: {}", coin.label(), price);
+                    double price = priceMonitor.getPrice(st.coin);
+                    if (price > 0) st.openPrice = price;
+                    log.warn("[{}] 15M Binance API 실패 → WebSocket fallback: {}", st.coin, price);
                 }
-                crossCounters.remove(coin.label() + "_15M");
-                priceRange.remove(coin.label() + "_15M");
+                st.resetCandle();
             }
-            log.info("⏰ 15M 시초가 갱신 (Binance fallback, Chainlink 우선): {}", min15OpenPrices);
+            log.info("⏰ 15M 시초가 갱신 (Binance fallback, Chainlink 우선): {}", formatOpenPrices(TF_15M));
         }
 
         if (current5mWindow != lastOpen5mWindow) {
             lastOpen5mWindow = current5mWindow;
-            for (CoinConfig.CoinDef coin : CoinConfig.ACTIVE_COINS) {
+            for (TfState[] row : tfStates) {
+                TfState st = row[TF_5M];
                 // ⭐ V5.1: Binance API 우선 (정확한 캔들 시가)
-                double apiOpen = fetchCandleOpen(coin.label(), "5m");
+                double apiOpen = fetchCandleOpen(st.coin, "5m");
                 if (apiOpen > 0) {
-                    min5OpenPrices.put(coin.label(), apiOpen);
+                    st.openPrice = apiOpen;
                 } else {
-                    double price = priceMonitor.getPrice(coin.label());
-                    if (price > 0) min5OpenPrices.put(coin.label(), price);
-                    log.warn("[{}] 5M Binance API 실패 → WebSocket fallback: {}", coin.label(), price);
+                    double price = priceMonitor.getPrice(st.coin);
+                    if (price > 0) st.openPrice = price;
+                    log.warn("[{}] 5M Binance API 실패 → WebSocket fallback: {}", st.coin, price);
                 }
-                crossCounters.remove(coin.label() + "_5M");
-                priceRange.remove(coin.label() + "_5M");
+                st.resetCandle();
             }
-            log.info("⏰ 5M 시초가 갱신 (Binance fallback, Chainlink 우선): {}", min5OpenPrices);
+            log.info("⏰ 5M 시초가 갱신 (Binance fallback, Chainlink 우선): {}", formatOpenPrices(TF_5M));
         }
     }
 
-    private void clearStreak(String coin, String timeframe, String type) {
-        gapStreaks.remove(coin + "_" + timeframe + "_" + type);
-    }
-
     // =========================================================================
     // 트레이드 실행
     // =========================================================================
+    /**
+     * @param evResult 호가 깊이 반영 EV (VWAP 기준)
+     * @param fillOdds 예상 평균 체결가 (VWAP, 호가 없으면 최우선 호가) — 트레이드 매수가로 저장
+     * @param limitPrice 주문 지정가 — 사이징이 닿은 가장 깊은 호가 (VWAP로 걸면 상위 호가를 못 먹어 항상 부분체결)
+     * @param reservation 리스크 게이트 예약 (시뮬 미체결/부분체결 시 TradingService가 반환·축소)
+     */
     private void executeTrade(String coin, String timeframe, Trade.TradeAction action,
                               double betAmount, double priceDiffPct,
                               PolymarketOddsService.MarketOdds odds,
-                              ExpectedValueCalculator.EvResult evResult,
-                              double gap, double estimatedProb, String label) {
+                              ExpectedValueCalculator.EvResult evResult, double fillOdds, double limitPrice,
+                              double gap, double estimatedProb, String label,
+                              RiskGate.Reservation reservation) {
 
         double mktOdds = action == Trade.TradeAction.BUY_YES ? odds.upOdds() : odds.downOdds();
 
         String reason = String.format("%s | 가격%+.2f%% | 갭%.1f%%(추정%.0f%% vs 오즈%.0f%%) | EV%+.1f%% | 승률%.0f%%",
                 label, priceDiffPct, gap * 100, estimatedProb * 100, mktOdds * 100,
-                evResult.bestEv() * 100, recentWinRate * 100);
+                evResult.bestEv() * 100, recentWinRate(coin, timeframe) * 100);
 
         TradeDecision decision = TradeDecision.builder()
                 .action(action)
@@ -1118,45 +1238,25 @@ public class OddsGapScanner {
                 .timeframe(timeframe)
                 .build();
 
-        // 실제 마켓 지표 수집 (API 실패 시 기본값 fallback)
-        MarketIndicators indicators;
-        try {
-            indicators = marketDataService.collect(coin);
-            // 캐시된 시초가로 덮어쓰기 (collect가 별도로 조회할 수 있으므로)
-            indicators.setCoinPrice(priceMonitor.getPrice(coin));
-            indicators.setCoinHourOpen(hourOpenPrices.getOrDefault(coin, 0.0));
-            // ⭐ V5.2: 15M/5M은 Chainlink 시초가 우선
-            double cl15m = chainlinkPriceService.get15mOpen(coin);
-            double cl5m = chainlinkPriceService.get5mOpen(coin);
-            indicators.setCoin15mOpen(cl15m > 0 ? cl15m : min15OpenPrices.getOrDefault(coin, 0.0));
-            indicators.setCoin5mOpen(cl5m > 0 ? cl5m : min5OpenPrices.getOrDefault(coin, 0.0));
-            indicators.setBtcPrice(priceMonitor.getPrice("BTC"));
-            indicators.setEthPrice(priceMonitor.getPrice("ETH"));
-            indicators.setTrend("GAP_SCAN_V5");
-            log.info("[{}] 마켓지표 수집 완료: FR={}, OI변화={}%, FearGreed={}",
-                    coin, indicators.getFundingRate(), indicators.getOpenInterestChange(), indicators.getFearGreedIndex());
-        } catch (Exception e) {
-            log.warn("[{}] 마켓지표 수집 실패, 기본값 사용: {}", coin, e.getMessage());
-            indicators = MarketIndicators.builder()
-                    .targetCoin(coin)
-                    .coinPrice(priceMonitor.getPrice(coin))
-                    .coinHourOpen(hourOpenPrices.getOrDefault(coin, 0.0))
-                    .coin15mOpen(chainlinkPriceService.get15mOpen(coin) > 0
-                            ? chainlinkPriceService.get15mOpen(coin)
-                            : min15OpenPrices.getOrDefault(coin, 0.0))
-                    .coin5mOpen(chainlinkPriceService.get5mOpen(coin) > 0
-                            ? chainlinkPriceService.get5mOpen(coin)
-                            : min5OpenPrices.getOrDefault(coin, 0.0))
-                    .btcPrice(priceMonitor.getPrice("BTC"))
-                    .ethPrice(priceMonitor.getPrice("ETH"))
-                    .btcChange1h(0).ethChange1h(0).ethChange4h(0).ethChange24h(0)
-                    .btcChange4h(0).btcChange24h(0)
-                    .fundingRate(0).openInterestChange(0)
-                    .fearGreedIndex(0).fearGreedLabel("N/A")
-                    .trend("GAP_SCAN_V5")
-                    .build();
-        }
+        // ⭐ 2단계 저장: 스캐너가 이미 가진 로컬 데이터만으로 즉시 커밋
+        // 펀딩비/OI/공포탐욕 등 패턴 분석용 지표는 TradingService가 저장 후 비동기로 보강
+        PriceSnapshot chainlink = chainlinkPriceService.getSnapshot(coin);
+        double cl15m = chainlink.open15m();
+        double cl5m = chainlink.open5m();
+        MarketIndicators indicators = MarketIndicators.builder()
+                .targetCoin(coin)
+                .coinPrice(priceMonitor.getPrice(coin))
+                .coinHourOpen(getOpenPrice(coin, TF_1H))
+                // ⭐ V5.2: 15M/5M은 Chainlink 시초가 우선
+                .coin15mOpen(cl15m > 0 ? cl15m : getOpenPrice(coin, TF_15M))
+                .coin5mOpen(cl5m > 0 ? cl5m : getOpenPrice(coin, TF_5M))
+                .btcPrice(priceMonitor.getPrice("BTC"))
+                .ethPrice(priceMonitor.getPrice("ETH"))
+                .fearGreedLabel("N/A")
+                .trend("GAP_SCAN_V5")
+                .build();
 
-        tradingService.saveAndDeductLagTrade(decision, indicators, odds, evResult, betAmount, coin, timeframe);
+        tradingService.saveAndDeductLagTrade(decision, indicators, odds, evResult, fillOdds, limitPrice, betAmount, coin, timeframe,
+                reservation);
     }
 }
@@ -1,6 +1,7 @@
 package com.example.poly_bug.service;
 
 import com.example.poly_bug.config.CoinConfig;
+import com.example.poly_bug.dto.DashboardEvent;
 import com.example.poly_bug.dto.MarketIndicators;
 import com.example.poly_bug.dto.TradeDecision;
 import com.example.poly_bug.entity.Trade;
@@ -14,6 +15,10 @@ import org.springframework.stereotype.Service;
 
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * ⚡ 오즈 지연 감지기 (Odds Lag Detector) — 속도 최적화판
@@ -26,6 +31,7 @@ import java.util.concurrent.*;
  * 핵심 최적화:
  *   1. 오즈 백그라운드 폴링 (3초마다) → 스파이크 시 HTTP 콜 없음
  *   2. 비동기 핸들러 → WebSocket 스레드 블로킹 없음
+ *      (코인별 최신 스파이크 1건만 대기 — 밀린 옛 스파이크는 새 것으로 교체)
  *   3. 스파이크 디바운스 → 같은 방향 중복 트리거 방지
  *   4. Claude 호출 없음 → 순수 수학
  */
@@ -39,6 +45,7 @@ public class OddsLagDetector {
     private final TradingService tradingService;
     private final BalanceService balanceService;
     private final ExpectedValueCalculator evCalculator;
+    private final RiskGate riskGate;
 
     @Value("${trading.dry-run}")
     private boolean dryRun;
@@ -46,19 +53,33 @@ public class OddsLagDetector {
     // === 속도 최적화: 비동기 처리용 스레드풀 ===
     private final ExecutorService spikeExecutor = Executors.newFixedThreadPool(2);
 
+    // === 스파이크 코얼레싱: 코인당 대기 슬롯 1개 (latest-wins) ===
+    // 큐에는 코인당 드레인 작업이 최대 1개 → 큐 길이 ≤ 코인 수
+    private final Map<String, SpikeSlot> spikeSlots = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingSpikes = new AtomicInteger();
+    private final AtomicLong spikesReceived = new AtomicLong();
+    private final AtomicLong spikesCoalesced = new AtomicLong();   // 처리 전 새 스파이크로 교체됨
+    private final AtomicLong spikesProcessed = new AtomicLong();
+
+    private static final class SpikeSlot {
+        final AtomicReference<PriceSpike> latest = new AtomicReference<>();
+        final AtomicBoolean draining = new AtomicBoolean();
+    }
+
+    /**
+     * 스파이크 디스패치 통계
+     * @param pending   처리 대기 중인 스파이크 수 (코인당 최대 1)
+     * @param coalesced 처리되기 전에 더 최신 스파이크로 교체되어 버려진 수
+     */
+    public record SpikeDispatchStats(int pending, long received, long coalesced, long processed) {}
+
     // === 속도 최적화: 오즈 백그라운드 캐시 (3초마다 갱신) ===
     private final ScheduledExecutorService oddsPollExecutor = Executors.newSingleThreadScheduledExecutor();
     private final Map<String, PolymarketOddsService.MarketOdds> cachedOdds1h = new ConcurrentHashMap<>();
     private final Map<String, PolymarketOddsService.MarketOdds> cachedOdds15m = new ConcurrentHashMap<>();
     private volatile long lastOddsPollTime = 0;
 
-    // === 쿨다운 & 제한 ===
-    private final Map<String, Long> lastTradeTime = new ConcurrentHashMap<>();
-    private static final long COOLDOWN_MS = 60_000; // 같은 코인 60초 쿨다운
-
-    private final Map<String, Integer> hourlyTradeCount = new ConcurrentHashMap<>();
-    private volatile int lastHour = -1;
-    private static final int MAX_TRADES_PER_HOUR = 3;
+    // === 쿨다운 & 시간당 한도 & 노출 한도: RiskGate (GapScanner와 공유) ===
 
     // === 스파이크 디바운스: 같은 방향 연속 트리거 방지 ===
     private final Map<String, String> lastSpikeDirection = new ConcurrentHashMap<>();
@@ -80,8 +101,8 @@ public class OddsLagDetector {
                 .map(CoinConfig.CoinDef::label)
                 .reduce((a, b) -> a + ", " + b)
                 .orElse("");
-        log.info("⚡ 오즈 지연 감지기 활성화 | 코인: [{}] | 최소 갭: {}% | 쿨다운: {}초 | 시간당 최대: {}건",
-                coinList, (int)(MIN_ODDS_GAP * 100), COOLDOWN_MS / 1000, MAX_TRADES_PER_HOUR);
+        log.info("⚡ 오즈 지연 감지기 활성화 | 코인: [{}] | 최소 갭: {}% | 쿨다운/한도: RiskGate 공유",
+                coinList, (int)(MIN_ODDS_GAP * 100));
     }
 
     @PreDestroy
@@ -119,8 +140,46 @@ public class OddsLagDetector {
     // 스파이크 콜백 (WebSocket 스레드 → 비동기 전환)
     // =========================================================================
     private void onPriceSpikeAsync(String coin, PriceSpike spike) {
-        // WebSocket 스레드 블로킹 방지: 즉시 비동기 전환
-        spikeExecutor.submit(() -> handleSpike(coin, spike));
+        // WebSocket 스레드 블로킹 방지: 슬롯 교체 O(1) 후 즉시 반환
+        spikesReceived.incrementAndGet();
+        SpikeSlot slot = spikeSlots.computeIfAbsent(coin, k -> new SpikeSlot());
+        if (slot.latest.getAndSet(spike) != null) {
+            spikesCoalesced.incrementAndGet(); // 아직 처리 안 된 옛 스파이크 → 최신으로 대체
+        } else {
+            pendingSpikes.incrementAndGet();
+        }
+        scheduleDrain(coin, slot);
+    }
+
+    /** 코인당 드레인 작업 1개만 실행/대기 (같은 코인 동시 처리 없음) */
+    private void scheduleDrain(String coin, SpikeSlot slot) {
+        if (!slot.draining.compareAndSet(false, true)) return;
+        try {
+            spikeExecutor.execute(() -> drainSpikes(coin, slot));
+        } catch (RejectedExecutionException e) {
+            slot.draining.set(false); // 종료 중
+        }
+    }
+
+    private void drainSpikes(String coin, SpikeSlot slot) {
+        try {
+            PriceSpike spike;
+            while ((spike = slot.latest.getAndSet(null)) != null) {
+                pendingSpikes.decrementAndGet();
+                spikesProcessed.incrementAndGet();
+                handleSpike(coin, spike);
+            }
+        } finally {
+            slot.draining.set(false);
+            // 플래그 해제 직전에 들어온 스파이크 재스케줄
+            if (slot.latest.get() != null) scheduleDrain(coin, slot);
+        }
+    }
+
+    /** pending = 현재 대기 중인 스파이크 수 (코인당 최대 1) */
+    public SpikeDispatchStats getSpikeDispatchStats() {
+        return new SpikeDispatchStats(pendingSpikes.get(), spikesReceived.get(),
+                spikesCoalesced.get(), spikesProcessed.get());
     }
 
     // =========================================================================
@@ -143,21 +202,11 @@ public class OddsLagDetector {
             lastSpikeDirection.put(coin, direction);
             lastSpikeTime.put(coin, startTime);
 
-            // 2. 시간당 카운트
-            int currentHour = (int)(startTime / 3_600_000);
-            if (currentHour != lastHour) {
-                lastHour = currentHour;
-                hourlyTradeCount.clear();
-            }
-            if (hourlyTradeCount.getOrDefault(coin, 0) >= MAX_TRADES_PER_HOUR) return;
-
-            // 3. 쿨다운 (⭐ 공유 쿨다운 체크 — GapScanner와 이중배팅 방지)
-            if (OddsGapScanner.isOnCooldown(coin, "1H")
-                    && OddsGapScanner.isOnCooldown(coin, "15M")) {
+            // 2~3. 쿨다운 사전 필터 (⭐ 공유 쿨다운 — 최종 판정은 배팅 직전 tryReserve)
+            if (riskGate.isOnCooldown(coin, "1H")
+                    && riskGate.isOnCooldown(coin, "15M")) {
                 return; // 두 타임프레임 모두 쿨다운이면 스킵
             }
-            Long lastTrade = lastTradeTime.get(coin);
-            if (lastTrade != null && (startTime - lastTrade) < COOLDOWN_MS) return;
 
             // 4. 잔액
             double balance = balanceService.getBalance();
@@ -208,10 +257,12 @@ public class OddsLagDetector {
 
             // 7. EV 계산
             ExpectedValueCalculator.EvResult evResult = evCalculator.calculateMomentum(
-                    estimatedProb, marketOdds, direction);
+                    coin, estimatedProb, marketOdds, direction);
 
-            if (evResult.bestEv() <= 0) {
-                tradingService.broadcast(String.format("⏸️ [%s] EV 부족: %+.1f%%", coin, evResult.bestEv() * 100));
+            String timeframe = resolveTimeframe(coin, odds);
+            if ("HOLD".equals(evResult.bestAction())) { // EV ≤ 레짐 반영 임계값
+                log.info("⏸️ [{}][{}] EV 부족: {} (임계값 {})", coin, timeframe, evResult.bestEv(), evResult.threshold());
+                tradingService.publish(DashboardEvent.evSkip(coin, timeframe, evResult.bestEv(), evResult.threshold()));
                 return;
             }
 
@@ -219,6 +270,15 @@ public class OddsLagDetector {
             double betAmount = evCalculator.calcBetSize(balance, evResult.bestEv(), marketOdds);
             betAmount = Math.max(betAmount, 1.0);
 
+            // ⭐ 쿨다운 + 시간당 한도 + 노출 한도 원자적 예약 (GapScanner와 이중배팅 방지)
+            RiskGate.Reservation reservation = riskGate.tryReserve(coin, timeframe, betAmount);
+            if (!reservation.ok()) {
+                String detail = RiskGate.describe(reservation.rejected(), timeframe);
+                log.info("🚧 [{}][{}] 리스크 게이트 거절: {}", coin, timeframe, detail);
+                tradingService.publish(DashboardEvent.riskReject(coin, timeframe, reservation.rejected().name(), detail));
+                return;
+            }
+
             Trade.TradeAction action = "UP".equals(direction)
                     ? Trade.TradeAction.BUY_YES : Trade.TradeAction.BUY_NO;
             String dir = action == Trade.TradeAction.BUY_YES ? "UP ⬆️" : "DOWN ⬇️";
@@ -233,21 +293,23 @@ public class OddsLagDetector {
                         coin, dir, betAmount, evResult.bestEv() * 100));
             }
 
-            // 9. 저장 & 실행
-            executeLagTrade(coin, action, betAmount, spike, odds, evResult, oddsGap, estimatedProb);
+            // 9. 저장 & 실행 (실패 시 예약 반환)
+            try {
+                executeLagTrade(coin, timeframe, action, betAmount, spike, odds, evResult, oddsGap, estimatedProb,
+                        reservation);
+            } catch (RuntimeException e) {
+                riskGate.release(reservation);
+                throw e;
+            }
 
-            // 10. 쿨다운 & 카운트 갱신 (⭐ 공유 쿨다운도 등록)
-            lastTradeTime.put(coin, System.currentTimeMillis());
-            hourlyTradeCount.merge(coin, 1, Integer::sum);
-            // GapScanner와 공유: 두 타임프레임 모두 쿨다운 걸기
-            OddsGapScanner.registerCooldown(coin, "1H");
-            OddsGapScanner.registerCooldown(coin, "15M");
+            // 10. GapScanner와 공유: 다른 타임프레임도 쿨다운 걸기
+            riskGate.extendCooldown(coin, "1H".equals(timeframe) ? "15M" : "1H");
 
             long totalLatency = System.currentTimeMillis() - startTime;
             tradingService.broadcast(String.format(
-                    "✅ [%s] 오즈지연 완료 | 총%dms | 잔액:$%.2f | 이번시간:%d/%d건",
-                    coin, totalLatency, balanceService.getBalance(),
-                    hourlyTradeCount.get(coin), MAX_TRADES_PER_HOUR));
+                    "✅ [%s][%s] 오즈지연 완료 | 총%dms | 잔액:$%.2f | 남은한도:%d건",
+                    coin, timeframe, totalLatency, balanceService.getBalance(),
+                    riskGate.getAvailableTokens(coin, timeframe)));
 
         } catch (Exception e) {
             log.error("[{}] 오즈 지연 처리 오류: {}", coin, e.getMessage());
@@ -292,17 +354,17 @@ public class OddsLagDetector {
     /**
      * 트레이드 저장 & 잔액 차감
      */
-    private void executeLagTrade(String coin, Trade.TradeAction action, double betAmount,
+    /** ⭐ 타임프레임: 캐시된 오즈에서 어떤 마켓인지 확인 */
+    private String resolveTimeframe(String coin, PolymarketOddsService.MarketOdds odds) {
+        PolymarketOddsService.MarketOdds odds15m = cachedOdds15m.get(coin);
+        return odds15m != null && odds15m.available() && odds.marketId().equals(odds15m.marketId())
+                ? "15M" : "1H";
+    }
+
+    private void executeLagTrade(String coin, String timeframe, Trade.TradeAction action, double betAmount,
                                   PriceSpike spike, PolymarketOddsService.MarketOdds odds,
                                   ExpectedValueCalculator.EvResult evResult,
-                                  double oddsGap, double estimatedProb) {
-
-        // ⭐ 타임프레임: 캐시된 오즈에서 어떤 마켓인지 확인
-        String timeframe = (cachedOdds15m.containsKey(coin)
-                && cachedOdds15m.get(coin) != null
-                && cachedOdds15m.get(coin).available()
-                && odds.marketId().equals(cachedOdds15m.get(coin).marketId()))
-                ? "15M" : "1H";
+                                  double oddsGap, double estimatedProb, RiskGate.Reservation reservation) {
 
         double mktOdds = action == Trade.TradeAction.BUY_YES ? odds.upOdds() : odds.downOdds();
 
@@ -345,6 +407,7 @@ public class OddsLagDetector {
             indicators.setEthHourOpen(spike.fromPrice());
         }
 
-        tradingService.saveAndDeductLagTrade(decision, indicators, odds, evResult, betAmount, coin, timeframe);
+        tradingService.saveAndDeductLagTrade(decision, indicators, odds, evResult, betAmount, coin, timeframe,
+                reservation);
     }
 }
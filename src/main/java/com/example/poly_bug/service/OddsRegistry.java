@@ -0,0 +1,66 @@
+package com.example.poly_bug.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 📖 읽기 전용 오즈 레지스트리 (대시보드용)
+ *
+ * 기존: /odds/all 요청마다 공용 ForkJoinPool에 12개 supplyAsync → 캐시 만료 시 Gamma/CLOB HTTP 블로킹
+ *       → 대시보드를 여는 것만으로 공용 풀 고갈 + 스캐너와 레이트리밋 경쟁
+ * 변경: 수집 측(PolymarketOddsService)이 조회할 때마다 기록, 대시보드는 여기만 읽음
+ *  - 조회 = ConcurrentHashMap get 1회 (네트워크 I/O/대기 없음)
+ *  - 갱신 시각 포함 → 오래된 오즈는 stale 표시
+ *  - 외부 조회(get) 시각 기록 → 읽는 쪽이 없으면 수집 측 보충 폴링 중단 (내부 재사용은 peek)
+ */
+@Service
+public class OddsRegistry {
+
+    public static final long STALE_MS = 10_000;
+
+    /**
+     * @param odds      마지막 조회 결과
+     * @param updatedAt 조회 시각 (epoch ms)
+     */
+    public record OddsView(PolymarketOddsService.MarketOdds odds, long updatedAt) {
+        public long ageMs() {
+            return System.currentTimeMillis() - updatedAt;
+        }
+
+        public boolean isStale() {
+            return ageMs() > STALE_MS;
+        }
+    }
+
+    // 키: "BTC_15M"
+    private final Map<String, OddsView> latest = new ConcurrentHashMap<>();
+    private volatile long lastReadAt;
+
+    /** 수집 측 전용 — 조회 결과 기록 */
+    void update(String coin, String timeframe, PolymarketOddsService.MarketOdds odds) {
+        if (coin == null || odds == null) return;
+        latest.put(key(coin, timeframe), new OddsView(odds, System.currentTimeMillis()));
+    }
+
+    /** 마지막 조회 결과 (없으면 null) — 대시보드/주문 등 소비자용, 수요로 기록 */
+    public OddsView get(String coin, String timeframe) {
+        lastReadAt = System.currentTimeMillis();
+        return latest.get(key(coin, timeframe));
+    }
+
+    /** 수요로 기록하지 않는 조회 (보충 폴러/오더북 캐시 등 내부 재사용) */
+    OddsView peek(String coin, String timeframe) {
+        return latest.get(key(coin, timeframe));
+    }
+
+    /** 최근 windowMs 안에 외부 소비자가 읽었는지 */
+    public boolean hasReaders(long windowMs) {
+        return System.currentTimeMillis() - lastReadAt <= windowMs;
+    }
+
+    private static String key(String coin, String timeframe) {
+        return coin + "_" + timeframe;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.config.CoinConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 📚 토큰별 오더북 캐시 + VWAP 체결 시뮬레이션
+ *
+ * 기존: EV/Kelly가 최우선 호가(upOdds/downOdds)에 전액 체결된다고 가정
+ *       → 얇은 5M 호가에서 큰 배팅은 여러 호가를 먹으며 체결 → 실현 EV가 훨씬 낮음
+ * 변경:
+ *  1. 백그라운드 스레드가 2초마다 현재 마켓 토큰들의 매도 호가를 일괄 조회 (POST /books 1회)
+ *  2. simulateBuy() = 캐시만 읽어 VWAP / 슬리피지 / 체결 가능 금액 계산 (네트워크 없음)
+ *  3. 오래된 호가(10초+)는 사용 안 함 → 호출자는 최우선 호가 기준으로 폴백
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderBookCache {
+
+    private final OddsRegistry oddsRegistry;
+
+    @Value("${polymarket.base-url:https://clob.polymarket.com}")
+    private String clobUrl;
+
+    private static final String DEFAULT_CLOB = "https://clob.polymarket.com";
+    private static final long REFRESH_MS = 2_000;
+    private static final long MAX_BOOK_AGE_MS = 10_000;
+    private static final String[] TIMEFRAMES = {"1H", "15M", "5M"};
+
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .readTimeout(5, TimeUnit.SECONDS)
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService bookExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * 매도 호가 (가격 오름차순, 불변)
+     * @param askPrices 가격 (0~1)
+     * @param askSizes  수량 (shares)
+     */
+    public record Book(String tokenId, double[] askPrices, double[] askSizes, long updatedAt) {
+        public double bestAsk() {
+            return askPrices.length > 0 ? askPrices[0] : 0;
+        }
+
+        /** 전체 매도 호가 금액 (USDC) */
+        public double askDepthUsdc() {
+            double total = 0;
+            for (int i = 0; i < askPrices.length; i++) total += askPrices[i] * askSizes[i];
+            return total;
+        }
+    }
+
+    /**
+     * 매수 체결 시뮬레이션 결과
+     * @param vwap       평균 체결가
+     * @param filledUsdc 체결 가능 금액 (호가 부족 시 요청액 미만)
+     * @param slippage   vwap - 최우선 매도호가
+     * @param worstPrice 체결에 닿은 가장 깊은 호가 (전량 체결에 필요한 지정가)
+     */
+    public record Fill(double vwap, double filledUsdc, double shares, double slippage, double worstPrice,
+                       boolean complete) {}
+
+    private final Map<String, Book> books = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        bookExecutor.scheduleWithFixedDelay(this::refresh, 3_000, REFRESH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bookExecutor.shutdownNow();
+    }
+
+    /** 최근 호가 (없거나 10초 이상 지났으면 null) */
+    public Book get(String tokenId) {
+        if (tokenId == null) return null;
+        Book book = books.get(tokenId);
+        if (book == null || System.currentTimeMillis() - book.updatedAt() > MAX_BOOK_AGE_MS) return null;
+        return book;
+    }
+
+    /** 호가 직접 기록 (테스트/재생용 — 평소엔 백그라운드 갱신만 씀) */
+    void put(Book book) {
+        books.put(book.tokenId(), book);
+    }
+
+    /**
+     * usdc 만큼 시장가 매수 시 체결 시뮬레이션 (캐시만 사용)
+     * @return 호가 없으면 null
+     */
+    public Fill simulateBuy(String tokenId, double usdc) {
+        Book book = get(tokenId);
+        if (book == null || book.askPrices().length == 0 || usdc <= 0) return null;
+
+        double remaining = usdc;
+        double shares = 0;
+        double worst = 0;
+        double[] prices = book.askPrices();
+        double[] sizes = book.askSizes();
+        for (int i = 0; i < prices.length && remaining > 1e-9; i++) {
+            double levelUsdc = prices[i] * sizes[i];
+            double take = Math.min(levelUsdc, remaining);
+            shares += take / prices[i];
+            remaining -= take;
+            if (take > 0) worst = prices[i];
+        }
+        double filled = usdc - remaining;
+        if (shares <= 0) return null;
+        double vwap = filled / shares;
+        return new Fill(vwap, filled, shares, vwap - book.bestAsk(), worst, remaining <= 1e-9);
+    }
+
+    // =========================================================================
+    // 백그라운드 갱신
+    // =========================================================================
+    private void refresh() {
+        try {
+            Set<String> tokens = activeTokens();
+            if (tokens.isEmpty()) return;
+
+            List<Map<String, String>> request = new ArrayList<>(tokens.size());
+            for (String token : tokens) request.add(Map.of("token_id", token));
+            Request req = new Request.Builder()
+                    .url(booksBaseUrl() + "/books")
+                    .post(RequestBody.create(objectMapper.writeValueAsString(request),
+                            MediaType.get("application/json")))
+                    .build();
+
+            try (Response res = httpClient.newCall(req).execute()) {
+                if (!res.isSuccessful() || res.body() == null) {
+                    log.debug("오더북 조회 실패: {}", res.code());
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                for (JsonNode node : objectMapper.readTree(res.body().string())) {
+                    String tokenId = node.path("asset_id").asText("");
+                    if (!tokenId.isEmpty()) books.put(tokenId, parseAsks(tokenId, node.path("asks"), now));
+                }
+            }
+            books.keySet().retainAll(tokens); // 만료된 마켓 토큰 정리
+        } catch (Exception e) {
+            log.debug("오더북 갱신 오류: {}", e.getMessage());
+        }
+    }
+
+    /** 주문이 시뮬레이터("sim")로 가도 호가는 실제 CLOB에서 재생 */
+    private String booksBaseUrl() {
+        return "sim".equalsIgnoreCase(clobUrl) ? DEFAULT_CLOB : clobUrl;
+    }
+
+    /** 레지스트리에 있는 현재 마켓들의 YES/NO 토큰 */
+    private Set<String> activeTokens() {
+        Set<String> tokens = new HashSet<>();
+        for (CoinConfig.CoinDef coin : CoinConfig.ACTIVE_COINS) {
+            for (String tf : TIMEFRAMES) {
+                OddsRegistry.OddsView view = oddsRegistry.peek(coin.label(), tf);
+                if (view == null || view.isStale() || !view.odds().available()) continue;
+                if (view.odds().yesTokenId() != null) tokens.add(view.odds().yesTokenId());
+                if (view.odds().noTokenId() != null) tokens.add(view.odds().noTokenId());
+            }
+        }
+        return tokens;
+    }
+
+    private static Book parseAsks(String tokenId, JsonNode asks, long now) {
+        int n = asks.size();
+        double[][] levels = new double[n][2];
+        int count = 0;
+        for (JsonNode level : asks) {
+            double price = level.path("price").asDouble(0);
+            double size = level.path("size").asDouble(0);
+            if (price > 0 && size > 0) levels[count++] = new double[]{price, size};
+        }
+        double[][] sorted = Arrays.copyOf(levels, count);
+        Arrays.sort(sorted, Comparator.comparingDouble(l -> l[0]));
+        double[] prices = new double[count];
+        double[] sizes = new double[count];
+        for (int i = 0; i < count; i++) {
+            prices[i] = sorted[i][0];
+            sizes[i] = sorted[i][1];
+        }
+        return new Book(tokenId, prices, sizes, now);
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.poly_bug.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 📨 비동기 주문 파이프라인
+ *
+ * 기존: placeOrder() 동기 호출 (호출 스레드가 서명 + HTTP 대기), non-2xx면 예외,
+ *       nonce = currentTimeMillis (같은 ms 주문 충돌), 보냈지만 응답 못 받은 주문 기록 없음
+ * 변경:
+ *  1. submit() → 주문 티켓 생성 후 즉시 CompletableFuture 반환 (호출 스레드는 바로 진행)
+ *  2. 상태 머신: CREATED → SIGNED → SENT → ACKED/FILLED | REJECTED
+ *  3. 단조 증가 nonce (같은 ms에도 중복 없음)
+ *  4. 멱등 키(결정 단위): 같은 키 재요청은 기존 티켓 반환 (거부된 티켓은 새 주문으로 교체) / 재시도는 같은 서명 본문 재전송
+ *  5. 전송 실패·429·5xx만 최대 3회 재시도 (백오프), 4xx는 즉시 REJECTED
+ *  6. 마켓별 ACK 지연 / 거부율 집계
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderPipeline {
+
+    private final PolymarketOrderService orderService;
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MS = 500;        // 500ms, 1s
+    private static final long TICKET_RETENTION_MS = 3_600_000; // 완료 티켓 1시간 보관 (멱등 키 유효 기간)
+
+    public enum OrderState { CREATED, SIGNED, SENT, ACKED, FILLED, REJECTED;
+        public boolean isTerminal() {
+            return this == ACKED || this == FILLED || this == REJECTED;
+        }
+    }
+
+    /**
+     * 주문 티켓 (상태는 파이프라인 스레드만 변경)
+     */
+    public static final class OrderTicket {
+        private final String idempotencyKey;
+        private final String market;
+        private final String tokenId;
+        private final double amount;
+        private final long createdAt = System.currentTimeMillis();
+        private final CompletableFuture<OrderTicket> future = new CompletableFuture<>();
+        private volatile OrderState state = OrderState.CREATED;
+        private volatile int attempts;
+        private volatile long nonce;
+        private volatile long sentAt;
+        private volatile long completedAt;
+        private volatile String orderId;
+        private volatile String error;
+
+        private OrderTicket(String idempotencyKey, String market, String tokenId, double amount) {
+            this.idempotencyKey = idempotencyKey;
+            this.market = market;
+            this.tokenId = tokenId;
+            this.amount = amount;
+        }
+
+        public String getIdempotencyKey() { return idempotencyKey; }
+        public String getMarket() { return market; }
+        public String getTokenId() { return tokenId; }
+        public double getAmount() { return amount; }
+        public long getCreatedAt() { return createdAt; }
+        public OrderState getState() { return state; }
+        public int getAttempts() { return attempts; }
+        public long getNonce() { return nonce; }
+        public String getOrderId() { return orderId; }
+        public String getError() { return error; }
+
+        /** 첫 전송 → ACK/거부 (ms, 미완료면 -1) */
+        public long getAckLatencyMs() {
+            return sentAt > 0 && completedAt > 0 ? completedAt - sentAt : -1;
+        }
+
+        public boolean isSuccess() {
+            return state == OrderState.ACKED || state == OrderState.FILLED;
+        }
+    }
+
+    /**
+     * 제출 결과
+     * @param duplicate 같은 멱등 키의 진행 중/완료 티켓을 돌려받음 (새 주문 아님 → 호출자는 저장/차감 생략)
+     */
+    public record Submission(OrderTicket ticket, boolean duplicate) {
+        public CompletableFuture<OrderTicket> future() {
+            return ticket.future;
+        }
+    }
+
+    /** 마켓별 집계 */
+    public record MarketOrderStats(long submitted, long acked, long rejected, double avgAckMs, long maxAckMs) {
+        public double rejectRate() {
+            long done = acked + rejected;
+            return done > 0 ? (double) rejected / done : 0;
+        }
+    }
+
+    private static final class MarketCounters {
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong acked = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong ackLatencySum = new AtomicLong();
+        final AtomicLong ackLatencyMax = new AtomicLong();
+    }
+
+    private final Map<String, OrderTicket> tickets = new ConcurrentHashMap<>();
+    private final Map<String, MarketCounters> counters = new ConcurrentHashMap<>();
+    private final AtomicLong lastNonce = new AtomicLong();
+    private final ExecutorService orderExecutor = Executors.newFixedThreadPool(2);
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    public void init() {
+        retryExecutor.scheduleWithFixedDelay(this::evictCompleted, 10, 10, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryExecutor.shutdownNow();
+        orderExecutor.shutdownNow();
+    }
+
+    /**
+     * 결정 1건당 멱등 키 (코인 × TF × 방향 × 결정 ID)
+     * 같은 결정을 다시 제출할 때만 같은 키 — 같은 캔들의 별개 결정은 서로 막지 않음
+     */
+    public static String idempotencyKey(String coin, String timeframe, String action, String decisionId) {
+        return coin + ":" + timeframe + ":" + action + ":" + decisionId;
+    }
+
+    /**
+     * 논블로킹 주문 제출 — 같은 멱등 키의 티켓이 있으면 기존 티켓 반환 (REJECTED면 교체 후 새로 제출)
+     * @param market 집계 단위 (예: "BTC_15M")
+     */
+    public Submission submit(String idempotencyKey, String market, String tokenId,
+                             String side, double amount, OddsRegistry.OddsView quote) {
+        OrderTicket fresh = new OrderTicket(idempotencyKey, market, tokenId, amount);
+        OrderTicket ticket = tickets.compute(idempotencyKey,
+                (k, prev) -> prev == null || prev.state == OrderState.REJECTED ? fresh : prev);
+        if (ticket != fresh) {
+            log.info("♻️ 중복 주문 요청 무시 (멱등 키 {}) → 기존 상태 {}", idempotencyKey, ticket.state);
+            return new Submission(ticket, true);
+        }
+        counters(market).submitted.incrementAndGet();
+        try {
+            orderExecutor.execute(() -> signAndSend(fresh, side, quote));
+        } catch (RejectedExecutionException e) {
+            reject(fresh, "파이프라인 종료됨");
+        }
+        return new Submission(fresh, false);
+    }
+
+    /** 단조 증가 nonce (ms 기반, 같은 ms면 +1) */
+    long nextNonce() {
+        long now = System.currentTimeMillis();
+        return lastNonce.updateAndGet(prev -> Math.max(prev + 1, now));
+    }
+
+    private void signAndSend(OrderTicket ticket, String side, OddsRegistry.OddsView quote) {
+        PolymarketOrderService.SignedOrder order;
+        try {
+            ticket.nonce = nextNonce();
+            order = orderService.sign(ticket.tokenId, side, ticket.amount, quote, ticket.nonce);
+            ticket.state = OrderState.SIGNED;
+        } catch (Exception e) {
+            reject(ticket, "서명 실패: " + e.getMessage());
+            return;
+        }
+        send(ticket, order);
+    }
+
+    private void send(OrderTicket ticket, PolymarketOrderService.SignedOrder order) {
+        ticket.attempts++;
+        if (ticket.sentAt == 0) ticket.sentAt = System.currentTimeMillis();
+        ticket.state = OrderState.SENT;
+        try {
+            PolymarketOrderService.PostResult result = orderService.post(order);
+            if (result.isSuccess()) {
+                ticket.orderId = result.orderId();
+                complete(ticket, "matched".equalsIgnoreCase(result.status()) ? OrderState.FILLED : OrderState.ACKED);
+            } else if (result.isRetryable()) {
+                retryOrReject(ticket, order, "HTTP " + result.code() + ": " + result.body());
+            } else {
+                reject(ticket, "주문 거부 " + result.code() + ": " + result.body());
+            }
+        } catch (IOException e) {
+            // 응답 유실 가능 → 같은 본문 재전송 (같은 주문 해시라 이중 체결 없음)
+            retryOrReject(ticket, order, "전송 실패: " + e.getMessage());
+        } catch (Exception e) {
+            reject(ticket, "주문 오류: " + e.getMessage());
+        }
+    }
+
+    private void retryOrReject(OrderTicket ticket, PolymarketOrderService.SignedOrder order, String error) {
+        if (ticket.attempts >= MAX_ATTEMPTS) {
+            reject(ticket, error + " (" + ticket.attempts + "회 시도)");
+            return;
+        }
+        ticket.error = error;
+        long backoff = RETRY_BACKOFF_MS << (ticket.attempts - 1);
+        log.warn("🔁 주문 재시도 {}/{} ({}ms 후) [{}]: {}", ticket.attempts + 1, MAX_ATTEMPTS, backoff,
+                ticket.idempotencyKey, error);
+        try {
+            retryExecutor.schedule(() -> orderExecutor.execute(() -> send(ticket, order)),
+                    backoff, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            reject(ticket, error);
+        }
+    }
+
+    private void complete(OrderTicket ticket, OrderState state) {
+        ticket.completedAt = System.currentTimeMillis();
+        ticket.state = state;
+        MarketCounters c = counters(ticket.market);
+        c.acked.incrementAndGet();
+        long latency = ticket.getAckLatencyMs();
+        c.ackLatencySum.addAndGet(latency);
+        c.ackLatencyMax.accumulateAndGet(latency, Math::max);
+        log.info("✅ 주문 {} [{}] {} ({}ms, {}회)", state, ticket.market, ticket.orderId, latency, ticket.attempts);
+        ticket.future.complete(ticket);
+    }
+
+    private void reject(OrderTicket ticket, String error) {
+        ticket.completedAt = System.currentTimeMillis();
+        ticket.error = error;
+        ticket.state = OrderState.REJECTED;
+        counters(ticket.market).rejected.incrementAndGet();
+        log.warn("❌ 주문 거부 [{}] {}", ticket.market, error);
+        ticket.future.complete(ticket);
+    }
+
+    private MarketCounters counters(String market) {
+        return counters.computeIfAbsent(market, k -> new MarketCounters());
+    }
+
+    private void evictCompleted() {
+        long cutoff = System.currentTimeMillis() - TICKET_RETENTION_MS;
+        tickets.values().removeIf(t -> t.state.isTerminal() && t.completedAt < cutoff);
+    }
+
+    // =========================================================================
+    // 조회
+    // =========================================================================
+
+    /** 전송했지만 아직 ACK/거부 안 된 주문 */
+    public List<OrderTicket> getInFlight() {
+        List<OrderTicket> inFlight = new ArrayList<>();
+        for (OrderTicket t : tickets.values()) {
+            if (!t.state.isTerminal()) inFlight.add(t);
+        }
+        return inFlight;
+    }
+
+    public Map<String, MarketOrderStats> getStats() {
+        Map<String, MarketOrderStats> stats = new ConcurrentHashMap<>();
+        counters.forEach((market, c) -> {
+            long acked = c.acked.get();
+            stats.put(market, new MarketOrderStats(c.submitted.get(), acked, c.rejected.get(),
+                    acked > 0 ? (double) c.ackLatencySum.get() / acked : 0, c.ackLatencyMax.get()));
+        });
+        return stats;
+    }
+}
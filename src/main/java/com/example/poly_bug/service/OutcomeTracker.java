@@ -0,0 +1,146 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.entity.Trade;
+import com.example.poly_bug.repository.TradeRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 📉 인메모리 승패 이력 (코인별 / 코인 × TF별)
+ *
+ * 기존: 서킷브레이커가 30초마다 코인별 최근 10건 Trade 전체 행(TEXT 컬럼 포함) 조회 → 연패 카운트
+ * 변경: 결과 확정 시점(TradingService.updateTradeResult)에 O(1) 갱신, 조회는 volatile 읽기 1회
+ *  - 최근 64건을 long 비트링으로 보관 (bit0 = 최신, 1 = LOSE)
+ *  - 연패/연승 길이는 갱신 시 같이 계산
+ *  - 패배 리스너 → 서킷브레이커가 30초 지연 없이 즉시 반응
+ *
+ * 시작 시 1회 시드 (전체 행 대신 프로젝션 컬럼만)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OutcomeTracker {
+
+    private final TradeRepository tradeRepository;
+
+    private static final int RING_SIZE = 64;
+    private static final int SEED_LIMIT = 500;
+
+    /**
+     * 승패 이력 스냅샷 (불변)
+     * @param lossBits   최근 결과 비트 (bit0 = 최신, 1 = LOSE)
+     * @param size       보관 건수 (최대 64)
+     * @param lossStreak 현재 연패 (최신부터 연속 LOSE)
+     * @param winStreak  현재 연승
+     */
+    public record Outcomes(long lossBits, int size, int lossStreak, int winStreak) {
+        public int recentLosses(int n) {
+            int k = Math.min(n, size);
+            long mask = k >= 64 ? -1L : (1L << k) - 1;
+            return Long.bitCount(lossBits & mask);
+        }
+
+        Outcomes add(boolean loss) {
+            return new Outcomes((lossBits << 1) | (loss ? 1 : 0), Math.min(size + 1, RING_SIZE),
+                    loss ? lossStreak + 1 : 0, loss ? 0 : winStreak + 1);
+        }
+    }
+
+    private static final Outcomes EMPTY = new Outcomes(0, 0, 0, 0);
+
+    /** 패배 확정 리스너 (결과 확정 스레드에서 동기 호출 — 가벼운 작업만) */
+    @FunctionalInterface
+    public interface LossListener {
+        void onLoss(String coin, String timeframe, int coinLossStreak);
+    }
+
+    // 키: "BTC" (코인 전체) / "BTC_15M" (코인 × TF)
+    private final Map<String, Outcomes> outcomes = new ConcurrentHashMap<>();
+    private final List<LossListener> lossListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    public void onLoss(LossListener listener) {
+        lossListeners.add(listener);
+    }
+
+    /** O(1) — 코인 전체 최근 결과 */
+    public Outcomes get(String coin) {
+        return outcomes.getOrDefault(coin, EMPTY);
+    }
+
+    /** O(1) — 코인 × TF 최근 결과 */
+    public Outcomes get(String coin, String timeframe) {
+        return outcomes.getOrDefault(key(coin, timeframe), EMPTY);
+    }
+
+    public int getLossStreak(String coin) {
+        return get(coin).lossStreak();
+    }
+
+    /**
+     * 결과 확정 반영 (WIN/LOSE만, HOLD/PENDING 무시)
+     */
+    public void record(String coin, String timeframe, Trade.TradeResult result) {
+        if (coin == null || (result != Trade.TradeResult.WIN && result != Trade.TradeResult.LOSE)) return;
+        boolean loss = result == Trade.TradeResult.LOSE;
+        int coinStreak;
+        synchronized (this) {
+            coinStreak = append(coin, timeframe, loss);
+        }
+        if (loss) {
+            for (LossListener listener : lossListeners) {
+                try {
+                    listener.onLoss(coin, normalizeTf(timeframe), coinStreak);
+                } catch (Exception e) {
+                    log.debug("패배 리스너 오류: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * DB에서 다시 시드 (시작 시 + 수동 결과 수정 시)
+     */
+    public synchronized void reload() {
+        try {
+            List<Object[]> rows = tradeRepository.findRecentOutcomes(SEED_LIMIT);
+            outcomes.clear();
+            // 쿼리는 최신순 → 오래된 것부터 누적
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                Object[] row = rows.get(i);
+                append((String) row[0], (String) row[1], row[2] == Trade.TradeResult.LOSE);
+            }
+            log.info("📉 승패 이력 시드 완료 | {}건 | 키 {}개", rows.size(), outcomes.size());
+        } catch (Exception e) {
+            log.warn("승패 이력 시드 실패 (결과 확정 시 누적): {}", e.getMessage());
+        }
+    }
+
+    private int append(String coin, String timeframe, boolean loss) {
+        Outcomes coinOutcomes = outcomes.getOrDefault(coin, EMPTY).add(loss);
+        outcomes.put(coin, coinOutcomes);
+        String tfKey = key(coin, timeframe);
+        outcomes.put(tfKey, outcomes.getOrDefault(tfKey, EMPTY).add(loss));
+        return coinOutcomes.lossStreak();
+    }
+
+    /** 레거시 트레이드(timeframe NULL)는 1H */
+    private static String normalizeTf(String timeframe) {
+        return timeframe != null ? timeframe : "1H";
+    }
+
+    private static String key(String coin, String timeframe) {
+        return coin + "_" + normalizeTf(timeframe);
+    }
+}
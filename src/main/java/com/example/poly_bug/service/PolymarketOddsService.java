@@ -3,6 +3,9 @@ package com.example.poly_bug.service;
 import com.example.poly_bug.config.CoinConfig;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -15,6 +18,8 @@ import java.time.format.TextStyle;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -23,8 +28,11 @@ import java.util.concurrent.TimeUnit;
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class PolymarketOddsService {
 
+    private final OddsRegistry oddsRegistry;
+
     private final OkHttpClient httpClient = new OkHttpClient.Builder()
             .connectTimeout(10, TimeUnit.SECONDS)
             .readTimeout(10, TimeUnit.SECONDS)
@@ -58,6 +66,41 @@ public class PolymarketOddsService {
     private volatile MarketOdds eth5mCache;
     private volatile long eth5mCacheTime;
 
+    // 레지스트리 보충: 스캐너가 건너뛴(변동 부족 등) 마켓만 전용 스레드에서 조회
+    // 레지스트리를 읽는 소비자(대시보드/주문)가 없으면 건너뜀 → 스캐너 자체 조회만으로 신선도 유지
+    private static final long REGISTRY_REFRESH_MS = 5_000;
+    private static final long REGISTRY_DEMAND_WINDOW_MS = OddsRegistry.STALE_MS;
+    private final ScheduledExecutorService registryExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    public void init() {
+        registryExecutor.scheduleWithFixedDelay(this::refreshRegistry, 2, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        registryExecutor.shutdownNow();
+    }
+
+    private void refreshRegistry() {
+        if (!oddsRegistry.hasReaders(REGISTRY_DEMAND_WINDOW_MS)) return;
+        for (CoinConfig.CoinDef coin : CoinConfig.ACTIVE_COINS) {
+            String label = coin.label();
+            try {
+                if (needsRefresh(label, "1H")) getOddsForCoin(label);
+                if (needsRefresh(label, "15M")) getOdds15mForCoin(label);
+                if (needsRefresh(label, "5M")) getOdds5mForCoin(label);
+            } catch (Exception e) {
+                log.debug("[{}] 오즈 레지스트리 보충 실패: {}", label, e.getMessage());
+            }
+        }
+    }
+
+    private boolean needsRefresh(String coin, String timeframe) {
+        OddsRegistry.OddsView view = oddsRegistry.peek(coin, timeframe);
+        return view == null || view.ageMs() > REGISTRY_REFRESH_MS;
+    }
+
     /**
      * 오즈 조회 결과
      */
@@ -68,11 +111,18 @@ public class PolymarketOddsService {
             String slug,         // 사용된 slug
             boolean available,   // 마켓 조회 성공 여부
             String yesTokenId,   // CLOB YES 토큰 ID (주문용)
-            String noTokenId     // CLOB NO 토큰 ID (주문용)
+            String noTokenId,    // CLOB NO 토큰 ID (주문용)
+            boolean clobPriced   // 양쪽 가격 모두 CLOB /price 실측 (Gamma 스냅샷/기본값 아님 → 주문가로 재사용 가능)
     ) {
         /** 하위 호환 생성자 (토큰 ID 없이) */
         public MarketOdds(double upOdds, double downOdds, String marketId, String slug, boolean available) {
-            this(upOdds, downOdds, marketId, slug, available, null, null);
+            this(upOdds, downOdds, marketId, slug, available, null, null, false);
+        }
+
+        /** 하위 호환 생성자 (가격 출처 미상 → 주문가로 재사용 안 함) */
+        public MarketOdds(double upOdds, double downOdds, String marketId, String slug, boolean available,
+                          String yesTokenId, String noTokenId) {
+            this(upOdds, downOdds, marketId, slug, available, yesTokenId, noTokenId, false);
         }
     }
 
@@ -176,6 +226,12 @@ public class PolymarketOddsService {
      * slug 패턴: btc-updown-15m-{unix_timestamp} (15분 윈도우 시작 시점)
      */
     private MarketOdds getOdds15m(String coinPrefix, String coinLabel) {
+        MarketOdds odds = loadOdds15m(coinPrefix, coinLabel);
+        oddsRegistry.update(coinLabel, "15M", odds);
+        return odds;
+    }
+
+    private MarketOdds loadOdds15m(String coinPrefix, String coinLabel) {
         try {
             String slug = build15mSlug(coinPrefix);
             log.info("[{} 15M] 마켓 slug: {}", coinLabel, slug);
@@ -262,6 +318,12 @@ public class PolymarketOddsService {
      * slug 패턴: btc-updown-5m-{unix_timestamp} (5분 윈도우 시작 시점)
      */
     private MarketOdds getOdds5m(String coinPrefix, String coinLabel) {
+        MarketOdds odds = loadOdds5m(coinPrefix, coinLabel);
+        oddsRegistry.update(coinLabel, "5M", odds);
+        return odds;
+    }
+
+    private MarketOdds loadOdds5m(String coinPrefix, String coinLabel) {
         try {
             String slug = build5mSlug(coinPrefix);
             log.info("[{} 5M] 마켓 slug: {}", coinLabel, slug);
@@ -295,6 +357,12 @@ public class PolymarketOddsService {
     }
 
     private MarketOdds getOdds(String coinSlug, String coinLabel) {
+        MarketOdds odds = loadOdds(coinSlug, coinLabel);
+        oddsRegistry.update(coinLabel, "1H", odds);
+        return odds;
+    }
+
+    private MarketOdds loadOdds(String coinSlug, String coinLabel) {
         try {
             // 1. 현재 ET 시간 기준 slug 생성
             String slug = buildCurrentSlug(coinSlug);
@@ -482,7 +550,7 @@ public class PolymarketOddsService {
             if (clobResult != null) {
                 // CLOB 결과에 토큰 ID 포함해서 반환
                 return new MarketOdds(clobResult.upOdds(), clobResult.downOdds(),
-                        conditionId, slug, true, yesTokenId, noTokenId);
+                        conditionId, slug, true, yesTokenId, noTokenId, clobResult.clobPriced());
             }
         }
 
@@ -520,12 +588,15 @@ public class PolymarketOddsService {
             String upUrl = CLOB + "/price?token_id=" + upTokenId + "&side=BUY";
             String upJson = httpGet(upUrl);
             double upOdds = 0.5;
+            boolean upDirect = false;
             if (upJson != null) {
                 JsonNode upNode = objectMapper.readTree(upJson);
+                upDirect = upNode.path("price").asDouble(-1) > 0;
                 upOdds = upNode.path("price").asDouble(0.5);
             }
 
             double downOdds = 1.0 - upOdds;
+            boolean downDirectOk = false;
 
             // Down도 별도 조회해서 검증 (선택)
             try {
@@ -536,6 +607,7 @@ public class PolymarketOddsService {
                     double downDirect = downNode.path("price").asDouble(-1);
                     if (downDirect > 0) {
                         downOdds = downDirect;
+                        downDirectOk = true;
                     }
                 }
             } catch (Exception ignored) {}
@@ -545,7 +617,7 @@ public class PolymarketOddsService {
                     String.format("%.1f", upOdds * 100),
                     String.format("%.1f", downOdds * 100),
                     slug);
-            return new MarketOdds(upOdds, downOdds, conditionId, slug, true);
+            return new MarketOdds(upOdds, downOdds, conditionId, slug, true, null, null, upDirect && downDirectOk);
 
         } catch (Exception e) {
             log.error("[{}] CLOB 가격 조회 실패: {}", coinLabel, e.getMessage());
@@ -0,0 +1,131 @@
+package com.example.poly_bug.service;
+
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.Sign;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 🔏 사전 준비된 EIP-712 주문 서명기 (Polymarket CTF Exchange)
+ *
+ * 기존: 주문마다 Credentials.create(키 → 키쌍/주소 유도) + 도메인 구분자 재계산 + BigInteger 인코딩
+ * 변경: 키 1개당 1회 생성
+ *  - 자격증명 / maker 주소(바이트) / 도메인 구분자 / 주소 필드 미리 계산
+ *  - 구조체 인코딩 버퍼 재사용 (고정 필드는 생성 시 기록, 주문별 필드만 덮어씀)
+ *  - 주문마다 남는 작업: keccak 2회 + ECDSA 서명 1회
+ */
+final class PreparedOrderSigner {
+
+    private static final String ORDER_TYPE_STRING =
+        "Order(uint256 salt,address maker,address signer,address taker,uint256 tokenId,uint256 makerAmount,uint256 takerAmount,uint256 expiration,uint256 nonce,uint256 feeRateBps,uint8 side,uint8 signatureType)";
+    private static final byte[] ORDER_TYPE_HASH = Hash.sha3(ORDER_TYPE_STRING.getBytes(StandardCharsets.UTF_8));
+    private static final byte[] DOMAIN_TYPE_HASH = Hash.sha3(
+        "EIP712Domain(string name,string version,uint256 chainId,address verifyingContract)".getBytes(StandardCharsets.UTF_8));
+
+    // 구조체 필드 오프셋 (typeHash + 12 필드 × 32바이트)
+    private static final int OFF_SALT = 32;
+    private static final int OFF_MAKER = 64;
+    private static final int OFF_SIGNER = 96;
+    private static final int OFF_TOKEN_ID = 160;
+    private static final int OFF_MAKER_AMOUNT = 192;
+    private static final int OFF_TAKER_AMOUNT = 224;
+    private static final int OFF_EXPIRATION = 256;
+    private static final int OFF_NONCE = 288;
+    private static final int OFF_SIDE = 352;
+
+    private final Credentials credentials;
+    private final String makerAddress;
+    private final byte[] domainSeparator;
+
+    // 재사용 버퍼 (sign()은 synchronized)
+    private final byte[] struct = new byte[32 * 13];
+    private final byte[] digestInput = new byte[2 + 32 + 32];
+
+    PreparedOrderSigner(String privateKey, long chainId, String exchangeContract) {
+        this.credentials = Credentials.create(privateKey);
+        this.makerAddress = credentials.getAddress().toLowerCase();
+        this.domainSeparator = domainSeparator(chainId, exchangeContract);
+
+        // 고정 필드: typeHash, maker, signer(=maker), taker(0), feeRateBps(0), signatureType(0 = EOA)
+        System.arraycopy(ORDER_TYPE_HASH, 0, struct, 0, 32);
+        encodeAddress(struct, OFF_MAKER, makerAddress);
+        encodeAddress(struct, OFF_SIGNER, makerAddress);
+        digestInput[0] = 0x19;
+        digestInput[1] = 0x01;
+        System.arraycopy(domainSeparator, 0, digestInput, 2, 32);
+    }
+
+    String makerAddress() {
+        return makerAddress;
+    }
+
+    /**
+     * 주문 서명 → "0x" + r + s + v
+     */
+    synchronized String sign(long salt, BigInteger tokenId, long makerAmount, long takerAmount,
+                             long expiration, long nonce, int side) {
+        encodeLong(struct, OFF_SALT, salt);
+        encodeUint256(struct, OFF_TOKEN_ID, tokenId);
+        encodeLong(struct, OFF_MAKER_AMOUNT, makerAmount);
+        encodeLong(struct, OFF_TAKER_AMOUNT, takerAmount);
+        encodeLong(struct, OFF_EXPIRATION, expiration);
+        encodeLong(struct, OFF_NONCE, nonce);
+        encodeLong(struct, OFF_SIDE, side);
+
+        // EIP-712 digest = keccak256("\x19\x01" + domainSeparator + structHash)
+        System.arraycopy(Hash.sha3(struct), 0, digestInput, 34, 32);
+        byte[] messageHash = Hash.sha3(digestInput);
+
+        Sign.SignatureData signature = Sign.signMessage(messageHash, credentials.getEcKeyPair(), false);
+        return "0x" +
+               Numeric.toHexStringNoPrefix(signature.getR()) +
+               Numeric.toHexStringNoPrefix(signature.getS()) +
+               Numeric.toHexStringNoPrefix(signature.getV());
+    }
+
+    /** tokenId 문자열 → uint256 (기존 규칙 유지: 40자 이하는 0, 숫자면 10진수 아니면 16진수) */
+    static BigInteger parseTokenId(String tokenId) {
+        return new BigInteger(tokenId.length() > 40 ? tokenId : "0", tokenId.matches("\\d+") ? 10 : 16);
+    }
+
+    private static byte[] domainSeparator(long chainId, String exchangeContract) {
+        byte[] nameHash = Hash.sha3("Polymarket CTF Exchange".getBytes(StandardCharsets.UTF_8));
+        byte[] versionHash = Hash.sha3("1".getBytes(StandardCharsets.UTF_8));
+
+        // abi.encode(domainTypeHash, nameHash, versionHash, chainId, verifyingContract)
+        byte[] domainEncoded = new byte[32 * 5];
+        System.arraycopy(DOMAIN_TYPE_HASH, 0, domainEncoded, 0, 32);
+        System.arraycopy(nameHash, 0, domainEncoded, 32, 32);
+        System.arraycopy(versionHash, 0, domainEncoded, 64, 32);
+        encodeLong(domainEncoded, 96, chainId);
+        encodeAddress(domainEncoded, 128, exchangeContract);
+        return Hash.sha3(domainEncoded);
+    }
+
+    /** 음이 아닌 long → 32바이트 big-endian (BigInteger 할당 없음) */
+    private static void encodeLong(byte[] dest, int offset, long value) {
+        for (int i = offset; i < offset + 24; i++) dest[i] = 0;
+        for (int i = 0; i < 8; i++) {
+            dest[offset + 31 - i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private static void encodeUint256(byte[] dest, int offset, BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        int len = Math.min(bytes.length, 32);
+        int srcStart = bytes.length - len; // 부호 바이트(33번째) 제거
+        for (int i = offset; i < offset + 32 - len; i++) dest[i] = 0;
+        System.arraycopy(bytes, srcStart, dest, offset + 32 - len, len);
+    }
+
+    private static void encodeAddress(byte[] dest, int offset, String address) {
+        String clean = address.startsWith("0x") ? address.substring(2) : address;
+        byte[] addrBytes = Numeric.hexStringToByteArray(clean);
+        // 주소는 20바이트 → 왼쪽 12바이트 패딩
+        for (int i = offset; i < offset + 12; i++) dest[i] = 0;
+        System.arraycopy(addrBytes, 0, dest, offset + 12, 20);
+    }
+}
@@ -0,0 +1,341 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.config.CoinConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+/**
+ * 📐 확률 곡면 (캔들 진행 중 가격 변동 → 최종 방향 유지 확률)
+ *
+ * 기존: estimateProbFromPriceMove의 수기 계단표 + 타임프레임/시간 보너스 (실제 결과와 연결 없음)
+ * 개선:
+ *  1. 바이낸스 1분봉 히스토리로 (|변동%|, 캔들 경과 비율, 최근 변동성) → 방향 유지 여부 집계
+ *  2. 코인 × 타임프레임별 조밀 격자로 미리 계산 (3선형 가중 누적 + 0.5 prior 수축 + 변동폭 단조 보정)
+ *  3. 스캐너는 3선형 보간으로 조회 (HTTP/할당 없음)
+ *  4. 6시간마다 백그라운드 재빌드 → volatile 참조 교체 (스캔 중단 없음)
+ *
+ * 변동성 축: 최근 30개 1분 수익률 표준편차 (%), 조회 시에는 RealizedVolatilityService.rolling30m
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProbabilitySurfaceService {
+
+    private final RealizedVolatilityService volatility;
+
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService buildExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private static final String BINANCE_SPOT = "https://api.binance.com";
+
+    private static final String[] TIMEFRAMES = {"5M", "15M", "1H"};
+    private static final int[] TF_MINUTES = {5, 15, 60};
+
+    private static final int PAGE_LIMIT = 1000;   // 바이낸스 klines 최대
+    private static final int HISTORY_PAGES = 8;   // 1분봉 8000개 ≈ 5.5일
+    private static final int VOL_WINDOW = 30;     // 최근 30개 1분 수익률 (RealizedVolatilityService와 동일)
+    private static final long REBUILD_HOURS = 6;
+
+    // === 격자 축 ===
+    private static final double MOVE_STEP = 0.05;  // |변동%| 0.05% 간격
+    private static final int MOVE_POINTS = 31;      // 0 ~ 1.5%
+    private static final int ELAPSED_POINTS = 11;   // 0.0, 0.1, ... 1.0
+    private static final double[] VOL_POINTS = {0.02, 0.04, 0.07, 0.12, 0.20}; // 1분 수익률 표준편차 (%)
+
+    private static final double PRIOR_WEIGHT = 8.0;    // 표본 부족 노드는 50%로 수축
+    private static final int MIN_SAMPLES = 500;        // 미만이면 곡면 미사용 (계단표 fallback)
+
+    // [코인 순번][TF 순번] → 곡면 (재빌드 시 배열 통째로 교체, 조회 시 문자열 키 생성 없음)
+    private volatile Surface[][] surfaces = new Surface[CoinConfig.ACTIVE_COINS.size()][TIMEFRAMES.length];
+
+    @PostConstruct
+    public void init() {
+        buildExecutor.scheduleWithFixedDelay(this::rebuild, 0, REBUILD_HOURS, TimeUnit.HOURS);
+        log.info("📐 확률 곡면 활성화 | 격자 {}×{}×{} | 재빌드 {}시간",
+                MOVE_POINTS, ELAPSED_POINTS, VOL_POINTS.length, REBUILD_HOURS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+
+    /**
+     * 현재 캔들에서 가격 방향이 마감까지 유지될 확률
+     * @param absMovePct 시초가 대비 |변동%|
+     * @return 곡면 미빌드/변동성 미확보 시 NaN → 호출자가 기존 계단표 사용
+     */
+    public double lookup(String coin, String timeframe, double absMovePct) {
+        int c = coinIndex(coin);
+        int tf = tfIndex(timeframe);
+        if (c < 0 || tf < 0) return Double.NaN;
+        Surface surface = surfaces[c][tf];
+        if (surface == null) return Double.NaN;
+        double vol = volatility.getSnapshot(coin).rolling30m();
+        if (Double.isNaN(vol)) return Double.NaN;
+        return surface.interpolate(absMovePct, elapsedFraction(surface.tfMinutes, System.currentTimeMillis()), vol);
+    }
+
+    private static int coinIndex(String coin) {
+        for (int i = 0; i < CoinConfig.ACTIVE_COINS.size(); i++) {
+            if (CoinConfig.ACTIVE_COINS.get(i).label().equals(coin)) return i;
+        }
+        return -1;
+    }
+
+    private static int tfIndex(String timeframe) {
+        for (int i = 0; i < TIMEFRAMES.length; i++) {
+            if (TIMEFRAMES[i].equals(timeframe)) return i;
+        }
+        return -1;
+    }
+
+    /** 캔들 경과 비율 (5M/15M/1H 모두 UTC epoch 기준 정렬) */
+    private static double elapsedFraction(int tfMinutes, long nowMs) {
+        long tfMs = tfMinutes * 60_000L;
+        return (double) (nowMs % tfMs) / tfMs;
+    }
+
+    // =========================================================================
+    // 빌드 (백그라운드)
+    // =========================================================================
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        Surface[][] current = surfaces;
+        Surface[][] next = new Surface[current.length][];
+        int built = 0;
+        for (int c = 0; c < current.length; c++) {
+            next[c] = current[c].clone();
+            CoinConfig.CoinDef coin = CoinConfig.ACTIVE_COINS.get(c);
+            try {
+                double[][] bars = fetchMinuteBars(coin.label() + "USDT");
+                for (int i = 0; i < TIMEFRAMES.length; i++) {
+                    Surface surface = build(bars, TF_MINUTES[i]);
+                    if (surface.samples < MIN_SAMPLES) {
+                        log.warn("[{}][{}] 확률 곡면 표본 부족 ({}/{}) — 기존 유지", coin.label(), TIMEFRAMES[i],
+                                surface.samples, MIN_SAMPLES);
+                        continue;
+                    }
+                    next[c][i] = surface;
+                    built++;
+                    log.info("[{}][{}] 확률 곡면 빌드 | 표본 {} | P(0.3%, 절반, 중간변동성)={}", coin.label(),
+                            TIMEFRAMES[i], surface.samples,
+                            String.format("%.1f%%", surface.interpolate(0.3, 0.5, VOL_POINTS[2]) * 100));
+                }
+            } catch (Exception e) {
+                log.warn("[{}] 확률 곡면 빌드 실패 (기존 유지): {}", coin.label(), e.getMessage());
+            }
+        }
+        surfaces = next; // ⭐ 원자적 교체
+        log.info("📐 확률 곡면 갱신 완료: {}개 ({}ms)", built, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 1분봉 히스토리 (오래된 순)
+     * @return [0]=openTime, [1]=open, [2]=close
+     */
+    private double[][] fetchMinuteBars(String symbol) throws Exception {
+        int total = 0;
+        long endTime = System.currentTimeMillis();
+        double[] openTime = new double[HISTORY_PAGES * PAGE_LIMIT];
+        double[] open = new double[openTime.length];
+        double[] close = new double[openTime.length];
+
+        // 최신 페이지부터 거꾸로 채움
+        int writeEnd = openTime.length;
+        for (int p = 0; p < HISTORY_PAGES; p++) {
+            String url = BINANCE_SPOT + "/api/v3/klines?symbol=" + symbol
+                    + "&interval=1m&limit=" + PAGE_LIMIT + "&endTime=" + endTime;
+            JsonNode candles = objectMapper.readTree(get(url));
+            if (!candles.isArray() || candles.size() == 0) break;
+            int n = candles.size();
+            int writeStart = writeEnd - n;
+            for (int i = 0; i < n; i++) {
+                JsonNode c = candles.get(i);
+                openTime[writeStart + i] = c.get(0).asLong();
+                open[writeStart + i] = c.get(1).asDouble();
+                close[writeStart + i] = c.get(4).asDouble();
+            }
+            writeEnd = writeStart;
+            total += n;
+            endTime = candles.get(0).get(0).asLong() - 1;
+        }
+        if (total == 0) throw new RuntimeException("1분봉 없음: " + symbol);
+
+        int from = openTime.length - total;
+        return new double[][]{
+                Arrays.copyOfRange(openTime, from, openTime.length),
+                Arrays.copyOfRange(open, from, openTime.length),
+                Arrays.copyOfRange(close, from, openTime.length)
+        };
+    }
+
+    /**
+     * 캔들 내부 매 1분 종가 시점을 표본으로: 시초가 대비 변동 방향이 캔들 종가까지 유지됐는지
+     */
+    private Surface build(double[][] bars, int tfMinutes) {
+        double[] openTime = bars[0], open = bars[1], close = bars[2];
+        int n = openTime.length;
+        long tfMs = tfMinutes * 60_000L;
+
+        double[] wins = new double[MOVE_POINTS * ELAPSED_POINTS * VOL_POINTS.length];
+        double[] weights = new double[wins.length];
+        int samples = 0;
+
+        for (int s = VOL_WINDOW; s + tfMinutes <= n; s++) {
+            long t0 = (long) openTime[s];
+            if (t0 % tfMs != 0) continue; // 캔들 시작 정렬
+            // 연속성 확인 (봉 누락 구간 제외)
+            if ((long) openTime[s + tfMinutes - 1] - t0 != (tfMinutes - 1) * 60_000L) continue;
+
+            double candleOpen = open[s];
+            double finalClose = close[s + tfMinutes - 1];
+            if (candleOpen <= 0) continue;
+
+            // 마지막 봉은 경과 100% = 결과 자체이므로 제외
+            for (int k = 0; k < tfMinutes - 1; k++) {
+                int idx = s + k;
+                double move = (close[idx] - candleOpen) / candleOpen * 100;
+                if (move == 0) continue;
+                double vol = stdOfReturns(close, idx - VOL_WINDOW, idx);
+                if (Double.isNaN(vol)) continue;
+                boolean held = (finalClose - candleOpen) * move > 0;
+                accumulate(wins, weights, Math.abs(move), (double) (k + 1) / tfMinutes, vol, held ? 1.0 : 0.0);
+                samples++;
+            }
+        }
+
+        float[] grid = new float[wins.length];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = (float) ((wins[i] + PRIOR_WEIGHT * 0.5) / (weights[i] + PRIOR_WEIGHT));
+        }
+        enforceMonotoneInMove(grid);
+        return new Surface(grid, tfMinutes, samples);
+    }
+
+    /** 표본을 인접 8개 노드에 3선형 가중치로 누적 (희소 구간 완화) */
+    private static void accumulate(double[] wins, double[] weights,
+                                   double move, double elapsed, double vol, double outcome) {
+        double mPos = Math.min(move / MOVE_STEP, MOVE_POINTS - 1);
+        double ePos = Math.min(elapsed * (ELAPSED_POINTS - 1), ELAPSED_POINTS - 1);
+        double vPos = volPosition(vol);
+
+        int m0 = Math.min((int) mPos, MOVE_POINTS - 2), e0 = Math.min((int) ePos, ELAPSED_POINTS - 2),
+                v0 = Math.min((int) vPos, VOL_POINTS.length - 2);
+        double fm = mPos - m0, fe = ePos - e0, fv = vPos - v0;
+
+        for (int dm = 0; dm <= 1; dm++) {
+            for (int de = 0; de <= 1; de++) {
+                for (int dv = 0; dv <= 1; dv++) {
+                    double w = (dm == 0 ? 1 - fm : fm) * (de == 0 ? 1 - fe : fe) * (dv == 0 ? 1 - fv : fv);
+                    if (w <= 0) continue;
+                    int i = index(m0 + dm, e0 + de, v0 + dv);
+                    wins[i] += w * outcome;
+                    weights[i] += w;
+                }
+            }
+        }
+    }
+
+    /** 같은 (경과, 변동성)에서 변동폭이 클수록 확률이 낮아지지 않도록 누적 최대 */
+    private static void enforceMonotoneInMove(float[] grid) {
+        for (int e = 0; e < ELAPSED_POINTS; e++) {
+            for (int v = 0; v < VOL_POINTS.length; v++) {
+                float max = 0f;
+                for (int m = 0; m < MOVE_POINTS; m++) {
+                    int i = index(m, e, v);
+                    max = Math.max(max, grid[i]);
+                    grid[i] = max;
+                }
+            }
+        }
+    }
+
+    /** 변동성 → 연속 격자 좌표 (비균등 축, 양끝 clamp) */
+    private static double volPosition(double vol) {
+        if (vol <= VOL_POINTS[0]) return 0;
+        int last = VOL_POINTS.length - 1;
+        if (vol >= VOL_POINTS[last]) return last;
+        int i = 0;
+        while (vol > VOL_POINTS[i + 1]) i++;
+        return i + (vol - VOL_POINTS[i]) / (VOL_POINTS[i + 1] - VOL_POINTS[i]);
+    }
+
+    private static int index(int m, int e, int v) {
+        return (m * ELAPSED_POINTS + e) * VOL_POINTS.length + v;
+    }
+
+    /** closes[from..to] 구간 1분 수익률 표준편차 (%) */
+    private static double stdOfReturns(double[] closes, int from, int to) {
+        if (from < 0) return Double.NaN;
+        int count = to - from;
+        double sum = 0, sumSq = 0;
+        for (int i = from + 1; i <= to; i++) {
+            if (closes[i - 1] <= 0) return Double.NaN;
+            double r = (closes[i] - closes[i - 1]) / closes[i - 1] * 100;
+            sum += r;
+            sumSq += r * r;
+        }
+        double mean = sum / count;
+        return Math.sqrt(Math.max(sumSq / count - mean * mean, 0));
+    }
+
+    private String get(String url) throws Exception {
+        Request req = new Request.Builder().url(url).get().build();
+        try (Response res = httpClient.newCall(req).execute()) {
+            if (res.body() == null) throw new RuntimeException("빈 응답: " + url);
+            return res.body().string();
+        }
+    }
+
+    // =========================================================================
+    // 불변 곡면 (빌드 후 읽기 전용)
+    // =========================================================================
+    private static final class Surface {
+        private final float[] grid;
+        private final int tfMinutes;
+        private final int samples;
+
+        Surface(float[] grid, int tfMinutes, int samples) {
+            this.grid = grid;
+            this.tfMinutes = tfMinutes;
+            this.samples = samples;
+        }
+
+        double interpolate(double move, double elapsed, double vol) {
+            double mPos = Math.min(Math.max(move, 0) / MOVE_STEP, MOVE_POINTS - 1);
+            double ePos = Math.min(Math.max(elapsed, 0) * (ELAPSED_POINTS - 1), ELAPSED_POINTS - 1);
+            double vPos = volPosition(vol);
+
+            int m0 = Math.min((int) mPos, MOVE_POINTS - 2), e0 = Math.min((int) ePos, ELAPSED_POINTS - 2),
+                    v0 = Math.min((int) vPos, VOL_POINTS.length - 2);
+            double fm = mPos - m0, fe = ePos - e0, fv = vPos - v0;
+
+            double result = 0;
+            for (int dm = 0; dm <= 1; dm++) {
+                for (int de = 0; de <= 1; de++) {
+                    for (int dv = 0; dv <= 1; dv++) {
+                        double w = (dm == 0 ? 1 - fm : fm) * (de == 0 ? 1 - fe : fe) * (dv == 0 ? 1 - fv : fv);
+                        result += w * grid[index(m0 + dm, e0 + de, v0 + dv)];
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
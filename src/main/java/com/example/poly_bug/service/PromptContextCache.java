@@ -0,0 +1,88 @@
+package com.example.poly_bug.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 🗂️ Claude 프롬프트 컨텍스트 블록 캐시
+ *
+ * 기존: buildPrompt 호출마다 과거 성적 / 조건별 승률 / 교훈 / 최근 반성 / 연패 경고를 DB에서 재조회 (쿼리 10여 개)
+ * 변경: 렌더링된 블록 문자열을 (코인, TF)별로 보관 → 프롬프트 조립은 문자열 연결만
+ *  - 트레이드 결과 확정 → 해당 코인 블록만 무효화 (승률/연패는 코인 단위)
+ *  - 반성 추가 / 교훈 압축 → 학습 블록만 전체 무효화 (L2/L3는 코인 공통)
+ *  - 세대 번호: 생성 중 무효화되면 결과를 캐시에 넣지 않음 (오래된 블록 재등록 방지)
+ */
+@Slf4j
+@Service
+public class PromptContextCache {
+
+    public static final String PATTERN_STATS = "PATTERN";
+    public static final String LEARNING = "LEARN";
+
+    private record Entry(long generation, String text) {}
+
+    // 키: "BTC|PATTERN|15M" (학습 블록은 TF 무관 → "BTC|LEARN|*")
+    private final Map<String, Entry> blocks = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 캐시된 블록 반환, 없으면 builder로 생성 후 저장
+     */
+    public String get(String coin, String block, String timeframe, Supplier<String> builder) {
+        String key = key(coin, block, timeframe);
+        Entry cached = blocks.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.text();
+        }
+        misses.incrementAndGet();
+        long gen = generation.get();
+        String text = builder.get();
+        // 무효화는 세대 증가 → 삭제 순서 → 생성 중 무효화됐으면 저장 생략
+        blocks.compute(key, (k, old) -> generation.get() == gen ? new Entry(gen, text) : old);
+        return text;
+    }
+
+    /** 트레이드 결과 확정 → 해당 코인의 모든 블록 */
+    public void onTradeResolved(String coin) {
+        if (coin == null) return;
+        generation.incrementAndGet();
+        blocks.keySet().removeIf(k -> k.startsWith(coin + "|"));
+    }
+
+    /** 반성 추가 / 교훈 압축 → 모든 코인의 학습 블록 */
+    public void onLearningUpdated() {
+        generation.incrementAndGet();
+        blocks.keySet().removeIf(k -> k.contains("|" + LEARNING + "|"));
+    }
+
+    /** 트레이드 전체 삭제 등 */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        blocks.clear();
+        log.info("🗂️ 프롬프트 컨텍스트 캐시 전체 초기화");
+    }
+
+    /** 무효화 세대 — 결과/반성/교훈이 바뀔 때마다 증가 (파생 캐시 키에 포함) */
+    public long generation() {
+        return generation.get();
+    }
+
+    public Map<String, Object> getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        return Map.of("blocks", blocks.size(), "hits", h, "misses", m,
+                "hitRate", h + m > 0 ? (double) h / (h + m) : 0.0);
+    }
+
+    private static String key(String coin, String block, String timeframe) {
+        return coin + "|" + block + "|" + (timeframe != null ? timeframe : "*");
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.poly_bug.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ⚡ 특성 구간화(quantized) 응답 캐시 — 거부권/반전 체크용
+ *
+ * 같은 코인/TF/방향에 변동률·오즈만 미세하게 다른 질문이 수 초 간격으로 반복됨
+ * → 특성을 구간(bucket)으로 반올림한 키가 같으면 직전 Claude 응답 재사용
+ *  - 짧은 TTL (상황이 실제로 바뀌기 전까지만 재사용)
+ *  - LRU 상한 (접근 순서 LinkedHashMap)
+ *  - 적중/미스 카운터
+ */
+final class QuantizedResponseCache<V> {
+
+    private record Entry<V>(V value, long storedAt) {}
+
+    private final long ttlMs;
+    private final Map<String, Entry<V>> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    QuantizedResponseCache(long ttlMs, int maxEntries) {
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(maxEntries * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** TTL 이내 응답 (없으면 null) */
+    synchronized V get(String key) {
+        Entry<V> e = entries.get(key);
+        if (e == null || System.currentTimeMillis() - e.storedAt() > ttlMs) {
+            if (e != null) entries.remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return e.value();
+    }
+
+    synchronized void put(String key, V value) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    Map<String, Object> stats() {
+        long h = hits.get();
+        long m = misses.get();
+        return Map.of("entries", size(), "hits", h, "misses", m,
+                "hitRate", h + m > 0 ? (double) h / (h + m) : 0.0);
+    }
+
+    /** 값을 step 단위 구간 번호로 (예: 0.137, step 0.05 → 3) */
+    static long bucket(double value, double step) {
+        return Math.round(value / step);
+    }
+}
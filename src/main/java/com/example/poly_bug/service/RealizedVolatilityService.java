@@ -0,0 +1,222 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.config.CoinConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 🌊 스트리밍 실현 변동성 (코인별, 다중 호라이즌)
+ *
+ * 같은 0.1% 움직임도 아시아 새벽과 미국 개장 직후는 의미가 다름 → 변동성 레짐으로 임계값 보정
+ *  1. 바이낸스 틱 → 1분 종가 → 1분 수익률(%) 하나당 O(1) 갱신 (히스토리 재스캔 없음)
+ *  2. EWMA 분산: 5분 / 15분 / 1시간 / 24시간(기준선) 호라이즌
+ *  3. 최근 30개 1분 수익률 표준편차 (러닝 합계, 확률 곡면 변동성 축과 동일 정의)
+ *  4. 1분마다 불변 스냅샷 발행 → 조회는 volatile 읽기 1회 (스캔당 계산 없음)
+ *
+ * 시작 시 1분봉 1회 시드 (코인당 1콜)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RealizedVolatilityService {
+
+    private final BinanceWebSocketService priceMonitor;
+
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .readTimeout(5, TimeUnit.SECONDS)
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService seedExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private static final String BINANCE_SPOT = "https://api.binance.com";
+    private static final int SEED_LIMIT = 1000;
+
+    // EWMA 호라이즌 (분): alpha = 2 / (N + 1)
+    private static final int[] HORIZON_MINUTES = {5, 15, 60, 1440};
+    private static final int ROLLING_WINDOW = 30;     // 최근 30개 1분 수익률
+    private static final double MIN_REGIME = 0.3, MAX_REGIME = 3.0;
+
+    private final Map<String, VolState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 변동성 스냅샷 (단위: 1분 수익률 표준편차 %)
+     * @param rolling30m 최근 30개 1분 수익률 표준편차 (확률 곡면 축)
+     * @param baseline   24시간 EWMA (코인별 "평소" 변동성)
+     * @param regime     vol15m / baseline — 1.0 = 평소, 2.0 = 평소의 두 배
+     * @param samples    누적 1분 수익률 수
+     */
+    public record VolSnapshot(double vol5m, double vol15m, double vol1h, double rolling30m,
+                              double baseline, double regime, int samples) {
+        public boolean ready() {
+            return samples >= ROLLING_WINDOW;
+        }
+    }
+
+    private static final VolSnapshot EMPTY = new VolSnapshot(0, 0, 0, Double.NaN, 0, 1.0, 0);
+
+    @PostConstruct
+    public void init() {
+        for (CoinConfig.CoinDef coin : CoinConfig.ACTIVE_COINS) {
+            states.put(coin.label(), new VolState());
+        }
+        priceMonitor.onTick(this::onTick);
+        seedExecutor.execute(this::seedAll);
+        log.info("🌊 실현 변동성 추적 활성화 | 코인: {}개 | 호라이즌: 5m, 15m, 1h, 24h(기준선)", states.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        seedExecutor.shutdownNow();
+    }
+
+    /** O(1) — 미지원 코인/시드 전이면 EMPTY (ready() == false) */
+    public VolSnapshot getSnapshot(String coin) {
+        VolState state = states.get(coin);
+        return state != null ? state.snapshot : EMPTY;
+    }
+
+    /**
+     * 변동성 레짐 배수 (clamp) — 준비 전이면 1.0
+     */
+    public double getRegime(String coin, double min, double max) {
+        VolSnapshot snap = getSnapshot(coin);
+        if (!snap.ready()) return 1.0;
+        return Math.max(min, Math.min(max, snap.regime()));
+    }
+
+    private void onTick(String coin, double price, long timestamp) {
+        VolState state = states.get(coin);
+        if (state != null && price > 0) state.onTick(price, timestamp);
+    }
+
+    // =========================================================================
+    // 1분봉 시드
+    // =========================================================================
+    private void seedAll() {
+        for (Map.Entry<String, VolState> entry : states.entrySet()) {
+            String url = BINANCE_SPOT + "/api/v3/klines?symbol=" + entry.getKey() + "USDT"
+                    + "&interval=1m&limit=" + SEED_LIMIT;
+            Request req = new Request.Builder().url(url).get().build();
+            try (Response res = httpClient.newCall(req).execute()) {
+                if (res.body() == null) throw new RuntimeException("빈 응답: " + url);
+                JsonNode candles = objectMapper.readTree(res.body().string());
+                if (!candles.isArray() || candles.size() < 2) continue;
+
+                // 마지막 캔들 = 진행 중 → 확정 종가에서 제외
+                int n = candles.size();
+                double[] closedCloses = new double[n - 1];
+                for (int i = 0; i < n - 1; i++) {
+                    closedCloses[i] = candles.get(i).get(4).asDouble();
+                }
+                JsonNode current = candles.get(n - 1);
+                entry.getValue().seed(closedCloses, current.get(0).asLong() / 60_000L, current.get(4).asDouble());
+                VolSnapshot snap = entry.getValue().snapshot;
+                log.info("🌊 [{}] 변동성 시드 | 15m={}% 기준선={}% 레짐={}", entry.getKey(),
+                        String.format("%.3f", snap.vol15m()), String.format("%.3f", snap.baseline()),
+                        String.format("%.2f", snap.regime()));
+            } catch (Exception e) {
+                log.warn("[{}] 변동성 시드 실패 (틱으로 누적): {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    // =========================================================================
+    // 증분 상태 (코인 1개)
+    // =========================================================================
+    private static final class VolState {
+        private static final double[] ALPHA = new double[HORIZON_MINUTES.length];
+        static {
+            for (int i = 0; i < HORIZON_MINUTES.length; i++) ALPHA[i] = 2.0 / (HORIZON_MINUTES[i] + 1);
+        }
+
+        private long currentMinute = -1;
+        private double lastPrice;     // 진행 중인 1분의 최신가 (= 임시 종가)
+        private double lastClose;     // 직전 확정 1분 종가
+
+        private final double[] ewmaVar = new double[HORIZON_MINUTES.length];
+        private int samples;
+
+        // 최근 30개 수익률 러닝 합계
+        private final double[] window = new double[ROLLING_WINDOW];
+        private int head, count;
+        private double sum, sumSq;
+
+        private volatile VolSnapshot snapshot = EMPTY;
+
+        synchronized void seed(double[] closedCloses, long liveMinute, double liveClose) {
+            if (samples > 0) return; // 이미 틱으로 누적 중이면 유지
+            for (double c : closedCloses) closeMinute(c);
+            if (currentMinute < liveMinute) {
+                currentMinute = liveMinute;
+                lastPrice = liveClose;
+            }
+            publish();
+        }
+
+        synchronized void onTick(double price, long timestamp) {
+            long minute = timestamp / 60_000L;
+            if (currentMinute < 0) {
+                currentMinute = minute;
+            } else if (minute > currentMinute) {
+                closeMinute(lastPrice);
+                // 틱 없는 분은 수익률 0 (최대 롤링 윈도우만큼)
+                long gap = Math.min(minute - currentMinute - 1, ROLLING_WINDOW);
+                for (long i = 0; i < gap; i++) closeMinute(lastPrice);
+                currentMinute = minute;
+                publish();
+            }
+            lastPrice = price;
+        }
+
+        private void closeMinute(double close) {
+            if (close <= 0) return;
+            if (lastClose > 0) addReturn((close - lastClose) / lastClose * 100);
+            lastClose = close;
+        }
+
+        private void addReturn(double r) {
+            double r2 = r * r;
+            for (int i = 0; i < ewmaVar.length; i++) {
+                ewmaVar[i] = samples == 0 ? r2 : ewmaVar[i] + ALPHA[i] * (r2 - ewmaVar[i]);
+            }
+            samples++;
+
+            if (count == ROLLING_WINDOW) {
+                double old = window[head];
+                sum -= old;
+                sumSq -= old * old;
+            } else {
+                count++;
+            }
+            window[head] = r;
+            head = (head + 1) % ROLLING_WINDOW;
+            sum += r;
+            sumSq += r2;
+        }
+
+        private void publish() {
+            double rolling = Double.NaN;
+            if (count == ROLLING_WINDOW) {
+                double mean = sum / count;
+                rolling = Math.sqrt(Math.max(sumSq / count - mean * mean, 0));
+            }
+            double vol15m = Math.sqrt(ewmaVar[1]);
+            double baseline = Math.sqrt(ewmaVar[3]);
+            double regime = baseline > 0 ? vol15m / baseline : 1.0;
+            snapshot = new VolSnapshot(Math.sqrt(ewmaVar[0]), vol15m, Math.sqrt(ewmaVar[2]), rolling,
+                    baseline, Math.max(MIN_REGIME, Math.min(MAX_REGIME, regime)), samples);
+        }
+    }
+}
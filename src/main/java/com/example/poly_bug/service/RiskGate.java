@@ -0,0 +1,299 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.config.CoinConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 🚦 전략 공통 리스크 게이트 (GapScanner + OddsLagDetector)
+ *
+ * 기존: 쿨다운 확인 → (EV 계산…) → 쿨다운 등록 = check-then-act 레이스 → 같은 마켓 이중배팅 가능
+ * 변경: tryReserve() 한 번에 확인 + 예약 (락 없음, CAS)
+ *  1. 쿨다운: [코인 × TF] 마지막 예약 시각 (1H/15M 3분, 5M 90초)
+ *  2. 시간당 토큰 버킷: 1H 3건, 15M 1건, 5M 5건 (1시간에 걸쳐 연속 충전)
+ *  3. 노출 한도: 같은 마켓(캔들) 자산의 15%, 전체 미정산 자산의 50%
+ *  4. 거절 사유별 카운터
+ *
+ * 미정산 노출은 캔들 마감 + 1분 후 자동 해제, 주문 실패 시 release()로 즉시 반환,
+ * 부분 체결 시 reduce()로 미체결분만 반환
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RiskGate {
+
+    private final BalanceService balanceService;
+
+    private static final String[] TIMEFRAMES = {"1H", "15M", "5M"};
+    private static final long[] TF_MS = {3_600_000L, 900_000L, 300_000L};
+    private static final long[] COOLDOWN_MS = {180_000L, 180_000L, 90_000L};
+    private static final int[] MAX_PER_HOUR = {3, 1, 5}; // ⭐ V5.3: 15M은 시간당 1건
+    private static final long HOUR_MS = 3_600_000L;
+    private static final long SETTLE_GRACE_MS = 60_000L;
+
+    private static final double MAX_MARKET_EXPOSURE = 0.15; // 마켓(캔들)당 자산 대비
+    private static final double MAX_TOTAL_EXPOSURE = 0.50;  // 전체 미정산 자산 대비
+
+    public enum RejectReason { COOLDOWN, HOURLY_LIMIT, MARKET_EXPOSURE, TOTAL_EXPOSURE, UNKNOWN_MARKET }
+
+    /**
+     * 슬롯 상태 (불변 — CAS로 통째 교체)
+     * @param tokens   남은 토큰 (refillAt 기준)
+     * @param window   노출이 속한 캔들 번호 (now / tfMs)
+     * @param exposure 해당 캔들 예약 금액
+     */
+    private record SlotState(long lastReserveAt, double tokens, long refillAt, long window, double exposure) {}
+
+    private final AtomicReference<SlotState>[] slots = createSlots();
+    private final AtomicLong openExposureCents = new AtomicLong();
+    private final AtomicLong reservedCount = new AtomicLong();
+    private final AtomicLongArray rejectCounts = new AtomicLongArray(RejectReason.values().length);
+
+    private final ScheduledExecutorService settleExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    /** 예약 결과 — ok()가 아니면 rejected에 사유 */
+    public static final class Reservation {
+        private final String coin;
+        private final int slot;
+        private final double amount;
+        private final long window;
+        private final RejectReason rejected;
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private final AtomicLong remainingCents; // 아직 노출로 잡힌 금액 (reduce/settle 시 감소)
+
+        private Reservation(String coin, int slot, double amount, long window, RejectReason rejected) {
+            this.coin = coin;
+            this.slot = slot;
+            this.amount = amount;
+            this.window = window;
+            this.rejected = rejected;
+            this.remainingCents = new AtomicLong(Math.round(amount * 100));
+        }
+
+        public boolean ok() {
+            return rejected == null;
+        }
+
+        public RejectReason rejected() {
+            return rejected;
+        }
+
+        public String coin() {
+            return coin;
+        }
+
+        public double amount() {
+            return amount;
+        }
+
+        /** 아직 노출로 잡혀 있는 금액 (부분 체결 축소/정산 후 감소) */
+        public double remaining() {
+            return remainingCents.get() / 100.0;
+        }
+    }
+
+    public record RiskGateStats(long reserved, Map<String, Long> rejections, double openExposure) {}
+
+    @PreDestroy
+    public void shutdown() {
+        settleExecutor.shutdownNow();
+    }
+
+    // =========================================================================
+    // 예약 (쿨다운 + 토큰 + 노출을 한 번에)
+    // =========================================================================
+    public Reservation tryReserve(String coin, String timeframe, double amount) {
+        int tf = tfIndex(timeframe);
+        int slot = slotIndex(coin, tf);
+        if (slot < 0) return reject(coin, RejectReason.UNKNOWN_MARKET);
+
+        long now = System.currentTimeMillis();
+        // 흔한 거절(쿨다운)은 전체 노출을 건드리기 전에 걸러냄
+        if (onCooldown(slots[slot].get(), tf, now)) return reject(coin, RejectReason.COOLDOWN);
+
+        // 1. 전체 노출 선점 (실패 시 되돌림이 단순 차감이라 항상 안전)
+        long cents = Math.round(amount * 100);
+        long open = openExposureCents.get();
+        double equity = balanceService.getBalance() + open / 100.0;
+        long totalCap = (long) (equity * MAX_TOTAL_EXPOSURE * 100);
+        while (true) {
+            if (open + cents > totalCap) return reject(coin, RejectReason.TOTAL_EXPOSURE);
+            if (openExposureCents.compareAndSet(open, open + cents)) break;
+            open = openExposureCents.get();
+        }
+
+        // 2. 슬롯 CAS: 쿨다운 + 토큰 + 마켓 노출
+        long window = now / TF_MS[tf];
+        double marketCap = equity * MAX_MARKET_EXPOSURE;
+        AtomicReference<SlotState> ref = slots[slot];
+        while (true) {
+            SlotState s = ref.get();
+            RejectReason reason = null;
+            double tokens = refill(s, tf, now);
+            double exposure = s.window() == window ? s.exposure() : 0;
+            if (onCooldown(s, tf, now)) reason = RejectReason.COOLDOWN;
+            else if (tokens < 1.0) reason = RejectReason.HOURLY_LIMIT;
+            else if (exposure + amount > marketCap) reason = RejectReason.MARKET_EXPOSURE;
+
+            if (reason != null) {
+                openExposureCents.addAndGet(-cents);
+                return reject(coin, reason);
+            }
+            SlotState next = new SlotState(now, tokens - 1.0, now, window, exposure + amount);
+            if (ref.compareAndSet(s, next)) break;
+        }
+
+        reservedCount.incrementAndGet();
+        Reservation reservation = new Reservation(coin, slot, amount, window, null);
+        long settleDelay = (window + 1) * TF_MS[tf] - now + SETTLE_GRACE_MS;
+        settleExecutor.schedule(() -> settle(reservation), settleDelay, TimeUnit.MILLISECONDS);
+        return reservation;
+    }
+
+    /**
+     * 주문 실패 시 예약 반환 — 토큰과 노출은 돌려주고 쿨다운은 유지 (실패 직후 재시도 폭주 방지)
+     */
+    public void release(Reservation reservation) {
+        if (reservation == null || !reservation.ok()) return;
+        long cents = settle(reservation);
+        if (cents < 0) return;
+        int tf = reservation.slot % TIMEFRAMES.length;
+        AtomicReference<SlotState> ref = slots[reservation.slot];
+        while (true) {
+            SlotState s = ref.get();
+            double tokens = Math.min(refill(s, tf, System.currentTimeMillis()) + 1.0, MAX_PER_HOUR[tf]);
+            double exposure = s.window() == reservation.window
+                    ? Math.max(0, s.exposure() - cents / 100.0) : s.exposure();
+            SlotState next = new SlotState(s.lastReserveAt(), tokens, System.currentTimeMillis(), s.window(), exposure);
+            if (ref.compareAndSet(s, next)) return;
+        }
+    }
+
+    /**
+     * 부분 체결 시 예약 축소 — 미체결 금액만큼 노출만 반환 (토큰/쿨다운은 유지, 이미 정산됐으면 무시)
+     */
+    public void reduce(Reservation reservation, double unfilled) {
+        if (reservation == null || !reservation.ok() || unfilled <= 0) return;
+        long want = Math.round(unfilled * 100);
+        long take;
+        while (true) {
+            if (reservation.settled.get()) return;
+            long remaining = reservation.remainingCents.get();
+            take = Math.min(want, remaining);
+            if (take <= 0) return;
+            if (reservation.remainingCents.compareAndSet(remaining, remaining - take)) break;
+        }
+        openExposureCents.addAndGet(-take);
+        double amount = take / 100.0;
+        slots[reservation.slot].updateAndGet(s -> s.window() == reservation.window
+                ? new SlotState(s.lastReserveAt(), s.tokens(), s.refillAt(), s.window(), Math.max(0, s.exposure() - amount))
+                : s);
+    }
+
+    /** 다른 TF 마켓까지 쿨다운 연장 (토큰/노출은 소모하지 않음) */
+    public void extendCooldown(String coin, String timeframe) {
+        int slot = slotIndex(coin, tfIndex(timeframe));
+        if (slot < 0) return;
+        long now = System.currentTimeMillis();
+        slots[slot].updateAndGet(s -> new SlotState(Math.max(now, s.lastReserveAt()),
+                s.tokens(), s.refillAt(), s.window(), s.exposure()));
+    }
+
+    // =========================================================================
+    // 조회 (읽기 전용 — 사전 필터/UI용, 예약 보장 아님)
+    // =========================================================================
+    public boolean isOnCooldown(String coin, String timeframe) {
+        int tf = tfIndex(timeframe);
+        int slot = slotIndex(coin, tf);
+        return slot >= 0 && onCooldown(slots[slot].get(), tf, System.currentTimeMillis());
+    }
+
+    /** 남은 시간당 배팅 가능 건수 */
+    public int getAvailableTokens(String coin, String timeframe) {
+        int tf = tfIndex(timeframe);
+        int slot = slotIndex(coin, tf);
+        if (slot < 0) return 0;
+        return (int) refill(slots[slot].get(), tf, System.currentTimeMillis());
+    }
+
+    public static String describe(RejectReason reason, String timeframe) {
+        return switch (reason) {
+            case COOLDOWN -> "5M".equals(timeframe) ? "90초 대기중" : "3분 대기중";
+            case HOURLY_LIMIT -> "시간당 " + MAX_PER_HOUR[Math.max(tfIndex(timeframe), 0)] + "건 초과";
+            case MARKET_EXPOSURE -> "마켓 노출 한도";
+            case TOTAL_EXPOSURE -> "전체 노출 한도";
+            case UNKNOWN_MARKET -> "미지원 마켓";
+        };
+    }
+
+    public RiskGateStats getStats() {
+        Map<String, Long> rejections = new LinkedHashMap<>();
+        for (RejectReason reason : RejectReason.values()) {
+            rejections.put(reason.name(), rejectCounts.get(reason.ordinal()));
+        }
+        return new RiskGateStats(reservedCount.get(), rejections, openExposureCents.get() / 100.0);
+    }
+
+    // =========================================================================
+    // 내부
+    // =========================================================================
+    /** 남은 노출 반환 (1회만) — 반환한 금액(센트), 이미 정산됐으면 -1 */
+    private long settle(Reservation reservation) {
+        if (!reservation.settled.compareAndSet(false, true)) return -1;
+        long cents = reservation.remainingCents.getAndSet(0);
+        openExposureCents.addAndGet(-cents);
+        return cents;
+    }
+
+    private Reservation reject(String coin, RejectReason reason) {
+        rejectCounts.incrementAndGet(reason.ordinal());
+        return new Reservation(coin, -1, 0, -1, reason);
+    }
+
+    private static boolean onCooldown(SlotState s, int tf, long now) {
+        return s.lastReserveAt() > 0 && now - s.lastReserveAt() < COOLDOWN_MS[tf];
+    }
+
+    /** 토큰 버킷: 1시간에 MAX_PER_HOUR개 연속 충전, 최대 MAX_PER_HOUR */
+    private static double refill(SlotState s, int tf, long now) {
+        double rate = (double) MAX_PER_HOUR[tf] / HOUR_MS;
+        return Math.min(MAX_PER_HOUR[tf], s.tokens() + Math.max(0, now - s.refillAt()) * rate);
+    }
+
+    private static int tfIndex(String timeframe) {
+        for (int i = 0; i < TIMEFRAMES.length; i++) {
+            if (TIMEFRAMES[i].equals(timeframe)) return i;
+        }
+        return -1;
+    }
+
+    private static int slotIndex(String coin, int tf) {
+        if (tf < 0) return -1;
+        for (int c = 0; c < CoinConfig.ACTIVE_COINS.size(); c++) {
+            if (CoinConfig.ACTIVE_COINS.get(c).label().equals(coin)) return c * TIMEFRAMES.length + tf;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReference<SlotState>[] createSlots() {
+        AtomicReference<SlotState>[] slots = new AtomicReference[CoinConfig.ACTIVE_COINS.size() * TIMEFRAMES.length];
+        for (int i = 0; i < slots.length; i++) {
+            int tf = i % TIMEFRAMES.length;
+            slots[i] = new AtomicReference<>(new SlotState(0, MAX_PER_HOUR[tf], 0, -1, 0));
+        }
+        return slots;
+    }
+}
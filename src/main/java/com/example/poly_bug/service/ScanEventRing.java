@@ -0,0 +1,178 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.config.CoinConfig;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 📜 스캔 이벤트 링 (락 없음, 고정 용량)
+ *
+ * 기존: 매 틱 String.format → 쓰로틀 키 문자열 연결 → Deque 삽입 + size() O(n)
+ *       (/scan-logs는 가끔 읽는데 문자열은 매번 생성)
+ * 변경: 생산자는 슬롯에 숫자 필드 몇 개만 저장 (문자열 생성/할당 없음)
+ *  - 단계 enum + 코인/TF 인덱스 + 숫자 필드
+ *  - 반복성 단계 쓰로틀: [코인 × TF × 단계] long 배열
+ *  - 텍스트는 조회 시점에만 렌더링
+ *  - 슬롯별 시퀀스(seqlock)로 쓰는 중인 슬롯은 조회에서 제외
+ */
+public final class ScanEventRing {
+
+    private static final long THROTTLE_MS = 5_000; // 반복성 단계: 코인+TF당 5초에 1회
+
+    /** 스캔 단계 (라벨 + 조회 시점 상세 렌더러) */
+    public enum Stage {
+        CIRCUIT_BREAKER("🔴 서킷브레이커", false, e -> String.format("%.0f초 남음", e.d0())),
+        CL_FALLBACK("⚠️ CL→BN fallback", false, e -> String.format("open=%.2f (Binance)", e.d0())),
+        LOW_MOVE("⏸ 변동부족", true, e -> String.format("%.3f%% < %.2f%%", e.d0(), e.d1())),
+        SIDEWAYS("⏸ 횡보", false, e -> String.format("교차 %d회", e.i0())),
+        NARROW_RANGE("⏸ 레인지좁음", true, e -> String.format("%.3f%% < %.3f%%", e.d0(), e.d1())),
+        NO_ODDS("⏸ 오즈없음", false, e -> "마켓 비활성"),
+        SPREAD("⏸ 스프레드", false, e -> String.format("%.1f%% > %d%%", e.d0(), e.i0())),
+        ODDS_FILTER_15M("⏸ 15M오즈필터", false, e -> String.format("min오즈 %.0f%% < 30%%", e.d0())),
+        FWD_GAP("🔍 순방향갭!", false, e -> String.format("%s 갭%.1f%%≥%.1f%% 추정%.0f%% vs 오즈%.0f%%",
+                e.direction(), e.d0(), e.d1(), e.d2(), e.d3())),
+        GAP_LOW("⏸ 갭부족", false, e -> String.format("%s 갭%.1f%% < %.1f%% | 캔들%d",
+                e.direction(), e.d0(), e.d1(), e.i0())),
+        STREAK_WAIT("⏳ 연속대기", false, e -> String.format("%d/%d초", e.i0(), e.i1())),
+        WEAK_MOMENTUM("⏸ 모멘텀약", false, e -> String.format("%.0f%% < 40%%", e.d0())),
+        COOLDOWN("⏸ 쿨다운", false, ScanEvent::riskDetail),
+        HOURLY_LIMIT("⏸ 시간한도", false, ScanEvent::riskDetail),
+        EXPOSURE_LIMIT("⏸ 노출한도", false, ScanEvent::riskDetail),
+        UNSUPPORTED("⏸ 미지원", false, ScanEvent::riskDetail),
+        LOW_BALANCE("⏸ 잔액부족", false, e -> String.format("$%.2f", e.d0())),
+        LOW_EV("⏸ EV부족", false, e -> String.format("EV %.1f%% ≤ 임계값 %.1f%%", e.d0(), e.d1())),
+        THIN_BOOK("⏸ 호가부족", false, e -> String.format("체결가능 $%.2f < $%.0f", e.d0(), e.d1())),
+        BET("✅ 배팅!", false, e -> String.format("%s $%.2f EV%+.1f%% @%.1f¢",
+                e.dir() > 0 ? "UP ⬆️" : "DOWN ⬇️", e.d0(), e.d1(), e.d2()));
+
+        private final String label;
+        private final boolean throttled;
+        private final Function<ScanEvent, String> renderer;
+
+        Stage(String label, boolean throttled, Function<ScanEvent, String> renderer) {
+            this.label = label;
+            this.throttled = throttled;
+            this.renderer = renderer;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * 조회용 이벤트 (렌더링 전 원시 값)
+     * @param coin 코인 인덱스 (CoinConfig.ACTIVE_COINS)
+     * @param tf   타임프레임 인덱스 (-1 = 코인 전체)
+     * @param dir  1 = UP, -1 = DOWN, 0 = 없음
+     */
+    public record ScanEvent(long timestamp, Stage stage, int coin, int tf, int dir,
+                            int i0, int i1, double d0, double d1, double d2, double d3,
+                            String timeframe) {
+        public String coinLabel() {
+            return coin >= 0 && coin < CoinConfig.ACTIVE_COINS.size()
+                    ? CoinConfig.ACTIVE_COINS.get(coin).label() : "-";
+        }
+
+        public String direction() {
+            return dir > 0 ? "UP" : "DOWN";
+        }
+
+        public String detail() {
+            return stage.renderer.apply(this);
+        }
+
+        private String riskDetail() {
+            return RiskGate.describe(RiskGate.RejectReason.values()[i0], timeframe);
+        }
+    }
+
+    /** 슬롯 — seq: 기록 완료된 시퀀스 (-1 = 쓰는 중/비어 있음) */
+    private static final class Slot {
+        volatile long seq = -1;
+        long timestamp;
+        Stage stage;
+        int coin, tf, dir, i0, i1;
+        double d0, d1, d2, d3;
+    }
+
+    private final String[] timeframes;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final long[] lastThrottled; // [코인 × (TF+1) × 단계] 마지막 기록 시각 (스캔 스레드 전용)
+
+    /**
+     * @param capacity   2의 거듭제곱으로 올림
+     * @param timeframes TF 인덱스 → 라벨
+     */
+    public ScanEventRing(int capacity, String[] timeframes) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.timeframes = timeframes;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) slots[i] = new Slot();
+        this.mask = size - 1;
+        this.lastThrottled = new long[CoinConfig.ACTIVE_COINS.size() * (timeframes.length + 1) * Stage.values().length];
+    }
+
+    public void add(Stage stage, int coin, int tf) {
+        add(stage, coin, tf, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    public void add(Stage stage, int coin, int tf, double d0) {
+        add(stage, coin, tf, 0, 0, 0, d0, 0, 0, 0);
+    }
+
+    public void add(Stage stage, int coin, int tf, double d0, double d1) {
+        add(stage, coin, tf, 0, 0, 0, d0, d1, 0, 0);
+    }
+
+    /** 생산자 비용: 쓰로틀 배열 1회 + 슬롯 필드 저장 (할당 없음) */
+    public void add(Stage stage, int coin, int tf, int dir, int i0, int i1,
+                    double d0, double d1, double d2, double d3) {
+        long now = System.currentTimeMillis();
+        if (stage.throttled && coin >= 0) {
+            int key = (coin * (timeframes.length + 1) + tf + 1) * Stage.values().length + stage.ordinal();
+            if (now - lastThrottled[key] < THROTTLE_MS) return;
+            lastThrottled[key] = now;
+        }
+
+        long seq = next.getAndIncrement();
+        Slot slot = slots[(int) (seq & mask)];
+        slot.seq = -1;
+        VarHandle.storeStoreFence();
+        slot.timestamp = now;
+        slot.stage = stage;
+        slot.coin = coin;
+        slot.tf = tf;
+        slot.dir = dir;
+        slot.i0 = i0;
+        slot.i1 = i1;
+        slot.d0 = d0;
+        slot.d1 = d1;
+        slot.d2 = d2;
+        slot.d3 = d3;
+        slot.seq = seq;
+    }
+
+    /** 최신순 (쓰는 중이거나 덮어써진 슬롯은 제외) */
+    public List<ScanEvent> recent() {
+        long end = next.get();
+        List<ScanEvent> events = new ArrayList<>(slots.length);
+        for (long seq = end - 1; seq >= 0 && seq >= end - slots.length; seq--) {
+            Slot slot = slots[(int) (seq & mask)];
+            if (slot.seq != seq) continue;
+            ScanEvent event = new ScanEvent(slot.timestamp, slot.stage, slot.coin, slot.tf, slot.dir,
+                    slot.i0, slot.i1, slot.d0, slot.d1, slot.d2, slot.d3,
+                    slot.tf >= 0 && slot.tf < timeframes.length ? timeframes[slot.tf] : "-");
+            VarHandle.loadLoadFence();
+            if (slot.seq != seq) continue;
+            events.add(event);
+        }
+        return events;
+    }
+}
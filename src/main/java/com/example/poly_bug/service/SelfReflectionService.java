@@ -4,16 +4,32 @@ import com.example.poly_bug.entity.ReflectionLog;
 import com.example.poly_bug.entity.Trade;
 import com.example.poly_bug.repository.ReflectionLogRepository;
 import com.example.poly_bug.repository.TradeRepository;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 🪞 자기반성 (배팅 결과 → Claude 반성문 → Level 2 교훈 압축 트리거)
+ *
+ * 기존: updateTradeResult 안에서 reflect() 동기 호출 → 정각에 10건 확정되면 Claude 10회 직렬 대기
+ *       → 마지막 트레이드의 잔액/결과 발행이 LLM 지연만큼 늦어짐
+ * 변경:
+ *  1. enqueue() = 트레이드 ID를 bounded 큐에 넣기만 (결과 확정 경로에 LLM 없음)
+ *  2. 백그라운드 스레드가 3초마다 최대 5건씩 묶어 Claude 1회 호출 → [#ID]별로 분리해 기록
+ *  3. 반성 컬럼만 UPDATE (결과/금액 등 다른 컬럼 덮어쓰기 없음)
+ *  4. 배치 단위로 교훈 압축 카운터 증가 + 프롬프트 학습 블록 무효화
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -22,46 +38,146 @@ public class SelfReflectionService {
     private final TradeRepository tradeRepository;
     private final ReflectionLogRepository reflectionLogRepository;
     private final LessonService lessonService;
-    private final OkHttpClient httpClient = new OkHttpClient();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PromptContextCache promptContextCache;
+    private final LlmGateway llmGateway;
+
+    private static final int QUEUE_CAPACITY = 200;
+    private static final int BATCH_MAX = 5;
+    private static final long BATCH_WINDOW_MS = 3_000; // 같은 시각에 확정된 트레이드를 묶을 대기 시간
+    private static final Pattern BATCH_HEADER = Pattern.compile("\\[#(\\d+)]");
 
-    @Value("${anthropic.api-key}")
-    private String apiKey;
+    private final BlockingQueue<Long> pending = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final ScheduledExecutorService reflectionExecutor = Executors.newSingleThreadScheduledExecutor();
 
     @Value("${anthropic.model-light:claude-haiku-4-5-20251001}")
     private String model;
 
-    // 배팅 결과가 나왔을 때 자기반성 실행
-    public void reflect(Trade trade) {
+    @PostConstruct
+    public void init() {
+        reflectionExecutor.scheduleWithFixedDelay(this::drain, BATCH_WINDOW_MS, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reflectionExecutor.shutdownNow();
+    }
+
+    /**
+     * 배팅 결과 확정 시 호출 — 큐 삽입만 (반성은 백그라운드 배치)
+     */
+    public void enqueue(Trade trade) {
         if (trade.getResult() == Trade.TradeResult.PENDING) return;
+        if (!pending.offer(trade.getId())) {
+            log.warn("반성 큐 가득 참 ({}건) → 반성 생략 (ID: {})", QUEUE_CAPACITY, trade.getId());
+        }
+    }
 
+    private void drain() {
         try {
-            String prompt = buildReflectionPrompt(trade);
-            String reflection = callClaude(prompt);
-            trade.setReflection(reflection);
-            tradeRepository.save(trade);
+            while (!pending.isEmpty()) {
+                List<Long> ids = new ArrayList<>(BATCH_MAX);
+                pending.drainTo(ids, BATCH_MAX);
+                if (ids.isEmpty()) return;
+                reflectBatch(ids);
+            }
+        } catch (Exception e) {
+            log.error("자기반성 배치 오류: {}", e.getMessage());
+        }
+    }
 
-            // 전체 반성 로그 저장
-            saveReflectionLog(reflection);
+    private void reflectBatch(List<Long> ids) {
+        // 큐 대기 중 수동 수정/삭제됐을 수 있으므로 DB에서 다시 읽음
+        List<Trade> trades = tradeRepository.findAllById(ids).stream()
+                .filter(t -> t.getResult() != Trade.TradeResult.PENDING)
+                .filter(t -> t.getReflection() == null || t.getReflection().isBlank())
+                .toList();
+        if (trades.isEmpty()) return;
 
-            // Level 2 교훈 압축 트리거 (5건 누적 시 자동 실행)
-            lessonService.onReflectionAdded();
+        Map<Long, String> reflections = new HashMap<>();
+        try {
+            if (trades.size() == 1) {
+                reflections.put(trades.get(0).getId(), callClaude(buildReflectionPrompt(trades.get(0)), 512));
+            } else {
+                reflections.putAll(parseBatch(callClaude(buildBatchPrompt(trades), Math.min(300 * trades.size(), 1500))));
+            }
+        } catch (Exception e) {
+            log.error("자기반성 실패 ({}건): {}", trades.size(), e.getMessage());
+            return;
+        }
 
-            log.info("자기반성 완료: {}", reflection.substring(0, Math.min(100, reflection.length())));
+        int saved = 0;
+        for (Trade trade : trades) {
+            String reflection = reflections.get(trade.getId());
+            if (reflection == null || reflection.isBlank()) {
+                log.warn("배치 응답에 반성 누락 (ID: {})", trade.getId());
+                continue;
+            }
+            tradeRepository.updateReflection(trade.getId(), reflection);
+            saveReflectionLog(trade.getId(), reflection); // 전체 반성 로그 저장
+            saved++;
+        }
+        if (saved == 0) return;
 
-        } catch (Exception e) {
-            log.error("자기반성 실패: {}", e.getMessage());
+        promptContextCache.onLearningUpdated(); // L3 최근 반성 변경
+        log.info("자기반성 완료: {}/{}건 (Claude 1회)", saved, trades.size());
+
+        // Level 2 교훈 압축 트리거 (5건 누적 시 자동 실행)
+        lessonService.onReflectionsAdded(saved);
+    }
+
+    /** "[#123] 반성..." 단락들 → ID별 반성문 */
+    private Map<Long, String> parseBatch(String response) {
+        Map<Long, String> result = new HashMap<>();
+        Matcher m = BATCH_HEADER.matcher(response);
+        Long currentId = null;
+        int bodyStart = 0;
+        while (m.find()) {
+            if (currentId != null) result.put(currentId, response.substring(bodyStart, m.start()).trim());
+            currentId = Long.parseLong(m.group(1));
+            bodyStart = m.end();
         }
+        if (currentId != null) result.put(currentId, response.substring(bodyStart).trim());
+        return result;
     }
 
     private String buildReflectionPrompt(Trade trade) {
-        String dir = trade.getAction() == Trade.TradeAction.BUY_YES ? "UP" : "DOWN";
-        String result = trade.getResult().name();
         String tf = trade.getTimeframe() != null ? trade.getTimeframe() : "1H";
         boolean isWin = trade.getResult() == Trade.TradeResult.WIN;
 
         StringBuilder sb = new StringBuilder();
         sb.append(String.format("Polymarket %s %s 배팅 결과 분석. 구체적 실수/성공 포인트만 짚어줘.\n\n", trade.getCoin(), tf));
+        appendTradeData(sb, trade);
+        appendRules(sb, isWin, !isWin);
+        return sb.toString();
+    }
+
+    /**
+     * 여러 건 한 번에 — 건별 데이터 + 공통 규칙 1회 + [#ID] 단락 형식
+     */
+    private String buildBatchPrompt(List<Trade> trades) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Polymarket 배팅 결과 %d건 분석. 건별로 구체적 실수/성공 포인트만 짚어줘.\n\n", trades.size()));
+        boolean anyWin = false;
+        boolean anyLose = false;
+        for (Trade trade : trades) {
+            String dir = trade.getAction() == Trade.TradeAction.BUY_YES ? "UP" : "DOWN";
+            String tf = trade.getTimeframe() != null ? trade.getTimeframe() : "1H";
+            sb.append(String.format("──────── [#%d] %s %s %s배팅 → %s ────────\n",
+                    trade.getId(), trade.getCoin(), tf, dir, trade.getResult().name()));
+            appendTradeData(sb, trade);
+            sb.append("\n");
+            if (trade.getResult() == Trade.TradeResult.WIN) anyWin = true;
+            else anyLose = true;
+        }
+        appendRules(sb, anyWin, anyLose);
+        sb.append("\n=== 출력 형식 ===\n");
+        sb.append("배팅마다 [#ID] 로 시작하는 단락 하나씩 (예: [#123] 반성 내용). 다른 머리말 없이.\n");
+        return sb.toString();
+    }
+
+    private void appendTradeData(StringBuilder sb, Trade trade) {
+        String dir = trade.getAction() == Trade.TradeAction.BUY_YES ? "UP" : "DOWN";
+        String result = trade.getResult().name();
 
         // 가격 데이터
         sb.append("=== 실제 데이터 ===\n");
@@ -87,7 +203,10 @@ public class SelfReflectionService {
                 trade.getConfidence(),
                 trade.getBetAmount(),
                 trade.getProfitLoss() != null ? trade.getProfitLoss() : 0.0));
+    }
 
+    /** 반성 규칙 (배치면 WIN/LOSE 지시 모두) */
+    private void appendRules(StringBuilder sb, boolean forWin, boolean forLose) {
         // 반성 지시
         sb.append("\n=== 반성 규칙 ===\n");
         sb.append("절대 하지 말 것:\n");
@@ -96,25 +215,27 @@ public class SelfReflectionService {
         sb.append("- 마크다운 서식(##, **, 번호) 금지. 평문으로만.\n\n");
         sb.append("반드시 할 것 (2~3줄 평문):\n");
 
-        if (isWin) {
+        if (forWin) {
+            if (forLose) sb.append("[WIN]\n");
             sb.append("- 어떤 신호를 정확히 읽었는지 (예: 'RSI 28 과매도에서 반등 포착')\n");
             sb.append("- 이 패턴이 재현 가능한지, 운인지\n");
-        } else {
+        }
+        if (forLose) {
+            if (forWin) sb.append("[LOSE]\n");
             sb.append("- 어떤 신호를 잘못 읽었는지 구체적으로 (예: '펀딩비 과열 신호를 무시했다')\n");
             sb.append("- 시초가→종가 방향 변화의 원인 추정 (예: '진입 후 2분만에 반전, OI 급감이 선행지표였다')\n");
             sb.append("- 같은 조건에서 다음번 행동 규칙 (예: 'OI -3% 이상 감소 중이면 HOLD')\n");
         }
-
-        return sb.toString();
     }
 
-    private void saveReflectionLog(String content) {
+    private void saveReflectionLog(Long tradeId, String content) {
         Long wins = tradeRepository.countWins();
         Long resolved = tradeRepository.countResolved();
         Double totalPnl = tradeRepository.totalProfitLoss();
         double winRate = resolved > 0 ? (double) wins / resolved * 100 : 0;
 
         ReflectionLog log = ReflectionLog.builder()
+                .tradeId(tradeId)
                 .content(content)
                 .winRate(winRate)
                 .totalTrades(resolved.intValue())
@@ -123,28 +244,7 @@ public class SelfReflectionService {
         reflectionLogRepository.save(log);
     }
 
-    private String callClaude(String prompt) throws Exception {
-        String requestBody = objectMapper.writeValueAsString(new java.util.HashMap<>() {{
-            put("model", model);
-            put("max_tokens", 512);
-            put("messages", List.of(new java.util.HashMap<>() {{
-                put("role", "user");
-                put("content", prompt);
-            }}));
-        }});
-
-        Request request = new Request.Builder()
-                .url("https://api.anthropic.com/v1/messages")
-                .addHeader("x-api-key", apiKey)
-                .addHeader("anthropic-version", "2023-06-01")
-                .addHeader("content-type", "application/json")
-                .post(RequestBody.create(requestBody, MediaType.get("application/json")))
-                .build();
-
-        try (Response response = httpClient.newCall(request).execute()) {
-            String body = response.body().string();
-            JsonNode root = objectMapper.readTree(body);
-            return root.path("content").get(0).path("text").asText();
-        }
+    private String callClaude(String prompt, int maxTokens) throws Exception {
+        return llmGateway.call(LlmGateway.Purpose.REFLECTION, model, null, prompt, maxTokens).text();
     }
 }
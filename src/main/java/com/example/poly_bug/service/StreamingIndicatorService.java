@@ -0,0 +1,310 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.config.CoinConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 📈 스트리밍 RSI/EMA/MACD (코인 × 인터벌별 증분 상태)
+ *
+ * 기존: collect()마다 klines 100개 다운로드 → RSI/MACD 전체 재계산
+ * 개선:
+ *  1. 시작 시 klines 1회 시드 (인터벌당 1콜)
+ *  2. 이후 바이낸스 WebSocket 틱으로 봉 마감 감지 → O(1) 증분 갱신
+ *  3. 조회 시 현재가를 진행 중인 봉의 임시 종가로 O(1) 계산 (상태 변경 없음)
+ *
+ * 수식은 MarketDataService 기존 구현과 동일:
+ *  - RSI: SMA 시드 → Wilder smoothing
+ *  - EMA: 첫 종가로 시드, MACD signal은 slow-1 인덱스부터 시작
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamingIndicatorService {
+
+    private final BinanceWebSocketService priceMonitor;
+
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .readTimeout(5, TimeUnit.SECONDS)
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService seedExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    private static final String BINANCE_SPOT = "https://api.binance.com";
+
+    // 지원 인터벌 (MarketDataService.fetchTechnicals와 동일)
+    private static final String[] INTERVALS = {"1h", "15m"};
+    private static final long[] INTERVAL_MS = {3_600_000L, 900_000L};
+
+    private static final int SEED_LIMIT = 100;
+    private static final int MAX_FLAT_BARS = 3; // 끊김 시 이 이상 봉이 비면 REST 재시드
+
+    private static final int RSI_PERIOD = 14;
+    private static final int MACD_FAST = 12;
+    private static final int MACD_SLOW = 26;
+    private static final int MACD_SIGNAL = 9;
+    private static final int MIN_BARS = 26; // 기존 fetchTechnicals 기준 (미만이면 기본값)
+
+    // 코인 → [인터벌 인덱스] 상태
+    private final Map<String, IndicatorState[]> states = new ConcurrentHashMap<>();
+
+    /**
+     * 지표 스냅샷
+     * @param histogram macdLine - macdSignal (MarketIndicators.macd)
+     * @param bars      진행 중인 봉 포함 시계열 길이
+     */
+    public record IndicatorSnapshot(double rsi, double macdLine, double macdSignal, double histogram, int bars) {}
+
+    @PostConstruct
+    public void init() {
+        for (CoinConfig.CoinDef coin : CoinConfig.ACTIVE_COINS) {
+            IndicatorState[] arr = new IndicatorState[INTERVALS.length];
+            for (int i = 0; i < INTERVALS.length; i++) {
+                arr[i] = new IndicatorState(INTERVAL_MS[i]);
+            }
+            states.put(coin.label(), arr);
+        }
+        priceMonitor.onTick(this::onTick);
+
+        // 시드 (미완료/재시드 필요 상태는 1분마다 재시도)
+        seedExecutor.scheduleWithFixedDelay(this::seedPending, 0, 60, TimeUnit.SECONDS);
+        log.info("📈 스트리밍 지표 활성화 | 코인: {}개 | 인터벌: 1h, 15m | RSI({}) MACD({},{},{})",
+                states.size(), RSI_PERIOD, MACD_FAST, MACD_SLOW, MACD_SIGNAL);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        seedExecutor.shutdownNow();
+    }
+
+    /**
+     * 현재 지표 조회 (O(1), HTTP 없음)
+     * @param interval "1h" 또는 "15m"
+     * @return 시드 전이거나 미지원 코인/인터벌이면 null → 호출자가 REST fallback
+     */
+    public IndicatorSnapshot getSnapshot(String coin, String interval) {
+        IndicatorState[] arr = states.get(coin);
+        int idx = intervalIndex(interval);
+        if (arr == null || idx < 0) return null;
+        return arr[idx].peek();
+    }
+
+    // =========================================================================
+    // 틱 → 봉 마감 감지 (WebSocket 스레드)
+    // =========================================================================
+    private void onTick(String coin, double price, long timestamp) {
+        IndicatorState[] arr = states.get(coin);
+        if (arr == null || price <= 0) return;
+        for (IndicatorState state : arr) {
+            state.onTick(price, timestamp);
+        }
+    }
+
+    // =========================================================================
+    // klines 시드
+    // =========================================================================
+    private void seedPending() {
+        for (Map.Entry<String, IndicatorState[]> entry : states.entrySet()) {
+            String coin = entry.getKey();
+            IndicatorState[] arr = entry.getValue();
+            for (int i = 0; i < arr.length; i++) {
+                if (!arr[i].needsSeed()) continue;
+                try {
+                    seed(coin, INTERVALS[i], arr[i]);
+                } catch (Exception e) {
+                    log.warn("[{}][{}] 지표 시드 실패: {}", coin, INTERVALS[i], e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void seed(String coin, String interval, IndicatorState state) throws Exception {
+        String url = BINANCE_SPOT + "/api/v3/klines?symbol=" + coin + "USDT"
+                + "&interval=" + interval + "&limit=" + SEED_LIMIT;
+        Request req = new Request.Builder().url(url).get().build();
+        JsonNode candles;
+        try (Response res = httpClient.newCall(req).execute()) {
+            if (res.body() == null) throw new RuntimeException("빈 응답: " + url);
+            candles = objectMapper.readTree(res.body().string());
+        }
+        if (!candles.isArray() || candles.isEmpty()) return;
+
+        // 마지막 캔들 = 진행 중인 봉 → 확정 종가에서 제외
+        int n = candles.size();
+        double[] closedCloses = new double[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            closedCloses[i] = candles.get(i).get(4).asDouble();
+        }
+        JsonNode current = candles.get(n - 1);
+        state.seed(closedCloses, current.get(0).asLong(), current.get(4).asDouble());
+        log.info("📈 [{}][{}] 지표 시드 완료: 확정봉 {}개", coin, interval, closedCloses.length);
+    }
+
+    private static int intervalIndex(String interval) {
+        for (int i = 0; i < INTERVALS.length; i++) {
+            if (INTERVALS[i].equals(interval)) return i;
+        }
+        return -1;
+    }
+
+    // =========================================================================
+    // 증분 상태 (코인 × 인터벌 1개)
+    // =========================================================================
+    private static final class IndicatorState {
+        private static final double K_FAST = 2.0 / (MACD_FAST + 1);
+        private static final double K_SLOW = 2.0 / (MACD_SLOW + 1);
+        private static final double K_SIGNAL = 2.0 / (MACD_SIGNAL + 1);
+
+        private final long intervalMs;
+
+        private boolean seeded = false;
+        private boolean reseedRequested = false;
+        private long barStart = 0;       // 진행 중인 봉 시작 (ms)
+        private double lastPrice = 0;    // 진행 중인 봉의 최신가 (= 임시 종가)
+
+        // 확정 종가 기준 상태
+        private int closes = 0;
+        private double lastClose;
+        private double gainSum, lossSum; // RSI 시드 구간 (변화 < period)
+        private double avgGain, avgLoss;
+        private double emaFast, emaSlow;
+        private double signal;
+
+        IndicatorState(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        synchronized boolean needsSeed() {
+            return !seeded || reseedRequested;
+        }
+
+        synchronized void seed(double[] closedCloses, long currentBarStart, double currentClose) {
+            resetCommitted();
+            for (double c : closedCloses) commit(c);
+            // 시드 중 이미 다음 봉으로 넘어간 틱이 있으면 그 가격 유지
+            if (barStart > currentBarStart && lastPrice > 0) {
+                commit(currentClose);
+            } else {
+                barStart = currentBarStart;
+                if (lastPrice <= 0) lastPrice = currentClose;
+            }
+            seeded = true;
+            reseedRequested = false;
+        }
+
+        synchronized void onTick(double price, long timestamp) {
+            long tickBarStart = timestamp - (timestamp % intervalMs);
+            if (!seeded) {
+                // 시드 전: 최신가만 보관
+                lastPrice = price;
+                barStart = Math.max(barStart, tickBarStart);
+                return;
+            }
+            if (tickBarStart > barStart) {
+                long elapsedBars = (tickBarStart - barStart) / intervalMs;
+                commit(lastPrice); // 직전 봉 마감
+                if (elapsedBars - 1 > MAX_FLAT_BARS) {
+                    reseedRequested = true; // 장시간 끊김 → REST 재시드
+                } else {
+                    for (long i = 1; i < elapsedBars; i++) commit(lastPrice); // 거래 없던 봉 = 평봉
+                }
+                barStart = tickBarStart;
+            }
+            lastPrice = price;
+        }
+
+        private void resetCommitted() {
+            closes = 0;
+            lastClose = 0;
+            gainSum = lossSum = 0;
+            avgGain = avgLoss = 0;
+            emaFast = emaSlow = 0;
+            signal = 0;
+        }
+
+        /** 봉 마감: O(1) */
+        private void commit(double close) {
+            if (closes == 0) {
+                lastClose = close;
+                emaFast = close;
+                emaSlow = close;
+                closes = 1;
+                return;
+            }
+
+            // RSI (Wilder)
+            double change = close - lastClose;
+            double gain = change > 0 ? change : 0;
+            double loss = change < 0 ? -change : 0;
+            int changes = closes; // 이번 봉 포함 변화 개수
+            if (changes <= RSI_PERIOD) {
+                gainSum += gain;
+                lossSum += loss;
+                if (changes == RSI_PERIOD) {
+                    avgGain = gainSum / RSI_PERIOD;
+                    avgLoss = lossSum / RSI_PERIOD;
+                }
+            } else {
+                avgGain = (avgGain * (RSI_PERIOD - 1) + gain) / RSI_PERIOD;
+                avgLoss = (avgLoss * (RSI_PERIOD - 1) + loss) / RSI_PERIOD;
+            }
+
+            // EMA / MACD
+            emaFast = (close - emaFast) * K_FAST + emaFast;
+            emaSlow = (close - emaSlow) * K_SLOW + emaSlow;
+            double macd = emaFast - emaSlow;
+            int index = closes; // 이번 종가의 0-based 인덱스
+            if (index == MACD_SLOW - 1) {
+                signal = macd;
+            } else if (index > MACD_SLOW - 1) {
+                signal = (macd - signal) * K_SIGNAL + signal;
+            }
+
+            lastClose = close;
+            closes++;
+        }
+
+        /** 현재가를 임시 종가로 지표 계산 (상태 변경 없음, O(1)) */
+        synchronized IndicatorSnapshot peek() {
+            if (!seeded || closes == 0 || lastPrice <= 0) return null;
+            int len = closes + 1;
+            if (len < MIN_BARS) return new IndicatorSnapshot(50.0, 0.0, 0.0, 0.0, len);
+
+            double change = lastPrice - lastClose;
+            double gain = change > 0 ? change : 0;
+            double loss = change < 0 ? -change : 0;
+
+            // RSI
+            double rsi;
+            double g, l;
+            if (closes == RSI_PERIOD) {
+                g = (gainSum + gain) / RSI_PERIOD;
+                l = (lossSum + loss) / RSI_PERIOD;
+            } else {
+                g = (avgGain * (RSI_PERIOD - 1) + gain) / RSI_PERIOD;
+                l = (avgLoss * (RSI_PERIOD - 1) + loss) / RSI_PERIOD;
+            }
+            rsi = l == 0 ? 100.0 : 100.0 - (100.0 / (1.0 + g / l));
+
+            // MACD
+            if (len < MACD_SLOW + MACD_SIGNAL) return new IndicatorSnapshot(rsi, 0.0, 0.0, 0.0, len);
+            double f = (lastPrice - emaFast) * K_FAST + emaFast;
+            double s = (lastPrice - emaSlow) * K_SLOW + emaSlow;
+            double macd = f - s;
+            double sig = (macd - signal) * K_SIGNAL + signal;
+            return new IndicatorSnapshot(rsi, macd, sig, macd - sig, len);
+        }
+    }
+}
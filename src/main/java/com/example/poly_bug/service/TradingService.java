@@ -1,16 +1,23 @@
 package com.example.poly_bug.service;
 
+import com.example.poly_bug.dto.DashboardEvent;
 import com.example.poly_bug.dto.MarketIndicators;
 import com.example.poly_bug.dto.TradeDecision;
 import com.example.poly_bug.entity.Trade;
 import com.example.poly_bug.repository.TradeRepository;
 import com.example.poly_bug.util.PriceFormatter;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -20,17 +27,44 @@ public class TradingService {
     private final ClaudeDecisionEngine claudeEngine;
     private final SelfReflectionService reflectionService;
     private final TradeRepository tradeRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final DashboardPublisher dashboardPublisher;
     private final BotStateService botStateService;
     private final PolymarketOddsService oddsService;
+    private final OddsRegistry oddsRegistry;
     private final ExpectedValueCalculator evCalculator;
-    private final PolymarketOrderService orderService;
+    private final OrderPipeline orderPipeline;
+    private final ClobSimulator clobSimulator;
+    private final RiskGate riskGate;
     private final BalanceService balanceService;
     private final ChainlinkPriceService chainlinkPriceService;
+    private final OutcomeTracker outcomeTracker;
+    private final WinRateEngine winRateEngine;
+    private final PromptContextCache promptContextCache;
 
     @Value("${trading.dry-run}")
     private boolean dryRun;
 
+    // 2단계 저장: 커밋 후 마켓 지표 보강 전용 (배팅 경로를 막지 않음)
+    private final ExecutorService enrichExecutor = Executors.newSingleThreadExecutor();
+
+    private static final long DECISION_RETENTION_MS = 7_200_000; // 캔들 시퀀스 2시간 보관 (티켓 보관 1시간보다 길게)
+
+    /**
+     * 결정 슬롯 — 코인 × TF × 방향 × 캔들 시작 단위 (결정 시퀀스 + 마지막 제출 티켓)
+     * 주문이 ACK/체결돼야 다음 결정으로 전진 → 그 전의 재실행(수동 트리거 등)은 같은 결정 ID로 재제출되어 중복 처리
+     */
+    private static final class DecisionSlot {
+        int seq;
+        OrderPipeline.OrderTicket ticket;
+    }
+
+    private final Map<String, DecisionSlot> decisionSlots = new ConcurrentHashMap<>();
+
+    @PreDestroy
+    public void shutdown() {
+        enrichExecutor.shutdownNow();
+    }
+
     /**
      * 🚀 모멘텀 추종 전략 (1H 메인)
      * 핵심: 방향은 가격이 결정, Claude는 반전 체크만
@@ -155,7 +189,7 @@ public class TradingService {
 
             double marketOdds = "UP".equals(direction) ? odds.upOdds() : odds.downOdds();
             ExpectedValueCalculator.EvResult evResult = evCalculator.calculateMomentum(
-                    adjustedWinRate, marketOdds, direction);
+                    coin, adjustedWinRate, marketOdds, direction);
 
             broadcast(String.format("📈 [%s] 모멘텀 EV: %+.1f%% (승률 %.0f%%, 오즈 %.0f%%) 임계값 %.0f%%",
                     coin, evResult.bestEv() * 100, adjustedWinRate * 100,
@@ -187,20 +221,15 @@ public class TradingService {
 
             // 11. 실행
             String dir = finalAction == Trade.TradeAction.BUY_YES ? "UP ⬆️" : "DOWN ⬇️";
+            OrderPipeline.Submission order = null;
             if (dryRun) {
                 broadcast(String.format("🟡 [DRY-RUN][%s] 모멘텀 %s | $%.2f | EV: %+.1f%% | 변동: %+.3f%%",
                         coin, dir, betAmount, evResult.bestEv() * 100, pricePct));
             } else {
                 broadcast(String.format("🟢 [실제배팅][%s] 모멘텀 %s | $%.2f | EV: %+.1f%%",
                         coin, dir, betAmount, evResult.bestEv() * 100));
-                try {
-                    String tokenId = getTokenId(odds, finalAction);
-                    String orderId = orderService.placeOrder(tokenId, "BUY", betAmount);
-                    broadcast(String.format("✅ 주문 성공: %s", orderId));
-                } catch (Exception e) {
-                    broadcast("❌ 주문 실패: " + e.getMessage());
-                    log.error("주문 실패", e);
-                }
+                order = submitOrder(odds, finalAction, coin, timeframe, betAmount);
+                if (order == null) return false;
             }
 
             // 12. 저장
@@ -218,10 +247,13 @@ public class TradingService {
                     .timeframe(timeframe)
                     .build();
 
-            Trade trade = saveTrade(decision, indicators, odds, evResult, betAmount, coin, timeframe);
+            Trade trade = saveTrade(decision, indicators, odds, evResult,
+                    topOfBook(odds, decision.getAction()), betAmount, coin, timeframe);
             balanceService.deductBet(betAmount);
+            if (dryRun) simulateFill(trade, odds, trade.getBuyOdds(), null);
+            else reconcileOrder(trade, order);
             botStateService.recordCycle(coin + " 모멘텀 " + dir + " $" + String.format("%.2f", betAmount));
-            broadcast(String.format("✅ [%s] 저장 완료 (ID: %d) | 잔액: $%.2f", coin, trade.getId(), balanceService.getBalance()));
+            publishBetPlaced(trade, "모멘텀");
             return true;
 
         } catch (Exception e) {
@@ -233,36 +265,106 @@ public class TradingService {
 
     /**
      * 모멘텀 전략 과거 승률 조회
-     * 캔들 후반부 진입 + 방향 추종 시의 실제 승률
+     * 캔들 후반부 진입 + 방향 추종 시의 실제 승률 (코인 × TF 최근 50건, 승률 엔진 메모리 조회)
      */
     private double getMomentumWinRate(String coin, String timeframe) {
-        var recent = tradeRepository.findTop50ByCoinAndTimeframeForStats(coin, timeframe);
-        long resolved = recent.stream()
-                .filter(t -> t.getResult() == Trade.TradeResult.WIN || t.getResult() == Trade.TradeResult.LOSE)
-                .filter(t -> t.getAction() != Trade.TradeAction.HOLD)
-                .count();
-        if (resolved < 5) return 0.62; // 기본값: 모멘텀 추종 경험적 승률
-        long wins = recent.stream()
-                .filter(t -> t.getResult() == Trade.TradeResult.WIN)
-                .filter(t -> t.getAction() != Trade.TradeAction.HOLD)
-                .count();
-        return (double) wins / resolved;
+        WinRateEngine.WinRate rate = winRateEngine.get(coin, timeframe, null);
+        if (rate.size() < 5) return 0.62; // 기본값: 모멘텀 추종 경험적 승률
+        return rate.windowRate(50);
     }
 
     /**
      * 오즈 지연 트레이드 저장 + 잔액 차감 (OddsLagDetector에서 호출)
+     * @param reservation 리스크 게이트 예약 (시뮬 미체결/부분체결 시 반환·축소)
      */
     public void saveAndDeductLagTrade(TradeDecision decision, MarketIndicators indicators,
                                        PolymarketOddsService.MarketOdds odds,
                                        ExpectedValueCalculator.EvResult evResult,
-                                       double betAmount, String coin, String timeframe) {
-        Trade trade = saveTrade(decision, indicators, odds, evResult, betAmount, coin, timeframe);
+                                       double betAmount, String coin, String timeframe,
+                                       RiskGate.Reservation reservation) {
+        double top = topOfBook(odds, decision.getAction());
+        saveAndDeductLagTrade(decision, indicators, odds, evResult, top, top, betAmount, coin, timeframe, reservation);
+    }
+
+    /**
+     * 스캐너 트레이드 저장 + 잔액 차감 — 매수가는 호가 깊이 반영 체결가(VWAP)
+     * @param buyOdds     예상 평균 체결가 (트레이드 매수가로 저장)
+     * @param limitPrice  주문 지정가 — 사이징이 닿은 가장 깊은 호가 (VWAP보다 높거나 같음)
+     * @param reservation 리스크 게이트 예약 (시뮬 미체결/부분체결 시 반환·축소)
+     */
+    public void saveAndDeductLagTrade(TradeDecision decision, MarketIndicators indicators,
+                                       PolymarketOddsService.MarketOdds odds,
+                                       ExpectedValueCalculator.EvResult evResult, double buyOdds,
+                                       double limitPrice, double betAmount, String coin, String timeframe,
+                                       RiskGate.Reservation reservation) {
+        Trade trade = saveTrade(decision, indicators, odds, evResult, buyOdds, betAmount, coin, timeframe);
         balanceService.deductBet(betAmount);
+        if (dryRun) simulateFill(trade, odds, limitPrice, reservation);
         botStateService.recordCycle(coin + " ⚡오즈지연 " +
                 (decision.getAction() == Trade.TradeAction.BUY_YES ? "UP" : "DOWN") +
                 " $" + String.format("%.2f", betAmount));
-        broadcast(String.format("✅ [%s] 오즈지연 저장 (ID: %d) | 잔액: $%.2f",
-                coin, trade.getId(), balanceService.getBalance()));
+        publishBetPlaced(trade, "오즈지연");
+        enrichIndicatorsAsync(trade.getId(), coin, timeframe);
+    }
+
+    /**
+     * 🧪 DRY-RUN: 시뮬레이터 체결 결과로 커밋된 트레이드 보정 (배팅 경로를 막지 않음)
+     * 체결가(VWAP)/체결액 반영, 부분체결 잔액 반환, 미체결이면 HOLD 전환 + 전액 반환
+     * 리스크 게이트 예약도 같이: 미체결 → 반환, 부분체결 → 미체결분만큼 축소 (예약 없는 경로는 null)
+     * @param limitPrice 지정가 — 다단계 호가를 쓰는 배팅은 VWAP가 아니라 가장 깊은 호가 (매수가 기록은 VWAP 그대로)
+     */
+    private void simulateFill(Trade trade, PolymarketOddsService.MarketOdds odds, double limitPrice,
+                              RiskGate.Reservation reservation) {
+        double requested = trade.getBetAmount();
+        clobSimulator.submit(getTokenId(odds, trade.getAction()), requested, limitPrice)
+                .thenAccept(fill -> {
+                    try {
+                        if (fill.isRejected()) {
+                            int updated = tradeRepository.markSimulatedReject(trade.getId(),
+                                    " | 🧪 시뮬 미체결: " + fill.rejectReason(),
+                                    Trade.TradeAction.HOLD, Trade.TradeResult.HOLD, Trade.TradeResult.PENDING);
+                            if (updated > 0) {
+                                balanceService.refundBet(requested);
+                                riskGate.release(reservation);
+                            }
+                            broadcast(String.format("🧪 [%s] 시뮬 미체결 (ID: %d): %s",
+                                    trade.getCoin(), trade.getId(), fill.rejectReason()));
+                            return;
+                        }
+                        int updated = tradeRepository.updateSimulatedFill(trade.getId(), fill.vwap(),
+                                fill.filledUsdc(), Trade.TradeResult.PENDING);
+                        if (updated > 0 && !fill.isComplete()) {
+                            balanceService.refundBet(requested - fill.filledUsdc());
+                            riskGate.reduce(reservation, requested - fill.filledUsdc());
+                        }
+                        broadcast(String.format("🧪 [%s] 시뮬 체결 $%.2f/$%.2f @ %.3f (지정가 %.3f, %dms%s)",
+                                trade.getCoin(), fill.filledUsdc(), requested, fill.vwap(), fill.limitPrice(),
+                                fill.latencyMs(), fill.syntheticBook() ? ", 합성 호가" : ""));
+                    } catch (Exception e) {
+                        log.warn("[{}] 시뮬 체결 반영 실패 (ID: {}): {}", trade.getCoin(), trade.getId(), e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * ⭐ 2단계: 이미 커밋된 트레이드에 펀딩비/OI/공포탐욕 등 패턴 분석용 지표를 비동기로 채움
+     * 배팅 판단에는 쓰이지 않으므로 실패해도 기본값(0) 유지
+     */
+    private void enrichIndicatorsAsync(Long tradeId, String coin, String timeframe) {
+        enrichExecutor.submit(() -> {
+            try {
+                MarketIndicators m = marketDataService.collect(coin);
+                tradeRepository.updateMarketIndicators(tradeId,
+                        m.getFundingRate(),
+                        "15M".equals(timeframe) ? m.getOpenInterestChange5m() : m.getOpenInterestChange(),
+                        m.getBtcChange1h(), m.getEthChange1h(), m.getEthChange4h(), m.getEthChange24h(),
+                        m.getFearGreedIndex());
+                log.info("[{}] 마켓지표 보강 완료 (ID: {}): FR={}, OI변화={}%, FearGreed={}",
+                        coin, tradeId, m.getFundingRate(), m.getOpenInterestChange(), m.getFearGreedIndex());
+            } catch (Exception e) {
+                log.warn("[{}] 마켓지표 보강 실패 (ID: {}), 기본값 유지: {}", coin, tradeId, e.getMessage());
+            }
+        });
     }
 
     private void saveMomentumHoldTrade(MarketIndicators indicators, String coin, String timeframe,
@@ -401,29 +503,27 @@ public class TradingService {
 
             // 8. 실행
             String dir = finalAction == Trade.TradeAction.BUY_YES ? "UP ⬆️" : "DOWN ⬇️";
+            OrderPipeline.Submission order = null;
             if (dryRun) {
                 broadcast(String.format("🟡 [DRY-RUN][%s] %s | $%.2f | EV: %+.1f%%",
                         coin, dir, betAmount, evResult.bestEv() * 100));
             } else {
                 broadcast(String.format("🟢 [실제배팅][%s] %s | $%.2f | EV: %+.1f%%",
                         coin, dir, betAmount, evResult.bestEv() * 100));
-                try {
-                    // 폴리마켓 실제 주문
-                    String tokenId = getTokenId(odds, finalAction);
-                    String orderId = orderService.placeOrder(tokenId, "BUY", betAmount);
-                    broadcast(String.format("✅ 주문 성공: %s", orderId));
-                } catch (Exception e) {
-                    broadcast("❌ 주문 실패: " + e.getMessage());
-                    log.error("주문 실패", e);
-                }
+                // 폴리마켓 실제 주문 (파이프라인에 넘기고 바로 진행, 중복이면 저장/차감 안 함)
+                order = submitOrder(odds, finalAction, coin, timeframe, betAmount);
+                if (order == null) return false;
             }
 
             decision.setAction(finalAction);
-            Trade trade = saveTrade(decision, indicators, odds, evResult, betAmount, coin, timeframe);
+            Trade trade = saveTrade(decision, indicators, odds, evResult,
+                    topOfBook(odds, decision.getAction()), betAmount, coin, timeframe);
             balanceService.deductBet(betAmount);
+            if (dryRun) simulateFill(trade, odds, trade.getBuyOdds(), null);
+            else reconcileOrder(trade, order);
             botStateService.recordCycle(coin + " " + dir + " $" + String.format("%.2f", betAmount)
                     + " (잔액 $" + String.format("%.2f", balanceService.getBalance()) + ")");
-            broadcast(String.format("✅ [%s] 저장 완료 (ID: %d) | 잔액: $%.2f", coin, trade.getId(), balanceService.getBalance()));
+            publishBetPlaced(trade, "AI");
             return true;
 
         } catch (Exception e) {
@@ -435,7 +535,7 @@ public class TradingService {
 
     private Trade saveTrade(TradeDecision decision, MarketIndicators indicators,
                              PolymarketOddsService.MarketOdds odds,
-                             ExpectedValueCalculator.EvResult evResult,
+                             ExpectedValueCalculator.EvResult evResult, double buyOdds,
                              double betAmount, String coin, String timeframe) {
         double entryPrice = indicators.getCoinPrice();
         // 시초가: 5M/15M은 Chainlink 우선 (폴리마켓 판정 기준), 1H은 Binance
@@ -472,7 +572,7 @@ public class TradingService {
                 // 지표 저장
                 .fundingRate(indicators.getFundingRate())
                 .openInterestChange("15M".equals(timeframe) ? indicators.getOpenInterestChange5m() : indicators.getOpenInterestChange())
-                .buyOdds(decision.getAction() == Trade.TradeAction.BUY_YES ? odds.upOdds() : odds.downOdds())
+                .buyOdds(buyOdds)
                 .btcChange1h(indicators.getBtcChange1h())
                 .ethChange1h(indicators.getEthChange1h())
                 .ethChange4h(indicators.getEthChange4h())
@@ -535,6 +635,7 @@ public class TradingService {
 
     public void updateTradeResult(Long tradeId, Trade.TradeResult result, Double exitPrice) {
         tradeRepository.findById(tradeId).ifPresent(trade -> {
+            Trade.TradeResult previous = trade.getResult();
             trade.setResult(result);
             trade.setExitPrice(exitPrice);
             trade.setResolvedAt(java.time.LocalDateTime.now());
@@ -559,29 +660,110 @@ public class TradingService {
             // 잔액 반영
             balanceService.onTradeResult(trade);
 
-            reflectionService.reflect(trade);
-            broadcast(String.format("📊 Trade #%d [%s] 결과: %s | PNL: $%.2f | 잔액: $%.2f",
-                    tradeId, trade.getCoin(), result, pnl, balanceService.getBalance()));
+            // 승패 이력 (서킷브레이커 즉시 반응) — 이미 확정된 결과를 수동 수정한 경우엔 재시드
+            if (previous == Trade.TradeResult.PENDING) {
+                outcomeTracker.record(trade.getCoin(), trade.getTimeframe(), result);
+                winRateEngine.record(trade);
+            } else if (previous != result) {
+                outcomeTracker.reload();
+                winRateEngine.reload(); // 이전 결과가 승률 버킷에 남지 않도록
+            }
+            promptContextCache.onTradeResolved(trade.getCoin());
+
+            reflectionService.enqueue(trade); // 반성은 백그라운드 배치 (결과 발행을 LLM이 막지 않음)
+            double balance = balanceService.getBalance();
+            String message = String.format("📊 Trade #%d [%s] 결과: %s | PNL: $%.2f | 잔액: $%.2f",
+                    tradeId, trade.getCoin(), result, pnl, balance);
+            log.info(message);
+            dashboardPublisher.publish(DashboardEvent.tradeResult(tradeId, trade.getCoin(), trade.getTimeframe(),
+                    result.name(), pnl, balance, message));
         });
     }
 
+    /** 코인 최근 20건 승률 (결과 없으면 0 → EV 계산기 기본 임계값) */
     private double getRecentWinRate(String coin) {
-        var recent = tradeRepository.findTop20ByCoinOrderByCreatedAtDesc(coin);
-        long resolved = recent.stream()
-                .filter(t -> t.getResult() == Trade.TradeResult.WIN || t.getResult() == Trade.TradeResult.LOSE)
-                .count();
-        if (resolved == 0) return 0;
-        long wins = recent.stream().filter(t -> t.getResult() == Trade.TradeResult.WIN).count();
-        return (double) wins / resolved;
+        return winRateEngine.get(coin, null, null).windowRate(20);
     }
 
+    /** 로그 + 대시보드 발행 (비동기 배치 — 호출 스레드는 큐 삽입만) */
     public void broadcast(String message) {
         log.info(message);
-        try {
-            messagingTemplate.convertAndSend("/topic/trading", message);
-        } catch (Exception e) {
-            log.warn("WebSocket 전송 실패: {}", e.getMessage());
+        dashboardPublisher.log(message);
+    }
+
+    /** 구조화 이벤트 발행 — 로그창 텍스트는 DashboardPublisher 발행 스레드에서 렌더링 */
+    public void publish(DashboardEvent event) {
+        dashboardPublisher.publish(event);
+    }
+
+    private void publishBetPlaced(Trade trade, String strategy) {
+        double balance = balanceService.getBalance();
+        log.info("✅ [{}][{}] {} 저장 (ID: {}) | ${} | 잔액: ${}", trade.getCoin(), trade.getTimeframe(), strategy,
+                trade.getId(), trade.getBetAmount(), balance);
+        publish(DashboardEvent.betPlaced(trade.getId(), trade.getCoin(), trade.getTimeframe(), strategy,
+                trade.getBetAmount(), balance));
+    }
+
+    /**
+     * 주문 파이프라인 제출 (논블로킹) — 결과는 저장 후 reconcileOrder()로 트레이드에 반영
+     * 결정 ID = 캔들 시작 + 결정 시퀀스 → 같은 결정의 재제출은 같은 멱등 키 (진행 중/체결 티켓이면 중복)
+     * @return 새 주문 제출 결과, 같은 결정의 기존 티켓이면 null (호출자는 저장/차감 생략)
+     */
+    OrderPipeline.Submission submitOrder(PolymarketOddsService.MarketOdds odds, Trade.TradeAction action,
+                                         String coin, String timeframe, double betAmount) {
+        String tf = timeframe != null ? timeframe : "1H";
+        long now = System.currentTimeMillis();
+        long candleMs = "5M".equals(tf) ? 300_000 : "15M".equals(tf) ? 900_000 : 3_600_000;
+        long candleStart = (now / candleMs) * candleMs;
+        decisionSlots.keySet().removeIf(k -> now - Long.parseLong(k.substring(k.lastIndexOf(':') + 1)) > DECISION_RETENTION_MS);
+        DecisionSlot slot = decisionSlots.computeIfAbsent(
+                coin + ":" + tf + ":" + action.name() + ":" + candleStart, k -> new DecisionSlot());
+
+        OrderPipeline.Submission submission;
+        synchronized (slot) {
+            // 직전 결정이 체결됐으면 같은 캔들의 다음 결정 → 새 ID (거부면 같은 ID로 재제출 — 파이프라인이 티켓 교체)
+            if (slot.ticket != null && slot.ticket.isSuccess()) slot.seq++;
+            submission = orderPipeline.submit(
+                    OrderPipeline.idempotencyKey(coin, tf, action.name(), candleStart + "-" + slot.seq), coin + "_" + tf,
+                    getTokenId(odds, action), "BUY", betAmount, oddsRegistry.get(coin, tf));
+            slot.ticket = submission.ticket();
         }
+        if (submission.duplicate()) {
+            broadcast(String.format("♻️ [%s] 중복 주문 — 기존 티켓 %s, 저장/차감 생략", coin, submission.ticket().getState()));
+            return null;
+        }
+        return submission;
+    }
+
+    /**
+     * 실주문 결과를 저장된 트레이드에 반영 — 거부면 DRY-RUN 미체결과 같게 HOLD 전환 + 배팅액 반환
+     * (제출 직후 이미 거부됐어도 저장 후 등록하므로 콜백이 바로 실행됨)
+     */
+    CompletableFuture<Void> reconcileOrder(Trade trade, OrderPipeline.Submission submission) {
+        return submission.future().thenAccept(ticket -> {
+            if (ticket.isSuccess()) {
+                log.info("✅ [{}] 주문 {}: {} (ID: {}, {}ms)", trade.getCoin(), ticket.getState(),
+                        ticket.getOrderId(), trade.getId(), ticket.getAckLatencyMs());
+                publish(DashboardEvent.orderAck(trade.getId(), trade.getCoin(), ticket.getState().name(),
+                        ticket.getOrderId(), ticket.getAckLatencyMs()));
+                return;
+            }
+            try {
+                int updated = tradeRepository.markSimulatedReject(trade.getId(),
+                        " | ❌ 주문 거부: " + ticket.getError(),
+                        Trade.TradeAction.HOLD, Trade.TradeResult.HOLD, Trade.TradeResult.PENDING);
+                if (updated > 0) balanceService.refundBet(trade.getBetAmount());
+            } catch (Exception e) {
+                log.warn("[{}] 주문 거부 반영 실패 (ID: {}): {}", trade.getCoin(), trade.getId(), e.getMessage());
+            }
+            log.info("❌ [{}] 주문 실패 (ID: {}): {}", trade.getCoin(), trade.getId(), ticket.getError());
+            publish(DashboardEvent.orderReject(trade.getId(), trade.getCoin(), ticket.getError()));
+        });
+    }
+
+    /** 최우선 호가 매수가 (방향별) */
+    private static double topOfBook(PolymarketOddsService.MarketOdds odds, Trade.TradeAction action) {
+        return action == Trade.TradeAction.BUY_YES ? odds.upOdds() : odds.downOdds();
     }
 
     private String getTokenId(PolymarketOddsService.MarketOdds odds, Trade.TradeAction action) {
@@ -0,0 +1,215 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.config.CoinConfig;
+import com.example.poly_bug.entity.Trade;
+import com.example.poly_bug.repository.TradeRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * 🎯 시간 감쇠 승률 엔진 (코인 × TF × 전략)
+ *
+ * 기존: 스캐너가 1분마다 전체 테이블 COUNT 2회 → 전역 누적 승률 하나로 임계값 조절,
+ *       TradingService는 호출마다 코인별 최근 20~50행 로드
+ * 변경: 결과 확정 이벤트마다 primitive 카운터 O(1) 갱신, 조회는 volatile 읽기 1회
+ *  1. 지수 감쇠 승률 (반감기 24시간) — 오래된 결과일수록 가중치 감소
+ *  2. 고정 윈도우 승률 — 최근 64건 비트링에서 최근 N건
+ *  3. 계층 테이블: [코인|전체] × [TF|전체] × [전략|전체] → 표본 부족 시 상위 계층으로 폴백
+ *
+ * 시작 시 최근 결과 1회 시드 (5컬럼 프로젝션), 수동 결과 수정 시 재시드
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WinRateEngine {
+
+    private final TradeRepository tradeRepository;
+
+    private static final long HALF_LIFE_MS = 24 * 3_600_000L;
+    private static final double LN2 = Math.log(2);
+    private static final int RING_SIZE = 64;
+    private static final int SEED_LIMIT = 500;
+    private static final double MIN_DECAYED_WEIGHT = 5.0; // 감쇠 가중 표본 5건 미만이면 상위 계층 사용
+
+    /** 전략 구분 (Trade.marketTrend 기준) */
+    public enum Strategy {
+        GAP, SPIKE, AI;
+
+        public static Strategy of(String marketTrend) {
+            if (marketTrend == null) return AI;
+            if (marketTrend.startsWith("GAP_SCAN")) return GAP;
+            if ("SPIKE".equals(marketTrend)) return SPIKE;
+            return AI;
+        }
+    }
+
+    private static final String[] TIMEFRAMES = {"1H", "15M", "5M"};
+    private static final int COINS = CoinConfig.ACTIVE_COINS.size();
+    private static final int TFS = TIMEFRAMES.length;
+    private static final int STRATEGIES = Strategy.values().length;
+    // 각 축의 마지막 칸 = "전체" (재시드 시 새 테이블로 통째 교체)
+    private volatile Stats[] table = createTable();
+
+    /**
+     * 승률 스냅샷 (결과 확정 시점에 발행 — 감쇠는 승/전체에 같은 배수라 비율 불변)
+     * @param decayedRate   지수 감쇠 승률
+     * @param decayedWeight 발행 시점 감쇠 가중 표본 수
+     * @param winBits       최근 결과 비트 (bit0 = 최신, 1 = WIN)
+     * @param size          비트링 보관 건수 (최대 64)
+     * @param total         누적 결과 수
+     */
+    public record WinRate(double decayedRate, double decayedWeight, long winBits, int size, long total) {
+        /** 최근 n건 승률 (결과 없으면 0) */
+        public double windowRate(int n) {
+            int k = Math.min(n, size);
+            if (k == 0) return 0;
+            long mask = k >= 64 ? -1L : (1L << k) - 1;
+            return (double) Long.bitCount(winBits & mask) / k;
+        }
+    }
+
+    private static final WinRate EMPTY = new WinRate(0, 0, 0, 0, 0);
+
+    /** 계층 칸 1개 — 쓰기는 동기화, 읽기는 volatile 스냅샷 */
+    private static final class Stats {
+        private double wins, weight;   // 감쇠 누적 (lastAt 기준)
+        private long lastAt;
+        private long bits;
+        private int size;
+        private long total;
+        private volatile WinRate snapshot = EMPTY;
+
+        synchronized void add(boolean win, long at) {
+            if (lastAt > 0 && at > lastAt) {
+                double decay = Math.exp(-LN2 * (at - lastAt) / HALF_LIFE_MS);
+                wins *= decay;
+                weight *= decay;
+            }
+            lastAt = Math.max(lastAt, at);
+            wins += win ? 1 : 0;
+            weight += 1;
+            bits = (bits << 1) | (win ? 1 : 0);
+            size = Math.min(size + 1, RING_SIZE);
+            total++;
+            snapshot = new WinRate(wins / weight, weight, bits, size, total);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * DB에서 다시 시드 (시작 시 + 수동 결과 수정 시) — 이미 누적된 결과는 뺄 수 없으므로 새 테이블로 교체
+     */
+    public synchronized void reload() {
+        try {
+            List<Object[]> rows = tradeRepository.findRecentOutcomes(SEED_LIMIT);
+            Stats[] seeded = createTable();
+            // 쿼리는 최신순 → 오래된 것부터 누적
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                Object[] row = rows.get(i);
+                record(seeded, (String) row[0], (String) row[1], Strategy.of((String) row[3]),
+                        row[2] == Trade.TradeResult.WIN, toEpochMs((LocalDateTime) row[4]));
+            }
+            table = seeded;
+            WinRate all = get(null, null, null);
+            log.info("🎯 승률 엔진 시드 완료 | {}건 | 감쇠 승률 {}% | 최근20 {}%", rows.size(),
+                    String.format("%.0f", all.decayedRate() * 100), String.format("%.0f", all.windowRate(20) * 100));
+        } catch (Exception e) {
+            log.warn("승률 엔진 시드 실패 (결과 확정 시 누적): {}", e.getMessage());
+        }
+    }
+
+    /** 결과 확정 반영 (WIN/LOSE만) — 재시드와 겹치지 않게 동기화 */
+    public synchronized void record(Trade trade) {
+        Trade.TradeResult result = trade.getResult();
+        if (result != Trade.TradeResult.WIN && result != Trade.TradeResult.LOSE) return;
+        if (trade.getAction() == Trade.TradeAction.HOLD) return;
+        record(table, trade.getCoin(), trade.getTimeframe(), Strategy.of(trade.getMarketTrend()),
+                result == Trade.TradeResult.WIN, System.currentTimeMillis());
+    }
+
+    /**
+     * O(1) — null 인자는 "전체" (예: get("BTC", null, null) = BTC 전체)
+     */
+    public WinRate get(String coin, String timeframe, Strategy strategy) {
+        return table[index(coinIndex(coin), tfIndex(timeframe), strategyIndex(strategy))].snapshot;
+    }
+
+    /**
+     * 감쇠 승률 — 표본 부족 시 [코인×TF×전략] → [TF×전략] → [전략] → [전체] 순 폴백
+     */
+    public double rate(String coin, String timeframe, Strategy strategy, double fallback) {
+        int c = coinIndex(coin), tf = tfIndex(timeframe), s = strategyIndex(strategy);
+        Stats[] table = this.table;
+        WinRate w = table[index(c, tf, s)].snapshot;
+        if (w.decayedWeight() >= MIN_DECAYED_WEIGHT) return w.decayedRate();
+        w = table[index(COINS, tf, s)].snapshot;
+        if (w.decayedWeight() >= MIN_DECAYED_WEIGHT) return w.decayedRate();
+        w = table[index(COINS, TFS, s)].snapshot;
+        if (w.decayedWeight() >= MIN_DECAYED_WEIGHT) return w.decayedRate();
+        w = table[index(COINS, TFS, STRATEGIES)].snapshot;
+        if (w.decayedWeight() >= MIN_DECAYED_WEIGHT) return w.decayedRate();
+        return fallback;
+    }
+
+    // =========================================================================
+    // 내부
+    // =========================================================================
+    private static void record(Stats[] table, String coin, String timeframe, Strategy strategy, boolean win, long at) {
+        int c = coinIndex(coin), tf = tfIndex(timeframe != null ? timeframe : "1H"), s = strategyIndex(strategy);
+        // 해당 칸 + 모든 상위("전체") 조합 8칸 갱신 (미지원 코인/TF는 "전체" 칸만)
+        for (int ci : c == COINS ? new int[]{COINS} : new int[]{c, COINS}) {
+            for (int ti : tf == TFS ? new int[]{TFS} : new int[]{tf, TFS}) {
+                for (int si : new int[]{s, STRATEGIES}) {
+                    table[index(ci, ti, si)].add(win, at);
+                }
+            }
+        }
+    }
+
+    private static int index(int c, int tf, int s) {
+        return (c * (TFS + 1) + tf) * (STRATEGIES + 1) + s;
+    }
+
+    /** 미지원/null → "전체" 칸 */
+    private static int coinIndex(String coin) {
+        if (coin == null) return COINS;
+        for (int i = 0; i < COINS; i++) {
+            if (CoinConfig.ACTIVE_COINS.get(i).label().equals(coin)) return i;
+        }
+        return COINS;
+    }
+
+    /** null = "전체" (레거시 트레이드의 timeframe NULL은 기록 시 1H로 취급) */
+    private static int tfIndex(String timeframe) {
+        if (timeframe == null) return TFS;
+        for (int i = 0; i < TFS; i++) {
+            if (TIMEFRAMES[i].equals(timeframe)) return i;
+        }
+        return TFS;
+    }
+
+    private static int strategyIndex(Strategy strategy) {
+        return strategy == null ? STRATEGIES : strategy.ordinal();
+    }
+
+    private static long toEpochMs(LocalDateTime time) {
+        return time == null ? System.currentTimeMillis()
+                : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Stats[] createTable() {
+        Stats[] table = new Stats[(COINS + 1) * (TFS + 1) * (STRATEGIES + 1)];
+        for (int i = 0; i < table.length; i++) table[i] = new Stats();
+        return table;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.poly_bug.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ClobSimulatorTest {
+
+    private static final String TOKEN = "yes-token";
+
+    private OrderBookCache orderBooks;
+    private ClobSimulator simulator;
+
+    @BeforeEach
+    void setUp() {
+        orderBooks = new OrderBookCache(new OddsRegistry());
+        // 50¢ × 10주($5) / 55¢ × 10주($5.5) / 60¢ × 10주($6)
+        orderBooks.put(new OrderBookCache.Book(TOKEN, new double[]{0.50, 0.55, 0.60},
+                new double[]{10, 10, 10}, System.currentTimeMillis()));
+        simulator = new ClobSimulator(orderBooks);
+        ReflectionTestUtils.setField(simulator, "latencyMs", 0L);
+        ReflectionTestUtils.setField(simulator, "latencyJitterMs", 0L);
+        ReflectionTestUtils.setField(simulator, "rejectRate", 0.0);
+        ReflectionTestUtils.setField(simulator, "syntheticDepthUsdc", 50.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        simulator.shutdown();
+    }
+
+    @Test
+    void multiLevelBetFillsCompletelyAtWorstLevelLimit() throws Exception {
+        OrderBookCache.Fill expected = orderBooks.simulateBuy(TOKEN, 8.0); // $5 + $3 → 2단계
+
+        ClobSimulator.SimFill fill = simulator.execute(TOKEN, 8.0, expected.worstPrice());
+
+        assertThat(fill.isComplete()).isTrue();
+        assertThat(fill.vwap()).isCloseTo(expected.vwap(), within(1e-9));
+    }
+
+    @Test
+    void vwapAsLimitLeavesMultiLevelBetPartial() throws Exception {
+        OrderBookCache.Fill expected = orderBooks.simulateBuy(TOKEN, 8.0);
+
+        ClobSimulator.SimFill fill = simulator.execute(TOKEN, 8.0, expected.vwap()); // VWAP < 55¢ → 1단계만
+
+        assertThat(fill.isComplete()).isFalse();
+        assertThat(fill.filledUsdc()).isCloseTo(5.0, within(1e-9));
+    }
+}
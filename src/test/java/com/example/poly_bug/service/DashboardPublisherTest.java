@@ -0,0 +1,64 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.dto.DashboardEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class DashboardPublisherTest {
+
+    private final List<String> sent = new ArrayList<>();
+    private final DashboardPublisher publisher = new DashboardPublisher(
+            new SimpMessagingTemplate(mock(MessageChannel.class)) {
+                @Override
+                public void convertAndSend(String destination, Object payload) {
+                    sent.add((String) payload);
+                }
+            });
+
+    @Test
+    void typedEventsCarryDataAndRenderOnFlush() throws Exception {
+        DashboardEvent bet = DashboardEvent.betPlaced(42L, "BTC", "15M", "오즈지연", 3.5, 96.5);
+        DashboardEvent skip = DashboardEvent.evSkip("ETH", "1H", 0.012, 0.03);
+        assertThat(bet.message()).isNull(); // 호출 스레드에서는 포맷하지 않음
+
+        publisher.publish(bet);
+        publisher.publish(skip);
+        publisher.publish(DashboardEvent.riskReject("SOL", "1H", "HOURLY_LIMIT", "시간당 4건 초과"));
+        publisher.flush();
+
+        assertThat(sent).hasSize(1);
+        JsonNode batch = new ObjectMapper().readTree(sent.get(0));
+        assertThat(batch).hasSize(3);
+        assertThat(batch.get(0).path("type").asText()).isEqualTo("BET_PLACED");
+        assertThat(batch.get(0).path("level").asText()).isEqualTo("SUCCESS");
+        assertThat(batch.get(0).path("data").path("tradeId").asLong()).isEqualTo(42L);
+        assertThat(batch.get(0).path("message").asText())
+                .isEqualTo("✅ [BTC][15M] 오즈지연 저장 (ID: 42) | $3.50 | 잔액: $96.50");
+        assertThat(batch.get(1).path("level").asText()).isEqualTo("INFO");
+        assertThat(batch.get(1).path("message").asText()).isEqualTo("⏸️ [ETH][1H] EV 부족: +1.2% (임계값 3%)");
+        assertThat(batch.get(2).path("level").asText()).isEqualTo("WARN");
+        assertThat(batch.get(2).path("data").path("reason").asText()).isEqualTo("HOURLY_LIMIT");
+    }
+
+    @Test
+    void orderEventsUseExplicitLevels() {
+        // 오류 텍스트에 "UP"/"✅"가 섞여도 이모지 추측 없이 고정 레벨
+        DashboardEvent reject = DashboardEvent.orderReject(7L, "BTC", "UP 토큰 잔액 부족").rendered();
+        DashboardEvent ack = DashboardEvent.orderAck(7L, "BTC", "ACKED", "0xabc", 120).rendered();
+
+        assertThat(reject.level()).isEqualTo("ERROR");
+        assertThat(reject.message()).isEqualTo("❌ [BTC] 주문 실패 (ID: 7): UP 토큰 잔액 부족");
+        assertThat(ack.level()).isEqualTo("SUCCESS");
+        assertThat(ack.message()).isEqualTo("✅ [BTC] 주문 ACKED: 0xabc (ID: 7, 120ms)");
+        assertThat(DashboardEvent.log("plain").rendered().message()).isEqualTo("plain");
+    }
+}
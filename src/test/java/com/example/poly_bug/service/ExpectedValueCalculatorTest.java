@@ -0,0 +1,109 @@
+package com.example.poly_bug.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ExpectedValueCalculatorTest {
+
+    private static final String TOKEN = "yes-token";
+
+    private OrderBookCache orderBooks;
+    private ExpectedValueCalculator calculator;
+
+    @BeforeEach
+    void setUp() {
+        orderBooks = new OrderBookCache(new OddsRegistry());
+        calculator = new ExpectedValueCalculator(null, orderBooks);
+    }
+
+    @Test
+    void depthCapBelowMinimumIsNotRaisedToMinimum() {
+        book(new double[]{0.50}, new double[]{1}); // $0.50만 체결 가능
+
+        ExpectedValueCalculator.DepthSizing sizing = calculator.sizeWithDepth(TOKEN, 100, topEv(), 0.50, false);
+
+        assertThat(sizing.bookUsed()).isTrue();
+        assertThat(sizing.betAmount()).isCloseTo(0.50, within(1e-9));
+        assertThat(sizing.betAmount()).isLessThan(ExpectedValueCalculator.MIN_BET);
+    }
+
+    @Test
+    void smallKellyIsRaisedToMinimumWhenBookCanFillIt() {
+        book(new double[]{0.50}, new double[]{100});
+
+        ExpectedValueCalculator.DepthSizing sizing = calculator.sizeWithDepth(TOKEN, 5, topEv(), 0.50, false);
+
+        assertThat(sizing.betAmount()).isEqualTo(ExpectedValueCalculator.MIN_BET);
+        assertThat(sizing.vwap()).isCloseTo(0.50, within(1e-9));
+        assertThat(sizing.ev()).isCloseTo(0.40, within(1e-9));
+    }
+
+    @Test
+    void thinLevelsShrinkBetAndEvAtVwap() {
+        book(new double[]{0.50, 0.55, 0.60}, new double[]{10, 10, 100});
+
+        ExpectedValueCalculator.DepthSizing sizing = calculator.sizeWithDepth(TOKEN, 100, topEv(), 0.50, false);
+
+        assertThat(sizing.bookUsed()).isTrue();
+        assertThat(sizing.betAmount()).isLessThan(10.0); // 최우선 호가 기준 Kelly = $10
+        assertThat(sizing.vwap()).isGreaterThan(0.50).isLessThan(0.55);
+        assertThat(sizing.limitPrice()).isEqualTo(0.55); // 지정가는 VWAP가 아니라 닿은 가장 깊은 호가
+        assertThat(sizing.ev()).isCloseTo(0.70 / sizing.vwap() - 1.0, within(1e-9));
+        assertThat(sizing.ev()).isLessThan(0.40);
+    }
+
+    @Test
+    void withoutBookFallsBackToTopOfBookSizing() {
+        ExpectedValueCalculator.DepthSizing sizing = calculator.sizeWithDepth(TOKEN, 100, topEv(), 0.50, false);
+
+        assertThat(sizing.bookUsed()).isFalse();
+        assertThat(sizing.limitPrice()).isEqualTo(0.50);
+        assertThat(sizing.betAmount()).isCloseTo(10.0, within(1e-9));
+        assertThat(sizing.ev()).isCloseTo(0.40, within(1e-9));
+    }
+
+    @Test
+    void applyToReplacesDirectionEvWithVwapEv() {
+        ExpectedValueCalculator.EvResult top = topEv();
+        ExpectedValueCalculator.DepthSizing sizing = new ExpectedValueCalculator.DepthSizing(4.0, 0.25, 0.56, 0.60, 0.06, true);
+
+        ExpectedValueCalculator.EvResult adjusted = sizing.applyTo(top);
+
+        assertThat(adjusted.bestEv()).isEqualTo(0.25);
+        assertThat(adjusted.upEv()).isEqualTo(0.25);
+        assertThat(adjusted.downEv()).isEqualTo(top.downEv());
+        assertThat(adjusted.threshold()).isEqualTo(top.threshold());
+        assertThat(adjusted.winProb()).isEqualTo(top.winProb());
+    }
+
+    @Test
+    void coinThresholdScalesWithVolatilityRegimeAndGatesBestAction() {
+        ExpectedValueCalculator volatile2x = new ExpectedValueCalculator(new RealizedVolatilityService(null) {
+            @Override
+            public double getRegime(String coin, double min, double max) {
+                return 2.25; // sqrt → 임계값 ×1.5
+            }
+        }, orderBooks);
+
+        // 추정 55% vs 오즈 50¢ → EV +10%: 고정 임계값 8%는 통과, 레짐 반영 12%는 미달
+        ExpectedValueCalculator.EvResult calm = calculator.calculateMomentum(0.55, 0.50, "UP");
+        ExpectedValueCalculator.EvResult hot = volatile2x.calculateMomentum("BTC", 0.55, 0.50, "UP");
+
+        assertThat(calm.bestAction()).isEqualTo("UP");
+        assertThat(hot.threshold()).isCloseTo(0.12, within(1e-9));
+        assertThat(hot.bestEv()).isCloseTo(0.10, within(1e-9));
+        assertThat(hot.bestAction()).isEqualTo("HOLD");
+    }
+
+    /** 추정 70% vs 오즈 50¢ → EV +40%, 잔액 $100 기준 Kelly $10 */
+    private ExpectedValueCalculator.EvResult topEv() {
+        return calculator.calculateMomentum(0.70, 0.50, "UP");
+    }
+
+    private void book(double[] prices, double[] sizes) {
+        orderBooks.put(new OrderBookCache.Book(TOKEN, prices, sizes, System.currentTimeMillis()));
+    }
+}
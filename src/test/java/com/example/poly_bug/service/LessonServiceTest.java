@@ -0,0 +1,142 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.entity.LessonState;
+import com.example.poly_bug.entity.ReflectionLog;
+import com.example.poly_bug.entity.Trade;
+import com.example.poly_bug.entity.TradingLesson;
+import com.example.poly_bug.repository.LessonStateRepository;
+import com.example.poly_bug.repository.ReflectionLogRepository;
+import com.example.poly_bug.repository.TradeRepository;
+import com.example.poly_bug.repository.TradingLessonRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LessonServiceTest {
+
+    private TradingLessonRepository lessonRepository;
+    private TradeRepository tradeRepository;
+    private ReflectionLogRepository reflectionLogRepository;
+    private LessonStateRepository lessonStateRepository;
+
+    private final List<Long> savedWatermarks = new ArrayList<>();
+    private final List<Long> queriedAfter = new ArrayList<>();
+    private final TradingLesson existing = lesson(3L);
+    private String llmResponse = "NONE";
+
+    @BeforeEach
+    void setUp() {
+        lessonRepository = mock(TradingLessonRepository.class);
+        tradeRepository = mock(TradeRepository.class);
+        reflectionLogRepository = mock(ReflectionLogRepository.class);
+        lessonStateRepository = mock(LessonStateRepository.class);
+
+        when(lessonRepository.findAllByOrderByImportanceDesc()).thenReturn(List.of(existing));
+        when(lessonStateRepository.findById(any())).thenReturn(Optional.of(new LessonState(LessonState.SINGLETON_ID, 10L, null)));
+        when(lessonStateRepository.save(any())).thenAnswer(inv -> {
+            LessonState state = inv.getArgument(0);
+            assertThat(state.getId()).isEqualTo(LessonState.SINGLETON_ID);
+            savedWatermarks.add(state.getLastReflectionLogId());
+            return state;
+        });
+        when(reflectionLogRepository.findTop15ByIdGreaterThanAndTradeIdIsNotNullOrderByIdAsc(anyLong())).thenAnswer(inv -> {
+            long after = inv.getArgument(0);
+            queriedAfter.add(after);
+            return after < 12 ? List.of(reflection(11L, 101L), reflection(12L, 102L)) : List.of();
+        });
+        when(tradeRepository.findAllById(any())).thenReturn(List.of(trade(101L), trade(102L)));
+    }
+
+    @Test
+    void runWithNoLessonChangesStillAdvancesWatermark() {
+        LessonService service = newService();
+
+        service.compressLessons();
+        service.compressLessons();
+
+        assertThat(queriedAfter).containsExactly(10L, 12L); // 상태 행에서 복원, 같은 반성 재전송 없음
+        assertThat(savedWatermarks).containsExactly(12L);
+    }
+
+    @Test
+    void deleteOnlyRunPersistsWatermark() {
+        llmResponse = "OP: DELETE #3\n---";
+
+        newService().compressLessons();
+
+        verify(lessonRepository).deleteAll(List.of(existing));
+        assertThat(savedWatermarks).containsExactly(12L);
+    }
+
+    @Test
+    void restartResumesFromStateRow() {
+        newService().compressLessons();
+        when(lessonStateRepository.findById(any())).thenReturn(Optional.of(new LessonState(LessonState.SINGLETON_ID, 12L, null)));
+
+        newService().compressLessons(); // 재시작: 새 인스턴스는 상태 행(#12)에서 복원
+
+        assertThat(queriedAfter).containsExactly(10L, 12L);
+        assertThat(savedWatermarks).containsExactly(12L);
+    }
+
+    @Test
+    void failedLlmCallKeepsWatermark() {
+        llmResponse = null;
+
+        newService().compressLessons();
+
+        assertThat(savedWatermarks).isEmpty();
+    }
+
+    // =========================================================================
+    private LessonService newService() {
+        LlmGateway llmGateway = new LlmGateway() {
+            @Override
+            public LlmResponse call(Purpose purpose, String model, String system, String user, int maxTokens)
+                    throws java.io.IOException {
+                if (llmResponse == null) throw new java.io.IOException("Claude API 오류 529");
+                return new LlmResponse(llmResponse, model, null, 10, false);
+            }
+        };
+        return new LessonService(lessonRepository, tradeRepository, reflectionLogRepository, lessonStateRepository,
+                new DashboardPublisher(null), new PromptContextCache(), llmGateway);
+    }
+
+    private static TradingLesson lesson(Long id) {
+        TradingLesson lesson = TradingLesson.builder()
+                .lesson("RSI 70+ UP배팅 75% LOSE → HOLD 권장")
+                .category("RSI")
+                .evidenceCount(4)
+                .importance(0.8)
+                .build();
+        lesson.setId(id);
+        return lesson;
+    }
+
+    private static ReflectionLog reflection(Long id, Long tradeId) {
+        ReflectionLog log = new ReflectionLog();
+        log.setId(id);
+        log.setTradeId(tradeId);
+        return log;
+    }
+
+    private static Trade trade(Long id) {
+        Trade trade = new Trade();
+        trade.setId(id);
+        trade.setCoin("BTC");
+        trade.setAction(Trade.TradeAction.BUY_YES);
+        trade.setResult(Trade.TradeResult.WIN);
+        trade.setReflection("추세 추종 적중");
+        return trade;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.poly_bug.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmGatewayTest {
+
+    private static final String MODEL = "claude-sonnet-test";
+    private static final String SYSTEM = "너는 Polymarket 'BTC Up or Down - 1H' 마켓 전문 트레이더야.\n=== 응답 형식 ===";
+    private static final String OK_BODY =
+            "{\"content\":[{\"type\":\"text\",\"text\":\"HOLD\"}],\"usage\":{\"cache_read_input_tokens\":1024}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MockWebServer anthropic;
+    private LlmGateway gateway;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        anthropic = new MockWebServer();
+        anthropic.start();
+        gateway = new LlmGateway();
+        ReflectionTestUtils.setField(gateway, "apiKey", "test-key");
+        ReflectionTestUtils.setField(gateway, "modelLight", MODEL); // 헤징 없음
+        ReflectionTestUtils.setField(gateway, "anthropicUrl", anthropic.url("").toString().replaceAll("/$", ""));
+        ReflectionTestUtils.setField(gateway, "decisionBudgetMs", 5_000L);
+        ReflectionTestUtils.setField(gateway, "maxConcurrent", 4);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        gateway.shutdown();
+        anthropic.shutdown();
+    }
+
+    @Test
+    void systemPrefixIsSentAsSingleEphemeralCacheBlock() throws Exception {
+        anthropic.enqueue(new MockResponse().setBody(OK_BODY));
+
+        LlmGateway.LlmResponse response = gateway.call(LlmGateway.Purpose.DECISION, MODEL, SYSTEM, "현재가: 97,000", 300);
+
+        assertThat(response.text()).isEqualTo("HOLD");
+        JsonNode body = takeBody();
+        assertThat(body.path("system").isArray()).isTrue();
+        assertThat(body.path("system")).hasSize(1);
+        JsonNode block = body.path("system").get(0);
+        assertThat(block.path("type").asText()).isEqualTo("text");
+        assertThat(block.path("text").asText()).isEqualTo(SYSTEM);
+        assertThat(block.path("cache_control").path("type").asText()).isEqualTo("ephemeral");
+    }
+
+    @Test
+    void perCallSuffixStaysOutsideCachedBlock() throws Exception {
+        anthropic.enqueue(new MockResponse().setBody(OK_BODY));
+        anthropic.enqueue(new MockResponse().setBody(OK_BODY));
+
+        gateway.call(LlmGateway.Purpose.DECISION, MODEL, SYSTEM, "현재가: 97,000", 300);
+        gateway.call(LlmGateway.Purpose.DECISION, MODEL, SYSTEM, "현재가: 97,250", 300);
+
+        JsonNode first = takeBody();
+        JsonNode second = takeBody();
+        // 접두부는 호출 간 바이트 단위로 동일, 실시간 데이터는 user 메시지에만
+        assertThat(second.path("system").toString()).isEqualTo(first.path("system").toString());
+        assertThat(first.path("system").get(0).path("text").asText()).doesNotContain("현재가");
+        assertThat(first.path("messages")).hasSize(1);
+        assertThat(first.path("messages").get(0).path("role").asText()).isEqualTo("user");
+        assertThat(first.path("messages").get(0).path("content").asText()).isEqualTo("현재가: 97,000");
+        assertThat(first.path("messages").get(0).has("cache_control")).isFalse();
+        assertThat(second.path("messages").get(0).path("content").asText()).isEqualTo("현재가: 97,250");
+    }
+
+    @Test
+    void noSystemPrefixOmitsSystemField() throws Exception {
+        anthropic.enqueue(new MockResponse().setBody(OK_BODY));
+
+        gateway.call(LlmGateway.Purpose.DECISION, MODEL, null, "질문", 100);
+
+        JsonNode body = takeBody();
+        assertThat(body.has("system")).isFalse();
+        assertThat(body.path("messages").get(0).path("content").asText()).isEqualTo("질문");
+    }
+
+    @Test
+    void backgroundCallsCannotTakeReservedDecisionSlot() throws Exception {
+        ReflectionTestUtils.setField(gateway, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(gateway, "reservedRealtime", 1);
+        ReflectionTestUtils.setField(gateway, "chatBudgetMs", 5_000L);
+        ReflectionTestUtils.setField(gateway, "reflectionBudgetMs", 200L);
+        anthropic.enqueue(new MockResponse().setBody(OK_BODY).setBodyDelay(1_000, TimeUnit.MILLISECONDS));
+        CompletableFuture<LlmGateway.LlmResponse> slowChat = CompletableFuture.supplyAsync(() -> {
+            try {
+                return gateway.call(LlmGateway.Purpose.CHAT, MODEL, null, "느린 채팅", 100);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        anthropic.takeRequest(); // 채팅이 백그라운드 슬롯 1개를 점유
+
+        assertThatThrownBy(() -> gateway.call(LlmGateway.Purpose.REFLECTION, MODEL, null, "반성", 100))
+                .isInstanceOf(LlmGateway.LlmBudgetExceededException.class);
+
+        anthropic.enqueue(new MockResponse().setBody(OK_BODY));
+        LlmGateway.LlmResponse decision = gateway.call(LlmGateway.Purpose.DECISION, MODEL, null, "판단", 100);
+
+        assertThat(decision.text()).isEqualTo("HOLD"); // 예약 슬롯은 판단 전용
+        assertThat(slowChat.get(5, TimeUnit.SECONDS).text()).isEqualTo("HOLD");
+    }
+
+    @Test
+    void hedgeIsSkippedWhenNoSlotIsFree() throws Exception {
+        ReflectionTestUtils.setField(gateway, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(gateway, "decisionBudgetMs", 1_000L);
+        anthropic.enqueue(new MockResponse().setBody(OK_BODY).setBodyDelay(800, TimeUnit.MILLISECONDS));
+
+        // 주 모델이 light가 아니면 예산 60%(600ms)에 헤징 시도 → 유일한 슬롯을 주 요청이 쓰는 중
+        LlmGateway.LlmResponse response =
+                gateway.call(LlmGateway.Purpose.DECISION, "claude-sonnet-primary", null, "판단", 100);
+
+        assertThat(response.hedged()).isFalse();
+        assertThat(response.model()).isEqualTo("claude-sonnet-primary");
+        assertThat(anthropic.getRequestCount()).isEqualTo(1);
+        Map<?, ?> purposes = (Map<?, ?>) gateway.getStats().get("purposes");
+        assertThat(((Map<?, ?>) purposes.get("DECISION")).get("hedgeSkipped")).isEqualTo(1L);
+    }
+
+    private JsonNode takeBody() throws Exception {
+        return objectMapper.readTree(anthropic.takeRequest().getBody().readUtf8());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.poly_bug.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class OrderBookCacheTest {
+
+    private static final String TOKEN = "yes-token";
+
+    private OrderBookCache orderBooks;
+
+    @BeforeEach
+    void setUp() {
+        orderBooks = new OrderBookCache(new OddsRegistry());
+        // 50¢ × 10주($5) / 55¢ × 10주($5.5) / 60¢ × 10주($6) = 총 $16.5
+        orderBooks.put(new OrderBookCache.Book(TOKEN, new double[]{0.50, 0.55, 0.60},
+                new double[]{10, 10, 10}, System.currentTimeMillis()));
+    }
+
+    @Test
+    void fillWithinBestLevelHasNoSlippage() {
+        OrderBookCache.Fill fill = orderBooks.simulateBuy(TOKEN, 4.0);
+
+        assertThat(fill.vwap()).isCloseTo(0.50, within(1e-9));
+        assertThat(fill.shares()).isCloseTo(8.0, within(1e-9));
+        assertThat(fill.slippage()).isCloseTo(0.0, within(1e-9));
+        assertThat(fill.worstPrice()).isEqualTo(0.50);
+        assertThat(fill.complete()).isTrue();
+    }
+
+    @Test
+    void vwapAcrossSeveralLevels() {
+        OrderBookCache.Fill fill = orderBooks.simulateBuy(TOKEN, 13.0); // $5 + $5.5 + $2.5
+
+        double shares = 10 + 10 + 2.5 / 0.60;
+        assertThat(fill.filledUsdc()).isCloseTo(13.0, within(1e-9));
+        assertThat(fill.shares()).isCloseTo(shares, within(1e-9));
+        assertThat(fill.vwap()).isCloseTo(13.0 / shares, within(1e-9));
+        assertThat(fill.slippage()).isCloseTo(13.0 / shares - 0.50, within(1e-9));
+        assertThat(fill.worstPrice()).isEqualTo(0.60); // 전량 체결 지정가 = 가장 깊은 호가 (VWAP 아님)
+        assertThat(fill.complete()).isTrue();
+    }
+
+    @Test
+    void levelBoundaryFillsExactlyOneLevel() {
+        OrderBookCache.Fill fill = orderBooks.simulateBuy(TOKEN, 5.0);
+
+        assertThat(fill.shares()).isCloseTo(10.0, within(1e-9));
+        assertThat(fill.vwap()).isCloseTo(0.50, within(1e-9));
+        assertThat(fill.worstPrice()).isEqualTo(0.50);
+        assertThat(fill.complete()).isTrue();
+    }
+
+    @Test
+    void partialDepthFillsOnlyVisibleBook() {
+        OrderBookCache.Fill fill = orderBooks.simulateBuy(TOKEN, 100.0);
+
+        assertThat(fill.filledUsdc()).isCloseTo(16.5, within(1e-9));
+        assertThat(fill.shares()).isCloseTo(30.0, within(1e-9));
+        assertThat(fill.vwap()).isCloseTo(0.55, within(1e-9));
+        assertThat(fill.complete()).isFalse();
+    }
+
+    @Test
+    void staleOrMissingBookReturnsNull() {
+        orderBooks.put(new OrderBookCache.Book("stale-token", new double[]{0.50}, new double[]{10},
+                System.currentTimeMillis() - 11_000));
+
+        assertThat(orderBooks.simulateBuy("stale-token", 1.0)).isNull();
+        assertThat(orderBooks.simulateBuy("unknown-token", 1.0)).isNull();
+        assertThat(orderBooks.simulateBuy(TOKEN, 0)).isNull();
+    }
+}
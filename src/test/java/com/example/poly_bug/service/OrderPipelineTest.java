@@ -0,0 +1,96 @@
+package com.example.poly_bug.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderPipelineTest {
+
+    private final AtomicInteger posts = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile int responseCode = 200;
+
+    private OrderPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = new OrderPipeline(new PolymarketOrderService(null) {
+            @Override
+            public SignedOrder sign(String tokenId, String side, double amount,
+                                    OddsRegistry.OddsView quote, long nonce) {
+                return new SignedOrder(tokenId, 0.5, nonce, "{}");
+            }
+
+            @Override
+            public PostResult post(SignedOrder order) {
+                posts.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new PostResult(responseCode, "{}", responseCode == 200 ? "0xorder" : null, "matched");
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void sameDecisionKeyReturnsInFlightTicket() throws Exception {
+        String key = OrderPipeline.idempotencyKey("BTC", "5M", "BUY_YES", "d-1");
+
+        OrderPipeline.Submission first = pipeline.submit(key, "BTC_5M", "1", "BUY", 5.0, null);
+        OrderPipeline.Submission second = pipeline.submit(key, "BTC_5M", "1", "BUY", 5.0, null);
+        release.countDown();
+
+        assertThat(first.duplicate()).isFalse();
+        assertThat(second.duplicate()).isTrue();
+        assertThat(second.ticket()).isSameAs(first.ticket());
+        assertThat(first.future().get(5, TimeUnit.SECONDS).getState()).isEqualTo(OrderPipeline.OrderState.FILLED);
+        assertThat(posts.get()).isEqualTo(1);
+    }
+
+    @Test
+    void separateDecisionsInSameCandleAreNotDeduplicated() throws Exception {
+        release.countDown();
+
+        OrderPipeline.Submission first = pipeline.submit(
+                OrderPipeline.idempotencyKey("BTC", "5M", "BUY_YES", "d-1"), "BTC_5M", "1", "BUY", 5.0, null);
+        OrderPipeline.Submission second = pipeline.submit(
+                OrderPipeline.idempotencyKey("BTC", "5M", "BUY_YES", "d-2"), "BTC_5M", "1", "BUY", 5.0, null);
+
+        assertThat(second.duplicate()).isFalse();
+        first.future().get(5, TimeUnit.SECONDS);
+        second.future().get(5, TimeUnit.SECONDS);
+        assertThat(posts.get()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectedTicketIsReplacedOnResubmit() throws Exception {
+        release.countDown();
+        responseCode = 400;
+        String key = OrderPipeline.idempotencyKey("ETH", "15M", "BUY_NO", "d-1");
+
+        OrderPipeline.OrderTicket rejected = pipeline.submit(key, "ETH_15M", "2", "BUY", 5.0, null)
+                .future().get(5, TimeUnit.SECONDS);
+        assertThat(rejected.getState()).isEqualTo(OrderPipeline.OrderState.REJECTED);
+
+        responseCode = 200;
+        OrderPipeline.Submission retry = pipeline.submit(key, "ETH_15M", "2", "BUY", 5.0, null);
+
+        assertThat(retry.duplicate()).isFalse();
+        assertThat(retry.ticket()).isNotSameAs(rejected);
+        assertThat(retry.future().get(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        assertThat(posts.get()).isEqualTo(2);
+    }
+}
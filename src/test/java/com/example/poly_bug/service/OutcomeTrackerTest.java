@@ -0,0 +1,89 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.entity.Trade;
+import com.example.poly_bug.repository.TradeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OutcomeTrackerTest {
+
+    private TradeRepository tradeRepository;
+    private OutcomeTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository = mock(TradeRepository.class);
+        when(tradeRepository.findRecentOutcomes(anyInt())).thenReturn(new ArrayList<>());
+        tracker = new OutcomeTracker(tradeRepository);
+        tracker.init();
+    }
+
+    @Test
+    void recordTracksStreaksPerCoinAndTimeframe() {
+        tracker.record("BTC", "5M", Trade.TradeResult.WIN);
+        tracker.record("BTC", "5M", Trade.TradeResult.LOSE);
+        tracker.record("BTC", "15M", Trade.TradeResult.LOSE);
+
+        assertThat(tracker.get("BTC").lossStreak()).isEqualTo(2);
+        assertThat(tracker.get("BTC").size()).isEqualTo(3);
+        assertThat(tracker.get("BTC", "5M").lossStreak()).isEqualTo(1);
+        assertThat(tracker.get("BTC", "15M").lossStreak()).isEqualTo(1);
+        assertThat(tracker.get("BTC").recentLosses(2)).isEqualTo(2);
+
+        tracker.record("BTC", "5M", Trade.TradeResult.WIN);
+        assertThat(tracker.get("BTC").lossStreak()).isZero();
+        assertThat(tracker.get("BTC").winStreak()).isEqualTo(1);
+        assertThat(tracker.get("ETH").size()).isZero();
+    }
+
+    @Test
+    void recordIgnoresHoldAndPendingAndTreatsNullTimeframeAs1h() {
+        tracker.record("ETH", "1H", Trade.TradeResult.HOLD);
+        tracker.record("ETH", "1H", Trade.TradeResult.PENDING);
+        assertThat(tracker.get("ETH").size()).isZero();
+
+        tracker.record("ETH", null, Trade.TradeResult.LOSE);
+        assertThat(tracker.get("ETH", "1H").lossStreak()).isEqualTo(1);
+    }
+
+    @Test
+    void lossListenerReceivesCoinStreak() {
+        List<String> events = new ArrayList<>();
+        tracker.onLoss((coin, tf, streak) -> events.add(coin + "|" + tf + "|" + streak));
+
+        tracker.record("SOL", "5M", Trade.TradeResult.LOSE);
+        tracker.record("SOL", "15M", Trade.TradeResult.LOSE);
+        tracker.record("SOL", null, Trade.TradeResult.WIN);
+
+        assertThat(events).containsExactly("SOL|5M|1", "SOL|15M|2");
+    }
+
+    @Test
+    void reloadReplacesInMemoryHistoryWithDatabase() {
+        tracker.record("BTC", "5M", Trade.TradeResult.WIN); // 수동 수정 전 결과
+
+        LocalDateTime now = LocalDateTime.now();
+        // 최신순: 가장 최근 결과가 LOSE로 수정됨
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{"BTC", "5M", Trade.TradeResult.LOSE, "GAP_SCAN", now});
+        rows.add(new Object[]{"BTC", "5M", Trade.TradeResult.LOSE, "GAP_SCAN", now.minusMinutes(5)});
+        rows.add(new Object[]{"BTC", "1H", Trade.TradeResult.WIN, "SPIKE", now.minusMinutes(60)});
+        when(tradeRepository.findRecentOutcomes(anyInt())).thenReturn(rows);
+
+        tracker.reload();
+
+        assertThat(tracker.get("BTC").size()).isEqualTo(3);
+        assertThat(tracker.get("BTC").lossStreak()).isEqualTo(2);
+        assertThat(tracker.get("BTC", "5M").lossStreak()).isEqualTo(2);
+        assertThat(tracker.get("BTC", "1H").winStreak()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.poly_bug.service;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolymarketOrderServiceTest {
+
+    private static final String PRIVATE_KEY = "0x4c0883a69102937d6231471b5dbb6204fe5129617082792ae468d01a3f362318";
+    private static final String YES_TOKEN = "71321045679252212594626385532706912750332728571942532289631379312455583992563";
+    private static final String NO_TOKEN = "52114319501245915516055106046884209969926127482827954674443846427813813222426";
+
+    private MockWebServer clob;
+    private PolymarketOrderService orderService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        clob = new MockWebServer();
+        clob.start();
+        orderService = new PolymarketOrderService(null);
+        ReflectionTestUtils.setField(orderService, "privateKey", PRIVATE_KEY);
+        ReflectionTestUtils.setField(orderService, "apiKey", "test-key");
+        ReflectionTestUtils.setField(orderService, "passphrase", "test-pass");
+        ReflectionTestUtils.setField(orderService, "clobUrl", clob.url("").toString().replaceAll("/$", ""));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        clob.shutdown();
+    }
+
+    @Test
+    void freshClobQuoteSkipsPriceLookup() throws Exception {
+        PolymarketOrderService.SignedOrder order = orderService.sign(YES_TOKEN, "BUY", 10.0,
+                quote(0.42, 0.59, true, System.currentTimeMillis()), 1);
+
+        assertThat(order.price()).isEqualTo(0.42);
+        assertThat(clob.getRequestCount()).isZero();
+    }
+
+    @Test
+    void freshClobQuoteUsesMatchingSide() throws Exception {
+        PolymarketOrderService.SignedOrder order = orderService.sign(NO_TOKEN, "BUY", 10.0,
+                quote(0.42, 0.59, true, System.currentTimeMillis()), 1);
+
+        assertThat(order.price()).isEqualTo(0.59);
+        assertThat(clob.getRequestCount()).isZero();
+    }
+
+    @Test
+    void gammaSnapshotQuoteFallsBackToPriceLookup() throws Exception {
+        clob.enqueue(new MockResponse().setBody("{\"price\":\"0.47\"}"));
+
+        PolymarketOrderService.SignedOrder order = orderService.sign(YES_TOKEN, "BUY", 10.0,
+                quote(0.42, 0.59, false, System.currentTimeMillis()), 1);
+
+        assertThat(order.price()).isEqualTo(0.47);
+        assertThat(clob.getRequestCount()).isEqualTo(1);
+        assertThat(clob.takeRequest().getPath()).startsWith("/price?token_id=" + YES_TOKEN);
+    }
+
+    @Test
+    void staleQuoteFallsBackToPriceLookup() throws Exception {
+        clob.enqueue(new MockResponse().setBody("{\"price\":\"0.47\"}"));
+
+        PolymarketOrderService.SignedOrder order = orderService.sign(YES_TOKEN, "BUY", 10.0,
+                quote(0.42, 0.59, true, System.currentTimeMillis() - 5_000), 1);
+
+        assertThat(order.price()).isEqualTo(0.47);
+        assertThat(clob.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void signAndPostWithFreshQuoteIsSingleRoundTrip() throws Exception {
+        clob.enqueue(new MockResponse().setBody("{\"success\":true,\"orderID\":\"0xabc\",\"status\":\"live\"}"));
+
+        PolymarketOrderService.PostResult result = orderService.post(orderService.sign(YES_TOKEN, "BUY", 10.0,
+                quote(0.42, 0.59, true, System.currentTimeMillis()), 1));
+
+        // 주문 제출 지연 = 서명 + POST 1회 (기존: GET /price → 서명 → POST 2회 왕복)
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.orderId()).isEqualTo("0xabc");
+        assertThat(clob.getRequestCount()).isEqualTo(1);
+        assertThat(clob.takeRequest().getPath()).isEqualTo("/order");
+    }
+
+    private static OddsRegistry.OddsView quote(double up, double down, boolean clobPriced, long updatedAt) {
+        return new OddsRegistry.OddsView(new PolymarketOddsService.MarketOdds(
+                up, down, "0xcondition", "btc-up-or-down", true, YES_TOKEN, NO_TOKEN, clobPriced), updatedAt);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.poly_bug.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuantizedResponseCacheTest {
+
+    private static final long TTL_MS = 30_000;
+
+    private final QuantizedResponseCache<String> cache = new QuantizedResponseCache<>(TTL_MS, 4);
+
+    @Test
+    void bucketRoundsToNearestStep() {
+        assertThat(QuantizedResponseCache.bucket(0.137, 0.05)).isEqualTo(3);
+        assertThat(QuantizedResponseCache.bucket(0.124, 0.05)).isEqualTo(2);
+        assertThat(QuantizedResponseCache.bucket(0.126, 0.05)).isEqualTo(3);
+        assertThat(QuantizedResponseCache.bucket(-0.126, 0.05)).isEqualTo(-3);
+        assertThat(QuantizedResponseCache.bucket(0.0, 0.05)).isZero();
+    }
+
+    @Test
+    void valuesInsideSameBucketHit() {
+        cache.put(key("BTC", "UP", 0.131, 0.551), "PASS");
+
+        // 변동률 구간 3 = [0.125, 0.175), 오즈 구간 28 = [0.55, 0.57) — 경계 바로 안쪽은 적중
+        assertThat(cache.get(key("BTC", "UP", 0.174, 0.569))).isEqualTo("PASS");
+        assertThat(cache.get(key("BTC", "UP", 0.126, 0.551))).isEqualTo("PASS");
+        assertThat(cache.stats()).containsEntry("hits", 2L).containsEntry("misses", 0L);
+    }
+
+    @Test
+    void crossingBucketBoundaryMisses() {
+        cache.put(key("BTC", "UP", 0.131, 0.551), "PASS");
+
+        // 구간 경계(0.125 / 0.175, 0.55 / 0.57) 바로 바깥
+        assertThat(cache.get(key("BTC", "UP", 0.124, 0.551))).isNull();
+        assertThat(cache.get(key("BTC", "UP", 0.176, 0.551))).isNull();
+        assertThat(cache.get(key("BTC", "UP", 0.131, 0.549))).isNull();
+        assertThat(cache.get(key("BTC", "UP", 0.131, 0.571))).isNull();
+        // 구간은 같아도 코인/방향이 다르면 미스
+        assertThat(cache.get(key("ETH", "UP", 0.131, 0.551))).isNull();
+        assertThat(cache.get(key("BTC", "DOWN", 0.131, 0.551))).isNull();
+        assertThat(cache.stats()).containsEntry("hits", 0L).containsEntry("misses", 6L);
+    }
+
+    @Test
+    void expiredEntryMissesAndIsDropped() throws Exception {
+        QuantizedResponseCache<String> shortLived = new QuantizedResponseCache<>(20, 4);
+        shortLived.put("k", "PASS");
+        assertThat(shortLived.get("k")).isEqualTo("PASS");
+
+        Thread.sleep(50);
+
+        assertThat(shortLived.get("k")).isNull();
+        assertThat(shortLived.size()).isZero();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAboveCapacity() {
+        for (int i = 0; i < 4; i++) cache.put("k" + i, "v" + i);
+        cache.get("k0"); // k0 최근 사용 → k1이 가장 오래됨
+
+        cache.put("k4", "v4");
+
+        assertThat(cache.size()).isEqualTo(4);
+        assertThat(cache.get("k1")).isNull();
+        assertThat(cache.get("k0")).isEqualTo("v0");
+        assertThat(cache.get("k4")).isEqualTo("v4");
+    }
+
+    /** ClaudeDecisionEngine 키와 같은 방식: 범주형 필드 + 구간 번호 */
+    private static String key(String coin, String direction, double pricePct, double odds) {
+        return String.join("|", coin, "1H", direction,
+                String.valueOf(QuantizedResponseCache.bucket(pricePct, 0.05)),
+                String.valueOf(QuantizedResponseCache.bucket(odds, 0.02)));
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.config.CoinConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RiskGateTest {
+
+    private static final String[] TIMEFRAMES = {"1H", "15M", "5M"};
+    private static final double EQUITY = 100.0;
+
+    private RiskGate riskGate;
+
+    @BeforeEach
+    void setUp() {
+        // 실제처럼 예약 금액만큼 잔액이 빠져 있다고 가정 → 자산(잔액 + 미정산) = 100 고정
+        riskGate = new RiskGate(new BalanceService(null) {
+            @Override
+            public double getBalance() {
+                return EQUITY - riskGate.getStats().openExposure();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        riskGate.shutdown();
+    }
+
+    @Test
+    void concurrentReservesOnSameMarketAdmitOnlyOne() throws Exception {
+        List<RiskGate.Reservation> results = race(32, () -> riskGate.tryReserve("BTC", "5M", 5.0));
+
+        assertThat(results).filteredOn(RiskGate.Reservation::ok).hasSize(1);
+        assertThat(results).filteredOn(r -> !r.ok())
+                .allMatch(r -> r.rejected() == RiskGate.RejectReason.COOLDOWN);
+        assertThat(riskGate.getStats().openExposure()).isEqualTo(5.0);
+    }
+
+    @Test
+    void concurrentReservesNeverExceedTotalExposureCap() throws Exception {
+        // 마켓당 $10 (한도 $15 이내) × 전체 마켓 수 > 전체 한도 $50
+        List<Runnable> tasks = new ArrayList<>();
+        ConcurrentLinkedQueue<RiskGate.Reservation> reserved = new ConcurrentLinkedQueue<>();
+        for (CoinConfig.CoinDef coin : CoinConfig.ACTIVE_COINS) {
+            for (String tf : TIMEFRAMES) {
+                for (int i = 0; i < 4; i++) {
+                    tasks.add(() -> {
+                        RiskGate.Reservation r = riskGate.tryReserve(coin.label(), tf, 10.0);
+                        if (r.ok()) reserved.add(r);
+                    });
+                }
+            }
+        }
+        runConcurrently(tasks);
+
+        double open = riskGate.getStats().openExposure();
+        assertThat(open).isLessThanOrEqualTo(EQUITY * 0.5);
+        assertThat(reserved).isNotEmpty();
+        assertThat(reserved.size() * 10.0).isEqualTo(open);
+    }
+
+    @Test
+    void rejectsAboveMarketExposureCap() {
+        RiskGate.Reservation r = riskGate.tryReserve("BTC", "1H", 20.0); // 한도 $15
+
+        assertThat(r.ok()).isFalse();
+        assertThat(r.rejected()).isEqualTo(RiskGate.RejectReason.MARKET_EXPOSURE);
+        assertThat(riskGate.getStats().openExposure()).isZero();
+        assertThat(riskGate.getStats().rejections()).containsEntry("MARKET_EXPOSURE", 1L);
+    }
+
+    @Test
+    void releaseRestoresExposureAndTokensButKeepsCooldown() {
+        int before = riskGate.getAvailableTokens("ETH", "5M");
+        RiskGate.Reservation r = riskGate.tryReserve("ETH", "5M", 10.0);
+        assertThat(r.ok()).isTrue();
+        assertThat(riskGate.getAvailableTokens("ETH", "5M")).isEqualTo(before - 1);
+
+        riskGate.release(r);
+        riskGate.release(r); // 중복 반환은 무시
+
+        assertThat(riskGate.getStats().openExposure()).isZero();
+        assertThat(riskGate.getAvailableTokens("ETH", "5M")).isEqualTo(before);
+        assertThat(riskGate.isOnCooldown("ETH", "5M")).isTrue();
+    }
+
+    @Test
+    void releaseFreesTotalCapacityForOtherMarkets() {
+        List<RiskGate.Reservation> reserved = new ArrayList<>();
+        String blocked = null;
+        outer:
+        for (CoinConfig.CoinDef coin : CoinConfig.ACTIVE_COINS) {
+            for (String tf : TIMEFRAMES) {
+                RiskGate.Reservation r = riskGate.tryReserve(coin.label(), tf, 12.5);
+                if (!r.ok()) {
+                    assertThat(r.rejected()).isEqualTo(RiskGate.RejectReason.TOTAL_EXPOSURE);
+                    blocked = coin.label() + "|" + tf;
+                    break outer;
+                }
+                reserved.add(r);
+            }
+        }
+        assertThat(reserved).hasSize(4); // $50 / $12.5
+        assertThat(blocked).isNotNull();
+
+        riskGate.release(reserved.get(0));
+
+        String[] market = blocked.split("\\|");
+        assertThat(riskGate.tryReserve(market[0], market[1], 12.5).ok()).isTrue();
+        assertThat(riskGate.getStats().openExposure()).isEqualTo(50.0);
+    }
+
+    @Test
+    void reduceShrinksExposureAndReleaseReturnsOnlyRemainder() {
+        RiskGate.Reservation r = riskGate.tryReserve("BTC", "15M", 10.0);
+        assertThat(r.ok()).isTrue();
+
+        riskGate.reduce(r, 4.0); // 부분 체결: $6만 체결
+        assertThat(r.remaining()).isEqualTo(6.0);
+        assertThat(riskGate.getStats().openExposure()).isEqualTo(6.0);
+
+        riskGate.reduce(r, 20.0); // 남은 예약 이상은 줄이지 않음
+        assertThat(r.remaining()).isZero();
+        assertThat(riskGate.getStats().openExposure()).isZero();
+
+        riskGate.release(r);
+        assertThat(riskGate.getStats().openExposure()).isZero();
+        assertThat(riskGate.tryReserve("ETH", "1H", 15.0).ok()).isTrue();
+        assertThat(riskGate.getStats().openExposure()).isEqualTo(15.0);
+    }
+
+    @Test
+    void reduceAfterReleaseIsIgnored() {
+        RiskGate.Reservation r = riskGate.tryReserve("SOL", "1H", 8.0);
+        RiskGate.Reservation other = riskGate.tryReserve("BTC", "1H", 5.0);
+        riskGate.release(r);
+
+        riskGate.reduce(r, 3.0);
+        riskGate.reduce(null, 3.0);
+
+        assertThat(riskGate.getStats().openExposure()).isEqualTo(5.0);
+        assertThat(other.remaining()).isEqualTo(5.0);
+    }
+
+    // =========================================================================
+    private static <T> List<T> race(int threads, java.util.function.Supplier<T> task) throws Exception {
+        ConcurrentLinkedQueue<T> results = new ConcurrentLinkedQueue<>();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) tasks.add(() -> results.add(task.get()));
+        runConcurrently(tasks);
+        return new ArrayList<>(results);
+    }
+
+    private static void runConcurrently(List<Runnable> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(tasks.size(), 16));
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(tasks.size());
+        try {
+            for (Runnable task : tasks) {
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                        task.run();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            start.countDown();
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
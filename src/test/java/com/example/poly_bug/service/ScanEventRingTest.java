@@ -0,0 +1,104 @@
+package com.example.poly_bug.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScanEventRingTest {
+
+    private static final String[] TIMEFRAMES = {"1H", "15M", "5M"};
+
+    @Test
+    void recentReturnsNewestFirstUpToCapacity() {
+        ScanEventRing ring = new ScanEventRing(4, TIMEFRAMES);
+        for (int k = 1; k <= 6; k++) {
+            ring.add(ScanEventRing.Stage.SIDEWAYS, 0, 2, 0, k, 0, 0, 0, 0, 0);
+        }
+
+        List<ScanEventRing.ScanEvent> events = ring.recent();
+
+        assertThat(events).extracting(ScanEventRing.ScanEvent::i0).containsExactly(6, 5, 4, 3);
+        assertThat(events.get(0).timeframe()).isEqualTo("5M");
+        assertThat(events.get(0).coinLabel()).isEqualTo("BTC");
+        assertThat(events.get(0).detail()).isEqualTo("교차 6회");
+    }
+
+    @Test
+    void throttledStageIsRecordedOncePerWindow() {
+        ScanEventRing ring = new ScanEventRing(16, TIMEFRAMES);
+        ring.add(ScanEventRing.Stage.LOW_MOVE, 0, 1, 0.01, 0.05);
+        ring.add(ScanEventRing.Stage.LOW_MOVE, 0, 1, 0.02, 0.05);
+        ring.add(ScanEventRing.Stage.LOW_MOVE, 0, 2, 0.03, 0.05); // 다른 TF는 별도 키
+        ring.add(ScanEventRing.Stage.SIDEWAYS, 0, 1);             // 쓰로틀 없는 단계
+
+        assertThat(ring.recent()).extracting(e -> e.stage() + "|" + e.tf())
+                .containsExactly("SIDEWAYS|1", "LOW_MOVE|2", "LOW_MOVE|1");
+    }
+
+    /**
+     * 작은 링을 계속 덮어쓰는 동안 조회 — 모든 필드가 같은 k에서 파생되므로
+     * 반쯤 쓰인(torn) 슬롯이 새어 나오면 필드 간 관계가 깨짐
+     */
+    @Test
+    void readerNeverSeesTornSlotWhileWriterRuns() throws Exception {
+        ScanEventRing ring = new ScanEventRing(8, TIMEFRAMES);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong written = new AtomicLong();
+
+        Thread writer = new Thread(() -> {
+            int k = 0;
+            while (running.get()) {
+                k++;
+                ring.add(ScanEventRing.Stage.SIDEWAYS, k % 4, k % 3, (k & 1) == 0 ? 1 : -1,
+                        k, -k, k, 2.0 * k, 3.0 * k, k + 0.5);
+                written.incrementAndGet();
+            }
+        });
+
+        AtomicReference<String> torn = new AtomicReference<>();
+        long reads = 0;
+        long eventsSeen = 0;
+        writer.start();
+        try {
+            long deadline = System.currentTimeMillis() + 500;
+            while (System.currentTimeMillis() < deadline && torn.get() == null) {
+                List<ScanEventRing.ScanEvent> events = ring.recent();
+                reads++;
+                eventsSeen += events.size();
+                int prev = Integer.MAX_VALUE;
+                for (ScanEventRing.ScanEvent e : events) {
+                    int k = e.i0();
+                    boolean consistent = e.i1() == -k && e.d0() == k && e.d1() == 2.0 * k
+                            && e.d2() == 3.0 * k && e.d3() == k + 0.5
+                            && e.coin() == k % 4 && e.tf() == k % 3
+                            && e.dir() == ((k & 1) == 0 ? 1 : -1)
+                            && e.timeframe().equals(TIMEFRAMES[k % 3])
+                            && e.stage() == ScanEventRing.Stage.SIDEWAYS;
+                    if (!consistent) torn.compareAndSet(null, "torn slot: " + e);
+                    if (k >= prev) torn.compareAndSet(null, "out of order: " + k + " after " + prev);
+                    prev = k;
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+
+        assertThat(torn.get()).isNull();
+        assertThat(written.get()).isGreaterThan(1000);
+        assertThat(reads).isGreaterThan(0);
+        assertThat(eventsSeen).isGreaterThan(0);
+    }
+
+    @Test
+    void emptyRingReturnsNoEvents() {
+        assertThat(new ScanEventRing(8, TIMEFRAMES).recent()).isEmpty();
+        assertThat(new ArrayList<>(new ScanEventRing(1, TIMEFRAMES).recent())).isEmpty();
+    }
+}
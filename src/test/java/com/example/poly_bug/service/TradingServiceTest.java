@@ -0,0 +1,130 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.entity.Trade;
+import com.example.poly_bug.repository.TradeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TradingServiceTest {
+
+    private static final PolymarketOddsService.MarketOdds ODDS =
+            new PolymarketOddsService.MarketOdds(0.55, 0.45, "btc-1h", "btc-updown-1h", true);
+
+    private final AtomicInteger posts = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile int responseCode = 200;
+    private double refunded;
+
+    private OrderPipeline pipeline;
+    private TradeRepository tradeRepository;
+    private TradingService tradingService;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = new OrderPipeline(new PolymarketOrderService(null) {
+            @Override
+            public SignedOrder sign(String tokenId, String side, double amount,
+                                    OddsRegistry.OddsView quote, long nonce) {
+                return new SignedOrder(tokenId, 0.55, nonce, "{}");
+            }
+
+            @Override
+            public PostResult post(SignedOrder order) {
+                posts.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new PostResult(responseCode, "{}", responseCode == 200 ? "0xorder" : null, "live");
+            }
+        });
+        tradeRepository = mock(TradeRepository.class);
+        BalanceService balanceService = new BalanceService(null) {
+            @Override
+            public void refundBet(double amount) {
+                refunded += amount;
+            }
+        };
+        tradingService = new TradingService(null, null, null, tradeRepository, new DashboardPublisher(null), null,
+                null, new OddsRegistry(), null, pipeline, null, null, balanceService, null, null, null, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void rerunOfSameDecisionIsDuplicateUntilOrderSucceeds() throws Exception {
+        OrderPipeline.Submission first = tradingService.submitOrder(ODDS, Trade.TradeAction.BUY_YES, "BTC", "1H", 5.0);
+        OrderPipeline.Submission rerun = tradingService.submitOrder(ODDS, Trade.TradeAction.BUY_YES, "BTC", "1H", 5.0);
+
+        assertThat(first).isNotNull();
+        assertThat(rerun).isNull(); // 진행 중인 같은 결정 → 저장/차감 생략
+
+        release.countDown();
+        first.future().get(5, TimeUnit.SECONDS);
+
+        OrderPipeline.Submission next = tradingService.submitOrder(ODDS, Trade.TradeAction.BUY_YES, "BTC", "1H", 5.0);
+        assertThat(next).isNotNull(); // 체결 후 같은 캔들의 다음 결정은 새 ID
+        assertThat(next.ticket().getIdempotencyKey()).isNotEqualTo(first.ticket().getIdempotencyKey());
+        next.future().get(5, TimeUnit.SECONDS);
+        assertThat(posts.get()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectedOrderRevertsTradeAndRefundsBet() throws Exception {
+        responseCode = 400;
+        release.countDown();
+        when(tradeRepository.markSimulatedReject(eq(7L), anyString(), any(), any(), any())).thenReturn(1);
+
+        OrderPipeline.Submission submission =
+                tradingService.submitOrder(ODDS, Trade.TradeAction.BUY_NO, "ETH", "15M", 4.0);
+        tradingService.reconcileOrder(trade(7L, 4.0), submission).get(5, TimeUnit.SECONDS);
+
+        verify(tradeRepository).markSimulatedReject(eq(7L), anyString(), eq(Trade.TradeAction.HOLD),
+                eq(Trade.TradeResult.HOLD), eq(Trade.TradeResult.PENDING));
+        assertThat(refunded).isEqualTo(4.0);
+
+        // 거부된 결정은 같은 ID로 재제출 가능 (파이프라인이 티켓 교체)
+        responseCode = 200;
+        OrderPipeline.Submission retry = tradingService.submitOrder(ODDS, Trade.TradeAction.BUY_NO, "ETH", "15M", 4.0);
+        assertThat(retry).isNotNull();
+        assertThat(retry.ticket().getIdempotencyKey()).isEqualTo(submission.ticket().getIdempotencyKey());
+    }
+
+    @Test
+    void acceptedOrderKeepsTradeAndBalance() throws Exception {
+        release.countDown();
+
+        OrderPipeline.Submission submission =
+                tradingService.submitOrder(ODDS, Trade.TradeAction.BUY_YES, "BTC", "5M", 3.0);
+        tradingService.reconcileOrder(trade(8L, 3.0), submission).get(5, TimeUnit.SECONDS);
+
+        verify(tradeRepository, never()).markSimulatedReject(any(), anyString(), any(), any(), any());
+        assertThat(refunded).isZero();
+    }
+
+    private static Trade trade(Long id, double betAmount) {
+        Trade trade = new Trade();
+        trade.setId(id);
+        trade.setCoin("ETH");
+        trade.setBetAmount(betAmount);
+        return trade;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.poly_bug.service;
+
+import com.example.poly_bug.entity.Trade;
+import com.example.poly_bug.repository.TradeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WinRateEngineTest {
+
+    private TradeRepository tradeRepository;
+    private WinRateEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository = mock(TradeRepository.class);
+        when(tradeRepository.findRecentOutcomes(anyInt())).thenReturn(new ArrayList<>());
+        engine = new WinRateEngine(tradeRepository);
+        engine.init();
+    }
+
+    @Test
+    void recordUpdatesCellAndAllRollups() {
+        engine.record(trade("BTC", "5M", "GAP_SCAN", Trade.TradeResult.WIN));
+        engine.record(trade("BTC", "5M", "GAP_SCAN", Trade.TradeResult.LOSE));
+        engine.record(trade("ETH", "15M", "SPIKE", Trade.TradeResult.WIN));
+
+        WinRateEngine.WinRate cell = engine.get("BTC", "5M", WinRateEngine.Strategy.GAP);
+        assertThat(cell.total()).isEqualTo(2);
+        assertThat(cell.windowRate(20)).isEqualTo(0.5);
+        assertThat(cell.windowRate(1)).isZero(); // 최신 = LOSE
+
+        assertThat(engine.get("BTC", null, null).total()).isEqualTo(2);
+        assertThat(engine.get(null, "5M", WinRateEngine.Strategy.GAP).total()).isEqualTo(2);
+        assertThat(engine.get(null, null, WinRateEngine.Strategy.SPIKE).total()).isEqualTo(1);
+        assertThat(engine.get(null, null, null).total()).isEqualTo(3);
+        assertThat(engine.get(null, null, null).windowRate(3)).isCloseTo(2.0 / 3, within(1e-9));
+    }
+
+    @Test
+    void recordIgnoresHoldAndUnresolved() {
+        Trade hold = trade("BTC", "1H", null, Trade.TradeResult.WIN);
+        hold.setAction(Trade.TradeAction.HOLD);
+        engine.record(hold);
+        engine.record(trade("BTC", "1H", null, Trade.TradeResult.PENDING));
+
+        assertThat(engine.get(null, null, null).total()).isZero();
+    }
+
+    @Test
+    void rateFallsBackToBroaderTierWhenSampleIsThin() {
+        for (int i = 0; i < 6; i++) engine.record(trade("ETH", "5M", "GAP_SCAN", Trade.TradeResult.WIN));
+        engine.record(trade("BTC", "5M", "GAP_SCAN", Trade.TradeResult.LOSE));
+
+        // BTC×5M×GAP는 1건뿐 → [전체 코인×5M×GAP] 6승 1패
+        double rate = engine.rate("BTC", "5M", WinRateEngine.Strategy.GAP, -1);
+        assertThat(rate).isCloseTo(6.0 / 7, within(1e-6));
+        // 기록 없는 조합 → [전체] 계층까지 폴백 (같은 7건)
+        assertThat(engine.rate("XRP", "1H", WinRateEngine.Strategy.SPIKE, 0.42)).isEqualTo(rate);
+    }
+
+    @Test
+    void rateUsesFallbackWhenNoTierHasEnoughSamples() {
+        engine.record(trade("BTC", "5M", "GAP_SCAN", Trade.TradeResult.WIN));
+
+        assertThat(engine.rate("BTC", "5M", WinRateEngine.Strategy.GAP, 0.42)).isEqualTo(0.42);
+    }
+
+    @Test
+    void reloadDropsOverriddenOutcome() {
+        engine.record(trade("SOL", "15M", "SPIKE", Trade.TradeResult.WIN)); // 나중에 LOSE로 수정됨
+
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{"SOL", "15M", Trade.TradeResult.LOSE, "SPIKE", LocalDateTime.now()});
+        when(tradeRepository.findRecentOutcomes(anyInt())).thenReturn(rows);
+        engine.reload();
+
+        WinRateEngine.WinRate cell = engine.get("SOL", "15M", WinRateEngine.Strategy.SPIKE);
+        assertThat(cell.total()).isEqualTo(1);
+        assertThat(cell.decayedRate()).isZero();
+        assertThat(engine.get(null, null, null).windowRate(20)).isZero();
+    }
+
+    private static Trade trade(String coin, String timeframe, String marketTrend, Trade.TradeResult result) {
+        return Trade.builder()
+                .coin(coin)
+                .timeframe(timeframe)
+                .marketTrend(marketTrend)
+                .action(Trade.TradeAction.BUY_YES)
+                .result(result)
+                .build();
+    }
+}